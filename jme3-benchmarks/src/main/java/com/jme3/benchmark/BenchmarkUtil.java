@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.asset.AssetConfig;
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.FastMath;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.system.NullRenderer;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared fixtures for the benchmarks. Everything here runs headless,
+ * with a {@link NullRenderer} standing in for the GPU.
+ */
+public final class BenchmarkUtil {
+
+    /**
+     * Seed used by all benchmarks so that every run sees the same scene.
+     */
+    public static final long SEED = 0x6A4D45L;
+
+    /**
+     * A private constructor to inhibit instantiation of this class.
+     */
+    private BenchmarkUtil() {
+    }
+
+    public static AssetManager createAssetManager() {
+        Logger.getLogger(AssetConfig.class.getName()).setLevel(Level.OFF);
+        return new DesktopAssetManager(true);
+    }
+
+    public static RenderManager createRenderManager() {
+        RenderManager rm = new RenderManager(new NullRenderer());
+        rm.setPassDrawBufferTargetIdToShaders(false);
+        return rm;
+    }
+
+    /**
+     * Builds a scene of <code>groups</code> nodes, each holding
+     * <code>perGroup</code> geometries that share the given mesh and
+     * material, scattered randomly in a 1000 unit cube.
+     *
+     * @param mesh the mesh for all geometries (not null)
+     * @param material the material for all geometries (may be null)
+     * @param groups the number of intermediate nodes
+     * @param perGroup the number of geometries per intermediate node
+     * @param random the source of positions (not null)
+     * @return a new root node
+     */
+    public static Node createScene(Mesh mesh, Material material, int groups, int perGroup, Random random) {
+        Node root = new Node("Root");
+        for (int g = 0; g < groups; g++) {
+            Node group = new Node("Group" + g);
+            group.setLocalTranslation(randomCoord(random), randomCoord(random), randomCoord(random));
+            for (int i = 0; i < perGroup; i++) {
+                Geometry geom = new Geometry("Geom" + g + "_" + i, mesh);
+                if (material != null) {
+                    geom.setMaterial(material);
+                }
+                geom.setLocalTranslation(randomCoord(random) * 0.1f,
+                        randomCoord(random) * 0.1f, randomCoord(random) * 0.1f);
+                geom.rotate(random.nextFloat() * FastMath.TWO_PI, 0, 0);
+                group.attachChild(geom);
+            }
+            root.attachChild(group);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    private static float randomCoord(Random random) {
+        return (random.nextFloat() - 0.5f) * 1000f;
+    }
+}
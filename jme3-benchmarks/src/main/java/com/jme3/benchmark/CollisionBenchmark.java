@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.CollisionResults;
+import com.jme3.collision.bih.BIHTree;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Sphere;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures ray picking through {@link BIHTree#collideWith} against a
+ * finely tessellated sphere.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+    private static final int RAY_COUNT = 256;
+
+    /**
+     * Number of z samples and radial samples of the sphere.
+     */
+    @Param({"32", "128"})
+    public int samples;
+
+    private BIHTree tree;
+    private Matrix4f worldMatrix;
+    private BoundingVolume worldBound;
+    private Ray[] rays;
+    private CollisionResults results;
+
+    @Setup
+    public void setUp() {
+        Mesh mesh = new Sphere(samples, samples, 10f);
+        tree = new BIHTree(mesh);
+        tree.construct();
+        worldMatrix = new Matrix4f();
+        worldBound = mesh.getBound();
+
+        Random random = new Random(BenchmarkUtil.SEED);
+        rays = new Ray[RAY_COUNT];
+        for (int i = 0; i < RAY_COUNT; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat() - 0.5f,
+                    random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).normalizeLocal().multLocal(50f);
+            Vector3f target = new Vector3f(random.nextFloat() - 0.5f,
+                    random.nextFloat() - 0.5f, random.nextFloat() - 0.5f).multLocal(16f);
+            rays[i] = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+        }
+        results = new CollisionResults();
+    }
+
+    @Benchmark
+    public int collideRays() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            results.clear();
+            hits += tree.collideWith(ray, worldMatrix, worldBound, results);
+        }
+        return hits;
+    }
+}
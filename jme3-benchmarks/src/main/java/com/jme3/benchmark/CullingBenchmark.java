@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.ParallelSceneCuller;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link RenderManager#renderScene(com.jme3.scene.Spatial, ViewPort...)}
+ * for several view ports, with and without a {@link ParallelSceneCuller}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CullingBenchmark {
+
+    @Param({"10000", "40000"})
+    public int geometries;
+
+    @Param({"1", "4"})
+    public int viewPortCount;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private RenderManager renderManager;
+    private Node scene;
+    private ViewPort[] viewPorts;
+
+    @Setup
+    public void setUp() {
+        Material mat = new Material(BenchmarkUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        scene = BenchmarkUtil.createScene(new Box(1, 1, 1), mat, geometries / 100, 100,
+                new Random(BenchmarkUtil.SEED));
+
+        renderManager = BenchmarkUtil.createRenderManager();
+        if (parallel) {
+            renderManager.setParallelCuller(new ParallelSceneCuller());
+        }
+
+        viewPorts = new ViewPort[viewPortCount];
+        for (int i = 0; i < viewPortCount; i++) {
+            Camera cam = new Camera(1280, 720);
+            cam.setFrustumPerspective(60f, 16f / 9f, 1f, 800f);
+            cam.setLocation(Vector3f.ZERO);
+            float angle = i * (float) Math.PI * 2f / viewPortCount;
+            cam.lookAtDirection(new Vector3f((float) Math.sin(angle), 0f, (float) Math.cos(angle)),
+                    Vector3f.UNIT_Y);
+            viewPorts[i] = new ViewPort("View" + i, cam);
+        }
+    }
+
+    @Benchmark
+    public void renderScene() {
+        renderManager.renderScene(scene, viewPorts);
+        for (ViewPort vp : viewPorts) {
+            vp.getQueue().clear();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.material.TechniqueDef;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.queue.GeometryComparator;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.TransparentComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link GeometryList#sort()} with the opaque and transparent
+ * comparators, either radix sorted on their keys or sorted through
+ * {@link GeometryComparator#compare(Object, Object)}. Each invocation refills the list in the same shuffled order
+ * before sorting it, the way the render queue is refilled every frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryListSortBenchmark {
+
+    private static final String[] MATERIAL_DEFS = {
+        "Common/MatDefs/Misc/Unshaded.j3md",
+        "Common/MatDefs/Light/Lighting.j3md",
+        "Common/MatDefs/Light/PBRLighting.j3md",
+        "Common/MatDefs/Misc/Particle.j3md"
+    };
+
+    @Param({"opaque", "transparent"})
+    public String comparator;
+
+    @Param({"1000", "10000"})
+    public int count;
+
+    /**
+     * Whether the list may sort on the keys of the comparator.
+     */
+    @Param({"true", "false"})
+    public boolean keyed;
+
+    /**
+     * Number of distinct material instances spread over the geometries.
+     */
+    @Param({"16"})
+    public int materials;
+
+    private Geometry[] shuffled;
+    private GeometryList list;
+
+    @Setup
+    public void setUp() {
+        AssetManager assetManager = BenchmarkUtil.createAssetManager();
+        RenderManager renderManager = BenchmarkUtil.createRenderManager();
+        Random random = new Random(BenchmarkUtil.SEED);
+
+        Material[] mats = new Material[materials];
+        for (int i = 0; i < materials; i++) {
+            mats[i] = new Material(assetManager, MATERIAL_DEFS[i % MATERIAL_DEFS.length]);
+            mats[i].selectTechnique(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager);
+        }
+
+        Mesh mesh = new Box(1, 1, 1);
+        shuffled = new Geometry[count];
+        for (int i = 0; i < count; i++) {
+            Geometry geom = new Geometry("Geom" + i, mesh);
+            geom.setMaterial(mats[random.nextInt(materials)]);
+            geom.setLocalTranslation((random.nextFloat() - 0.5f) * 500f,
+                    (random.nextFloat() - 0.5f) * 500f, random.nextFloat() * 1000f);
+            geom.updateGeometricState();
+            shuffled[i] = geom;
+        }
+
+        Camera cam = new Camera(1280, 720);
+        cam.setFrustumPerspective(45f, 16f / 9f, 1f, 1000f);
+        cam.setLocation(Vector3f.ZERO);
+        cam.lookAtDirection(Vector3f.UNIT_Z, Vector3f.UNIT_Y);
+
+        final GeometryComparator gc = "opaque".equals(comparator)
+                ? new OpaqueComparator() : new TransparentComparator();
+        if (keyed) {
+            list = new GeometryList(gc);
+        } else {
+            // hide the keys so the list falls back to the comparator
+            list = new GeometryList(new GeometryComparator() {
+                @Override
+                public void setCamera(Camera cam) {
+                    gc.setCamera(cam);
+                }
+
+                @Override
+                public int compare(Geometry o1, Geometry o2) {
+                    return gc.compare(o1, o2);
+                }
+            });
+        }
+        list.setCamera(cam);
+    }
+
+    @Benchmark
+    public GeometryList sort() {
+        list.clear();
+        for (Geometry geom : shuffled) {
+            list.add(geom);
+        }
+        list.sort();
+        return list;
+    }
+}
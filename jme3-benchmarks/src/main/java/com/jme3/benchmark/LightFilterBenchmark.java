@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.light.AmbientLight;
+import com.jme3.light.DefaultLightFilter;
+import com.jme3.light.DirectionalLight;
+import com.jme3.light.LightFilter;
+import com.jme3.light.LightList;
+import com.jme3.light.PointLight;
+import com.jme3.light.SpatialLightFilter;
+import com.jme3.light.SpotLight;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link DefaultLightFilter#filterLights(Geometry, LightList)}
+ * against {@link SpatialLightFilter} for every geometry of a scene lit by
+ * many point and spot lights attached to the root node.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LightFilterBenchmark {
+
+    @Param({"1000"})
+    public int geometries;
+
+    @Param({"8", "64", "256", "1024"})
+    public int lights;
+
+    @Param({"default", "spatial"})
+    public String filterType;
+
+    private LightFilter filter;
+    private Camera cam;
+    private Geometry[] geoms;
+    private LightList filtered;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkUtil.SEED);
+        Node root = BenchmarkUtil.createScene(new Box(1, 1, 1), null, geometries / 10, 10, random);
+
+        root.addLight(new AmbientLight());
+        root.addLight(new DirectionalLight(new Vector3f(-1, -1, -1).normalizeLocal()));
+        for (int i = 0; i < lights; i++) {
+            Vector3f pos = new Vector3f((random.nextFloat() - 0.5f) * 1000f,
+                    (random.nextFloat() - 0.5f) * 1000f, (random.nextFloat() - 0.5f) * 1000f);
+            if (i % 4 == 3) {
+                SpotLight sl = new SpotLight(pos, Vector3f.UNIT_Z.negate());
+                sl.setSpotRange(100f);
+                root.addLight(sl);
+            } else {
+                root.addLight(new PointLight(pos, 75f));
+            }
+        }
+        root.updateGeometricState();
+
+        List<Geometry> list = new ArrayList<>();
+        for (Spatial group : root.getChildren()) {
+            for (Spatial child : ((Node) group).getChildren()) {
+                list.add((Geometry) child);
+            }
+        }
+        geoms = list.toArray(new Geometry[0]);
+
+        cam = new Camera(1280, 720);
+        cam.setFrustumPerspective(60f, 16f / 9f, 1f, 2000f);
+        cam.setLocation(new Vector3f(0, 0, -600f));
+        cam.lookAtDirection(Vector3f.UNIT_Z, Vector3f.UNIT_Y);
+
+        filter = "spatial".equals(filterType) ? new SpatialLightFilter() : new DefaultLightFilter();
+        filtered = new LightList(null);
+    }
+
+    @Benchmark
+    public void filterLights(Blackhole bh) {
+        // setCamera() resets the per-frame intersection cache
+        filter.setCamera(cam);
+        for (Geometry geom : geoms) {
+            filtered.clear();
+            filter.filterLights(geom, filtered);
+            bh.consume(filtered.size());
+        }
+    }
+}
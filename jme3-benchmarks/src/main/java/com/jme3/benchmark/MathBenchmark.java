@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Matrix3f;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link Matrix4f} and {@link Quaternion} operations used by
+ * transform updates and animation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark {
+
+    private final Matrix4f m1 = new Matrix4f();
+    private final Matrix4f m2 = new Matrix4f();
+    private final Matrix4f mStore = new Matrix4f();
+    private final Matrix3f rotStore = new Matrix3f();
+    private final Quaternion q1 = new Quaternion();
+    private final Quaternion q2 = new Quaternion();
+    private final Quaternion qStore = new Quaternion();
+    private final Vector3f v = new Vector3f(1, 2, 3);
+    private final Vector3f vStore = new Vector3f();
+    private float t;
+
+    @Setup
+    public void setUp() {
+        q1.fromAngles(0.3f, 1.2f, -0.7f);
+        q2.fromAngles(-1.1f, 0.4f, 2.5f);
+        m1.setTransform(new Vector3f(1, 2, 3), new Vector3f(1, 1, 1), q1.toRotationMatrix());
+        m2.setTransform(new Vector3f(-4, 0, 7), new Vector3f(2, 2, 2), q2.toRotationMatrix());
+    }
+
+    @Benchmark
+    public Matrix4f matrixMult() {
+        return m1.mult(m2, mStore);
+    }
+
+    @Benchmark
+    public Matrix4f matrixInvert() {
+        return m1.invert(mStore);
+    }
+
+    @Benchmark
+    public Vector3f matrixMultVector() {
+        return m1.mult(v, vStore);
+    }
+
+    @Benchmark
+    public Quaternion quaternionMult() {
+        return q1.mult(q2, qStore);
+    }
+
+    @Benchmark
+    public Quaternion quaternionSlerp() {
+        t += 0.001f;
+        if (t > 1f) {
+            t = 0f;
+        }
+        return qStore.slerp(q1, q2, t);
+    }
+
+    @Benchmark
+    public Quaternion quaternionFromAngles() {
+        t += 0.001f;
+        return qStore.fromAngles(t, t * 0.5f, FastMath.HALF_PI - t);
+    }
+
+    @Benchmark
+    public Matrix3f quaternionToRotationMatrix() {
+        return q1.toRotationMatrix(rotStore);
+    }
+
+    @Benchmark
+    public Vector3f quaternionMultVector() {
+        return q1.mult(v, vStore);
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.Message;
+import com.jme3.network.base.protocol.SerializerMessageProtocol;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link SerializerMessageProtocol} encoding and decoding of a
+ * typical entity-state message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageProtocolBenchmark {
+
+    private SerializerMessageProtocol protocol;
+    private StateMessage message;
+    private ByteBuffer target;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        Serializer.registerClass(StateMessage.class);
+
+        protocol = new SerializerMessageProtocol();
+        message = new StateMessage(42L, "player-1", new Vector3f(1, 2, 3),
+                new Quaternion().fromAngles(0.1f, 0.2f, 0.3f), new int[] {1, 2, 3, 4, 5, 6, 7, 8});
+        target = ByteBuffer.allocate(32767 + 2);
+
+        ByteBuffer buffer = protocol.toByteBuffer(message, null);
+        encoded = ByteBuffer.allocate(buffer.remaining());
+        encoded.put(buffer).flip();
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        target.clear();
+        return protocol.toByteBuffer(message, target);
+    }
+
+    @Benchmark
+    public Message decode() {
+        // skip the length prefix, as the message buffers do
+        encoded.position(2);
+        return protocol.toMessage(encoded);
+    }
+
+    @Serializable
+    public static class StateMessage extends AbstractMessage {
+        private long entityId;
+        private String name;
+        private Vector3f location;
+        private Quaternion rotation;
+        private int[] flags;
+
+        public StateMessage() {
+        }
+
+        public StateMessage(long entityId, String name, Vector3f location, Quaternion rotation, int[] flags) {
+            this.entityId = entityId;
+            this.name = name;
+            this.location = location;
+            this.rotation = rotation;
+            this.flags = flags;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.util.SafeArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures a list that changes between every pass over it, the way a node
+ * gains and loses children or controls from frame to frame.  Compares the
+ * pinned {@link SafeArrayList#getArray()} snapshot, the recycled
+ * {@link SafeArrayList#acquireArray()} snapshot and a plain
+ * {@link CopyOnWriteArrayList}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SafeArrayListBenchmark {
+
+    @Param({"8", "64", "512"})
+    public int size;
+
+    private SafeArrayList<Object> safeList;
+    private List<Object> cowList;
+    private final Object extra = new Object();
+
+    @Setup
+    public void setUp() {
+        safeList = new SafeArrayList<>(Object.class);
+        cowList = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < size; i++) {
+            Object o = new Object();
+            safeList.add(o);
+            cowList.add(o);
+        }
+    }
+
+    @Benchmark
+    public void getArray(Blackhole bh) {
+        safeList.add(extra);
+        for (Object o : safeList.getArray()) {
+            bh.consume(o);
+        }
+        safeList.remove(extra);
+        for (Object o : safeList.getArray()) {
+            bh.consume(o);
+        }
+    }
+
+    @Benchmark
+    public void acquireArray(Blackhole bh) {
+        safeList.add(extra);
+        iterateAcquired(bh);
+        safeList.remove(extra);
+        iterateAcquired(bh);
+    }
+
+    private void iterateAcquired(Blackhole bh) {
+        Object[] array = safeList.acquireArray();
+        try {
+            for (Object o : array) {
+                bh.consume(o);
+            }
+        } finally {
+            safeList.releaseArray(array);
+        }
+    }
+
+    @Benchmark
+    public void copyOnWrite(Blackhole bh) {
+        cowList.add(extra);
+        for (Object o : cowList) {
+            bh.consume(o);
+        }
+        cowList.remove(extra);
+        for (Object o : cowList) {
+            bh.consume(o);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.ParallelSceneUpdater;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Spatial#updateGeometricState()} on a two-level scene
+ * where a fraction of the geometries move every frame, with and without a
+ * {@link ParallelSceneUpdater}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SceneGraphBenchmark {
+
+    @Param({"100", "1000"})
+    public int groups;
+
+    @Param({"10"})
+    public int perGroup;
+
+    /**
+     * Percentage of geometries that move each frame.
+     */
+    @Param({"0", "10", "100"})
+    public int movingPercent;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Node root;
+    private ParallelSceneUpdater updater;
+    private Spatial[] movers;
+    private float angle;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkUtil.SEED);
+        if (parallel) {
+            updater = new ParallelSceneUpdater();
+        }
+        Mesh mesh = new Box(1, 1, 1);
+        root = BenchmarkUtil.createScene(mesh, null, groups, perGroup, random);
+
+        int total = groups * perGroup;
+        movers = new Spatial[total * movingPercent / 100];
+        int index = 0;
+        for (Spatial group : root.getChildren()) {
+            for (Spatial child : ((Node) group).getChildren()) {
+                if (index < movers.length && random.nextInt(100) < Math.max(movingPercent, 1)) {
+                    movers[index++] = child;
+                }
+            }
+        }
+        if (index < movers.length) {
+            Spatial[] trimmed = new Spatial[index];
+            System.arraycopy(movers, 0, trimmed, 0, index);
+            movers = trimmed;
+        }
+    }
+
+    @Benchmark
+    public Node updateGeometricState() {
+        angle += 0.01f;
+        for (Spatial mover : movers) {
+            mover.setLocalTranslation(mover.getLocalTranslation().x, angle, mover.getLocalTranslation().z);
+        }
+        if (updater != null) {
+            updater.updateGeometricState(root);
+        } else {
+            root.updateGeometricState();
+        }
+        return root;
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app;
+
+import com.jme3.profile.AppProfiler;
+import com.jme3.profile.AppStep;
+import com.jme3.profile.SpStep;
+import com.jme3.profile.VpStep;
+import com.jme3.renderer.Statistics;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+/**
+ *  An AppProfiler that counts the bytes allocated on the heap by the
+ *  application thread during each frame, and during each AppStep, VpStep
+ *  and SpStep of the frame.  It is meant as a debug mode to find the code
+ *  that allocates in a frame loop that should not allocate at all, since
+ *  steady allocations eventually cause garbage collection pauses.
+ *
+ *  <p>The counts come from
+ *  {@code com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long)},
+ *  which is only available on HotSpot based JVMs, see
+ *  {@link #isSupported()}.  That interface is looked up by reflection, since
+ *  it does not exist on every platform, e.g. Android.  The bytes allocated by the measurement itself
+ *  and by the optional delegate profiler are left out.  Substeps are
+ *  counted as part of their step.</p>
+ *
+ *  <p>The counts of the last complete frame are available from the getters,
+ *  and the total of each frame is also added to the
+ *  {@link Statistics#onBytesAllocated(long) Statistics} given to
+ *  {@link #setStatistics(com.jme3.renderer.Statistics)}, for display by the
+ *  StatsView.</p>
+ */
+public class AllocationProfiler implements AppProfiler {
+
+    private static final AppStep[] APP_STEPS = AppStep.values();
+    private static final VpStep[] VP_STEPS = VpStep.values();
+    private static final SpStep[] SP_STEPS = SpStep.values();
+
+    private static final int NONE = 0;
+    private static final int APP = 1;
+    private static final int VP = 2;
+    private static final int SP = 3;
+
+    // methods of com.sun.management.ThreadMXBean, or null if missing
+    private static final Method getAllocatedBytesMethod
+            = loadMethod("getThreadAllocatedBytes", long.class);
+    private static final Method isSupportedMethod
+            = loadMethod("isThreadAllocatedMemorySupported");
+    private static final Method isEnabledMethod
+            = loadMethod("isThreadAllocatedMemoryEnabled");
+    private static final Method setEnabledMethod
+            = loadMethod("setThreadAllocatedMemoryEnabled", boolean.class);
+
+    private final ThreadMXBean threads;
+    private final AppProfiler delegate;
+    private final long overhead;
+    private Statistics statistics;
+
+    private Thread frameThread;
+    private final Object[] frameThreadId = new Object[1];
+    private boolean inFrame;
+    private long lastSample;
+    private int currentKind = NONE;
+    private int currentIndex;
+
+    // counts of the frame in progress
+    private final long[] appBytes = new long[APP_STEPS.length];
+    private final long[] vpBytes = new long[VP_STEPS.length];
+    private final long[] spBytes = new long[SP_STEPS.length];
+    private long frameBytes;
+
+    // counts of the last complete frame
+    private final long[] lastAppBytes = new long[APP_STEPS.length];
+    private final long[] lastVpBytes = new long[VP_STEPS.length];
+    private final long[] lastSpBytes = new long[SP_STEPS.length];
+    private long lastFrameBytes;
+    private long maxFrameBytes;
+    private long frameCount;
+
+    /**
+     *  Creates a profiler that only counts allocations.
+     *
+     * @throws UnsupportedOperationException if the JVM can't count the
+     *     allocations of a thread
+     */
+    public AllocationProfiler() {
+        this(null);
+    }
+
+    /**
+     *  Creates a profiler that counts allocations and forwards every call to
+     *  another profiler.
+     *
+     * @param delegate the profiler to forward to, or null for none
+     * @throws UnsupportedOperationException if the JVM can't count the
+     *     allocations of a thread
+     * @see #isSupported()
+     */
+    public AllocationProfiler(AppProfiler delegate) {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Thread allocation counting is not supported");
+        }
+        this.delegate = delegate;
+        this.threads = ManagementFactory.getThreadMXBean();
+        if (!(Boolean) invoke(isEnabledMethod)) {
+            invoke(setEnabledMethod, true);
+        }
+
+        // some JVMs allocate while reading the counter, and the reflective
+        // call boxes the result
+        Object[] id = {Thread.currentThread().getId()};
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 8; i++) {
+            long a = (Long) invoke(getAllocatedBytesMethod, id);
+            long b = (Long) invoke(getAllocatedBytesMethod, id);
+            min = Math.min(min, b - a);
+        }
+        this.overhead = Math.max(0, min);
+    }
+
+    private static Method loadMethod(String name, Class<?>... parameterTypes) {
+        try {
+            return Class.forName("com.sun.management.ThreadMXBean").getMethod(name, parameterTypes);
+        } catch (ClassNotFoundException | NoSuchMethodException | SecurityException | LinkageError ex) {
+            return null;
+        }
+    }
+
+    private Object invoke(Method method, Object... args) {
+        try {
+            return method.invoke(threads, args);
+        } catch (IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException("Cannot count thread allocations", ex);
+        }
+    }
+
+    /**
+     *  Tests whether the JVM can count the bytes allocated by a thread.
+     *
+     * @return true if supported, otherwise false
+     */
+    public static boolean isSupported() {
+        if (getAllocatedBytesMethod == null || isSupportedMethod == null
+                || isEnabledMethod == null || setEnabledMethod == null) {
+            return false;
+        }
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            return isSupportedMethod.getDeclaringClass().isInstance(bean)
+                    && (Boolean) isSupportedMethod.invoke(bean);
+        } catch (IllegalAccessException | InvocationTargetException | LinkageError | SecurityException ex) {
+            return false;
+        }
+    }
+
+    /**
+     *  Sets the statistics that receive the total of each frame.
+     *
+     * @param statistics the statistics to update, or null for none
+     */
+    public void setStatistics(Statistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return the bytes allocated during the last complete frame
+     */
+    public long getFrameBytes() {
+        return lastFrameBytes;
+    }
+
+    /**
+     * @return the most bytes allocated during one frame since creation or
+     *     the last {@link #resetMaxFrameBytes()}
+     */
+    public long getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    /**
+     *  Resets the value returned by {@link #getMaxFrameBytes()}, e.g. once
+     *  the application finished warming up.
+     */
+    public void resetMaxFrameBytes() {
+        maxFrameBytes = 0;
+    }
+
+    /**
+     * @return the number of complete frames profiled
+     */
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @param step the step to query (not null)
+     * @return the bytes allocated during the step in the last complete frame
+     */
+    public long getBytes(AppStep step) {
+        return lastAppBytes[step.ordinal()];
+    }
+
+    /**
+     * @param step the step to query (not null)
+     * @return the bytes allocated during the step, summed over all view
+     *     ports and buckets, in the last complete frame
+     */
+    public long getBytes(VpStep step) {
+        return lastVpBytes[step.ordinal()];
+    }
+
+    /**
+     * @param step the step to query (not null)
+     * @return the bytes allocated during the step, summed over all scene
+     *     processors, in the last complete frame
+     */
+    public long getBytes(SpStep step) {
+        return lastSpBytes[step.ordinal()];
+    }
+
+    /**
+     *  Returns a one-line summary of the allocations of the last complete
+     *  frame, listing the steps that allocated.
+     *
+     * @return a new string
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Frame: ").append(lastFrameBytes).append(" bytes");
+        append(sb, APP_STEPS, lastAppBytes);
+        append(sb, VP_STEPS, lastVpBytes);
+        append(sb, SP_STEPS, lastSpBytes);
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, Enum<?>[] steps, long[] bytes) {
+        for (int i = 0; i < steps.length; i++) {
+            if (bytes[i] > 0) {
+                sb.append(", ").append(steps[i].getDeclaringClass().getSimpleName())
+                        .append('.').append(steps[i].name()).append(": ").append(bytes[i]);
+            }
+        }
+    }
+
+    private long sample() {
+        return (Long) invoke(getAllocatedBytesMethod, frameThreadId);
+    }
+
+    /**
+     *  Charges the bytes allocated since the last sample to the current
+     *  step and makes the given step current.
+     */
+    private void enter(int kind, int index) {
+        long now = sample();
+        long bytes = Math.max(0, now - lastSample - overhead);
+        switch (currentKind) {
+            case APP:
+                appBytes[currentIndex] += bytes;
+                break;
+            case VP:
+                vpBytes[currentIndex] += bytes;
+                break;
+            case SP:
+                spBytes[currentIndex] += bytes;
+                break;
+            default:
+                break;
+        }
+        frameBytes += bytes;
+        currentKind = kind;
+        currentIndex = index;
+    }
+
+    @Override
+    public void appStep(AppStep step) {
+        Thread current = Thread.currentThread();
+        if (step == AppStep.BeginFrame) {
+            if (current != frameThread) {
+                frameThread = current;
+                frameThreadId[0] = current.getId();
+            }
+            Arrays.fill(appBytes, 0);
+            Arrays.fill(vpBytes, 0);
+            Arrays.fill(spBytes, 0);
+            frameBytes = 0;
+            inFrame = true;
+            currentKind = APP;
+            currentIndex = step.ordinal();
+            lastSample = sample();
+        } else if (inFrame && current == frameThread) {
+            enter(APP, step.ordinal());
+            if (step == AppStep.EndFrame) {
+                endFrame();
+            }
+        }
+        if (delegate != null) {
+            delegate.appStep(step);
+            if (inFrame) {
+                lastSample = sample();
+            }
+        } else if (inFrame) {
+            lastSample = sample();
+        }
+    }
+
+    private void endFrame() {
+        inFrame = false;
+        currentKind = NONE;
+        System.arraycopy(appBytes, 0, lastAppBytes, 0, appBytes.length);
+        System.arraycopy(vpBytes, 0, lastVpBytes, 0, vpBytes.length);
+        System.arraycopy(spBytes, 0, lastSpBytes, 0, spBytes.length);
+        lastFrameBytes = frameBytes;
+        maxFrameBytes = Math.max(maxFrameBytes, frameBytes);
+        frameCount++;
+        if (statistics != null) {
+            statistics.onBytesAllocated(frameBytes);
+        }
+    }
+
+    @Override
+    public void appSubStep(String... additionalInfo) {
+        if (delegate != null) {
+            boolean counting = inFrame && Thread.currentThread() == frameThread;
+            if (counting) {
+                enter(currentKind, currentIndex);
+            }
+            delegate.appSubStep(additionalInfo);
+            if (counting) {
+                lastSample = sample();
+            }
+        }
+    }
+
+    @Override
+    public void appSubStepTime(long nanos, String... additionalInfo) {
+        if (delegate != null) {
+            boolean counting = inFrame && Thread.currentThread() == frameThread;
+            if (counting) {
+                enter(currentKind, currentIndex);
+            }
+            delegate.appSubStepTime(nanos, additionalInfo);
+            if (counting) {
+                lastSample = sample();
+            }
+        }
+    }
+
+    @Override
+    public void vpStep(VpStep step, ViewPort vp, Bucket bucket) {
+        boolean counting = inFrame && Thread.currentThread() == frameThread;
+        if (counting) {
+            enter(VP, step.ordinal());
+        }
+        if (delegate != null) {
+            delegate.vpStep(step, vp, bucket);
+        }
+        if (counting) {
+            lastSample = sample();
+        }
+    }
+
+    @Override
+    public void spStep(SpStep step, String... additionalInfo) {
+        boolean counting = inFrame && Thread.currentThread() == frameThread;
+        if (counting) {
+            enter(SP, step.ordinal());
+        }
+        if (delegate != null) {
+            delegate.spStep(step, additionalInfo);
+        }
+        if (counting) {
+            lastSample = sample();
+        }
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <code>AppTaskQueue</code> holds the {@link AppTask}s that other threads
+ * hand to the render thread.  Any number of threads may enqueue tasks without
+ * locking, while only the render thread runs them.
+ *
+ * <p>Tasks run in order of {@link Priority}, and in the order they were
+ * enqueued within the same priority.  A time budget limits how long one call
+ * to {@link #runTasks()} may take, so that a burst of tasks from loader or
+ * network threads is spread over several frames instead of causing one long
+ * frame.  The tasks that don't fit in the budget stay queued for the next
+ * frame.  At least one task runs per call, so the queue always makes
+ * progress.</p>
+ *
+ * <p>Tasks that are enqueued with a key are coalesced: while a task with the
+ * same key is still waiting, enqueuing another one returns the waiting task
+ * instead of adding a new one.</p>
+ *
+ * <p>The queue depth can be read from any thread.  The other metrics describe
+ * the last call to {@link #runTasks()} and are meant to be read on the render
+ * thread.</p>
+ */
+public class AppTaskQueue {
+
+    /**
+     * The order in which waiting tasks are run.
+     */
+    public enum Priority {
+        /**
+         * Runs before all other tasks, e.g. for input or network events
+         * that should be handled in the frame they arrive.
+         */
+        High,
+        /**
+         * The priority of tasks enqueued without one.
+         */
+        Normal,
+        /**
+         * Runs after all other tasks, e.g. for background loading.
+         */
+        Low
+    }
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    /**
+     * A multi-producer, single-consumer linked queue.  Producers swap
+     * themselves in as the tail and then link the previous tail to the new
+     * node; the consumer follows the links from a stub head node.
+     */
+    private static final class Entry {
+        AppTask<?> task;
+        Object key;
+        final long enqueueTime;
+        volatile Entry next;
+
+        Entry(AppTask<?> task, Object key, long enqueueTime) {
+            this.task = task;
+            this.key = key;
+            this.enqueueTime = enqueueTime;
+        }
+    }
+
+    private static final class Lane {
+        final AtomicReference<Entry> tail;
+        Entry head;
+
+        Lane() {
+            head = new Entry(null, null, 0);
+            tail = new AtomicReference<>(head);
+        }
+
+        void offer(Entry entry) {
+            Entry prev = tail.getAndSet(entry);
+            prev.next = entry;
+        }
+
+        Entry poll() {
+            Entry next = head.next;
+            if (next == null) {
+                return null;
+            }
+            head = next;
+            return next;
+        }
+    }
+
+    private final Lane[] lanes = new Lane[PRIORITIES.length];
+    private final ConcurrentHashMap<Object, AppTask<?>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong coalesced = new AtomicLong();
+    private volatile long timeBudget;
+
+    private int lastRunCount;
+    private long lastRunTime;
+    private long lastMaxLatency;
+    private long lastTotalLatency;
+    private long totalRun;
+
+    /**
+     * Creates an empty queue without a time budget.
+     */
+    public AppTaskQueue() {
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+    }
+
+    /**
+     * Sets how long one call to {@link #runTasks()} may take before the
+     * remaining tasks are deferred to the next call.  The budget is checked
+     * between tasks, so a single long task can exceed it.
+     *
+     * @param nanos the budget in nanoseconds, or 0 to run every waiting task
+     *     (default=0)
+     */
+    public void setTimeBudget(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Time budget cannot be negative: " + nanos);
+        }
+        this.timeBudget = nanos;
+    }
+
+    /**
+     * @return the time budget in nanoseconds, or 0 for none
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Enqueues a task with {@link Priority#Normal} priority.
+     *
+     * @param <V> type of result returned by the Callable
+     * @param callable the callable to run on the render thread (not null)
+     * @return a new instance
+     */
+    public <V> Future<V> enqueue(Callable<V> callable) {
+        return enqueue(callable, Priority.Normal, null);
+    }
+
+    /**
+     * Enqueues a task.
+     *
+     * @param <V> type of result returned by the Callable
+     * @param callable the callable to run on the render thread (not null)
+     * @param priority the priority of the task (not null)
+     * @return a new instance
+     */
+    public <V> Future<V> enqueue(Callable<V> callable, Priority priority) {
+        return enqueue(callable, priority, null);
+    }
+
+    /**
+     * Enqueues a task unless a task with the same key is still waiting to
+     * run, in which case the callable is discarded and the waiting task is
+     * returned instead.  Once a task starts running, its key is free again.
+     *
+     * @param <V> type of result returned by the Callable
+     * @param callable the callable to run on the render thread (not null)
+     * @param priority the priority of the task (not null)
+     * @param key the key of the task, or null to never coalesce it
+     * @return the new task, or the waiting task with the same key
+     */
+    @SuppressWarnings("unchecked")
+    public <V> Future<V> enqueue(Callable<V> callable, Priority priority, Object key) {
+        return (Future<V>) enqueue(new AppTask<>(callable), priority, key);
+    }
+
+    /**
+     * Enqueues an existing task.
+     *
+     * @param task the task to run on the render thread (not null)
+     * @param priority the priority of the task (not null)
+     * @param key the key of the task, or null to never coalesce it
+     * @return the given task, or the waiting task with the same key
+     */
+    public AppTask<?> enqueue(AppTask<?> task, Priority priority, Object key) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority cannot be null");
+        }
+        if (key != null) {
+            AppTask<?> waiting;
+            while ((waiting = pending.putIfAbsent(key, task)) != null) {
+                if (!waiting.isCancelled()) {
+                    coalesced.incrementAndGet();
+                    return waiting;
+                }
+                // a cancelled task doesn't hold on to its key
+                if (pending.replace(key, waiting, task)) {
+                    break;
+                }
+            }
+        }
+        depth.incrementAndGet();
+        lanes[priority.ordinal()].offer(new Entry(task, key, System.nanoTime()));
+        return task;
+    }
+
+    /**
+     * Runs waiting tasks in priority order until the queue is empty or the
+     * time budget is used up.  Tasks enqueued by the running tasks are run in
+     * the same call if the budget allows.  Must only be called from one
+     * thread, normally the render thread.
+     *
+     * @return the number of tasks run, including cancelled ones
+     */
+    public int runTasks() {
+        long budget = timeBudget;
+        long start = System.nanoTime();
+        long now = start;
+        int count = 0;
+        long maxLatency = 0;
+        long totalLatency = 0;
+
+        Entry entry;
+        while ((entry = poll()) != null) {
+            if (entry.key != null) {
+                pending.remove(entry.key, entry.task);
+            }
+            long latency = now - entry.enqueueTime;
+            maxLatency = Math.max(maxLatency, latency);
+            totalLatency += latency;
+            count++;
+
+            AppTask<?> task = entry.task;
+            // the entry stays referenced as the head of its lane
+            entry.task = null;
+            entry.key = null;
+            if (!task.isCancelled()) {
+                task.invoke();
+            }
+            now = System.nanoTime();
+            if (budget > 0 && now - start >= budget) {
+                break;
+            }
+        }
+
+        lastRunCount = count;
+        lastRunTime = now - start;
+        lastMaxLatency = maxLatency;
+        lastTotalLatency = totalLatency;
+        totalRun += count;
+        return count;
+    }
+
+    private Entry poll() {
+        for (Lane lane : lanes) {
+            Entry entry = lane.poll();
+            if (entry != null) {
+                depth.decrementAndGet();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of tasks waiting to run.  Can be called from any
+     * thread, the value may be out of date by the time it returns.
+     *
+     * @return the number of waiting tasks
+     */
+    public int getQueueDepth() {
+        return depth.get();
+    }
+
+    /**
+     * @return the number of tasks run by the last call to
+     *     {@link #runTasks()}
+     */
+    public int getLastRunCount() {
+        return lastRunCount;
+    }
+
+    /**
+     * @return the time taken by the last call to {@link #runTasks()}, in
+     *     nanoseconds
+     */
+    public long getLastRunTime() {
+        return lastRunTime;
+    }
+
+    /**
+     * @return the longest time a task run by the last call to
+     *     {@link #runTasks()} waited in the queue, in nanoseconds
+     */
+    public long getLastMaxLatency() {
+        return lastMaxLatency;
+    }
+
+    /**
+     * @return the average time the tasks run by the last call to
+     *     {@link #runTasks()} waited in the queue, in nanoseconds, or 0 if
+     *     no task ran
+     */
+    public long getLastAverageLatency() {
+        return lastRunCount == 0 ? 0 : lastTotalLatency / lastRunCount;
+    }
+
+    /**
+     * @return the number of tasks run since the queue was created
+     */
+    public long getTotalRunCount() {
+        return totalRun;
+    }
+
+    /**
+     * @return the number of enqueued tasks that were coalesced with a waiting
+     *     task since the queue was created
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+}
@@ -131,6 +131,25 @@ public class DetailedProfiler implements AppProfiler {
         }
     }
 
+    @Override
+    public void appSubStepTime(long nanos, String... additionalInfo) {
+        if (data != null) {
+            String pathStep = getPath("", additionalInfo);
+            path.setLength(0);
+            path.append(curAppPath).append(pathStep);
+            String key = path.toString();
+            StatLine line = pool.get(key);
+            if (line == null) {
+                line = new StatLine(currentFrame);
+                pool.put(key, line);
+            }
+            data.put(key, line);
+            // the duration is already known, and the line never becomes
+            // the previous step, so it is kept as is
+            line.setNewFrameValueCpu(nanos);
+        }
+    }
+
     private void closeFrame() {
         //close frame
         if (data != null) {
@@ -60,7 +60,6 @@ import com.jme3.system.Timer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -106,7 +105,7 @@ public class LegacyApplication implements Application, SystemListener {
 
     protected AppProfiler prof;
 
-    private final ConcurrentLinkedQueue<AppTask<?>> taskQueue = new ConcurrentLinkedQueue<>();
+    private final AppTaskQueue taskQueue = new AppTaskQueue();
 
     /**
      * Create a new instance of <code>LegacyApplication</code>.
@@ -327,6 +326,7 @@ public class LegacyApplication implements Application, SystemListener {
 
         if (prof != null) {
             renderManager.setAppProfiler(prof);
+            connectStatistics(prof);
         }
 
         viewPort = renderManager.createMainView("Default", cam);
@@ -512,6 +512,10 @@ public class LegacyApplication implements Application, SystemListener {
      * specific steps within a single update frame.  Value defaults
      * to null.
      *
+     * <p>Setting an {@link AllocationProfiler} turns on the allocation audit
+     * of the frame loop, and its totals are added to the renderer
+     * statistics unless it already has statistics of its own.
+     *
      * @param prof the profiler to use (alias created) or null for none
      */
     @Override
@@ -519,6 +523,16 @@ public class LegacyApplication implements Application, SystemListener {
         this.prof = prof;
         if (renderManager != null) {
             renderManager.setAppProfiler(prof);
+            connectStatistics(prof);
+        }
+    }
+
+    private void connectStatistics(AppProfiler prof) {
+        if (prof instanceof AllocationProfiler) {
+            AllocationProfiler allocations = (AllocationProfiler) prof;
+            if (allocations.getStatistics() == null) {
+                allocations.setStatistics(renderer.getStatistics());
+            }
         }
     }
 
@@ -745,9 +759,7 @@ public class LegacyApplication implements Application, SystemListener {
      */
     @Override
     public <V> Future<V> enqueue(Callable<V> callable) {
-        AppTask<V> task = new AppTask<>(callable);
-        taskQueue.add(task);
-        return task;
+        return taskQueue.enqueue(callable);
     }
 
     /**
@@ -766,16 +778,22 @@ public class LegacyApplication implements Application, SystemListener {
         enqueue(new RunnableWrapper(runnable));
     }
 
+    /**
+     * Returns the queue of tasks to execute in the jME3 rendering thread.
+     * Use it to enqueue tasks with a priority or a coalescing key, to set a
+     * time budget for the tasks of one frame, or to read its metrics.
+     *
+     * @return the pre-existing instance
+     */
+    public AppTaskQueue getTaskQueue() {
+        return taskQueue;
+    }
+
     /**
      * Runs tasks enqueued via {@link #enqueue(Callable)}
      */
     protected void runQueuedTasks() {
-        AppTask<?> task;
-        while ((task = taskQueue.poll()) != null) {
-            if (!task.isCancelled()) {
-                task.invoke();
-            }
-        }
+        taskQueue.runTasks();
     }
 
     /**
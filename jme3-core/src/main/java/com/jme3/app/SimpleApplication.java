@@ -44,6 +44,7 @@ import com.jme3.profile.AppStep;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.queue.RenderQueue.Bucket;
 import com.jme3.scene.Node;
+import com.jme3.scene.ParallelSceneUpdater;
 import com.jme3.scene.Spatial.CullHint;
 import com.jme3.system.AppSettings;
 import com.jme3.system.JmeContext.Type;
@@ -76,6 +77,7 @@ public abstract class SimpleApplication extends LegacyApplication {
     protected BitmapFont guiFont;
     protected FlyByCamera flyCam;
     protected boolean showSettings = true;
+    private ParallelSceneUpdater sceneUpdater;
     private final AppActionListener actionListener = new AppActionListener();
 
     private class AppActionListener implements ActionListener {
@@ -183,6 +185,26 @@ public abstract class SimpleApplication extends LegacyApplication {
         this.showSettings = showSettings;
     }
 
+    /**
+     * Sets the updater used to refresh the logical and geometric state of
+     * the root node each frame, updating thread-safe controls and large
+     * subtrees in parallel.
+     *
+     * @param sceneUpdater the updater, or null to update serially (default)
+     */
+    public void setSceneUpdater(ParallelSceneUpdater sceneUpdater) {
+        this.sceneUpdater = sceneUpdater;
+    }
+
+    /**
+     * @return the updater used for the root node, or null if it is updated
+     *     serially
+     * @see #setSceneUpdater(com.jme3.scene.ParallelSceneUpdater)
+     */
+    public ParallelSceneUpdater getSceneUpdater() {
+        return sceneUpdater;
+    }
+
     /**
      *  Creates the font that will be set to the guiFont field
      *  and subsequently set as the font for the stats text.
@@ -265,10 +287,18 @@ public abstract class SimpleApplication extends LegacyApplication {
         if (prof != null) {
             prof.appStep(AppStep.SpatialUpdate);
         }
-        rootNode.updateLogicalState(tpf);
+        if (sceneUpdater != null) {
+            sceneUpdater.updateLogicalState(rootNode, tpf);
+        } else {
+            rootNode.updateLogicalState(tpf);
+        }
         guiNode.updateLogicalState(tpf);
 
-        rootNode.updateGeometricState();
+        if (sceneUpdater != null) {
+            sceneUpdater.updateGeometricState(rootNode);
+        } else {
+            rootNode.updateGeometricState();
+        }
         guiNode.updateGeometricState();
 
         // render states
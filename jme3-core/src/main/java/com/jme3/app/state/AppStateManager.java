@@ -32,12 +32,18 @@
 package com.jme3.app.state;
 
 import com.jme3.app.Application;
+import com.jme3.profile.AppProfiler;
 import com.jme3.renderer.RenderManager;
 import com.jme3.util.SafeArrayList;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * The <code>AppStateManager</code> holds a list of {@link AppState}s which
@@ -96,6 +102,14 @@ public class AppStateManager {
 
     private final Application app;
 
+    /**
+     *  Pool running the updates of the concurrency groups, and the groups
+     *  found in the current frame, in order of first appearance.
+     */
+    private ForkJoinPool updatePool = ForkJoinPool.commonPool();
+    private final Map<String, GroupUpdate> groups = new LinkedHashMap<>();
+    private boolean[] grouped = new boolean[0];
+
     public AppStateManager(Application app) {
         this.app = app;
     }
@@ -127,6 +141,22 @@ public class AppStateManager {
         }
     }
 
+    /**
+     * Returns the active states for the duration of a frame loop pass, to be
+     * handed back with {@link #releaseStates(com.jme3.app.state.AppState[])}.
+     */
+    private AppState[] acquireStates() {
+        synchronized (states) {
+            return states.acquireArray();
+        }
+    }
+
+    private void releaseStates(AppState[] array) {
+        synchronized (states) {
+            states.releaseArray(array);
+        }
+    }
+
     /**
      * Attach a state to the AppStateManager, the same state cannot be attached
      * twice. Throws an IllegalArgumentException if the state has an ID and that
@@ -362,13 +392,162 @@ public class AppStateManager {
         initializePending();
 
         // Update enabled states
-        AppState[] array = getStates();
-        for (AppState state : array) {
-            if (state.isEnabled()) {
-                if (app.getAppProfiler() != null) {
-                    app.getAppProfiler().appSubStep(state.getClass().getSimpleName());
+        AppState[] array = acquireStates();
+        try {
+            boolean concurrent = startGroups(array, tpf);
+            try {
+                for (int i = 0; i < array.length; i++) {
+                    AppState state = array[i];
+                    if (!grouped[i] && state.isEnabled()) {
+                        if (app.getAppProfiler() != null) {
+                            app.getAppProfiler().appSubStep(state.getClass().getSimpleName());
+                        }
+                        state.update(tpf);
+                    }
+                }
+            } finally {
+                if (concurrent) {
+                    joinGroups();
+                }
+            }
+        } finally {
+            releaseStates(array);
+        }
+    }
+
+    /**
+     * Sets the pool used to update the states that declared a
+     * {@link BaseAppState#setConcurrencyGroup(java.lang.String) concurrency group}.
+     *
+     * @param updatePool the pool to use (not null, default=the common pool)
+     */
+    public void setUpdatePool(ForkJoinPool updatePool) {
+        if (updatePool == null) {
+            throw new IllegalArgumentException("updatePool cannot be null");
+        }
+        this.updatePool = updatePool;
+    }
+
+    /**
+     * Returns the pool used to update the states that declared a
+     * concurrency group.
+     *
+     * @return the pre-existing pool
+     */
+    public ForkJoinPool getUpdatePool() {
+        return updatePool;
+    }
+
+    private static String getConcurrencyGroup(AppState state) {
+        if (state instanceof BaseAppState) {
+            return ((BaseAppState) state).getConcurrencyGroup();
+        }
+        return null;
+    }
+
+    /**
+     * Sorts the enabled states that declared a concurrency group into their
+     * groups and starts updating each group on the pool. The states that
+     * were handed over are flagged in {@link #grouped}.
+     *
+     * @return true if any group was started
+     */
+    private boolean startGroups(AppState[] array, float tpf) {
+        if (grouped.length < array.length) {
+            grouped = new boolean[array.length];
+        }
+        Arrays.fill(grouped, false);
+        boolean started = false;
+        for (int i = 0; i < array.length; i++) {
+            AppState state = array[i];
+            String name = getConcurrencyGroup(state);
+            if (name != null && state.isEnabled()) {
+                grouped[i] = true;
+                GroupUpdate group = groups.get(name);
+                if (group == null) {
+                    group = new GroupUpdate(name);
+                    groups.put(name, group);
+                }
+                group.states.add(state);
+                started = true;
+            }
+        }
+        if (!started) {
+            return false;
+        }
+        for (GroupUpdate group : groups.values()) {
+            if (!group.states.isEmpty()) {
+                group.tpf = tpf;
+                group.task = updatePool.submit(group);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits for all the groups to finish, reports their timings and
+     * rethrows the first failure.
+     */
+    private void joinGroups() {
+        AppProfiler prof = app.getAppProfiler();
+        if (prof != null) {
+            prof.appSubStep("ConcurrencyGroups");
+        }
+        RuntimeException failure = null;
+        for (GroupUpdate group : groups.values()) {
+            if (group.task == null) {
+                continue;
+            }
+            try {
+                group.task.join();
+            } catch (RuntimeException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+            }
+            if (prof != null) {
+                for (int i = 0; i < group.states.size(); i++) {
+                    long time = group.times[i];
+                    if (time >= 0) {
+                        prof.appSubStepTime(time, group.name,
+                                group.states.get(i).getClass().getSimpleName());
+                    }
                 }
-                state.update(tpf);
+            }
+            group.task = null;
+            group.states.clear();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Updates the states of one concurrency group, in order, timing each of
+     * them.
+     */
+    private static class GroupUpdate implements Runnable {
+
+        private final String name;
+        private final List<AppState> states = new ArrayList<>();
+        private long[] times = new long[4];
+        private float tpf;
+        private ForkJoinTask<?> task;
+
+        GroupUpdate(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            if (times.length < states.size()) {
+                times = new long[states.size()];
+            }
+            Arrays.fill(times, -1L);
+            for (int i = 0; i < states.size(); i++) {
+                long start = System.nanoTime();
+                states.get(i).update(tpf);
+                times[i] = System.nanoTime() - start;
             }
         }
     }
@@ -378,14 +557,18 @@ public class AppStateManager {
      * @param rm The RenderManager
      */
     public void render(RenderManager rm) {
-        AppState[] array = getStates();
-        for (AppState state : array) {
-            if (state.isEnabled()) {
-                if (app.getAppProfiler() != null) {
-                    app.getAppProfiler().appSubStep(state.getClass().getSimpleName());
+        AppState[] array = acquireStates();
+        try {
+            for (AppState state : array) {
+                if (state.isEnabled()) {
+                    if (app.getAppProfiler() != null) {
+                        app.getAppProfiler().appSubStep(state.getClass().getSimpleName());
+                    }
+                    state.render(rm);
                 }
-                state.render(rm);
             }
+        } finally {
+            releaseStates(array);
         }
     }
 
@@ -393,14 +576,18 @@ public class AppStateManager {
      * Calls render for all attached and initialized states, do not call directly.
      */
     public void postRender() {
-        AppState[] array = getStates();
-        for (AppState state : array) {
-            if (state.isEnabled()) {
-                if (app.getAppProfiler() != null) {
-                    app.getAppProfiler().appSubStep(state.getClass().getSimpleName());
+        AppState[] array = acquireStates();
+        try {
+            for (AppState state : array) {
+                if (state.isEnabled()) {
+                    if (app.getAppProfiler() != null) {
+                        app.getAppProfiler().appSubStep(state.getClass().getSimpleName());
+                    }
+                    state.postRender();
                 }
-                state.postRender();
             }
+        } finally {
+            releaseStates(array);
         }
     }
 
@@ -76,6 +76,7 @@ public abstract class BaseAppState implements AppState {
     private boolean initialized;
     private boolean enabled = true;
     private String id;
+    private volatile String concurrencyGroup;
 
     protected BaseAppState() {
     }
@@ -154,6 +155,39 @@ public abstract class BaseAppState implements AppState {
         return id;
     }
 
+    /**
+     *  Sets the concurrency group of this app state.  The update() of
+     *  states in different groups is called concurrently by the state
+     *  manager, using its {@link AppStateManager#setUpdatePool(java.util.concurrent.ForkJoinPool)
+     *  update pool}.  States in the same group are updated one after the
+     *  other, in attachment order, on the same thread.  States without a
+     *  group are updated on the application thread, concurrently with the
+     *  groups.
+     *
+     *  <p>A state should only declare a group if its update() does not
+     *  touch the scene graph being rendered, nor any state outside of its
+     *  group, e.g. networking, AI or streaming states that hand their
+     *  results over to the application thread themselves.  render() and
+     *  postRender() are always called on the application thread.</p>
+     *
+     * @param concurrencyGroup the name of the group, or null to be updated
+     *     on the application thread (default)
+     */
+    protected void setConcurrencyGroup(String concurrencyGroup) {
+        this.concurrencyGroup = concurrencyGroup;
+    }
+
+    /**
+     *  Returns the concurrency group of this app state.
+     *
+     * @return the name of the group, or null if updated on the application
+     *     thread
+     * @see #setConcurrencyGroup(java.lang.String)
+     */
+    public String getConcurrencyGroup() {
+        return concurrencyGroup;
+    }
+
     public final Application getApplication() {
         return app;
     }
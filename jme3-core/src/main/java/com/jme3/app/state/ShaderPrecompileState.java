@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app.state;
+
+import com.jme3.app.Application;
+import com.jme3.material.ShaderManifest;
+import com.jme3.material.ShaderPrecompiler;
+import com.jme3.renderer.RenderManager;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *  Compiles the shader permutations of a {@link ShaderManifest} in the
+ *  background while the application runs. Shader sources are generated
+ *  on worker threads and compiled on the render thread, a few per frame,
+ *  within the time budget.  The state detaches itself when it is done.
+ *
+ *  <pre>
+ *  ShaderManifest manifest = ShaderManifest.load(in);
+ *  stateManager.attach(new ShaderPrecompileState(manifest));
+ *  </pre>
+ *
+ *  @see ShaderPrecompiler
+ */
+public class ShaderPrecompileState extends BaseAppState {
+
+    private final ShaderPrecompiler precompiler;
+    private ExecutorService executor;
+    private boolean ownsExecutor;
+
+    /**
+     *  Creates a state that generates the shaders on its own daemon
+     *  threads, one less than the number of processors.
+     *
+     * @param manifest the permutations to compile
+     */
+    public ShaderPrecompileState(ShaderManifest manifest) {
+        this(manifest, null);
+    }
+
+    /**
+     *  Creates a state that generates the shaders on the given executor.
+     *
+     * @param manifest the permutations to compile
+     * @param executor the executor to generate with, or null to create one
+     */
+    public ShaderPrecompileState(ShaderManifest manifest, ExecutorService executor) {
+        this.precompiler = new ShaderPrecompiler(manifest);
+        this.executor = executor;
+    }
+
+    /**
+     *  Sets how much time may be spent compiling shaders per frame.
+     *
+     * @param millis the budget in milliseconds (default: 2)
+     */
+    public void setFrameBudget(float millis) {
+        precompiler.setTimeBudget((long) (millis * 1000000.0));
+    }
+
+    public float getFrameBudget() {
+        return precompiler.getTimeBudget() / 1000000f;
+    }
+
+    public ShaderPrecompiler getPrecompiler() {
+        return precompiler;
+    }
+
+    @Override
+    protected void initialize(Application app) {
+        if (executor == null) {
+            ownsExecutor = true;
+            final AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(
+                    Math.max(1, Runtime.getRuntime().availableProcessors() - 1), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ShaderPrecompile-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        precompiler.start(app.getAssetManager(), app.getRenderer().getCaps(), executor);
+    }
+
+    @Override
+    protected void cleanup(Application app) {
+        if (ownsExecutor) {
+            executor.shutdownNow();
+            executor = null;
+            ownsExecutor = false;
+        }
+    }
+
+    @Override
+    protected void onEnable() {
+    }
+
+    @Override
+    protected void onDisable() {
+    }
+
+    @Override
+    public void render(RenderManager rm) {
+        precompiler.update(rm.getRenderer());
+        if (precompiler.isDone()) {
+            getStateManager().detach(this);
+        }
+    }
+}
@@ -281,6 +281,24 @@ public abstract class Light implements Savable, Cloneable {
      * @param owner the Spatial whose distance is to be determined
      */
     protected abstract void computeLastDistance(Spatial owner);
+
+    /**
+     * Computes the distance {@link LightList} sorts this light by, without
+     * storing it in the light, which may be shared by spatials updated on
+     * different threads.
+     * <p>
+     * The default implementation calls {@link #computeLastDistance(Spatial)}
+     * while holding the light's monitor.
+     *
+     * @param owner the Spatial whose distance is to be determined
+     * @return the sort distance
+     */
+    protected float computeDistance(Spatial owner) {
+        synchronized (this) {
+            computeLastDistance(owner);
+            return lastDistance;
+        }
+    }
     
     /**
      * Returns the light type
@@ -0,0 +1,573 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.light;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.shader.bufferobject.BufferObject;
+import com.jme3.util.ObjectIntMap;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Assigns point and spot lights to a view-space froxel grid for clustered
+ * forward shading.
+ * <p>
+ * The view frustum is divided into screen tiles and depth slices, the slices
+ * being spaced exponentially for a perspective camera. Every light is
+ * assigned to the clusters its bounding sphere overlaps, so a fragment only
+ * has to evaluate the lights of its own cluster. The result is written into
+ * two buffer objects meant to be bound as shader storage buffers:
+ * <ul>
+ * <li>the light buffer holds three vec4 per light, packed in view space the
+ * same way as <code>g_LightData</code> of the single pass lighting;</li>
+ * <li>the index buffer starts with an (offset, count) pair per cluster,
+ * followed by the light indices the offsets point to.</li>
+ * </ul>
+ * Clusters are numbered <code>(slice * tilesY + tileY) * tilesX + tileX</code>.
+ * Depth slices are found with <code>log(depth) * scale + bias</code>, or
+ * <code>depth * scale + bias</code> for a parallel projection, see
+ * {@link #getSliceScale()} and {@link #getSliceBias()}.
+ * <p>
+ * The grid is rebuilt by {@link #update(com.jme3.renderer.Camera, java.util.List, long)},
+ * once per rendered view port. With enough lights the depth slices are
+ * processed in parallel on a fork-join pool.
+ */
+public class LightClusterGrid {
+
+    public static final int DEFAULT_TILES_X = 16;
+    public static final int DEFAULT_TILES_Y = 9;
+    public static final int DEFAULT_SLICES = 24;
+
+    /**
+     * The number of floats per light in the light buffer.
+     */
+    private static final int FLOATS_PER_LIGHT = 12;
+
+    private final int tilesX;
+    private final int tilesY;
+    private final int slices;
+    private final int clusterCount;
+    private final float[] sliceDepths;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private int parallelThreshold = 64;
+
+    // lights handled by the grid, mapped to their buffer index or -1
+    private final ObjectIntMap<Light> handled = new ObjectIntMap<>(64, true);
+    private int lightCount;
+    // view-space x, y, depth and radius of each assigned light
+    private float[] spheres = new float[64];
+    private int[] sliceRanges = new int[32];
+
+    private final int[] counts;
+    private final int[] cursors;
+    private int[] indices = new int[256];
+    private int indexCount;
+
+    private final BufferObject lightBuffer = new BufferObject();
+    private final BufferObject indexBuffer = new BufferObject();
+    private ByteBuffer lightData;
+    private ByteBuffer indexData;
+
+    private boolean parallelProjection;
+    private float m00, m03, m02, m11, m12, m13;
+    private float sliceScale;
+    private float sliceBias;
+    private long stamp = -1;
+
+    private final Vector3f tempVec = new Vector3f();
+
+    public LightClusterGrid() {
+        this(DEFAULT_TILES_X, DEFAULT_TILES_Y, DEFAULT_SLICES);
+    }
+
+    /**
+     * Creates a grid.
+     *
+     * @param tilesX the number of horizontal screen tiles (&gt;0)
+     * @param tilesY the number of vertical screen tiles (&gt;0)
+     * @param slices the number of depth slices (&gt;0)
+     */
+    public LightClusterGrid(int tilesX, int tilesY, int slices) {
+        if (tilesX <= 0 || tilesY <= 0 || slices <= 0) {
+            throw new IllegalArgumentException("The grid needs at least one tile and one slice");
+        }
+        this.tilesX = tilesX;
+        this.tilesY = tilesY;
+        this.slices = slices;
+        this.clusterCount = tilesX * tilesY * slices;
+        this.sliceDepths = new float[slices + 1];
+        this.counts = new int[clusterCount];
+        this.cursors = new int[clusterCount];
+        lightBuffer.setName("ClusterLightData");
+        indexBuffer.setName("ClusterIndexData");
+    }
+
+    /**
+     * Sets the pool used to assign the lights of different depth slices in
+     * parallel.
+     *
+     * @param pool the pool to use, or null to always assign serially
+     * (default=the common pool)
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Sets the number of assigned lights from which the slices are processed
+     * in parallel.
+     *
+     * @param parallelThreshold the light count (&ge;0, default=64)
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 0) {
+            throw new IllegalArgumentException("parallelThreshold cannot be negative");
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Rebuilds the grid for the given camera. Enabled point and spot lights
+     * among the candidates are handled by the grid, all others are ignored.
+     *
+     * @param cam the camera the grid is built for (not null)
+     * @param candidates the lights to assign (not null, unaffected)
+     * @param stamp a value identifying this update, see {@link #getStamp()}
+     */
+    public void update(Camera cam, List<Light> candidates, long stamp) {
+        this.stamp = stamp;
+        setupCamera(cam);
+        handled.clear();
+        lightCount = 0;
+
+        int candidateCount = candidates.size();
+        ensureLightCapacity(candidateCount);
+        lightData.clear();
+        Matrix4f view = cam.getViewMatrix();
+        for (int i = 0; i < candidateCount; i++) {
+            Light light = candidates.get(i);
+            if (!light.isEnabled() || handled.containsKey(light)) {
+                continue;
+            }
+            float radius;
+            Vector3f position;
+            if (light instanceof PointLight) {
+                position = ((PointLight) light).getPosition();
+                radius = ((PointLight) light).getRadius();
+            } else if (light instanceof SpotLight) {
+                position = ((SpotLight) light).getPosition();
+                radius = ((SpotLight) light).getSpotRange();
+            } else {
+                continue;
+            }
+            if (radius <= 0f) {
+                radius = Float.POSITIVE_INFINITY;
+            }
+            view.mult(position, tempVec);
+            float depth = -tempVec.z;
+            int slice0 = sliceOf(depth - radius);
+            int slice1 = sliceOf(depth + radius);
+            if (depth + radius < sliceDepths[0] || depth - radius > sliceDepths[slices]) {
+                // out of the depth range, nothing on screen is lit by it
+                handled.put(light, -1);
+                continue;
+            }
+
+            int index = lightCount++;
+            handled.put(light, index);
+            spheres[index * 4] = tempVec.x;
+            spheres[index * 4 + 1] = tempVec.y;
+            spheres[index * 4 + 2] = depth;
+            spheres[index * 4 + 3] = radius;
+            sliceRanges[index * 2] = slice0;
+            sliceRanges[index * 2 + 1] = slice1;
+            packLight(light, view);
+        }
+        lightData.flip();
+        if (lightData.limit() == 0) {
+            // never bind an empty buffer
+            lightData.limit(16);
+        }
+
+        Arrays.fill(counts, 0);
+        boolean parallel = pool != null && lightCount >= parallelThreshold && slices > 1;
+        runPass(false, parallel);
+        indexCount = clusterCount * 2;
+        for (int c = 0; c < clusterCount; c++) {
+            cursors[c] = indexCount;
+            indexCount += counts[c];
+        }
+        ensureIndexCapacity(indexCount);
+        for (int c = 0; c < clusterCount; c++) {
+            indices[c * 2] = cursors[c];
+            indices[c * 2 + 1] = counts[c];
+        }
+        runPass(true, parallel);
+
+        indexData.clear();
+        indexData.asIntBuffer().put(indices, 0, indexCount);
+        indexData.limit(indexCount * 4);
+
+        lightBuffer.setUpdateNeeded();
+        indexBuffer.setUpdateNeeded();
+    }
+
+    private void setupCamera(Camera cam) {
+        float near = cam.getFrustumNear();
+        float far = cam.getFrustumFar();
+        parallelProjection = cam.isParallelProjection();
+        Matrix4f proj = cam.getProjectionMatrix();
+        m00 = proj.m00;
+        m02 = proj.m02;
+        m03 = proj.m03;
+        m11 = proj.m11;
+        m12 = proj.m12;
+        m13 = proj.m13;
+        for (int s = 0; s <= slices; s++) {
+            float t = s / (float) slices;
+            sliceDepths[s] = parallelProjection
+                    ? near + (far - near) * t
+                    : near * (float) Math.pow(far / near, t);
+        }
+        if (parallelProjection) {
+            sliceScale = slices / (far - near);
+            sliceBias = -near * sliceScale;
+        } else {
+            sliceScale = slices / (float) Math.log(far / near);
+            sliceBias = -(float) Math.log(near) * sliceScale;
+        }
+    }
+
+    private int sliceOf(float depth) {
+        if (!(depth > sliceDepths[0])) {
+            return 0;
+        }
+        if (depth >= sliceDepths[slices]) {
+            return slices - 1;
+        }
+        float s = parallelProjection
+                ? depth * sliceScale + sliceBias
+                : (float) Math.log(depth) * sliceScale + sliceBias;
+        return Math.min(slices - 1, Math.max(0, (int) s));
+    }
+
+    private void packLight(Light light, Matrix4f view) {
+        ColorRGBA color = light.getColor();
+        lightData.putFloat(color.r).putFloat(color.g).putFloat(color.b)
+                .putFloat(light.getType().getId());
+        lightData.putFloat(tempVec.x).putFloat(tempVec.y).putFloat(tempVec.z);
+        if (light instanceof PointLight) {
+            lightData.putFloat(((PointLight) light).getInvRadius());
+            lightData.putFloat(0f).putFloat(0f).putFloat(0f).putFloat(0f);
+        } else {
+            SpotLight spot = (SpotLight) light;
+            lightData.putFloat(spot.getInvSpotRange());
+            view.multNormal(spot.getDirection(), tempVec).normalizeLocal();
+            lightData.putFloat(tempVec.x).putFloat(tempVec.y).putFloat(tempVec.z)
+                    .putFloat(spot.getPackedAngleCos());
+        }
+    }
+
+    private void runPass(boolean fill, boolean parallel) {
+        if (parallel) {
+            pool.invoke(new SliceTask(0, slices, fill));
+        } else {
+            for (int s = 0; s < slices; s++) {
+                assignSlice(s, fill);
+            }
+        }
+    }
+
+    /**
+     * Counts or writes the light indices of all clusters in one slice. Only
+     * touches the entries of that slice, so slices can run concurrently.
+     */
+    private void assignSlice(int slice, boolean fill) {
+        float sliceNear = sliceDepths[slice];
+        float sliceFar = sliceDepths[slice + 1];
+        int sliceBase = slice * tilesX * tilesY;
+        for (int i = 0; i < lightCount; i++) {
+            if (slice < sliceRanges[i * 2] || slice > sliceRanges[i * 2 + 1]) {
+                continue;
+            }
+            float radius = spheres[i * 4 + 3];
+            int x0 = 0, x1 = tilesX - 1, y0 = 0, y1 = tilesY - 1;
+            if (radius != Float.POSITIVE_INFINITY) {
+                float x = spheres[i * 4];
+                float y = spheres[i * 4 + 1];
+                float depth = spheres[i * 4 + 2];
+                // the part of the light's bounding box within the slice
+                float d0 = Math.max(depth - radius, sliceNear);
+                float d1 = Math.min(depth + radius, sliceFar);
+                float minX = minNdc(x - radius, x + radius, d0, d1, m00, m03, m02);
+                float maxX = maxNdc(x - radius, x + radius, d0, d1, m00, m03, m02);
+                float minY = minNdc(y - radius, y + radius, d0, d1, m11, m13, m12);
+                float maxY = maxNdc(y - radius, y + radius, d0, d1, m11, m13, m12);
+                if (maxX < -1f || minX > 1f || maxY < -1f || minY > 1f) {
+                    continue;
+                }
+                x0 = tileOf(minX, tilesX);
+                x1 = tileOf(maxX, tilesX);
+                y0 = tileOf(minY, tilesY);
+                y1 = tileOf(maxY, tilesY);
+            }
+            for (int ty = y0; ty <= y1; ty++) {
+                int rowBase = sliceBase + ty * tilesX;
+                for (int tx = x0; tx <= x1; tx++) {
+                    int cluster = rowBase + tx;
+                    if (fill) {
+                        indices[cursors[cluster]++] = i;
+                    } else {
+                        counts[cluster]++;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the normalized device coordinate of a view-space coordinate at
+     * the given depth, along one screen axis.
+     */
+    private float ndc(float v, float depth, float scale, float translate, float shear) {
+        if (parallelProjection) {
+            return scale * v + translate;
+        }
+        return (scale * v + translate) / depth - shear;
+    }
+
+    // The projection is monotonic in both the coordinate and the depth, so
+    // the extremes over the light's box lie in its corners.
+    private float minNdc(float v0, float v1, float d0, float d1, float scale, float translate, float shear) {
+        return Math.min(Math.min(ndc(v0, d0, scale, translate, shear), ndc(v0, d1, scale, translate, shear)),
+                Math.min(ndc(v1, d0, scale, translate, shear), ndc(v1, d1, scale, translate, shear)));
+    }
+
+    private float maxNdc(float v0, float v1, float d0, float d1, float scale, float translate, float shear) {
+        return Math.max(Math.max(ndc(v0, d0, scale, translate, shear), ndc(v0, d1, scale, translate, shear)),
+                Math.max(ndc(v1, d0, scale, translate, shear), ndc(v1, d1, scale, translate, shear)));
+    }
+
+    /**
+     * Returns the tile of a normalized device coordinate, clamped to the
+     * screen.
+     */
+    private static int tileOf(float ndc, int tiles) {
+        int t = (int) ((ndc * 0.5f + 0.5f) * tiles);
+        return Math.min(tiles - 1, Math.max(0, t));
+    }
+
+    private void ensureLightCapacity(int count) {
+        if (spheres.length < count * 4) {
+            int capacity = Math.max(count, spheres.length / 2);
+            spheres = new float[capacity * 4];
+            sliceRanges = new int[capacity * 2];
+        }
+        int bytes = Math.max(count, 1) * FLOATS_PER_LIGHT * 4;
+        if (lightData == null || lightData.capacity() < bytes) {
+            lightBuffer.initializeEmpty(FastMath.nearestPowerOfTwo(bytes) << 1);
+            lightData = lightBuffer.getData();
+        }
+    }
+
+    private void ensureIndexCapacity(int count) {
+        if (indices.length < count) {
+            indices = Arrays.copyOf(indices, Math.max(count, indices.length * 2));
+        }
+        if (indexData == null || indexData.capacity() < indices.length * 4) {
+            indexBuffer.initializeEmpty(indices.length * 4);
+            indexData = indexBuffer.getData();
+        }
+    }
+
+    private class SliceTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final boolean fill;
+
+        SliceTask(int from, int to, boolean fill) {
+            this.from = from;
+            this.to = to;
+            this.fill = fill;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                assignSlice(from, fill);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SliceTask(from, mid, fill), new SliceTask(mid, to, fill));
+        }
+    }
+
+    /**
+     * Tells whether the light was handed to the last update and is shaded
+     * through the grid, so it must not also be uploaded per geometry.
+     *
+     * @param light the light to check
+     * @return true if the grid handles the light
+     */
+    public boolean contains(Light light) {
+        return handled.containsKey(light);
+    }
+
+    /**
+     * @return the value passed to the last update, or -1
+     */
+    public long getStamp() {
+        return stamp;
+    }
+
+    /**
+     * @return the number of lights in the light buffer
+     */
+    public int getLightCount() {
+        return lightCount;
+    }
+
+    public int getTilesX() {
+        return tilesX;
+    }
+
+    public int getTilesY() {
+        return tilesY;
+    }
+
+    public int getSlices() {
+        return slices;
+    }
+
+    public int getClusterCount() {
+        return clusterCount;
+    }
+
+    /**
+     * @return the total number of light references over all clusters
+     */
+    public int getAssignmentCount() {
+        return indexCount - clusterCount * 2;
+    }
+
+    /**
+     * Returns the cluster of a view-space point.
+     *
+     * @param position the point in view space (not null, unaffected)
+     * @return the cluster index, or -1 if the point is outside of the grid
+     */
+    public int getCluster(Vector3f position) {
+        float depth = -position.z;
+        if (depth < sliceDepths[0] || depth > sliceDepths[slices]) {
+            return -1;
+        }
+        float ndcX = ndc(position.x, depth, m00, m03, m02);
+        float ndcY = ndc(position.y, depth, m11, m13, m12);
+        if (ndcX < -1f || ndcX > 1f || ndcY < -1f || ndcY > 1f) {
+            return -1;
+        }
+        return (sliceOf(depth) * tilesY + tileOf(ndcY, tilesY)) * tilesX + tileOf(ndcX, tilesX);
+    }
+
+    /**
+     * @param cluster the cluster index
+     * @return the number of lights assigned to the cluster
+     */
+    public int getClusterLightCount(int cluster) {
+        return indices[cluster * 2 + 1];
+    }
+
+    /**
+     * @param cluster the cluster index
+     * @param n the position in the cluster's light list
+     * @return the index of the light in the light buffer
+     */
+    public int getClusterLight(int cluster, int n) {
+        if (n < 0 || n >= indices[cluster * 2 + 1]) {
+            throw new IndexOutOfBoundsException("Index:" + n + ", Size:" + indices[cluster * 2 + 1]);
+        }
+        return indices[indices[cluster * 2] + n];
+    }
+
+    /**
+     * @return the depth slice scale for the shader
+     */
+    public float getSliceScale() {
+        return sliceScale;
+    }
+
+    /**
+     * @return the depth slice bias for the shader
+     */
+    public float getSliceBias() {
+        return sliceBias;
+    }
+
+    /**
+     * @return true if the slices are linear in depth
+     */
+    public boolean isParallelProjection() {
+        return parallelProjection;
+    }
+
+    /**
+     * @return the buffer of packed light data, three vec4 per light
+     */
+    public BufferObject getLightBuffer() {
+        return lightBuffer;
+    }
+
+    /**
+     * @return the buffer of cluster ranges and light indices
+     */
+    public BufferObject getIndexBuffer() {
+        return indexBuffer;
+    }
+}
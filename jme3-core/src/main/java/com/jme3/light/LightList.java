@@ -35,7 +35,6 @@ import com.jme3.export.*;
 import com.jme3.scene.Spatial;
 import com.jme3.util.clone.Cloner;
 import com.jme3.util.clone.JmeCloneable;
-import com.jme3.util.SortUtil;
 import java.io.IOException;
 import java.util.*;
 
@@ -48,27 +47,12 @@ import java.util.*;
 public final class LightList implements Iterable<Light>, Savable, Cloneable, JmeCloneable {
 
     private Light[] list, tlist;
-    private float[] distToOwner;
+    private float[] distToOwner, tdist;
     private int listSize;
     private Spatial owner;
 
     private static final int DEFAULT_SIZE = 1;
 
-    private static final Comparator<Light> c = new Comparator<Light>() {
-        /**
-         * This assumes lastDistance have been computed in a previous step.
-         */
-        @Override
-        public int compare(Light l1, Light l2) {
-            if (l1.lastDistance < l2.lastDistance)
-                return -1;
-            else if (l1.lastDistance > l2.lastDistance)
-                return 1;
-            else
-                return 0;
-        }
-    };
-
     /**
      * constructor for serialization. Do not use
      */
@@ -132,13 +116,16 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
         listSize --;
         if (index == listSize) {
             list[listSize] = null;
+            distToOwner[listSize] = Float.NEGATIVE_INFINITY;
             return;
         }
 
         for (int i = index; i < listSize; i++) {
             list[i] = list[i+1];
+            distToOwner[i] = distToOwner[i+1];
         }
         list[listSize] = null;
+        distToOwner[listSize] = Float.NEGATIVE_INFINITY;
     }
 
     /**
@@ -205,20 +192,55 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
         if (listSize > 1) {
             // resize or populate our temporary array as necessary
             if (tlist == null || tlist.length != list.length) {
-                tlist = list.clone();
-            } else {
-                System.arraycopy(list, 0, tlist, 0, list.length);
+                tlist = new Light[list.length];
+                tdist = new float[list.length];
             }
 
+            if (transformChanged && owner != null) {
+                // Lights read the owner's world bound, which may refresh its
+                // transform and sort this list again. Do it before the
+                // distances are stored, or they would not match the lights.
+                owner.getWorldBound();
+            }
             if (transformChanged) {
-                // check distance of each light
+                // check distance of each light. The distance is kept in this
+                // list, the light may be shared with spatials updated on
+                // other threads.
                 for (int i = 0; i < listSize; i++) {
-                    list[i].computeLastDistance(owner);
+                    distToOwner[i] = list[i].computeDistance(owner);
                 }
             }
+            System.arraycopy(list, 0, tlist, 0, listSize);
+            System.arraycopy(distToOwner, 0, tdist, 0, listSize);
 
             // now merge sort tlist into list
-            SortUtil.msort(tlist, list, 0, listSize - 1, c);
+            msort(tlist, tdist, list, distToOwner, 0, listSize - 1);
+        }
+    }
+
+    /**
+     * Stable merge sort of the lights by their distance, kept in a parallel
+     * array. The source arrays are used as scratch space.
+     */
+    private static void msort(Light[] src, float[] srcDist, Light[] dest, float[] destDist,
+            int low, int high) {
+        if (low >= high) {
+            return;
+        }
+        int mid = (low + high) >>> 1;
+        msort(dest, destDist, src, srcDist, low, mid);
+        msort(dest, destDist, src, srcDist, mid + 1, high);
+
+        // src now holds both sorted halves
+        int i = low, j = mid + 1;
+        for (int k = low; k <= high; k++) {
+            if (j > high || i <= mid && srcDist[i] <= srcDist[j]) {
+                dest[k] = src[i];
+                destDist[k] = srcDist[i++];
+            } else {
+                dest[k] = src[j];
+                destDist[k] = srcDist[j++];
+            }
         }
     }
 
@@ -303,7 +325,8 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
             clone.owner = null;
             clone.list = list.clone();
             clone.distToOwner = distToOwner.clone();
-            clone.tlist = null; // list used for sorting only
+            clone.tlist = null; // lists used for sorting only
+            clone.tdist = null;
 
             return clone;
         } catch (CloneNotSupportedException ex) {
@@ -315,7 +338,8 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
     public LightList jmeClone() {
         try {
             LightList clone = (LightList)super.clone();
-            clone.tlist = null; // list used for sorting only
+            clone.tlist = null; // lists used for sorting only
+            clone.tdist = null;
             return clone;
         } catch (CloneNotSupportedException ex) {
             throw new AssertionError();
@@ -303,11 +303,16 @@ public class LightProbe extends Light implements Savable {
 
     @Override
     protected void computeLastDistance(Spatial owner) {
+        lastDistance = computeDistance(owner);
+    }
+
+    @Override
+    protected float computeDistance(Spatial owner) {
         if (owner.getWorldBound() != null) {
             BoundingVolume bv = owner.getWorldBound();
-            lastDistance = bv.distanceSquaredTo(position);
+            return bv.distanceSquaredTo(position);
         } else {
-            lastDistance = owner.getWorldTranslation().distanceSquared(position);
+            return owner.getWorldTranslation().distanceSquared(position);
         }
     }
 
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.light;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the bounding boxes of light volumes, used by
+ * {@link SpatialLightFilter} to find the lights that may touch a bounding
+ * volume without testing every light.
+ * <p>
+ * Volumes are added with {@link #add(int, float, float, float, float)} and
+ * become queryable after {@link #build()}. The cell size is chosen so that
+ * there is about one volume per cell. Volumes covering too many cells are
+ * kept in a separate list which every query tests.
+ */
+final class LightVolumeGrid {
+
+    private static final int MAX_CELLS_PER_VOLUME = 64;
+    private static final int MAX_CELLS_PER_AXIS = 32;
+
+    private int count;
+    private int[] ids = new int[16];
+    // min x, y, z and max x, y, z of each volume
+    private float[] boxes = new float[96];
+
+    private int[] oversized = new int[16];
+    private int oversizedCount;
+
+    private int dimX, dimY, dimZ;
+    private float originX, originY, originZ;
+    private float invCellSize;
+    private int[] cellStart = new int[1];
+    private int[] cellCursor = new int[0];
+    private int[] cellItems = new int[16];
+
+    private int[] marks = new int[16];
+    private int mark;
+    private int[] results = new int[16];
+
+    /**
+     * Removes all volumes.
+     */
+    void clear() {
+        count = 0;
+        oversizedCount = 0;
+        dimX = dimY = dimZ = 0;
+    }
+
+    /**
+     * @return the number of volumes
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Adds the bounding box of a sphere.
+     *
+     * @param id the value returned by queries for this volume
+     * @param x the X coordinate of the center
+     * @param y the Y coordinate of the center
+     * @param z the Z coordinate of the center
+     * @param radius the radius (finite, &ge;0)
+     */
+    void add(int id, float x, float y, float z, float radius) {
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+            boxes = Arrays.copyOf(boxes, count * 12);
+        }
+        ids[count] = id;
+        int b = count * 6;
+        boxes[b] = x - radius;
+        boxes[b + 1] = y - radius;
+        boxes[b + 2] = z - radius;
+        boxes[b + 3] = x + radius;
+        boxes[b + 4] = y + radius;
+        boxes[b + 5] = z + radius;
+        count++;
+    }
+
+    /**
+     * Sorts the added volumes into cells.
+     */
+    void build() {
+        oversizedCount = 0;
+        dimX = dimY = dimZ = 0;
+        if (count == 0) {
+            return;
+        }
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            int b = i * 6;
+            minX = Math.min(minX, boxes[b]);
+            minY = Math.min(minY, boxes[b + 1]);
+            minZ = Math.min(minZ, boxes[b + 2]);
+            maxX = Math.max(maxX, boxes[b + 3]);
+            maxY = Math.max(maxY, boxes[b + 4]);
+            maxZ = Math.max(maxZ, boxes[b + 5]);
+        }
+        float sizeX = maxX - minX, sizeY = maxY - minY, sizeZ = maxZ - minZ;
+        float maxSize = Math.max(sizeX, Math.max(sizeY, sizeZ));
+        float cellSize = (float) Math.cbrt((double) sizeX * sizeY * sizeZ / count);
+        cellSize = Math.max(cellSize, maxSize / MAX_CELLS_PER_AXIS);
+        if (!(cellSize > 0f) || Float.isInfinite(cellSize)) {
+            // degenerate volumes, a single cell will do
+            cellSize = Math.max(maxSize, 1f);
+        }
+        invCellSize = 1f / cellSize;
+        originX = minX;
+        originY = minY;
+        originZ = minZ;
+        dimX = Math.min(MAX_CELLS_PER_AXIS, Math.max(1, (int) Math.ceil(sizeX * invCellSize)));
+        dimY = Math.min(MAX_CELLS_PER_AXIS, Math.max(1, (int) Math.ceil(sizeY * invCellSize)));
+        dimZ = Math.min(MAX_CELLS_PER_AXIS, Math.max(1, (int) Math.ceil(sizeZ * invCellSize)));
+
+        int cells = dimX * dimY * dimZ;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        }
+        if (marks.length < count) {
+            marks = new int[ids.length];
+            mark = 0;
+        }
+        Arrays.fill(cellStart, 0, cells + 1, 0);
+
+        // count the items per cell, volumes spanning too many cells are
+        // tested by every query instead
+        int items = 0;
+        for (int i = 0; i < count; i++) {
+            int b = i * 6;
+            int x0 = cellX(boxes[b]), x1 = cellX(boxes[b + 3]);
+            int y0 = cellY(boxes[b + 1]), y1 = cellY(boxes[b + 4]);
+            int z0 = cellZ(boxes[b + 2]), z1 = cellZ(boxes[b + 5]);
+            int span = (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+            if (span > MAX_CELLS_PER_VOLUME) {
+                if (oversizedCount == oversized.length) {
+                    oversized = Arrays.copyOf(oversized, oversizedCount * 2);
+                }
+                oversized[oversizedCount++] = i;
+                continue;
+            }
+            for (int z = z0; z <= z1; z++) {
+                for (int y = y0; y <= y1; y++) {
+                    for (int x = x0; x <= x1; x++) {
+                        cellStart[(z * dimY + y) * dimX + x + 1]++;
+                    }
+                }
+            }
+            items += span;
+        }
+        for (int c = 0; c < cells; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        if (cellItems.length < items) {
+            cellItems = new int[Math.max(items, cellItems.length * 2)];
+        }
+        if (cellCursor.length < cells) {
+            cellCursor = new int[cells];
+        }
+        int[] cursor = cellCursor;
+        System.arraycopy(cellStart, 0, cursor, 0, cells);
+        for (int i = 0, o = 0; i < count; i++) {
+            if (o < oversizedCount && oversized[o] == i) {
+                o++;
+                continue;
+            }
+            int b = i * 6;
+            int x0 = cellX(boxes[b]), x1 = cellX(boxes[b + 3]);
+            int y0 = cellY(boxes[b + 1]), y1 = cellY(boxes[b + 4]);
+            int z0 = cellZ(boxes[b + 2]), z1 = cellZ(boxes[b + 5]);
+            for (int z = z0; z <= z1; z++) {
+                for (int y = y0; y <= y1; y++) {
+                    for (int x = x0; x <= x1; x++) {
+                        cellItems[cursor[(z * dimY + y) * dimX + x]++] = i;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the volumes whose bounding box overlaps the given box. The ids of
+     * the volumes are stored in {@link #getResults()}.
+     *
+     * @return the number of volumes found
+     */
+    int query(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (count == 0) {
+            return 0;
+        }
+        if (++mark == 0) {
+            Arrays.fill(marks, 0);
+            mark = 1;
+        }
+        int found = 0;
+        for (int o = 0; o < oversizedCount; o++) {
+            found = test(oversized[o], found, minX, minY, minZ, maxX, maxY, maxZ);
+        }
+        if (dimX == 0) {
+            return found;
+        }
+        int x0 = cellX(minX), x1 = cellX(maxX);
+        int y0 = cellY(minY), y1 = cellY(maxY);
+        int z0 = cellZ(minZ), z1 = cellZ(maxZ);
+        int span = (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1);
+        if (span > count) {
+            // cheaper to test every volume
+            for (int i = 0; i < count; i++) {
+                found = test(i, found, minX, minY, minZ, maxX, maxY, maxZ);
+            }
+            return found;
+        }
+        for (int z = z0; z <= z1; z++) {
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    int c = (z * dimY + y) * dimX + x;
+                    for (int n = cellStart[c], end = cellStart[c + 1]; n < end; n++) {
+                        found = test(cellItems[n], found, minX, minY, minZ, maxX, maxY, maxZ);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the ids found by the last query
+     */
+    int[] getResults() {
+        return results;
+    }
+
+    private int test(int i, int found, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        if (marks[i] == mark) {
+            return found;
+        }
+        marks[i] = mark;
+        int b = i * 6;
+        if (boxes[b] > maxX || boxes[b + 3] < minX
+                || boxes[b + 1] > maxY || boxes[b + 4] < minY
+                || boxes[b + 2] > maxZ || boxes[b + 5] < minZ) {
+            return found;
+        }
+        if (found == results.length) {
+            results = Arrays.copyOf(results, found * 2);
+        }
+        results[found] = ids[i];
+        return found + 1;
+    }
+
+    private int cellX(float x) {
+        return clampCell((x - originX) * invCellSize, dimX);
+    }
+
+    private int cellY(float y) {
+        return clampCell((y - originY) * invCellSize, dimY);
+    }
+
+    private int cellZ(float z) {
+        return clampCell((z - originZ) * invCellSize, dimZ);
+    }
+
+    private static int clampCell(float f, int dim) {
+        if (!(f > 0f)) {
+            return 0;
+        }
+        return f >= dim ? dim - 1 : (int) f;
+    }
+}
@@ -110,11 +110,16 @@ public class PointLight extends Light {
 
     @Override
     public void computeLastDistance(Spatial owner) {
+        lastDistance = computeDistance(owner);
+    }
+
+    @Override
+    protected float computeDistance(Spatial owner) {
         if (owner.getWorldBound() != null) {
             BoundingVolume bv = owner.getWorldBound();
-            lastDistance = bv.distanceSquaredTo(position);
+            return bv.distanceSquaredTo(position);
         } else {
-            lastDistance = owner.getWorldTranslation().distanceSquared(position);
+            return owner.getWorldTranslation().distanceSquared(position);
         }
     }
 
@@ -0,0 +1,521 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.light;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Spatial;
+import com.jme3.util.TempVars;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A {@link LightFilter} for scenes with many lights, giving the same result
+ * as {@link DefaultLightFilter}.
+ * <p>
+ * The world light list of a geometry is made of the local light lists of the
+ * geometry and its ancestors. Local lists with at least
+ * {@link #getIndexThreshold() a threshold} of lights are indexed: the volumes
+ * of their point and spot lights are sorted into a grid, so a geometry only
+ * tests the lights near its world bound. The index is revalidated once per
+ * {@link #setCamera(com.jme3.renderer.Camera) camera} and only rebuilt when
+ * lights are added, removed or moved.
+ * <p>
+ * Lights which have not moved for a few frames are considered static. For
+ * each geometry, the static lights touching its world bound are cached
+ * until either the bound or the set of static lights changes, so static
+ * geometries lit by static lights skip the bound tests altogether.
+ * <p>
+ * The lights are sorted by their current distance to the geometry, while
+ * the default filter keeps the order of the world light list, which is only
+ * sorted when the geometry or its lights are updated. The selected lights
+ * are the same.
+ */
+public final class SpatialLightFilter implements LightFilter {
+
+    private Camera camera;
+    private final HashSet<Light> processedLights = new HashSet<>();
+    private LightProbeBlendingStrategy probeBlendStrategy;
+    private final Map<LightList, ListIndex> indices = new WeakHashMap<>();
+    private int indexThreshold = 16;
+    private int generation;
+    private int[] order = new int[32];
+    private Light[] collected = new Light[16];
+    private long[] sortKeys = new long[16];
+    private int collectedCount;
+    // min and max corners of the query, then center and extents of the bound
+    private final float[] queryBox = new float[12];
+
+    public SpatialLightFilter() {
+        probeBlendStrategy = new WeightedProbeBlendingStrategy();
+    }
+
+    public SpatialLightFilter(LightProbeBlendingStrategy probeBlendStrategy) {
+        this.probeBlendStrategy = probeBlendStrategy;
+    }
+
+    /**
+     * Sets the number of lights from which a local light list is indexed.
+     * Smaller lists are filtered by testing every light.
+     *
+     * @param indexThreshold the light count (&ge;1, default=16)
+     */
+    public void setIndexThreshold(int indexThreshold) {
+        if (indexThreshold < 1) {
+            throw new IllegalArgumentException("indexThreshold must be at least 1");
+        }
+        this.indexThreshold = indexThreshold;
+    }
+
+    public int getIndexThreshold() {
+        return indexThreshold;
+    }
+
+    @Override
+    public void setCamera(Camera camera) {
+        this.camera = camera;
+        for (Light light : processedLights) {
+            light.frustumCheckNeeded = true;
+        }
+        processedLights.clear();
+        generation++;
+    }
+
+    @Override
+    public void filterLights(Geometry geometry, LightList filteredLightList) {
+        TempVars vars = TempVars.get();
+        try {
+            LightList worldLights = geometry.getWorldLightList();
+            BoundingVolume bv = geometry.getWorldBound();
+
+            if (worldLights.size() < indexThreshold || !isMadeOfLocalLists(geometry, worldLights)) {
+                for (int i = 0; i < worldLights.size(); i++) {
+                    Light light = worldLights.get(i);
+                    if (isVisible(light, vars) && intersects(light, bv, vars)) {
+                        addLight(light, filteredLightList);
+                    }
+                }
+            } else {
+                collectedCount = 0;
+                // own lights first, like the world light list
+                for (Spatial s = geometry; s != null; s = s.getParent()) {
+                    LightList localLights = s.getLocalLightList();
+                    if (localLights.size() < indexThreshold) {
+                        for (int i = 0; i < localLights.size(); i++) {
+                            Light light = localLights.get(i);
+                            if (isVisible(light, vars) && intersects(light, bv, vars)) {
+                                collect(light, geometry);
+                            }
+                        }
+                    } else {
+                        filterIndexed(localLights, geometry, bv, vars);
+                    }
+                }
+                addCollected(filteredLightList);
+            }
+
+            probeBlendStrategy.populateProbes(geometry, filteredLightList);
+
+        } finally {
+            vars.release();
+        }
+    }
+
+    public void setLightProbeBlendingStrategy(LightProbeBlendingStrategy strategy) {
+        probeBlendStrategy = strategy;
+    }
+
+    /**
+     * Checks that the world light list is up to date with the local lists
+     * it is built from, else the indices cannot be used.
+     */
+    private static boolean isMadeOfLocalLists(Geometry geometry, LightList worldLights) {
+        int size = 0;
+        for (Spatial s = geometry; s != null; s = s.getParent()) {
+            size += s.getLocalLightList().size();
+        }
+        return size == worldLights.size();
+    }
+
+    private void filterIndexed(LightList lights, Geometry geometry, BoundingVolume bv, TempVars vars) {
+        ListIndex index = indices.get(lights);
+        if (index == null) {
+            index = new ListIndex();
+            indices.put(lights, index);
+        }
+        index.validate(lights, generation);
+
+        float[] box = queryBox;
+        if (!getBox(bv, box)) {
+            // no usable bound, every light passes like in the default filter
+            for (int i = 0; i < index.size; i++) {
+                Light light = index.lights[i];
+                if (isVisible(light, vars)) {
+                    collect(light, geometry);
+                }
+            }
+            return;
+        }
+
+        int count = 0;
+        StaticHits hits = index.getStaticHits(geometry, bv, box, vars);
+        for (int n = 0; n < hits.count; n++) {
+            if (isVisible(index.lights[hits.indices[n]], vars)) {
+                order = ensureCapacity(order, count + 1);
+                order[count++] = hits.indices[n];
+            }
+        }
+        int found = index.dynamicGrid.query(box[0], box[1], box[2], box[3], box[4], box[5]);
+        int[] results = index.dynamicGrid.getResults();
+        for (int n = 0; n < found; n++) {
+            Light light = index.lights[results[n]];
+            if (isVisible(light, vars) && intersects(light, bv, vars)) {
+                order = ensureCapacity(order, count + 1);
+                order[count++] = results[n];
+            }
+        }
+        for (int n = 0; n < index.unboundedCount; n++) {
+            Light light = index.lights[index.unbounded[n]];
+            if (isVisible(light, vars) && intersects(light, bv, vars)) {
+                order = ensureCapacity(order, count + 1);
+                order[count++] = index.unbounded[n];
+            }
+        }
+
+        // keep the list order for lights at the same distance
+        Arrays.sort(order, 0, count);
+        for (int n = 0; n < count; n++) {
+            collect(index.lights[order[n]], geometry);
+        }
+    }
+
+    /**
+     * Keeps a light which passed the tests, along with its distance to the
+     * geometry, the key {@link Geometry} sorts its world light list with.
+     */
+    private void collect(Light light, Geometry geometry) {
+        float distance = light.computeDistance(geometry);
+        if (collectedCount == collected.length) {
+            collected = Arrays.copyOf(collected, collectedCount * 2);
+            sortKeys = Arrays.copyOf(sortKeys, collectedCount * 2);
+        }
+        // order by distance, then by the order the lights were collected in
+        int bits = Float.floatToIntBits(distance);
+        bits ^= (bits >> 31) & 0x7fffffff;
+        sortKeys[collectedCount] = ((long) bits << 32) | collectedCount;
+        collected[collectedCount++] = light;
+    }
+
+    private void addCollected(LightList filteredLightList) {
+        Arrays.sort(sortKeys, 0, collectedCount);
+        for (int n = 0; n < collectedCount; n++) {
+            addLight(collected[(int) sortKeys[n]], filteredLightList);
+        }
+        Arrays.fill(collected, 0, collectedCount, null);
+        collectedCount = 0;
+    }
+
+    private boolean isVisible(Light light, TempVars vars) {
+        // If this light is not enabled it will be ignored.
+        if (!light.isEnabled()) {
+            return false;
+        }
+        if (light.frustumCheckNeeded) {
+            processedLights.add(light);
+            light.frustumCheckNeeded = false;
+            light.intersectsFrustum = light.intersectsFrustum(camera, vars);
+        }
+        return light.intersectsFrustum;
+    }
+
+    private void addLight(Light light, LightList filteredLightList) {
+        if (light.getType() == Light.Type.Probe) {
+            probeBlendStrategy.registerProbe((LightProbe) light);
+        } else {
+            filteredLightList.add(light);
+        }
+    }
+
+    private static boolean intersects(Light light, BoundingVolume bv, TempVars vars) {
+        if (bv instanceof BoundingBox) {
+            return light.intersectsBox((BoundingBox) bv, vars);
+        } else if (bv instanceof BoundingSphere) {
+            if (!Float.isInfinite(((BoundingSphere) bv).getRadius())) {
+                return light.intersectsSphere((BoundingSphere) bv, vars);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores the min and max corners of a world bound, followed by its center
+     * and extents.
+     *
+     * @return false if the bound cannot be used to query the indices
+     */
+    private static boolean getBox(BoundingVolume bv, float[] box) {
+        float x, y, z;
+        if (bv instanceof BoundingBox) {
+            BoundingBox bb = (BoundingBox) bv;
+            x = bb.getXExtent();
+            y = bb.getYExtent();
+            z = bb.getZExtent();
+        } else if (bv instanceof BoundingSphere) {
+            x = y = z = ((BoundingSphere) bv).getRadius();
+        } else {
+            return false;
+        }
+        if (Float.isInfinite(x) || Float.isInfinite(y) || Float.isInfinite(z)) {
+            return false;
+        }
+        Vector3f center = bv.getCenter();
+        box[0] = center.x - x;
+        box[1] = center.y - y;
+        box[2] = center.z - z;
+        box[3] = center.x + x;
+        box[4] = center.y + y;
+        box[5] = center.z + z;
+        box[6] = center.x;
+        box[7] = center.y;
+        box[8] = center.z;
+        box[9] = x;
+        box[10] = y;
+        box[11] = z;
+        return true;
+    }
+
+    private static int[] ensureCapacity(int[] array, int size) {
+        return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+
+    /**
+     * The static lights touching the world bound of a geometry.
+     */
+    private static final class StaticHits {
+
+        private final float[] bound = new float[6];
+        private boolean sphere;
+        private int version = -1;
+        private int[] indices = new int[4];
+        private int count;
+
+        private boolean isValid(BoundingVolume bv, float[] box, int version) {
+            return this.version == version
+                    && sphere == (bv instanceof BoundingSphere)
+                    && equals(bound, box);
+        }
+
+        private static boolean equals(float[] bound, float[] box) {
+            for (int i = 0; i < 6; i++) {
+                if (Float.floatToIntBits(bound[i]) != Float.floatToIntBits(box[i + 6])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The index of one local light list.
+     */
+    private static final class ListIndex {
+
+        // the number of validations a light must keep still to become static
+        private static final int STILL_FRAMES = 4;
+        private static final byte UNBOUNDED = 0;
+        private static final byte STATIC = 1;
+        private static final byte DYNAMIC = 2;
+        // x, y, z, range and for spot lights the direction and outer angle
+        private static final int PARAMS = 8;
+
+        private Light[] lights = new Light[16];
+        private int size;
+        private byte[] kinds = new byte[16];
+        private int[] stillFrames = new int[16];
+        private float[] params = new float[16 * PARAMS];
+        private final float[] tempParams = new float[PARAMS];
+        private int[] unbounded = new int[16];
+        private int unboundedCount;
+        private final LightVolumeGrid staticGrid = new LightVolumeGrid();
+        private final LightVolumeGrid dynamicGrid = new LightVolumeGrid();
+        private int staticVersion;
+        private int validated = -1;
+        private final Map<Geometry, StaticHits> staticHits = new WeakHashMap<>();
+
+        private void validate(LightList list, int generation) {
+            if (validated == generation) {
+                return;
+            }
+            validated = generation;
+
+            boolean staticChanged = false;
+            if (!isSameList(list)) {
+                setLights(list);
+                staticChanged = true;
+            } else {
+                for (int i = 0; i < size; i++) {
+                    boolean bounded = getParams(lights[i], tempParams);
+                    if (!matchesParams(i)) {
+                        System.arraycopy(tempParams, 0, params, i * PARAMS, PARAMS);
+                        staticChanged |= kinds[i] == STATIC;
+                        kinds[i] = bounded ? DYNAMIC : UNBOUNDED;
+                        stillFrames[i] = 0;
+                    } else if (kinds[i] == DYNAMIC && ++stillFrames[i] >= STILL_FRAMES) {
+                        kinds[i] = STATIC;
+                        staticChanged = true;
+                    }
+                }
+            }
+
+            unboundedCount = 0;
+            dynamicGrid.clear();
+            if (staticChanged) {
+                staticGrid.clear();
+                staticVersion++;
+            }
+            for (int i = 0; i < size; i++) {
+                int p = i * PARAMS;
+                if (kinds[i] == UNBOUNDED) {
+                    unbounded[unboundedCount++] = i;
+                } else if (kinds[i] == DYNAMIC) {
+                    dynamicGrid.add(i, params[p], params[p + 1], params[p + 2], params[p + 3]);
+                } else if (staticChanged) {
+                    staticGrid.add(i, params[p], params[p + 1], params[p + 2], params[p + 3]);
+                }
+            }
+            dynamicGrid.build();
+            if (staticChanged) {
+                staticGrid.build();
+            }
+        }
+
+        private boolean isSameList(LightList list) {
+            if (list.size() != size) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (list.get(i) != lights[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void setLights(LightList list) {
+            size = list.size();
+            if (lights.length < size) {
+                lights = new Light[size];
+                kinds = new byte[size];
+                stillFrames = new int[size];
+                params = new float[size * PARAMS];
+                unbounded = new int[size];
+            } else {
+                Arrays.fill(lights, size, lights.length, null);
+            }
+            for (int i = 0; i < size; i++) {
+                lights[i] = list.get(i);
+                kinds[i] = getParams(lights[i], tempParams) ? STATIC : UNBOUNDED;
+                stillFrames[i] = STILL_FRAMES;
+                System.arraycopy(tempParams, 0, params, i * PARAMS, PARAMS);
+            }
+        }
+
+        private boolean matchesParams(int i) {
+            int p = i * PARAMS;
+            for (int n = 0; n < PARAMS; n++) {
+                if (Float.floatToIntBits(params[p + n]) != Float.floatToIntBits(tempParams[n])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Reads what the bound tests of a light depend on.
+         *
+         * @return true if the light has a finite volume
+         */
+        private static boolean getParams(Light light, float[] store) {
+            Arrays.fill(store, 0f);
+            Vector3f position;
+            float range;
+            if (light instanceof PointLight) {
+                position = ((PointLight) light).getPosition();
+                range = ((PointLight) light).getRadius();
+            } else if (light instanceof SpotLight) {
+                SpotLight spot = (SpotLight) light;
+                position = spot.getPosition();
+                range = spot.getSpotRange();
+                store[4] = spot.getDirection().x;
+                store[5] = spot.getDirection().y;
+                store[6] = spot.getDirection().z;
+                store[7] = spot.getSpotOuterAngle();
+            } else {
+                return false;
+            }
+            store[0] = position.x;
+            store[1] = position.y;
+            store[2] = position.z;
+            store[3] = range;
+            return range > 0f && !Float.isInfinite(range);
+        }
+
+        private StaticHits getStaticHits(Geometry geometry, BoundingVolume bv, float[] box, TempVars vars) {
+            StaticHits hits = staticHits.get(geometry);
+            if (hits == null) {
+                hits = new StaticHits();
+                staticHits.put(geometry, hits);
+            } else if (hits.isValid(bv, box, staticVersion)) {
+                return hits;
+            }
+            hits.version = staticVersion;
+            hits.sphere = bv instanceof BoundingSphere;
+            System.arraycopy(box, 6, hits.bound, 0, 6);
+            hits.count = 0;
+            int found = staticGrid.query(box[0], box[1], box[2], box[3], box[4], box[5]);
+            int[] results = staticGrid.getResults();
+            for (int n = 0; n < found; n++) {
+                if (intersects(lights[results[n]], bv, vars)) {
+                    hits.indices = ensureCapacity(hits.indices, hits.count + 1);
+                    hits.indices[hits.count++] = results[n];
+                }
+            }
+            return hits;
+        }
+    }
+}
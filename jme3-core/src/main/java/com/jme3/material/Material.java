@@ -41,6 +41,7 @@ import com.jme3.material.RenderState.FaceCullMode;
 import com.jme3.material.TechniqueDef.LightMode;
 import com.jme3.math.*;
 import com.jme3.renderer.Caps;
+import com.jme3.renderer.Limits;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.Renderer;
 import com.jme3.renderer.TextureUnitException;
@@ -87,6 +88,10 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
     private boolean transparent = false;
     private boolean receivesShadows = false;
     private int sortingId = -1;
+    // slot of the definition's parameter block holding this material's values
+    private transient int blockSlot = -1;
+    private transient long blockStamp;
+    private transient boolean blockDirty = true;
 
     /**
      * Track bind ids for textures and buffers
@@ -219,6 +224,8 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             }
 
             mat.sortingId = -1;
+            mat.blockSlot = -1;
+            mat.blockDirty = true;
             
             return mat;
         } catch (CloneNotSupportedException ex) {
@@ -510,6 +517,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             } else {
                 val.setValue(value);
             }
+            blockDirty = true;
 
             if (technique != null) {
                 technique.notifyParamChanged(name, type, value);
@@ -541,6 +549,7 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         }
 
         paramValues.remove(name);
+        blockDirty = true;
         if (matParam instanceof MatParamTexture) {
             sortingId = -1;
         }
@@ -818,7 +827,8 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         sortingId = -1;
     }
 
-    private void applyOverrides(Renderer renderer, Shader shader, SafeArrayList<MatParamOverride> overrides, BindUnits bindUnits) {
+    private void applyOverrides(Renderer renderer, Shader shader, SafeArrayList<MatParamOverride> overrides,
+            BindUnits bindUnits, ParameterBlock block) {
         for (MatParamOverride override : overrides.getArray()) {
             VarType type = override.getVarType();
 
@@ -827,6 +837,9 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             if (paramDef == null || paramDef.getVarType() != type || !override.isEnabled()) {
                 continue;
             }
+            if (block != null && block.contains(override.getName())) {
+                continue;
+            }
 
             Uniform uniform = shader.getUniform(override.getPrefixedName());
 
@@ -884,11 +897,20 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
         bindUnits.textureUnit = 0;
         bindUnits.bufferUnit = 0;
 
+        ParameterBlock block = def.getParameterBlock();
+        if (block != null) {
+            if (renderer.getCaps().contains(Caps.UniformBufferObject)) {
+                updateParameterBlock(renderer, shader, block, worldOverrides, forcedOverrides, bindUnits);
+            } else {
+                block = null;
+            }
+        }
+
         if (worldOverrides != null) {
-            applyOverrides(renderer, shader, worldOverrides, bindUnits);
+            applyOverrides(renderer, shader, worldOverrides, bindUnits, block);
         }
         if (forcedOverrides != null) {
-            applyOverrides(renderer, shader, forcedOverrides, bindUnits);
+            applyOverrides(renderer, shader, forcedOverrides, bindUnits, block);
         }
 
         for (int i = 0; i < paramValues.size(); i++) {
@@ -896,6 +918,9 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
             MatParam param = paramValues.getValue(i);
             VarType type = param.getVarType();
 
+            if (block != null && block.contains(param.getName())) {
+                continue;
+            }
             updateShaderMaterialParameter(renderer, type, shader, param, bindUnits, false);
         }
 
@@ -906,6 +931,33 @@ public class Material implements CloneableSmartAsset, Cloneable, Savable {
 
 
 
+    /**
+     * Binds the slot of the parameter block that holds this material's
+     * values, writing a new slot only when a value changed, an override
+     * applies or the ring reused the previous one.
+     */
+    private void updateParameterBlock(Renderer renderer, Shader shader, ParameterBlock block,
+            SafeArrayList<MatParamOverride> worldOverrides, SafeArrayList<MatParamOverride> forcedOverrides,
+            BindUnits unit) {
+        Integer alignment = renderer.getLimits().get(Limits.UniformBufferObjectOffsetAlignment);
+        BufferObject ring = block.getRingBuffer(alignment != null && alignment > 0
+                ? alignment : ParameterBlock.DEFAULT_OFFSET_ALIGNMENT);
+
+        boolean overridden = block.isOverridden(worldOverrides) || block.isOverridden(forcedOverrides);
+        if (blockDirty || overridden || !block.isSlotValid(blockSlot, blockStamp)) {
+            blockStamp = block.write(paramValues, worldOverrides, forcedOverrides);
+            blockSlot = (int) (blockStamp % block.getSlotCount());
+            // overridden values are per geometry and must not be reused
+            blockDirty = overridden;
+        }
+
+        int offset = block.getSlotOffset(blockSlot);
+        ShaderBufferBlock bufferBlock = shader.getBufferBlock(block.getPrefixedName());
+        bufferBlock.setBufferObject(ShaderBufferBlock.BufferType.UniformBufferObject, ring, offset, block.getSize());
+        renderer.setUniformBufferObjectRange(unit.bufferUnit, ring, offset, block.getSize());
+        unit.bufferUnit++;
+    }
+
     private void updateRenderState(Geometry geometry, RenderManager renderManager, Renderer renderer, TechniqueDef techniqueDef) {
         RenderState finalRenderState;
         if (renderManager.getForcedRenderState() != null) {
@@ -55,6 +55,7 @@ public class MaterialDef{
 
     private Map<String, List<TechniqueDef>> techniques;
     private Map<String, MatParam> matParams;
+    private ParameterBlock parameterBlock;
 
     /**
      * Serialization only. Do not use.
@@ -161,6 +162,26 @@ public class MaterialDef{
         return matParams.values();
     }
 
+    /**
+     * Sets the block used to upload some of the parameters as a single
+     * uniform buffer range, or null to upload every parameter individually.
+     *
+     * @param parameterBlock the parameter block, or null
+     * @see ParameterBlock
+     */
+    public void setParameterBlock(ParameterBlock parameterBlock) {
+        this.parameterBlock = parameterBlock;
+    }
+
+    /**
+     * Returns the block used to upload parameters as a uniform buffer range.
+     *
+     * @return the parameter block, or null if none was declared
+     */
+    public ParameterBlock getParameterBlock() {
+        return parameterBlock;
+    }
+
     /**
      * Adds a new technique definition to this material definition.
      *
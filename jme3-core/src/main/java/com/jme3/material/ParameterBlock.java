@@ -0,0 +1,366 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material;
+
+import com.jme3.math.FastMath;
+import com.jme3.shader.VarType;
+import com.jme3.shader.bufferobject.BufferObject;
+import com.jme3.shader.bufferobject.BufferRegion;
+import com.jme3.shader.bufferobject.layout.Std140Layout;
+import com.jme3.util.ListMap;
+import com.jme3.util.ObjectIntMap;
+import com.jme3.util.SafeArrayList;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes material parameters that a {@link MaterialDef} uploads as one
+ * std140 uniform block instead of as individual uniforms.
+ * <p>
+ * The members are laid out in the order given, following the std140 rules,
+ * so the shaders must declare a matching block, prefixed like any other
+ * material parameter, for example:
+ * <pre>
+ * layout(std140) uniform m_MaterialBlock {
+ *     vec4 m_Color;
+ *     float m_Shininess;
+ * };
+ * </pre>
+ * Every material of the definition writes its values into a slot of one
+ * shared, ring-buffered uniform buffer. A material keeps its slot as long as
+ * none of its parameters changed and the ring has not wrapped around onto
+ * it, so drawing it again only binds a range of the buffer.
+ * <p>
+ * Values are only picked up when set through the material; mutating a value
+ * object in place requires setting it again.
+ * <p>
+ * In a j3md file the block is declared inside the <code>MaterialDef</code>:
+ * <pre>
+ * ParameterBlock MaterialBlock {
+ *     Color
+ *     Shininess
+ * }
+ * </pre>
+ */
+public class ParameterBlock {
+
+    /**
+     * Default number of slots in the ring buffer.
+     */
+    public static final int DEFAULT_SLOT_COUNT = 256;
+
+    /**
+     * Offset alignment used when the renderer does not report one.
+     */
+    public static final int DEFAULT_OFFSET_ALIGNMENT = 256;
+
+    private static final Std140Layout LAYOUT = new Std140Layout();
+
+    private final String name;
+    private final String prefixedName;
+    private final String[] memberNames;
+    private final VarType[] memberTypes;
+    private final int[] offsets;
+    private final ObjectIntMap<String> indexByName = new ObjectIntMap<>();
+    private final int size;
+    private int slotCount = DEFAULT_SLOT_COUNT;
+
+    private BufferObject ring;
+    private int slotSize;
+    private int nextSlot;
+    private long[] slotStamps;
+    private long stampCounter;
+
+    /**
+     * Creates a block with the given members.
+     *
+     * @param name the name of the block, without the "m_" prefix
+     * @param members the parameters stored in the block, in block order
+     * @throws IllegalArgumentException if a parameter type cannot be stored in
+     * a block or a parameter is listed twice
+     */
+    public ParameterBlock(String name, List<MatParam> members) {
+        this.name = name;
+        this.prefixedName = "m_" + name;
+        int count = members.size();
+        memberNames = new String[count];
+        memberTypes = new VarType[count];
+        offsets = new int[count];
+
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            MatParam param = members.get(i);
+            VarType type = param.getVarType();
+            int alignment = getBaseAlignment(type);
+            if (alignment < 0) {
+                throw new IllegalArgumentException("Parameter " + param.getName()
+                        + " of type " + type + " cannot be stored in parameter block " + name);
+            }
+            if (indexByName.put(param.getName(), i, -1) >= 0) {
+                throw new IllegalArgumentException("Parameter " + param.getName()
+                        + " is listed twice in parameter block " + name);
+            }
+            pos = FastMath.toMultipleOf(pos, alignment);
+            memberNames[i] = param.getName();
+            memberTypes[i] = type;
+            offsets[i] = pos;
+            pos += getSize(type);
+        }
+        // the size of a block is rounded up to the alignment of a vec4
+        size = Math.max(16, FastMath.toMultipleOf(pos, 16));
+    }
+
+    private static int getBaseAlignment(VarType type) {
+        switch (type) {
+            case Float:
+            case Int:
+            case Boolean:
+                return 4;
+            case Vector2:
+                return 8;
+            case Vector3:
+            case Vector4:
+            case Matrix3:
+            case Matrix4:
+                return 16;
+            default:
+                return -1;
+        }
+    }
+
+    private static int getSize(VarType type) {
+        switch (type) {
+            case Vector2:
+                return 8;
+            case Vector3:
+                return 12;
+            case Vector4:
+                return 16;
+            case Matrix3:
+                return 48;
+            case Matrix4:
+                return 64;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * @return the name of the block, without the "m_" prefix
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of the uniform block in the shaders
+     */
+    public String getPrefixedName() {
+        return prefixedName;
+    }
+
+    /**
+     * @return the size of the block in bytes
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of members
+     */
+    public int getMemberCount() {
+        return memberNames.length;
+    }
+
+    /**
+     * @param index the index of the member
+     * @return the byte offset of the member inside the block
+     */
+    public int getOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * @param paramName the name of a material parameter
+     * @return true if the parameter is uploaded through this block
+     */
+    public boolean contains(String paramName) {
+        return indexByName.containsKey(paramName);
+    }
+
+    /**
+     * Sets how many slots the ring buffer holds. Only affects a ring that has
+     * not been created yet.
+     *
+     * @param slotCount the number of slots (&ge;1)
+     */
+    public void setSlotCount(int slotCount) {
+        if (slotCount < 1) {
+            throw new IllegalArgumentException("slotCount must be 1 or higher");
+        }
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * @return the number of slots in the ring buffer
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Returns the shared ring buffer, creating it on first use.
+     *
+     * @param offsetAlignment the offset alignment required by the renderer
+     * @return the ring buffer
+     */
+    public BufferObject getRingBuffer(int offsetAlignment) {
+        if (ring == null) {
+            slotSize = FastMath.toMultipleOf(size, offsetAlignment);
+            ring = new BufferObject();
+            ring.setName(name);
+            ring.initializeEmpty(slotSize * slotCount);
+            List<BufferRegion> regions = new ArrayList<>(slotCount);
+            for (int i = 0; i < slotCount; i++) {
+                // merged dirty regions treat the end as exclusive
+                regions.add(new BufferRegion(i * slotSize, (i + 1) * slotSize));
+            }
+            ring.setRegions(regions);
+            slotStamps = new long[slotCount];
+        }
+        return ring;
+    }
+
+    /**
+     * @param slot the slot index
+     * @return the byte offset of the slot in the ring buffer
+     */
+    public int getSlotOffset(int slot) {
+        return slot * slotSize;
+    }
+
+    /**
+     * Tells whether a slot still holds the data written with the given stamp.
+     *
+     * @param slot the slot index, or -1
+     * @param stamp the stamp returned when the slot was written
+     * @return true if the slot was not reused since
+     */
+    public boolean isSlotValid(int slot, long stamp) {
+        return slot >= 0 && slotStamps != null && slotStamps[slot] == stamp;
+    }
+
+    /**
+     * Tells whether any of the overrides replaces a member of this block.
+     *
+     * @param overrides the overrides to check, or null
+     * @return true if one of them applies
+     */
+    public boolean isOverridden(SafeArrayList<MatParamOverride> overrides) {
+        if (overrides == null) {
+            return false;
+        }
+        for (MatParamOverride override : overrides.getArray()) {
+            int index = indexByName.get(override.getName(), -1);
+            if (override.isEnabled() && index >= 0
+                    && memberTypes[index] == override.getVarType()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the values of a material into the next slot of the ring buffer
+     * and marks it for upload. Enabled overrides take precedence over the
+     * material's own values, forced overrides over world overrides.
+     *
+     * @param paramValues the material's parameter values
+     * @param worldOverrides the geometry's overrides, or null
+     * @param forcedOverrides the render manager's overrides, or null
+     * @return the stamp identifying this write; the slot is
+     * <code>(int) (stamp % slotCount)</code>
+     */
+    public long write(ListMap<String, MatParam> paramValues,
+            SafeArrayList<MatParamOverride> worldOverrides,
+            SafeArrayList<MatParamOverride> forcedOverrides) {
+        if (ring == null) {
+            throw new IllegalStateException("The ring buffer has not been created");
+        }
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % slotCount;
+        long stamp = ++stampCounter * slotCount + slot;
+        slotStamps[slot] = stamp;
+
+        ByteBuffer data = ring.getData();
+        int base = slot * slotSize;
+        for (int i = base; i < base + size; i++) {
+            data.put(i, (byte) 0);
+        }
+        for (int i = 0; i < memberNames.length; i++) {
+            Object value = findOverride(forcedOverrides, i);
+            if (value == null) {
+                value = findOverride(worldOverrides, i);
+            }
+            if (value == null) {
+                MatParam param = paramValues.get(memberNames[i]);
+                value = param != null ? param.getValue() : null;
+            }
+            if (value != null) {
+                data.position(base + offsets[i]);
+                LAYOUT.write(data, value);
+            }
+        }
+        data.rewind();
+        ring.getRegion(slot).markDirty();
+        ring.setUpdateNeeded(false);
+        return stamp;
+    }
+
+    private Object findOverride(SafeArrayList<MatParamOverride> overrides, int index) {
+        if (overrides == null) {
+            return null;
+        }
+        MatParamOverride[] array = overrides.getArray();
+        // the last override of a name wins, as with individual uniforms
+        for (int i = array.length - 1; i >= 0; i--) {
+            MatParamOverride override = array[i];
+            if (override.isEnabled() && override.getVarType() == memberTypes[index]
+                    && override.getName().equals(memberNames[index])) {
+                return override.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material;
+
+import com.jme3.shader.DefineList;
+import com.jme3.shader.Shader;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Lists the shader permutations, (material definition, technique, defines),
+ * used by an application.
+ * <p>
+ * A manifest is filled by setting it on the
+ * {@link com.jme3.renderer.RenderManager#setShaderManifest(ShaderManifest)
+ * render manager} while playing, and saved at the end of the session. A later
+ * run loads it and hands it to a {@link ShaderPrecompiler}, which compiles
+ * every listed permutation before materials first need it.
+ * <p>
+ * Defines are stored by name, so a manifest stays usable when defines are
+ * added to a material definition; permutations whose definition, technique or
+ * defines no longer exist are skipped.
+ */
+public class ShaderManifest {
+
+    private static final String HEADER = "# jME3 shader manifest 1";
+
+    /**
+     * One shader permutation.
+     */
+    public static final class Entry {
+
+        private final String materialDefName;
+        private final String techniqueName;
+        private final int techniqueIndex;
+        private final Map<String, Integer> defines;
+
+        /**
+         * @param materialDefName the asset name of the material definition
+         * @param techniqueName the name of the technique
+         * @param techniqueIndex the index among the technique definitions of
+         * that name, which are chosen by the renderer capabilities
+         * @param defines the raw values of the set defines, by name
+         */
+        public Entry(String materialDefName, String techniqueName, int techniqueIndex, Map<String, Integer> defines) {
+            this.materialDefName = materialDefName;
+            this.techniqueName = techniqueName;
+            this.techniqueIndex = techniqueIndex;
+            this.defines = Collections.unmodifiableMap(new TreeMap<>(defines));
+        }
+
+        public String getMaterialDefName() {
+            return materialDefName;
+        }
+
+        public String getTechniqueName() {
+            return techniqueName;
+        }
+
+        public int getTechniqueIndex() {
+            return techniqueIndex;
+        }
+
+        /**
+         * @return the raw values of the set defines, sorted by name
+         */
+        public Map<String, Integer> getDefines() {
+            return defines;
+        }
+
+        /**
+         * Finds the technique definition of this permutation.
+         *
+         * @param materialDef the loaded material definition
+         * @return the technique definition, or null if it no longer exists
+         */
+        public TechniqueDef findTechniqueDef(MaterialDef materialDef) {
+            List<TechniqueDef> techniqueDefs = materialDef.getTechniqueDefs(techniqueName);
+            if (techniqueDefs == null || techniqueIndex >= techniqueDefs.size()) {
+                return null;
+            }
+            return techniqueDefs.get(techniqueIndex);
+        }
+
+        /**
+         * Creates the define list of this permutation.
+         *
+         * @param techniqueDef the technique definition of this permutation
+         * @return the define list, or null if one of the defines no longer
+         * exists
+         */
+        public DefineList createDefineList(TechniqueDef techniqueDef) {
+            DefineList list = techniqueDef.createDefineList();
+            String[] names = techniqueDef.getDefineNames();
+            for (Map.Entry<String, Integer> define : defines.entrySet()) {
+                int id = indexOf(names, define.getKey());
+                if (id < 0) {
+                    return null;
+                }
+                list.set(id, define.getValue());
+            }
+            return list;
+        }
+
+        private static int indexOf(String[] names, String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) obj;
+            return techniqueIndex == other.techniqueIndex
+                    && materialDefName.equals(other.materialDefName)
+                    && techniqueName.equals(other.techniqueName)
+                    && defines.equals(other.defines);
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = materialDefName.hashCode();
+            hash = 31 * hash + techniqueName.hashCode();
+            hash = 31 * hash + techniqueIndex;
+            hash = 31 * hash + defines.hashCode();
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return materialDefName + "/" + techniqueName + "[" + techniqueIndex + "]" + defines;
+        }
+    }
+
+    private final Set<Entry> entries = new LinkedHashSet<>();
+    private final Set<Shader> recordedShaders = Collections.newSetFromMap(new IdentityHashMap<Shader, Boolean>());
+
+    /**
+     * Records the permutation of a shader, if it was not recorded already.
+     * Called by the technique whenever it selects a shader.
+     *
+     * @param materialDef the material definition
+     * @param techniqueDef the technique definition
+     * @param defines the defines the shader was selected with
+     * @param shader the selected shader
+     */
+    public synchronized void record(MaterialDef materialDef, TechniqueDef techniqueDef, DefineList defines, Shader shader) {
+        if (!recordedShaders.add(shader) || materialDef.getAssetName() == null) {
+            return;
+        }
+        List<TechniqueDef> techniqueDefs = materialDef.getTechniqueDefs(techniqueDef.getName());
+        int index = techniqueDefs == null ? -1 : techniqueDefs.indexOf(techniqueDef);
+        if (index < 0) {
+            return;
+        }
+        Map<String, Integer> values = new TreeMap<>();
+        String[] names = techniqueDef.getDefineNames();
+        for (int i = 0; i < names.length; i++) {
+            if (defines.isSet(i)) {
+                values.put(names[i], defines.getInt(i));
+            }
+        }
+        entries.add(new Entry(materialDef.getAssetName(), techniqueDef.getName(), index, values));
+    }
+
+    /**
+     * Adds a permutation.
+     *
+     * @param entry the permutation to add
+     */
+    public synchronized void add(Entry entry) {
+        entries.add(entry);
+    }
+
+    /**
+     * @return a copy of the recorded permutations, in recording order
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * Writes the manifest as UTF-8 text, one permutation per line.
+     *
+     * @param out the stream to write to, not closed
+     * @throws IOException if writing fails
+     */
+    public synchronized void save(OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writer.write(HEADER);
+        writer.write('\n');
+        for (Entry entry : entries) {
+            writer.write(entry.materialDefName);
+            writer.write('\t');
+            writer.write(entry.techniqueName);
+            writer.write('\t');
+            writer.write(Integer.toString(entry.techniqueIndex));
+            for (Map.Entry<String, Integer> define : entry.defines.entrySet()) {
+                writer.write('\t');
+                writer.write(define.getKey());
+                writer.write('=');
+                writer.write(Integer.toString(define.getValue()));
+            }
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads a manifest written by {@link #save(OutputStream)}.
+     *
+     * @param in the stream to read from, not closed
+     * @return the manifest
+     * @throws IOException if reading fails or the manifest is malformed
+     */
+    public static ShaderManifest load(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        if (!HEADER.equals(line)) {
+            throw new IOException("Not a shader manifest");
+        }
+        ShaderManifest manifest = new ShaderManifest();
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            if (fields.length < 3) {
+                throw new IOException("Malformed shader manifest line " + lineNumber);
+            }
+            try {
+                Map<String, Integer> defines = new TreeMap<>();
+                for (int i = 3; i < fields.length; i++) {
+                    int split = fields[i].indexOf('=');
+                    if (split <= 0) {
+                        throw new IOException("Malformed define on shader manifest line " + lineNumber);
+                    }
+                    defines.put(fields[i].substring(0, split), Integer.parseInt(fields[i].substring(split + 1)));
+                }
+                manifest.entries.add(new Entry(fields[0], fields[1], Integer.parseInt(fields[2]), defines));
+            } catch (NumberFormatException ex) {
+                throw new IOException("Malformed number on shader manifest line " + lineNumber, ex);
+            }
+        }
+        return manifest;
+    }
+}
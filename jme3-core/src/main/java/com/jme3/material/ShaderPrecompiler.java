@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetManager;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.Renderer;
+import com.jme3.renderer.RendererException;
+import com.jme3.shader.DefineList;
+import com.jme3.shader.Glsl100ShaderGenerator;
+import com.jme3.shader.Glsl150ShaderGenerator;
+import com.jme3.shader.Glsl300ShaderGenerator;
+import com.jme3.shader.Shader;
+import com.jme3.shader.ShaderGenerator;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compiles the permutations of a {@link ShaderManifest} ahead of use.
+ * <p>
+ * Loading the material definitions and generating the shader sources,
+ * including shader node generation and GLSL preprocessing, runs on the given
+ * executor. The generated shaders are compiled on the render thread by
+ * {@link #update(Renderer)}, which stops once the frame time budget is spent,
+ * and are then cached by their technique, so materials that need one of the
+ * permutations later find it ready.
+ *
+ * @see com.jme3.app.state.ShaderPrecompileState
+ */
+public class ShaderPrecompiler {
+
+    private static final Logger logger = Logger.getLogger(ShaderPrecompiler.class.getName());
+
+    private static class Generated {
+
+        final TechniqueDef techniqueDef;
+        final DefineList defines;
+        final Shader shader;
+
+        Generated(TechniqueDef techniqueDef, DefineList defines, Shader shader) {
+            this.techniqueDef = techniqueDef;
+            this.defines = defines;
+            this.shader = shader;
+        }
+    }
+
+    private final ShaderManifest manifest;
+    private final ConcurrentLinkedQueue<Generated> generated = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private int compiled;
+    private long timeBudget = 2000000L;
+    private EnumSet<Caps> caps;
+    private ThreadLocal<ShaderGenerator> generators;
+
+    /**
+     * @param manifest the permutations to compile
+     */
+    public ShaderPrecompiler(ShaderManifest manifest) {
+        this.manifest = manifest;
+    }
+
+    /**
+     * Sets how much time {@link #update(Renderer)} may spend compiling per
+     * call. At least one shader is compiled per call regardless.
+     *
+     * @param nanos the budget in nanoseconds (default: 2 ms)
+     */
+    public void setTimeBudget(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("The time budget cannot be negative");
+        }
+        timeBudget = nanos;
+    }
+
+    /**
+     * @return the budget in nanoseconds
+     */
+    public long getTimeBudget() {
+        return timeBudget;
+    }
+
+    /**
+     * Starts generating the shader sources of every permutation.
+     *
+     * @param assetManager the asset manager to load definitions and sources with
+     * @param rendererCaps the capabilities of the renderer that will compile
+     * @param executor the executor running the generation
+     */
+    public void start(final AssetManager assetManager, EnumSet<Caps> rendererCaps, Executor executor) {
+        if (caps != null) {
+            throw new IllegalStateException("The precompiler was already started");
+        }
+        caps = EnumSet.copyOf(rendererCaps);
+        // the asset manager's generator is used by the render thread
+        generators = new ThreadLocal<ShaderGenerator>() {
+            @Override
+            protected ShaderGenerator initialValue() {
+                return createShaderGenerator(assetManager, caps);
+            }
+        };
+        // each definition is loaded by a single task, concurrent loads of
+        // the same asset could end up with different instances
+        Map<String, List<ShaderManifest.Entry>> byMaterialDef = new LinkedHashMap<>();
+        for (ShaderManifest.Entry entry : manifest.getEntries()) {
+            List<ShaderManifest.Entry> entries = byMaterialDef.get(entry.getMaterialDefName());
+            if (entries == null) {
+                entries = new ArrayList<>();
+                byMaterialDef.put(entry.getMaterialDefName(), entries);
+            }
+            entries.add(entry);
+            pending.incrementAndGet();
+        }
+        for (final List<ShaderManifest.Entry> entries : byMaterialDef.values()) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    loadMaterialDef(assetManager, entries, executor);
+                }
+            });
+        }
+    }
+
+    private void loadMaterialDef(final AssetManager assetManager, List<ShaderManifest.Entry> entries,
+            Executor executor) {
+        final MaterialDef materialDef;
+        try {
+            materialDef = assetManager.loadAsset(new AssetKey<MaterialDef>(entries.get(0).getMaterialDefName()));
+        } catch (RuntimeException ex) {
+            logger.log(Level.WARNING, "Cannot load material definition " + entries.get(0).getMaterialDefName(), ex);
+            skipped.addAndGet(entries.size());
+            pending.addAndGet(-entries.size());
+            return;
+        }
+        for (final ShaderManifest.Entry entry : entries) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        generate(assetManager, materialDef, entry);
+                    } catch (RuntimeException ex) {
+                        logger.log(Level.WARNING, "Cannot generate shader " + entry, ex);
+                        skipped.incrementAndGet();
+                    } finally {
+                        pending.decrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    private void generate(AssetManager assetManager, MaterialDef materialDef, ShaderManifest.Entry entry) {
+        TechniqueDef techniqueDef = entry.findTechniqueDef(materialDef);
+        DefineList defines = techniqueDef == null ? null : entry.createDefineList(techniqueDef);
+        if (defines == null || !caps.containsAll(techniqueDef.getRequiredCaps())) {
+            logger.log(Level.FINE, "Skipping stale shader permutation {0}", entry);
+            skipped.incrementAndGet();
+            return;
+        }
+        ShaderGenerator generator = techniqueDef.isUsingShaderNodes() ? generators.get() : null;
+        Shader shader = techniqueDef.createShader(assetManager, generator, defines);
+        generated.add(new Generated(techniqueDef, defines, shader));
+    }
+
+    private static ShaderGenerator createShaderGenerator(AssetManager assetManager, EnumSet<Caps> caps) {
+        // same choice as DesktopAssetManager.getShaderGenerator
+        if (caps.contains(Caps.OpenGLES30) && caps.contains(Caps.GLSL300)) {
+            return new Glsl300ShaderGenerator(assetManager);
+        } else if (caps.contains(Caps.GLSL150)) {
+            return new Glsl150ShaderGenerator(assetManager);
+        } else {
+            return new Glsl100ShaderGenerator(assetManager);
+        }
+    }
+
+    /**
+     * Compiles generated shaders until the time budget is spent. Must be
+     * called on the render thread.
+     *
+     * @param renderer the renderer to compile with
+     */
+    public void update(Renderer renderer) {
+        long end = System.nanoTime() + timeBudget;
+        Generated next;
+        do {
+            next = generated.poll();
+            if (next == null) {
+                return;
+            }
+            if (next.techniqueDef.getCachedShader(next.defines) != null) {
+                // a material needed it first
+                skipped.incrementAndGet();
+                continue;
+            }
+            try {
+                renderer.setShader(next.shader);
+                next.techniqueDef.cacheShader(next.defines, next.shader);
+                compiled++;
+            } catch (RendererException ex) {
+                // leave it to the material, which reports the error when it uses the shader
+                logger.log(Level.WARNING, "Cannot precompile shader", ex);
+                skipped.incrementAndGet();
+            }
+        } while (System.nanoTime() < end);
+    }
+
+    /**
+     * @return true once every permutation was compiled or skipped
+     */
+    public boolean isDone() {
+        return caps != null && pending.get() == 0 && generated.isEmpty();
+    }
+
+    /**
+     * @return the number of permutations compiled so far
+     */
+    public int getCompiledCount() {
+        return compiled;
+    }
+
+    /**
+     * @return the number of permutations that were stale, failed or were
+     * already loaded by a material
+     */
+    public int getSkippedCount() {
+        return skipped.get();
+    }
+}
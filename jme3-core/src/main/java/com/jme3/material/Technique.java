@@ -55,6 +55,8 @@ public final class Technique {
     private final Material owner;
     private final DefineList paramDefines;
     private final DefineList dynamicDefines;
+    private ShaderManifest recordedManifest;
+    private Shader recordedShader;
 
     /**
      * Creates a new technique instance that implements the given
@@ -150,7 +152,17 @@ public final class Technique {
             applyOverrides(dynamicDefines, forcedOverrides);
         }
 
-        return logic.makeCurrent(assetManager, renderManager, rendererCaps, lights, dynamicDefines);
+        Shader shader = logic.makeCurrent(assetManager, renderManager, rendererCaps, lights, dynamicDefines);
+
+        // only record when the selected shader changes, so that recording
+        // does not lock the manifest on every draw
+        ShaderManifest manifest = renderManager.getShaderManifest();
+        if (manifest != null && (shader != recordedShader || manifest != recordedManifest)) {
+            manifest.record(owner.getMaterialDef(), def, dynamicDefines, shader);
+            recordedManifest = manifest;
+            recordedShader = shader;
+        }
+        return shader;
     }
     
     /**
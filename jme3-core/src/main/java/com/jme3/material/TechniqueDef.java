@@ -37,6 +37,7 @@ import com.jme3.material.logic.TechniqueDefLogic;
 import com.jme3.renderer.Caps;
 import com.jme3.shader.*;
 import com.jme3.shader.Shader.ShaderType;
+import com.jme3.util.ObjectIntMap;
 
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
@@ -115,7 +116,21 @@ public class TechniqueDef implements Savable, Cloneable {
          * shaders used balloons because of the variations in the number of
          * lights used by objects.
          */
-        StaticPass
+        StaticPass,
+
+        /**
+         * Enable clustered forward lighting.
+         * <p>
+         * The point and spot lights of the viewport's scene roots are assigned
+         * once per viewport to a view-space grid of clusters, which is passed
+         * to the shader in storage buffers. Each fragment only evaluates the
+         * lights of its cluster. Other lights are passed per geometry as with
+         * {@link #SinglePass}, which is also the fallback when storage
+         * buffers are not supported.
+         *
+         * @see com.jme3.light.LightClusterGrid
+         */
+        Clustered
     }
 
     public enum ShadowMode {
@@ -143,7 +158,7 @@ public class TechniqueDef implements Savable, Cloneable {
     private String shaderPrologue;
     private ArrayList<String> defineNames;
     private ArrayList<VarType> defineTypes;
-    private HashMap<String, Integer> paramToDefineId;
+    private ObjectIntMap<String> paramToDefineId;
     private final HashMap<DefineList, Shader> definesToShaderMap;
 
     private boolean usesNodes = false;
@@ -187,7 +202,7 @@ public class TechniqueDef implements Savable, Cloneable {
         shaderNames = new EnumMap<Shader.ShaderType, String>(Shader.ShaderType.class);
         defineNames = new ArrayList<String>();
         defineTypes = new ArrayList<VarType>();
-        paramToDefineId = new HashMap<String, Integer>();
+        paramToDefineId = new ObjectIntMap<>();
         definesToShaderMap = new HashMap<DefineList, Shader>();
         worldBinds = new ArrayList<>();
     }
@@ -378,8 +393,8 @@ public class TechniqueDef implements Savable, Cloneable {
      * @see #addShaderParamDefine(java.lang.String, com.jme3.shader.VarType, java.lang.String)
      */
     public String getShaderParamDefine(String paramName) {
-        Integer defineId = paramToDefineId.get(paramName);
-        if (defineId != null) {
+        int defineId = paramToDefineId.get(paramName, -1);
+        if (defineId >= 0) {
             return defineNames.get(defineId);
         } else {
             return null;
@@ -393,7 +408,8 @@ public class TechniqueDef implements Savable, Cloneable {
      * @return The define ID, or null if not found.
      */
     public Integer getShaderParamDefineId(String paramName) {
-        return paramToDefineId.get(paramName);
+        int defineId = paramToDefineId.get(paramName, -1);
+        return defineId >= 0 ? defineId : null;
     }
 
     /**
@@ -479,6 +495,31 @@ public class TechniqueDef implements Savable, Cloneable {
     }
 
     private Shader loadShader(AssetManager assetManager, EnumSet<Caps> rendererCaps, DefineList defines) {
+        ShaderGenerator shaderGenerator = null;
+        if (isUsingShaderNodes()) {
+            shaderGenerator = assetManager.getShaderGenerator(rendererCaps);
+            if (shaderGenerator == null) {
+                throw new UnsupportedOperationException("ShaderGenerator was not initialized, "
+                        + "make sure assetManager.getGenerator(caps) has been called");
+            }
+        }
+        return createShader(assetManager, shaderGenerator, defines);
+    }
+
+    /**
+     * Generates the shader for the given defines without caching it.
+     * <p>
+     * Unlike {@link #getShader(AssetManager, EnumSet, DefineList)} this may be
+     * called from any thread, provided techniques using shader nodes are given
+     * a generator that is not used concurrently.
+     *
+     * @param assetManager the asset manager to load the shader sources with
+     * @param shaderGenerator the generator for shader node techniques, may be
+     * null otherwise
+     * @param defines the defines of the permutation
+     * @return a new shader that has not been uploaded yet
+     */
+    public Shader createShader(AssetManager assetManager, ShaderGenerator shaderGenerator, DefineList defines) {
         StringBuilder sb = new StringBuilder();
         sb.append(shaderPrologue);
         defines.generateSource(sb, defineNames, defineTypes);
@@ -486,10 +527,8 @@ public class TechniqueDef implements Savable, Cloneable {
 
         Shader shader;
         if (isUsingShaderNodes()) {
-            ShaderGenerator shaderGenerator = assetManager.getShaderGenerator(rendererCaps);
             if (shaderGenerator == null) {
-                throw new UnsupportedOperationException("ShaderGenerator was not initialized, "
-                        + "make sure assetManager.getGenerator(caps) has been called");
+                throw new IllegalArgumentException("Technique " + name + " uses shader nodes and needs a ShaderGenerator");
             }
             shaderGenerator.initialize(this);
             shader = shaderGenerator.generateShader(definesSourceCode);
@@ -522,6 +561,28 @@ public class TechniqueDef implements Savable, Cloneable {
           return shader;
      }
 
+    /**
+     * Returns the shader cached for the given defines.
+     *
+     * @param defines the defines of the permutation
+     * @return the shader, or null if none was loaded for the defines yet
+     */
+    public Shader getCachedShader(DefineList defines) {
+        return definesToShaderMap.get(defines);
+    }
+
+    /**
+     * Caches a shader created with
+     * {@link #createShader(AssetManager, ShaderGenerator, DefineList)}, so that
+     * materials using the defines pick it up instead of loading their own.
+     *
+     * @param defines the defines of the permutation (not copied)
+     * @param shader the shader
+     */
+    public void cacheShader(DefineList defines, Shader shader) {
+        definesToShaderMap.put(defines, shader);
+    }
+
     /**
      * Sets the shaders that this technique definition will use.
      *
@@ -794,8 +855,7 @@ public class TechniqueDef implements Savable, Cloneable {
         clone.defineTypes = new ArrayList<>(defineTypes.size());
         clone.defineTypes.addAll(defineTypes);
 
-        clone.paramToDefineId = new HashMap<>(paramToDefineId.size());
-        clone.paramToDefineId.putAll(paramToDefineId);
+        clone.paramToDefineId = paramToDefineId.clone();
 
         if (shaderNodes != null) {
             clone.shaderNodes = new ArrayList<>();
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material.logic;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.light.Light;
+import com.jme3.light.LightClusterGrid;
+import com.jme3.light.LightList;
+import com.jme3.material.Material.BindUnits;
+import com.jme3.material.TechniqueDef;
+import com.jme3.math.Vector4f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Renderer;
+import com.jme3.scene.Geometry;
+import com.jme3.shader.DefineList;
+import com.jme3.shader.Shader;
+import com.jme3.shader.ShaderBufferBlock;
+import com.jme3.shader.VarType;
+import com.jme3.shader.bufferobject.BufferObject;
+import java.util.EnumSet;
+
+/**
+ * Single pass lighting where the point and spot lights of the scene are read
+ * from a {@link LightClusterGrid} instead of being uploaded per geometry.
+ * <p>
+ * The lights the grid handles are removed from the geometry's light list,
+ * the remaining ones (directional lights, lights added below the root of the
+ * scene) are rendered in batches exactly like {@link SinglePassLightingLogic}.
+ * When the renderer supports no shader storage buffers the technique falls
+ * back to plain single pass lighting.
+ */
+public final class ClusteredLightingLogic extends DefaultTechniqueDefLogic {
+
+    private static final String DEFINE_CLUSTERED_LIGHTING = "CLUSTERED_LIGHTING";
+
+    private final SinglePassLightingLogic singlePass;
+    private final int clusteredLightingDefineId;
+    private final LightList localLights = new LightList(null);
+    private final Vector4f clusterGrid = new Vector4f();
+    private final Vector4f clusterDepth = new Vector4f();
+    private final Vector4f clusterViewport = new Vector4f();
+
+    public ClusteredLightingLogic(TechniqueDef techniqueDef) {
+        super(techniqueDef);
+        singlePass = new SinglePassLightingLogic(techniqueDef);
+        clusteredLightingDefineId = techniqueDef.addShaderUnmappedDefine(DEFINE_CLUSTERED_LIGHTING, VarType.Boolean);
+    }
+
+    private static boolean isSupported(EnumSet<Caps> caps) {
+        return caps.contains(Caps.ShaderStorageBufferObject) && caps.contains(Caps.GLSL430);
+    }
+
+    @Override
+    public Shader makeCurrent(AssetManager assetManager, RenderManager renderManager,
+            EnumSet<Caps> rendererCaps, LightList lights, DefineList defines) {
+        defines.set(clusteredLightingDefineId,
+                isSupported(rendererCaps) && renderManager.getLightClusters() != null);
+        return singlePass.makeCurrent(assetManager, renderManager, rendererCaps, lights, defines);
+    }
+
+    @Override
+    public void render(RenderManager renderManager, Shader shader, Geometry geometry, LightList lights, BindUnits lastBindUnits) {
+        Renderer renderer = renderManager.getRenderer();
+        LightClusterGrid grid = isSupported(renderer.getCaps()) ? renderManager.getLightClusters() : null;
+        LightList passLights = lights;
+        if (grid != null) {
+            localLights.clear();
+            for (int i = 0; i < lights.size(); i++) {
+                Light light = lights.get(i);
+                if (!grid.contains(light)) {
+                    localLights.add(light);
+                }
+            }
+            passLights = localLights;
+            int unit = lastBindUnits != null ? lastBindUnits.bufferUnit : 0;
+            bindStorageBuffer(renderer, shader, "m_ClusterLightData", grid.getLightBuffer(), unit);
+            bindStorageBuffer(renderer, shader, "m_ClusterIndexData", grid.getIndexBuffer(), unit + 1);
+            setClusterUniforms(shader, grid, renderManager.getCurrentCamera());
+        }
+
+        int batchSize = renderManager.getSinglePassLightBatchSize();
+        int nbRenderedLights = 0;
+        boolean firstPass = true;
+        do {
+            if (grid != null && !firstPass) {
+                // the clustered lights are only added by the first pass
+                clusterGrid.w = 0f;
+                shader.getUniform("g_ClusterGrid").setValue(VarType.Vector4, clusterGrid);
+            }
+            nbRenderedLights = singlePass.updateLightListUniforms(shader, geometry, passLights,
+                    batchSize, renderManager, nbRenderedLights);
+            renderer.setShader(shader);
+            renderMeshFromGeometry(renderer, geometry);
+            firstPass = false;
+        } while (nbRenderedLights < passLights.size());
+        localLights.clear();
+    }
+
+    private static void bindStorageBuffer(Renderer renderer, Shader shader, String name,
+            BufferObject bufferObject, int unit) {
+        ShaderBufferBlock bufferBlock = shader.getBufferBlock(name);
+        bufferBlock.setBufferObject(ShaderBufferBlock.BufferType.ShaderStorageBufferObject, bufferObject);
+        renderer.setShaderStorageBufferObject(unit, bufferObject);
+    }
+
+    private void setClusterUniforms(Shader shader, LightClusterGrid grid, Camera cam) {
+        clusterGrid.set(grid.getTilesX(), grid.getTilesY(), grid.getSlices(), 1f);
+        clusterDepth.set(grid.getSliceScale(), grid.getSliceBias(),
+                grid.isParallelProjection() ? 0f : 1f, 0f);
+        float x = cam.getViewPortLeft() * cam.getWidth();
+        float y = cam.getViewPortBottom() * cam.getHeight();
+        float w = (cam.getViewPortRight() - cam.getViewPortLeft()) * cam.getWidth();
+        float h = (cam.getViewPortTop() - cam.getViewPortBottom()) * cam.getHeight();
+        clusterViewport.set(x, y, grid.getTilesX() / w, grid.getTilesY() / h);
+        shader.getUniform("g_ClusterGrid").setValue(VarType.Vector4, clusterGrid);
+        shader.getUniform("g_ClusterDepth").setValue(VarType.Vector4, clusterDepth);
+        shader.getUniform("g_ClusterViewport").setValue(VarType.Vector4, clusterViewport);
+    }
+}
@@ -42,6 +42,7 @@ import com.jme3.renderer.Renderer;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
 import com.jme3.scene.instancing.InstancedGeometry;
+import com.jme3.scene.instancing.MultiDrawGeometry;
 import com.jme3.shader.DefineList;
 import com.jme3.shader.Shader;
 import java.util.EnumSet;
@@ -69,6 +70,10 @@ public class DefaultTechniqueDefLogic implements TechniqueDefLogic {
             if (numVisibleInstances > 0) {
                 renderer.renderMesh(mesh, lodLevel, numVisibleInstances, instGeom.getAllInstanceData());
             }
+        } else if (geom instanceof MultiDrawGeometry) {
+            MultiDrawGeometry mdGeom = (MultiDrawGeometry) geom;
+            renderer.renderMultiDrawIndirect(mesh, mdGeom.getAllInstanceData(),
+                    mdGeom.getCommandBuffer(), mdGeom.getDrawCount());
         } else {
             renderer.renderMesh(mesh, lodLevel, 1, null);
         }
@@ -59,7 +59,20 @@ public interface AppProfiler {
      * @param additionalInfo information about the substep
      */
     public void appSubStep(String... additionalInfo);
-    
+
+    /**
+     * Called with the measured duration of a substep of the current AppStep
+     * that ran on another thread, concurrently with the other substeps,
+     * e.g. the update of an app state with a concurrency group. It is
+     * reported on the application thread once the substep is done and does
+     * not end the current substep. The default implementation ignores it.
+     *
+     * @param nanos the duration of the substep (in nanoseconds)
+     * @param additionalInfo information about the substep
+     */
+    public default void appSubStepTime(long nanos, String... additionalInfo) {
+    }
+
     /**
      *  Called at the beginning of the specified VpStep during
      *  the rendering of the specified ViewPort.  For bucket-specific
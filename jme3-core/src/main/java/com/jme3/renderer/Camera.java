@@ -128,6 +128,13 @@ public class Camera implements Savable, Cloneable {
      * MAX_WORLD_PLANES holds the maximum planes allowed by the system.
      */
     private static final int MAX_WORLD_PLANES = 6;
+    /**
+     * ALL_PLANES is the plane state of a bound that lies inside every
+     * plane of the camera frustum.
+     *
+     * @see #intersectPlanes(com.jme3.bounding.BoundingVolume, int)
+     */
+    public static final int ALL_PLANES = (1 << FRUSTUM_PLANES) - 1;
     /**
      * Camera's location.
      */
@@ -1162,6 +1169,40 @@ public class Camera implements Savable, Cloneable {
         return rVal;
     }
 
+    /**
+     * Tests a bounding volume against the planes of the camera's frustum,
+     * like {@link #contains(com.jme3.bounding.BoundingVolume)}, but
+     * without reading or writing the camera's plane state or the bound's
+     * check plane. The plane state is passed in and returned instead, so
+     * that several threads may cull against the same camera at once.
+     *
+     * @param bound the bound to check for culling
+     * @param planeState the planes already known to contain the bound's
+     *     parent (0 for none)
+     * @return the updated plane state, {@link #ALL_PLANES} if the bound is
+     *     fully inside the frustum, or -1 if it is outside
+     */
+    public int intersectPlanes(BoundingVolume bound, int planeState) {
+        if (bound == null) {
+            return ALL_PLANES;
+        }
+
+        for (int planeId = 0; planeId < FRUSTUM_PLANES; planeId++) {
+            int mask = 1 << planeId;
+            if ((planeState & mask) == 0) {
+                Plane.Side side = bound.whichSide(worldPlane[planeId]);
+
+                if (side == Plane.Side.Negative) {
+                    return -1;
+                } else if (side == Plane.Side.Positive) {
+                    planeState |= mask;
+                }
+            }
+        }
+
+        return planeState;
+    }
+
     /**
      * Provides access to one of the planes used for culling.
      *
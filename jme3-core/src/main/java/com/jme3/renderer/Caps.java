@@ -459,7 +459,20 @@ public enum Caps {
     /**
      * Supports debugging capabilities
      */
-    GLDebug
+    GLDebug,
+
+    /**
+     * Supports drawing many indexed meshes with a single
+     * glMultiDrawElementsIndirect call, with a per-command base instance
+     * (GL_ARB_multi_draw_indirect and GL_ARB_base_instance).
+     */
+    MultiDrawIndirect,
+
+    /**
+     * Supports retrieving linked shader programs as binaries and loading
+     * them again (GL_ARB_get_program_binary).
+     */
+    ProgramBinary
     ;
 
     /**
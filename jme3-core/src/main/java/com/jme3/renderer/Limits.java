@@ -116,6 +116,10 @@ public enum Limits {
      * Maximum block size of a UBO.
      */
     UniformBufferObjectMaxBlockSize,
+    /**
+     * Required alignment in bytes of the offset of a UBO range binding.
+     */
+    UniformBufferObjectOffsetAlignment,
 
     // SSBO
     /**
@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.instancing.InstancedGeometry;
+import com.jme3.util.SafeArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Flattens a scene graph into the render queues of one or more
+ * {@link ViewPort}s, splitting the frustum culling of wide nodes across
+ * a {@link ForkJoinPool}.
+ *
+ * <p>The scene is traversed once for all view ports: every spatial is
+ * tested against each camera that still sees its parent. Worker threads
+ * only read the scene graph and record their results; the render queues are
+ * filled afterwards on the calling thread, in the same order as the
+ * serial traversal of {@link RenderManager#renderScene(Spatial, ViewPort)},
+ * so the result does not depend on how the work was scheduled.
+ *
+ * <p>Differences from the serial traversal:
+ * <ul>
+ * <li>{@link com.jme3.scene.control.Control#render(RenderManager, ViewPort) Control.render()}
+ * is still called on the calling thread, in traversal order, but only after
+ * the whole scene has been culled. Controls that move their spatial while
+ * rendering take effect for culling on the next frame.</li>
+ * <li>{@link Spatial#getLastFrustumIntersection()} is only updated when a
+ * single view port is culled.</li>
+ * <li>{@link InstancedGeometry} is told about the camera that sees it on
+ * the calling thread, right before it is queued.</li>
+ * <li>{@link com.jme3.scene.SpatialIndex Child indices} are not used, all
+ * children of a node are tested.</li>
+ * </ul>
+ *
+ * <p>Enable it with {@link RenderManager#setParallelCuller(ParallelSceneCuller)}.
+ */
+public class ParallelSceneCuller {
+
+    /**
+     * The maximum number of view ports that can be culled in one pass.
+     */
+    public static final int MAX_VIEWPORTS = 32;
+
+    private static final byte KIND_CONTROLS = 1;
+    private static final byte KIND_GEOMETRY = 2;
+    private static final byte KIND_INSTANCED = 3;
+
+    private final ForkJoinPool pool;
+    private int splitThreshold = 64;
+
+    /**
+     * Creates a culler using the common fork-join pool.
+     */
+    public ParallelSceneCuller() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a culler using the given pool.
+     *
+     * @param pool the pool to run culling tasks on (not null)
+     */
+    public ParallelSceneCuller(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * @return the pool used for culling tasks
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the number of children a node must have before its children
+     * are culled in parallel.
+     *
+     * @return the threshold (&ge;2)
+     */
+    public int getSplitThreshold() {
+        return splitThreshold;
+    }
+
+    /**
+     * Sets the number of children a node must have before its children are
+     * culled in parallel. Ranges of children are split until they are
+     * smaller than this threshold. The default is 64.
+     *
+     * @param splitThreshold the threshold (&ge;2)
+     */
+    public void setSplitThreshold(int splitThreshold) {
+        if (splitThreshold < 2) {
+            throw new IllegalArgumentException("splitThreshold must be at least 2");
+        }
+        this.splitThreshold = splitThreshold;
+    }
+
+    /**
+     * Culls the scene against the cameras of the given view ports and adds
+     * the visible geometries to their render queues.
+     *
+     * <p>The plane state of each camera is not used, the scene is always
+     * culled as if it was the root.
+     *
+     * @param scene the scene to flatten (not null)
+     * @param rm the render manager passed to the controls (not null)
+     * @param viewPorts the view ports to fill (at most {@link #MAX_VIEWPORTS})
+     */
+    public void cull(Spatial scene, RenderManager rm, ViewPort... viewPorts) {
+        int count = viewPorts.length;
+        if (count == 0) {
+            return;
+        }
+        if (count > MAX_VIEWPORTS) {
+            throw new IllegalArgumentException("Cannot cull more than " + MAX_VIEWPORTS + " view ports at once");
+        }
+
+        Camera[] cams = new Camera[count];
+        for (int i = 0; i < count; i++) {
+            cams[i] = viewPorts[i].getCamera();
+        }
+
+        // match Spatial.checkCulling(), which starts from the parent's
+        // last intersection
+        int[] planeStates = new int[count];
+        int activeMask = count == 32 ? -1 : (1 << count) - 1;
+        Node parent = scene.getParent();
+        if (parent != null && parent.getLastFrustumIntersection() == Camera.FrustumIntersect.Inside) {
+            for (int i = 0; i < count; i++) {
+                planeStates[i] = Camera.ALL_PLANES;
+            }
+        }
+
+        CullTask task = new CullTask(this, cams, new Spatial[]{scene}, 0, 1, activeMask, planeStates);
+        CullBatch batch = pool.invoke(task);
+        batch.flush(rm, viewPorts);
+    }
+
+    /**
+     * Culls one spatial and its subtree, appending the results to the batch.
+     *
+     * @param spatial the spatial to cull
+     * @param cams the cameras
+     * @param activeMask the cameras that see the parent
+     * @param parentStates the plane states of the parent, per camera
+     *     (not modified)
+     * @param batch the output
+     */
+    private void cullSpatial(Spatial spatial, Camera[] cams, int activeMask,
+            int[] parentStates, CullBatch batch) {
+        int count = cams.length;
+        boolean single = count == 1;
+        int[] states = null;
+        int visibleMask = 0;
+
+        spatial.checkUpdated();
+        Spatial.CullHint hint = spatial.getCullHint();
+        if (hint == Spatial.CullHint.Always
+                || spatial instanceof Geometry && ((Geometry) spatial).isGrouped()) {
+            if (single) {
+                spatial.setLastFrustumIntersection(Camera.FrustumIntersect.Outside);
+            }
+            return;
+        } else if (hint == Spatial.CullHint.Never) {
+            if (single) {
+                spatial.setLastFrustumIntersection(Camera.FrustumIntersect.Intersects);
+            }
+            visibleMask = activeMask;
+            states = parentStates;
+        } else {
+            boolean gui = spatial.getQueueBucket() == Bucket.Gui;
+            for (int i = 0; i < count; i++) {
+                int bit = 1 << i;
+                if ((activeMask & bit) == 0) {
+                    continue;
+                }
+                int state = parentStates[i];
+                if (state != Camera.ALL_PLANES) {
+                    if (gui) {
+                        if (!cams[i].containsGui(spatial.getWorldBound())) {
+                            continue;
+                        }
+                    } else {
+                        state = cams[i].intersectPlanes(spatial.getWorldBound(), state);
+                        if (state < 0) {
+                            if (single) {
+                                spatial.setLastFrustumIntersection(Camera.FrustumIntersect.Outside);
+                            }
+                            continue;
+                        }
+                    }
+                }
+                if (single && !gui) {
+                    spatial.setLastFrustumIntersection(state == Camera.ALL_PLANES
+                            ? Camera.FrustumIntersect.Inside : Camera.FrustumIntersect.Intersects);
+                }
+                if (states == null) {
+                    states = new int[count];
+                }
+                states[i] = state;
+                visibleMask |= bit;
+            }
+        }
+
+        if (visibleMask == 0) {
+            return;
+        }
+
+        if (spatial.getNumControls() > 0) {
+            batch.add(spatial, visibleMask, KIND_CONTROLS);
+        }
+
+        if (spatial instanceof Node) {
+            Spatial[] array = ((SafeArrayList<Spatial>) ((Node) spatial).getChildren()).getArray();
+            int size = array.length;
+            if (size == 0) {
+                return;
+            }
+            if (size >= splitThreshold) {
+                CullTask task = new CullTask(this, cams, array, 0, size, visibleMask, states);
+                batch.append(task.invoke());
+            } else {
+                for (int i = 0; i < size; i++) {
+                    cullSpatial(array[i], cams, visibleMask, states, batch);
+                }
+            }
+        } else if (spatial instanceof Geometry) {
+            batch.add(spatial, visibleMask,
+                    spatial instanceof InstancedGeometry ? KIND_INSTANCED : KIND_GEOMETRY);
+        }
+    }
+
+    /**
+     * Culls a range of sibling spatials, splitting the range in halves
+     * until it is below the threshold.
+     */
+    private static class CullTask extends RecursiveTask<CullBatch> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ParallelSceneCuller culler;
+        private final Camera[] cams;
+        private final Spatial[] spatials;
+        private final int from;
+        private final int to;
+        private final int activeMask;
+        private final int[] parentStates;
+
+        CullTask(ParallelSceneCuller culler, Camera[] cams, Spatial[] spatials,
+                int from, int to, int activeMask, int[] parentStates) {
+            this.culler = culler;
+            this.cams = cams;
+            this.spatials = spatials;
+            this.from = from;
+            this.to = to;
+            this.activeMask = activeMask;
+            this.parentStates = parentStates;
+        }
+
+        @Override
+        protected CullBatch compute() {
+            if (to - from > culler.splitThreshold) {
+                int mid = (from + to) >>> 1;
+                CullTask left = new CullTask(culler, cams, spatials, from, mid, activeMask, parentStates);
+                CullTask right = new CullTask(culler, cams, spatials, mid, to, activeMask, parentStates);
+                left.fork();
+                CullBatch rightBatch = right.compute();
+                CullBatch leftBatch = left.join();
+                leftBatch.append(rightBatch);
+                return leftBatch;
+            }
+
+            CullBatch batch = new CullBatch();
+            for (int i = from; i < to; i++) {
+                culler.cullSpatial(spatials[i], cams, activeMask, parentStates, batch);
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * The ordered output of a culling task: spatials with the mask of view
+     * ports that see them and what should be done with them.
+     */
+    private static class CullBatch {
+
+        private Spatial[] spatials = new Spatial[16];
+        private int[] masks = new int[16];
+        private byte[] kinds = new byte[16];
+        private int size;
+
+        void add(Spatial spatial, int mask, byte kind) {
+            ensureCapacity(size + 1);
+            spatials[size] = spatial;
+            masks[size] = mask;
+            kinds[size] = kind;
+            size++;
+        }
+
+        void append(CullBatch other) {
+            ensureCapacity(size + other.size);
+            System.arraycopy(other.spatials, 0, spatials, size, other.size);
+            System.arraycopy(other.masks, 0, masks, size, other.size);
+            System.arraycopy(other.kinds, 0, kinds, size, other.size);
+            size += other.size;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > spatials.length) {
+                int newLength = Math.max(capacity, spatials.length * 2);
+                Spatial[] newSpatials = new Spatial[newLength];
+                int[] newMasks = new int[newLength];
+                byte[] newKinds = new byte[newLength];
+                System.arraycopy(spatials, 0, newSpatials, 0, size);
+                System.arraycopy(masks, 0, newMasks, 0, size);
+                System.arraycopy(kinds, 0, newKinds, 0, size);
+                spatials = newSpatials;
+                masks = newMasks;
+                kinds = newKinds;
+            }
+        }
+
+        /**
+         * Runs the controls and fills the render queues, on the calling
+         * thread.
+         */
+        void flush(RenderManager rm, ViewPort[] viewPorts) {
+            for (int i = 0; i < size; i++) {
+                Spatial spatial = spatials[i];
+                int mask = masks[i];
+                byte kind = kinds[i];
+                for (int v = 0; v < viewPorts.length; v++) {
+                    if ((mask & (1 << v)) == 0) {
+                        continue;
+                    }
+                    ViewPort vp = viewPorts[v];
+                    if (kind == KIND_CONTROLS) {
+                        spatial.runControlRender(rm, vp);
+                    } else {
+                        if (kind == KIND_INSTANCED) {
+                            // lets the instanced geometry know which camera
+                            // to cull its instances against
+                            Camera cam = vp.getCamera();
+                            int planeState = cam.getPlaneState();
+                            cam.setPlaneState(0);
+                            spatial.checkCulling(cam);
+                            cam.setPlaneState(planeState);
+                        }
+                        enqueue((Geometry) spatial, vp);
+                    }
+                }
+            }
+        }
+
+        private static void enqueue(Geometry geom, ViewPort vp) {
+            if (geom.getMaterial() == null) {
+                throw new IllegalStateException("No material is set for Geometry: " + geom.getName());
+            }
+            vp.getQueue().addToQueue(geom, geom.getQueueBucket());
+        }
+    }
+}
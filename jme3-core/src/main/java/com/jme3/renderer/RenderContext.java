@@ -249,6 +249,13 @@ public class RenderContext {
      */
     public int boundPixelPackPBO;
 
+    /**
+     * Currently bound draw indirect buffer.
+     *
+     * @see Renderer#renderMultiDrawIndirect(com.jme3.scene.Mesh, com.jme3.scene.VertexBuffer[], com.jme3.shader.bufferobject.BufferObject, int)
+     */
+    public int boundDrawIndirectBuffer;
+
     /**
      * No longer used.
      */
@@ -271,6 +278,14 @@ public class RenderContext {
      */
     public final WeakReference<BufferObject>[] boundBO = new WeakReference[maxBufferObjectUnits];
 
+    /**
+     * Offset of the bound range for each buffer object unit, -1 when the
+     * whole buffer is bound.
+     *
+     * @see Renderer#setUniformBufferObjectRange(int, com.jme3.shader.bufferobject.BufferObject, int, int)
+     */
+    public final int[] boundBOOffset = new int[maxBufferObjectUnits];
+
     /**
      * IDList for texture units.
      *
@@ -362,6 +377,9 @@ public class RenderContext {
      */
     public RenderContext() {
         init();
+        for (int i = 0; i < boundBOOffset.length; i++) {
+            boundBOOffset[i] = -1;
+        }
     }
 
 
@@ -395,6 +413,7 @@ public class RenderContext {
         boundVertexArray = 0;
         boundArrayVBO = 0;
         boundPixelPackPBO = 0;
+        boundDrawIndirectBuffer = 0;
         numTexturesSet = 0;
         boundTextureUnit = 0;
         stencilTest = false;
@@ -432,5 +451,10 @@ public class RenderContext {
         }
 
         attribIndexList.reset();
+
+        for (int i = 0; i < boundBO.length; i++) {
+            boundBO[i] = null;
+            boundBOOffset[i] = -1;
+        }
     }
 }
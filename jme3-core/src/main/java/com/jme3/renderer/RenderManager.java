@@ -32,12 +32,15 @@
 package com.jme3.renderer;
 
 import com.jme3.light.DefaultLightFilter;
+import com.jme3.light.Light;
+import com.jme3.light.LightClusterGrid;
 import com.jme3.light.LightFilter;
 import com.jme3.light.LightList;
 import com.jme3.material.MatParamOverride;
 import com.jme3.material.Material;
 import com.jme3.material.MaterialDef;
 import com.jme3.material.RenderState;
+import com.jme3.material.ShaderManifest;
 import com.jme3.material.Technique;
 import com.jme3.material.TechniqueDef;
 import com.jme3.math.Matrix4f;
@@ -54,7 +57,9 @@ import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
+import com.jme3.scene.SpatialIndex;
 import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.instancing.AutoInstancedGeometry;
 import com.jme3.shader.Shader;
 import com.jme3.shader.UniformBinding;
 import com.jme3.shader.UniformBindingManager;
@@ -106,6 +111,17 @@ public class RenderManager {
     private int singlePassLightBatchSize = 1;
     private MatParamOverride boundDrawBufferId=new MatParamOverride(VarType.Int,"BoundDrawBuffer",0);
     private Predicate<Geometry> renderFilter;
+    private ParallelSceneCuller parallelCuller;
+    private boolean autoInstancing = false;
+    private AutoInstancedGeometry autoInstanced;
+    private final ArrayList<Geometry> instanceRun = new ArrayList<>();
+    private final MatParamOverride instancingOverride
+            = new MatParamOverride(VarType.Boolean, "UseInstancing", true);
+    private final LightList runLightList = new LightList(null);
+    private ShaderManifest shaderManifest;
+    private ViewPort currentViewPort;
+    private long viewPortRenderCount;
+    private final ArrayList<Light> clusterCandidates = new ArrayList<>();
 
 
     /**
@@ -629,6 +645,29 @@ public class RenderManager {
      */
     public void renderGeometry(Geometry geom) {
         if (renderFilter != null && !renderFilter.test(geom)) return;
+        renderGeometry(geom, filterLights(geom, filteredLightList));
+    }
+
+    /**
+     * Returns the lights that affect the given geometry, after the
+     * {@link #setLightFilter(com.jme3.light.LightFilter) light filter}
+     * has been applied.
+     *
+     * @param geom the geometry to be rendered
+     * @param store storage for the filtered lights
+     * @return either <code>store</code> or the geometry's world light list
+     */
+    private LightList filterLights(Geometry geom, LightList store) {
+        LightList lightList = geom.getWorldLightList();
+        if (lightFilter != null) {
+            store.clear();
+            lightFilter.filterLights(geom, store);
+            lightList = store;
+        }
+        return lightList;
+    }
+
+    private void renderGeometry(Geometry geom, LightList lightList) {
         this.renderer.pushDebugGroup(geom.getName());
         if (geom.isIgnoreTransform()) {
             setWorldMatrix(Matrix4f.IDENTITY);
@@ -642,15 +681,6 @@ public class RenderManager {
             this.boundDrawBufferId.setValue(currentFb.getTargetIndex());
         }
 
-        // Perform light filtering if we have a light filter.
-        LightList lightList = geom.getWorldLightList();
-
-        if (lightFilter != null) {
-            filteredLightList.clear();
-            lightFilter.filterLights(geom, filteredLightList);
-            lightList = filteredLightList;
-        }
-
         Material material = geom.getMaterial();
         
         // If forcedTechnique exists, we try to force it for the render.
@@ -702,6 +732,9 @@ public class RenderManager {
      *
      * <p>For every geometry in the list, the
      * {@link #renderGeometry(com.jme3.scene.Geometry) } method is called.
+     * If {@link #setAutoInstancing(boolean) auto instancing} is enabled,
+     * consecutive geometries that can share one instanced draw are
+     * submitted together instead.
      *
      * @param gl The geometry list to render.
      *
@@ -709,11 +742,127 @@ public class RenderManager {
      * @see #renderGeometry(com.jme3.scene.Geometry)
      */
     public void renderGeometryList(GeometryList gl) {
+        if (autoInstancing && forcedMaterial == null
+                && renderer.getCaps().contains(Caps.MeshInstancing)) {
+            renderGeometryListInstanced(gl);
+            return;
+        }
         for (int i = 0; i < gl.size(); i++) {
             renderGeometry(gl.get(i));
         }
     }
 
+    private void renderGeometryListInstanced(GeometryList gl) {
+        int size = gl.size();
+        int i = 0;
+        while (i < size) {
+            Geometry first = gl.get(i++);
+            if (renderFilter != null && !renderFilter.test(first)) {
+                continue;
+            }
+            if (!canAutoInstance(first) || hasInstanceData(first.getMesh())
+                    || !supportsInstancing(first.getMaterial())) {
+                renderGeometry(first, filterLights(first, filteredLightList));
+                continue;
+            }
+
+            LightList lights = filterLights(first, runLightList);
+            instanceRun.add(first);
+            while (i < size) {
+                Geometry next = gl.get(i);
+                if (next.getMesh() != first.getMesh()
+                        || next.getMaterial() != first.getMaterial()
+                        || next.getLodLevel() != first.getLodLevel()
+                        || !canAutoInstance(next)
+                        || !sameLights(lights, filterLights(next, filteredLightList))) {
+                    break;
+                }
+                i++;
+                if (renderFilter == null || renderFilter.test(next)) {
+                    instanceRun.add(next);
+                }
+            }
+
+            if (instanceRun.size() == 1) {
+                renderGeometry(first, lights);
+            } else {
+                renderInstanceRun(lights);
+            }
+            instanceRun.clear();
+        }
+    }
+
+    private static boolean canAutoInstance(Geometry geom) {
+        Mesh mesh = geom.getMesh();
+        return !geom.isIgnoreTransform()
+                && geom.getWorldMatParamOverrides().isEmpty()
+                && mesh.getInstanceCount() <= 1
+                && !mesh.isAnimated()
+                && !mesh.hasMorphTargets();
+    }
+
+    private static boolean hasInstanceData(Mesh mesh) {
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            if (vb.isInstanced()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean supportsInstancing(Material material) {
+        MaterialDef matDef = material.getMaterialDef();
+        if (matDef.getMaterialParam("UseInstancing") == null) {
+            return false;
+        }
+        String techniqueName = forcedTechnique;
+        if (techniqueName == null) {
+            Technique active = material.getActiveTechnique();
+            techniqueName = active != null
+                    ? active.getDef().getName()
+                    : TechniqueDef.DEFAULT_TECHNIQUE_NAME;
+        }
+        List<TechniqueDef> techniqueDefs = matDef.getTechniqueDefs(techniqueName);
+        if (techniqueDefs == null) {
+            return false;
+        }
+        for (TechniqueDef techniqueDef : techniqueDefs) {
+            if (techniqueDef.getShaderParamDefine("UseInstancing") == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameLights(LightList a, LightList b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void renderInstanceRun(LightList lights) {
+        if (autoInstanced == null) {
+            autoInstanced = new AutoInstancedGeometry();
+        }
+
+        // the material may not have opted in, so force the define for
+        // this draw without touching the material itself
+        forcedOverrides.add(instancingOverride);
+        autoInstanced.setInstances(instanceRun);
+        try {
+            renderGeometry(autoInstanced, lights);
+        } finally {
+            autoInstanced.clearInstances();
+            forcedOverrides.remove(instancingOverride);
+        }
+    }
+
     /**
      * Preloads a scene for rendering.
      *
@@ -780,12 +929,19 @@ public class RenderManager {
      * {@link ShadowMode#Cast shadow casters}, as they don't have to be
      * in the eye camera frustum to cast shadows on objects that are inside it.
      *
+     * <p>If a {@link #setParallelCuller(com.jme3.renderer.ParallelSceneCuller)
+     * parallel culler} is set, the scene is culled with it instead.
+     *
      * @param scene The scene to flatten into the queue
      * @param vp The ViewPort provides the {@link ViewPort#getCamera() camera}
      *     used for culling and the {@link ViewPort#getQueue() queue} used to
      *     contain the flattened scene graph.
      */
     public void renderScene(Spatial scene, ViewPort vp) {
+        if (parallelCuller != null) {
+            parallelCuller.cull(scene, this, vp);
+            return;
+        }
         //reset of the camera plane state for proper culling
         //(must be 0 for the first note of the scene to be rendered)
         vp.getCamera().setPlaneState(0);
@@ -793,6 +949,30 @@ public class RenderManager {
         renderSubScene(scene, vp);
     }
 
+    /**
+     * Flattens the given scene graph into the render queues of several
+     * ViewPorts, for example a main view and its reflection views.
+     *
+     * <p>With a {@link #setParallelCuller(com.jme3.renderer.ParallelSceneCuller)
+     * parallel culler} the scene is traversed only once for all the
+     * ViewPorts. Otherwise, this is the same as calling
+     * {@link #renderScene(com.jme3.scene.Spatial, com.jme3.renderer.ViewPort) }
+     * for each of them.
+     *
+     * @param scene The scene to flatten into the queues
+     * @param viewPorts The ViewPorts providing the cameras and queues
+     */
+    public void renderScene(Spatial scene, ViewPort... viewPorts) {
+        if (parallelCuller != null && viewPorts.length <= ParallelSceneCuller.MAX_VIEWPORTS) {
+            parallelCuller.cull(scene, this, viewPorts);
+            return;
+        }
+        for (ViewPort vp : viewPorts) {
+            vp.getCamera().setPlaneState(0);
+            renderSubScene(scene, vp);
+        }
+    }
+
     /**
      * Recursively renders the scene.
      *
@@ -810,9 +990,21 @@ public class RenderManager {
         if (scene instanceof Node) {
             // Recurse for all children
             Node n = (Node) scene;
-            List<Spatial> children = n.getChildren();
             // Saving cam state for culling
             int camState = vp.getCamera().getPlaneState();
+            SpatialIndex index = n.getSpatialIndex();
+            if (index != null && n.getCullHint() != Spatial.CullHint.Never
+                    && n.getQueueBucket() != Bucket.Gui) {
+                // only visit the children the index finds near the frustum
+                int count = index.cull(vp.getCamera(), camState);
+                Spatial[] candidates = index.getCullResults();
+                for (int i = 0; i < count; i++) {
+                    vp.getCamera().setPlaneState(camState);
+                    renderSubScene(candidates[i], vp);
+                }
+                return;
+            }
+            List<Spatial> children = n.getChildren();
             for (int i = 0; i < children.size(); i++) {
                 // Restoring cam state before proceeding children recursively
                 vp.getCamera().setPlaneState(camState);
@@ -938,6 +1130,35 @@ public class RenderManager {
         this.singlePassLightBatchSize = singlePassLightBatchSize < 1 ? 1 : singlePassLightBatchSize;
     }
 
+    /**
+     * Returns the light cluster grid of the viewport being rendered by
+     * {@link #renderViewPort(com.jme3.renderer.ViewPort, float)}, building it
+     * on the first request of that render. The grid holds the lights attached
+     * to the viewport's scene roots.
+     *
+     * @return the grid, or null if no viewport is being rendered
+     * @see TechniqueDef.LightMode#Clustered
+     */
+    public LightClusterGrid getLightClusters() {
+        ViewPort vp = currentViewPort;
+        if (vp == null) {
+            return null;
+        }
+        LightClusterGrid grid = vp.getLightClusters();
+        if (grid.getStamp() != viewPortRenderCount) {
+            List<Spatial> scenes = vp.getScenes();
+            for (int i = 0; i < scenes.size(); i++) {
+                LightList lights = scenes.get(i).getWorldLightList();
+                for (int j = 0; j < lights.size(); j++) {
+                    clusterCandidates.add(lights.get(j));
+                }
+            }
+            grid.update(vp.getCamera(), clusterCandidates, viewPortRenderCount);
+            clusterCandidates.clear();
+        }
+        return grid;
+    }
+
 
     /**
      * Renders the given viewport queues.
@@ -1169,6 +1390,8 @@ public class RenderManager {
         if (prof != null) {
             prof.vpStep(VpStep.BeginRender, vp, null);
         }
+        currentViewPort = vp;
+        viewPortRenderCount++;
 
         SafeArrayList<SceneProcessor> processors = vp.getProcessors();
         if (processors.isEmpty()) {
@@ -1251,6 +1474,7 @@ public class RenderManager {
          * if renderer#copyFrameBuffer is used later
          */
         renderer.clearClipRect();
+        currentViewPort = null;
 
         if (prof != null) {
             prof.vpStep(VpStep.EndRender, vp, null);
@@ -1356,4 +1580,77 @@ public class RenderManager {
         return renderFilter;
     }
 
+    /**
+     * Sets the culler used to flatten scenes into the render queues on
+     * several threads. The default is null, which culls on the render thread.
+     *
+     * @param culler the parallel culler, or null to cull serially
+     * @see ParallelSceneCuller
+     */
+    public void setParallelCuller(ParallelSceneCuller culler) {
+        this.parallelCuller = culler;
+    }
+
+    /**
+     * Returns the culler used to flatten scenes into the render queues on
+     * several threads.
+     *
+     * @return the parallel culler, or null if culling is serial
+     */
+    public ParallelSceneCuller getParallelCuller() {
+        return parallelCuller;
+    }
+
+    /**
+     * Enables or disables automatic instancing. When enabled,
+     * {@link #renderGeometryList(com.jme3.renderer.queue.GeometryList) }
+     * draws consecutive queue entries that share the same mesh, material
+     * and lights as one instanced draw, without requiring an
+     * {@link com.jme3.scene.instancing.InstancedNode}.
+     *
+     * <p>Only materials whose techniques map the <code>UseInstancing</code>
+     * parameter to a define qualify; the parameter is enabled for the
+     * duration of the draw. Geometries with material parameter overrides,
+     * animated meshes and meshes that already use instancing are drawn
+     * individually. The default is false.
+     *
+     * @param autoInstancing true to enable automatic instancing
+     */
+    public void setAutoInstancing(boolean autoInstancing) {
+        this.autoInstancing = autoInstancing;
+    }
+
+    /**
+     * Returns whether automatic instancing is enabled.
+     *
+     * @return true if enabled, otherwise false
+     * @see #setAutoInstancing(boolean)
+     */
+    public boolean isAutoInstancing() {
+        return autoInstancing;
+    }
+
+    /**
+     * Sets a manifest that records every shader permutation materials select
+     * while rendering or preloading, so that it can be saved and precompiled
+     * in later runs.
+     *
+     * @param shaderManifest the manifest to record into, or null to stop
+     * recording (default)
+     * @see com.jme3.material.ShaderPrecompiler
+     */
+    public void setShaderManifest(ShaderManifest shaderManifest) {
+        this.shaderManifest = shaderManifest;
+    }
+
+    /**
+     * Returns the manifest recording shader permutations.
+     *
+     * @return the manifest, or null if not recording
+     * @see #setShaderManifest(com.jme3.material.ShaderManifest)
+     */
+    public ShaderManifest getShaderManifest() {
+        return shaderManifest;
+    }
+
 }
@@ -348,6 +348,22 @@ public interface Renderer {
      */
     public void renderMesh(Mesh mesh, int lod, int count, VertexBuffer[] instanceData);
 
+    /**
+     * Renders several sub-ranges of an indexed mesh with a single
+     * multi-draw indirect call.
+     * Each command in <code>commands</code> is five unsigned integers:
+     * index count, instance count, first index, base vertex and base instance.
+     * The base instance selects the element of <code>instanceData</code> used
+     * by that command, so shaders written for instancing can be reused as-is.
+     * Requires {@link Caps#MultiDrawIndirect}.
+     *
+     * @param mesh The indexed mesh holding the vertex and index data of all commands
+     * @param instanceData Per-instance attributes, or null
+     * @param commands The buffer holding the draw commands
+     * @param drawCount Number of commands to execute
+     */
+    public void renderMultiDrawIndirect(Mesh mesh, VertexBuffer[] instanceData, BufferObject commands, int drawCount);
+
     /**
      * Resets all previously used {@link NativeObject Native Objects} on this Renderer.
      * The state of the native objects is reset in such way, that using
@@ -542,5 +558,16 @@ public interface Renderer {
 
     public void setShaderStorageBufferObject(int bindingPoint, BufferObject bufferObject) ;
     public void setUniformBufferObject(int bindingPoint, BufferObject bufferObject) ;
+
+    /**
+     * Binds a byte range of a uniform buffer object to the given binding point.
+     * The offset must be a multiple of {@link Limits#UniformBufferObjectOffsetAlignment}.
+     *
+     * @param bindingPoint the binding point
+     * @param bufferObject the buffer object
+     * @param offset the start of the range in bytes
+     * @param length the length of the range in bytes
+     */
+    public void setUniformBufferObjectRange(int bindingPoint, BufferObject bufferObject, int offset, int length);
     
 }
@@ -32,7 +32,9 @@
 package com.jme3.renderer;
 
 import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
 import com.jme3.shader.Shader;
+import com.jme3.shader.bufferobject.BufferObject;
 import com.jme3.texture.FrameBuffer;
 import com.jme3.texture.Image;
 import com.jme3.util.IntMap;
@@ -79,6 +81,69 @@ public class Statistics {
      * Number of uniforms set during the current frame.
      */
     protected int numUniformsSet;
+    /**
+     * Number of shader binds skipped because the shader was already bound.
+     */
+    protected int numShaderSkips;
+    /**
+     * Number of texture binds skipped because the texture was already bound.
+     */
+    protected int numTextureSkips;
+    /**
+     * Number of FBO binds skipped because the FBO was already bound.
+     */
+    protected int numFboSkips;
+    /**
+     * Number of active texture unit switches during the current frame.
+     */
+    protected int numTextureUnitSwitches;
+    /**
+     * Number of active texture unit switches skipped because the unit was
+     * already active.
+     */
+    protected int numTextureUnitSkips;
+    /**
+     * Number of vertex array object binds during the current frame.
+     */
+    protected int numVertexArraySwitches;
+    /**
+     * Number of vertex array object binds skipped because the vertex array
+     * was already bound.
+     */
+    protected int numVertexArraySkips;
+    /**
+     * Number of vertex and index buffer binds during the current frame.
+     */
+    protected int numVertexBufferSwitches;
+    /**
+     * Number of vertex and index buffer binds skipped because the buffer was
+     * already bound.
+     */
+    protected int numVertexBufferSkips;
+    /**
+     * Number of uniform and shader storage buffer binds during the current
+     * frame.
+     */
+    protected int numBufferObjectSwitches;
+    /**
+     * Number of uniform and shader storage buffer binds skipped because the
+     * buffer was already bound to the binding point.
+     */
+    protected int numBufferObjectSkips;
+    /**
+     * Number of render states applied during the current frame.
+     */
+    protected int numRenderStateSwitches;
+    /**
+     * Number of render states skipped because they matched the state that
+     * was already applied.
+     */
+    protected int numRenderStateSkips;
+    /**
+     * Number of bytes allocated on the heap by the application thread during
+     * the last frame, as reported by an {@link com.jme3.app.AllocationProfiler}.
+     */
+    protected long numBytesAllocated;
 
     /**
      * Number of active shaders.
@@ -117,6 +182,7 @@ public class Statistics {
      * @return a list of labels corresponding to each statistic.
      *
      * @see #getData(int[])
+     * @see #getStateCacheLabels()
      */
     public String[] getLabels(){
         return new String[]{ "Vertices",
@@ -135,7 +201,9 @@ public class Statistics {
 
                              "FrameBuffers (S)",
                              "FrameBuffers (F)",
-                             "FrameBuffers (M)" };
+                             "FrameBuffers (M)",
+
+                             "Allocated Bytes" };
 
     }
 
@@ -163,6 +231,61 @@ public class Statistics {
         data[10] = numFboSwitches;
         data[11] = fbosUsed.size();
         data[12] = memoryFrameBuffers;
+
+        data[13] = (int) Math.min(numBytesAllocated, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the labels of the renderer state cache statistics. They are
+     * kept apart from {@link #getLabels()}, so the StatsView does not show
+     * them.
+     *
+     * <p>(S) counts state switches sent to the GPU during the frame and (R)
+     * counts redundant switches the renderer skipped.
+     *
+     * @return a list of labels corresponding to each state cache statistic
+     *
+     * @see #getStateCacheData(int[])
+     */
+    public String[] getStateCacheLabels() {
+        return new String[]{ "Shaders (R)",
+                             "Textures (R)",
+                             "FrameBuffers (R)",
+
+                             "Texture Units (S)",
+                             "Texture Units (R)",
+                             "Vertex Arrays (S)",
+                             "Vertex Arrays (R)",
+                             "Vertex Buffers (S)",
+                             "Vertex Buffers (R)",
+                             "Buffer Objects (S)",
+                             "Buffer Objects (R)",
+                             "Render States (S)",
+                             "Render States (R)" };
+    }
+
+    /**
+     * Retrieves the state cache statistics into the given array.
+     * The array should be as large as the array given in
+     * {@link #getStateCacheLabels()}.
+     *
+     * @param data The data array to write to
+     */
+    public void getStateCacheData(int[] data) {
+        data[0] = numShaderSkips;
+        data[1] = numTextureSkips;
+        data[2] = numFboSkips;
+
+        data[3] = numTextureUnitSwitches;
+        data[4] = numTextureUnitSkips;
+        data[5] = numVertexArraySwitches;
+        data[6] = numVertexArraySkips;
+        data[7] = numVertexBufferSwitches;
+        data[8] = numVertexBufferSkips;
+        data[9] = numBufferObjectSwitches;
+        data[10] = numBufferObjectSkips;
+        data[11] = numRenderStateSwitches;
+        data[12] = numRenderStateSkips;
     }
 
     /**
@@ -216,6 +339,8 @@ public class Statistics {
 
         if (wasSwitched) {
             numShaderSwitches++;
+        } else {
+            numShaderSkips++;
         }
     }
 
@@ -248,6 +373,8 @@ public class Statistics {
 
         if (wasSwitched) {
             numTextureBinds++;
+        } else {
+            numTextureSkips++;
         }
     }
 
@@ -272,9 +399,113 @@ public class Statistics {
 
         if (wasSwitched) {
             numFboSwitches++;
+        } else {
+            numFboSkips++;
+        }
+    }
+
+    /**
+     * Called by the Renderer when a texture unit has been made active.
+     *
+     * @param wasSwitched If true, the texture unit has required a state switch
+     */
+    public void onTextureUnitUse(boolean wasSwitched) {
+        if (!enabled) {
+            return;
+        }
+
+        if (wasSwitched) {
+            numTextureUnitSwitches++;
+        } else {
+            numTextureUnitSkips++;
         }
     }
 
+    /**
+     * Called by the Renderer when a vertex array object has been bound.
+     *
+     * @param wasSwitched If true, the vertex array has required a state switch
+     */
+    public void onVertexArrayUse(boolean wasSwitched) {
+        if (!enabled) {
+            return;
+        }
+
+        if (wasSwitched) {
+            numVertexArraySwitches++;
+        } else {
+            numVertexArraySkips++;
+        }
+    }
+
+    /**
+     * Called by the Renderer when a vertex or index buffer has been bound.
+     *
+     * @param vb The buffer that was bound
+     * @param wasSwitched If true, the buffer has required a state switch
+     */
+    public void onVertexBufferUse(VertexBuffer vb, boolean wasSwitched) {
+        if (!enabled) {
+            return;
+        }
+
+        if (wasSwitched) {
+            numVertexBufferSwitches++;
+        } else {
+            numVertexBufferSkips++;
+        }
+    }
+
+    /**
+     * Called by the Renderer when a uniform or shader storage buffer has been
+     * bound to a binding point.
+     *
+     * @param bo The buffer that was bound
+     * @param wasSwitched If true, the buffer has required a state switch
+     */
+    public void onBufferObjectUse(BufferObject bo, boolean wasSwitched) {
+        if (!enabled) {
+            return;
+        }
+
+        if (wasSwitched) {
+            numBufferObjectSwitches++;
+        } else {
+            numBufferObjectSkips++;
+        }
+    }
+
+    /**
+     * Called by the Renderer when a render state has been applied.
+     *
+     * @param wasSwitched If true, the render state differed from the one
+     *     already applied
+     */
+    public void onRenderStateUse(boolean wasSwitched) {
+        if (!enabled) {
+            return;
+        }
+
+        if (wasSwitched) {
+            numRenderStateSwitches++;
+        } else {
+            numRenderStateSkips++;
+        }
+    }
+
+    /**
+     * Called by an {@link com.jme3.app.AllocationProfiler} at the end of each
+     * frame.
+     *
+     * @param bytes the number of bytes allocated during the frame
+     */
+    public void onBytesAllocated(long bytes) {
+        if (!enabled) {
+            return;
+        }
+        numBytesAllocated += bytes;
+    }
+
     /**
      * Clears all frame-specific statistics such as objects used per frame.
      */
@@ -291,6 +522,21 @@ public class Statistics {
         numFboSwitches = 0;
         numUniformsSet = 0;
 
+        numShaderSkips = 0;
+        numTextureSkips = 0;
+        numFboSkips = 0;
+        numTextureUnitSwitches = 0;
+        numTextureUnitSkips = 0;
+        numVertexArraySwitches = 0;
+        numVertexArraySkips = 0;
+        numVertexBufferSwitches = 0;
+        numVertexBufferSkips = 0;
+        numBufferObjectSwitches = 0;
+        numBufferObjectSkips = 0;
+        numRenderStateSwitches = 0;
+        numRenderStateSkips = 0;
+        numBytesAllocated = 0;
+
         lastShader = -1;
     }
 
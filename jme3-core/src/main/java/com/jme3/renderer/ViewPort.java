@@ -31,6 +31,7 @@
  */
 package com.jme3.renderer;
 
+import com.jme3.light.LightClusterGrid;
 import com.jme3.math.ColorRGBA;
 import com.jme3.post.SceneProcessor;
 import com.jme3.renderer.queue.RenderQueue;
@@ -106,6 +107,7 @@ public class ViewPort {
      */
     protected boolean clearStencil = false;
     private boolean enabled = true;
+    private LightClusterGrid lightClusters;
 
     /**
      * Creates a new viewport. User code should generally use these methods instead:<br>
@@ -425,4 +427,31 @@ public class ViewPort {
         return enabled;
     }
 
+    /**
+     * Replaces the grid used by clustered lighting techniques for this
+     * viewport, for example to change its resolution.
+     *
+     * @param lightClusters the grid to use (not null)
+     */
+    public void setLightClusters(LightClusterGrid lightClusters) {
+        if (lightClusters == null) {
+            throw new IllegalArgumentException("lightClusters cannot be null");
+        }
+        this.lightClusters = lightClusters;
+    }
+
+    /**
+     * Returns the grid used by clustered lighting techniques for this
+     * viewport, creating a default one on first use.
+     *
+     * @return the grid (not null)
+     * @see RenderManager#getLightClusters()
+     */
+    public LightClusterGrid getLightClusters() {
+        if (lightClusters == null) {
+            lightClusters = new LightClusterGrid();
+        }
+        return lightClusters;
+    }
+
 }
@@ -31,6 +31,9 @@
  */
 package com.jme3.renderer.opengl;
 
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
 /**
  * GL functions only available on vanilla desktop OpenGL 4.0.
  * 
@@ -53,6 +56,26 @@ public interface GL4 extends GL3 {
     public static final int GL_SHADER_STORAGE_BUFFER = 0x90D2;
     public static final int GL_SHADER_STORAGE_BLOCK = 0x92E6;
 
+    /**
+     * Accepted by the {@code target} parameters of BindBuffer, BufferData, BufferSubData, MapBuffer, UnmapBuffer, GetBufferSubData, and GetBufferPointerv.
+     */
+    public static final int GL_DRAW_INDIRECT_BUFFER = 0x8F3F;
+
+    /**
+     * Accepted by the {@code pname} parameter of ProgramParameteri and GetProgramiv.
+     */
+    public static final int GL_PROGRAM_BINARY_RETRIEVABLE_HINT = 0x8257;
+
+    /**
+     * Accepted by the {@code pname} parameter of GetProgramiv.
+     */
+    public static final int GL_PROGRAM_BINARY_LENGTH = 0x8741;
+
+    /**
+     * Accepted by the {@code pname} parameter of GetIntegerv.
+     */
+    public static final int GL_NUM_PROGRAM_BINARY_FORMATS = 0x87FE;
+
     /**
      *  Accepted by the &lt;pname&gt; parameter of GetIntegerv, GetBooleanv,
      *  GetInteger64v, GetFloatv, and GetDoublev:
@@ -100,4 +123,53 @@ public interface GL4 extends GL3 {
      * @param storageBlockBinding The index storage block binding to associate with the specified storage block.
      */
     public void glShaderStorageBlockBinding(int program, int storageBlockIndex, int storageBlockBinding);
+
+    /**
+     * <p><a target="_blank" href="http://docs.gl/gl4/glMultiDrawElementsIndirect">Reference Page</a></p>
+     * <p>
+     * Renders multiple indexed primitive sets, taking the draw parameters from
+     * the buffer bound to {@link #GL_DRAW_INDIRECT_BUFFER}.
+     *
+     * @param mode      the kind of primitives to render.
+     * @param type      the type of the values in the element array buffer.
+     * @param indirect  the byte offset of the first command in the indirect buffer.
+     * @param drawCount the number of commands to execute.
+     * @param stride    the distance in bytes between commands, or 0 if tightly packed.
+     */
+    public void glMultiDrawElementsIndirect(int mode, int type, long indirect, int drawCount, int stride);
+
+    /**
+     * <p><a target="_blank" href="http://docs.gl/gl4/glGetProgramBinary">Reference Page</a></p>
+     * <p>
+     * Returns a binary representation of a linked program object.
+     *
+     * @param program      the name of a program object whose binary to retrieve.
+     * @param length       receives the number of bytes written into {@code binary}.
+     * @param binaryFormat receives the format of the binary.
+     * @param binary       the buffer that receives the binary, its remaining bytes are the buffer size.
+     */
+    public void glGetProgramBinary(int program, IntBuffer length, IntBuffer binaryFormat, ByteBuffer binary);
+
+    /**
+     * <p><a target="_blank" href="http://docs.gl/gl4/glProgramBinary">Reference Page</a></p>
+     * <p>
+     * Loads a program object with a binary returned by {@link #glGetProgramBinary}. The
+     * link status of the program reports whether the binary was accepted.
+     *
+     * @param program      the name of a program object into which to load the binary.
+     * @param binaryFormat the format of the binary.
+     * @param binary       the binary to load.
+     */
+    public void glProgramBinary(int program, int binaryFormat, ByteBuffer binary);
+
+    /**
+     * <p><a target="_blank" href="http://docs.gl/gl4/glProgramParameter">Reference Page</a></p>
+     * <p>
+     * Specifies a parameter of a program object.
+     *
+     * @param program the name of a program object.
+     * @param pname   the name of the parameter, e.g. {@link #GL_PROGRAM_BINARY_RETRIEVABLE_HINT}.
+     * @param value   the new value of the parameter.
+     */
+    public void glProgramParameteri(int program, int pname, int value);
 }
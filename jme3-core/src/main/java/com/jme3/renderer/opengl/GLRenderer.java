@@ -94,6 +94,12 @@ public final class GLRenderer implements Renderer {
     private final IntBuffer intBuf1 = BufferUtils.createIntBuffer(1);
     private final IntBuffer intBuf16 = BufferUtils.createIntBuffer(16);
     private final RenderContext context = new RenderContext();
+    /**
+     * Copy of the last render state applied, valid only while nothing else
+     * changed the render state part of the context.
+     */
+    private final RenderState appliedRenderState = new RenderState();
+    private boolean appliedRenderStateValid = false;
     private final NativeObjectManager objManager = new NativeObjectManager();
     private final EnumSet<Caps> caps = EnumSet.noneOf(Caps.class);
     private final EnumMap<Limits, Integer> limits = new EnumMap<>(Limits.class);
@@ -117,6 +123,8 @@ public final class GLRenderer implements Renderer {
     private final TextureUtil texUtil;
     private boolean debug = false;
     private int debugGroupId = 0;
+    private ProgramBinaryCache programBinaryCache;
+    private String glVendor, glRenderer, glVersion;
 
 
     public GLRenderer(GL gl, GLExt glext, GLFbo glfbo) {
@@ -141,6 +149,24 @@ public final class GLRenderer implements Renderer {
         debug = v;
     }
 
+    /**
+     * Sets the cache used to store linked shader programs on disk and load
+     * them instead of compiling the sources again. Only used when the
+     * renderer supports {@link Caps#ProgramBinary}.
+     *
+     * @param cache the cache, or null to always compile (default)
+     */
+    public void setProgramBinaryCache(ProgramBinaryCache cache) {
+        programBinaryCache = cache;
+    }
+
+    /**
+     * @return the program binary cache, or null if none is set
+     */
+    public ProgramBinaryCache getProgramBinaryCache() {
+        return programBinaryCache;
+    }
+
     @Override
     public void popDebugGroup() {
         if (debug && caps.contains(Caps.GLDebug)) {
@@ -608,6 +634,8 @@ public final class GLRenderer implements Renderer {
             caps.add(Caps.UniformBufferObject);
             limits.put(Limits.UniformBufferObjectMaxBlockSize,
                     getInteger(GL3.GL_MAX_UNIFORM_BLOCK_SIZE));
+            limits.put(Limits.UniformBufferObjectOffsetAlignment,
+                    getInteger(GL3.GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT));
             if (caps.contains(Caps.GeometryShader)) {
                 limits.put(Limits.UniformBufferObjectMaxGeometryBlocks,
                         getInteger(GL3.GL_MAX_GEOMETRY_UNIFORM_BLOCKS));
@@ -626,6 +654,21 @@ public final class GLRenderer implements Renderer {
             caps.add(Caps.GLDebug);
         }
 
+        if (gl4 != null && caps.contains(Caps.MeshInstancing)
+                && (caps.contains(Caps.OpenGL43) || hasExtension("GL_ARB_multi_draw_indirect"))
+                && (caps.contains(Caps.OpenGL42) || hasExtension("GL_ARB_base_instance"))) {
+            caps.add(Caps.MultiDrawIndirect);
+        }
+
+        if (gl4 != null && (caps.contains(Caps.OpenGL41) || hasExtension("GL_ARB_get_program_binary"))
+                && getInteger(GL4.GL_NUM_PROGRAM_BINARY_FORMATS) > 0) {
+            caps.add(Caps.ProgramBinary);
+        }
+
+        glVendor = gl.glGetString(GL.GL_VENDOR);
+        glRenderer = gl.glGetString(GL.GL_RENDERER);
+        glVersion = gl.glGetString(GL.GL_VERSION);
+
         // Print context information
         logger.log(Level.INFO, "OpenGL Renderer Information\n" +
                         " * Vendor: {0}\n" +
@@ -634,9 +677,9 @@ public final class GLRenderer implements Renderer {
                         " * GLSL Version: {3}\n" +
                         " * Profile: {4}",
                 new Object[]{
-                        gl.glGetString(GL.GL_VENDOR),
-                        gl.glGetString(GL.GL_RENDERER),
-                        gl.glGetString(GL.GL_VERSION),
+                        glVendor,
+                        glRenderer,
+                        glVersion,
                         gl.glGetString(GL.GL_SHADING_LANGUAGE_VERSION),
                         caps.contains(Caps.CoreProfile) ? "Core" : "Compatibility"
                 });
@@ -734,6 +777,7 @@ public final class GLRenderer implements Renderer {
     @Override
     public void invalidateState() {
         context.reset();
+        appliedRenderStateValid = false;
         if (gl2 != null) {
             context.initialDrawBuf = getInteger(GL2.GL_DRAW_BUFFER);
             context.initialReadBuf = getInteger(GL2.GL_READ_BUFFER);
@@ -773,6 +817,7 @@ public final class GLRenderer implements Renderer {
             if (context.colorWriteEnabled == false) {
                 gl.glColorMask(true, true, true, true);
                 context.colorWriteEnabled = true;
+                appliedRenderStateValid = false;
             }
             bits = GL.GL_COLOR_BUFFER_BIT;
         }
@@ -784,6 +829,7 @@ public final class GLRenderer implements Renderer {
             if (context.depthWriteEnabled == false) {
                 gl.glDepthMask(true);
                 context.depthWriteEnabled = true;
+                appliedRenderStateValid = false;
             }
             bits |= GL.GL_DEPTH_BUFFER_BIT;
         }
@@ -826,6 +872,15 @@ public final class GLRenderer implements Renderer {
 
     @Override
     public void applyRenderState(RenderState state) {
+        // most geometries in a row share the same state
+        if (appliedRenderStateValid && appliedRenderState.equals(state)) {
+            statistics.onRenderStateUse(false);
+            return;
+        }
+        statistics.onRenderStateUse(true);
+        appliedRenderState.copyFrom(state);
+        appliedRenderStateValid = true;
+
         if (gl2 != null) {
             if (state.isWireframe() && !context.wireframe) {
                 gl2.glPolygonMode(GL.GL_FRONT_AND_BACK, GL2.GL_LINE);
@@ -1473,7 +1528,11 @@ public final class GLRenderer implements Renderer {
 
         switch (bufferType) {
             case UniformBufferObject: {
-                setUniformBufferObject(bindingPoint, bufferObject); // rebind buffer if needed
+                if (bufferBlock.getLength() > 0) {
+                    setUniformBufferObjectRange(bindingPoint, bufferObject, bufferBlock.getOffset(), bufferBlock.getLength());
+                } else {
+                    setUniformBufferObject(bindingPoint, bufferObject); // rebind buffer if needed
+                }
                 if (bufferBlock.isUpdateNeeded()) {
                     int blockIndex = bufferBlock.getLocation();
                     if (blockIndex < 0) {
@@ -1555,23 +1614,11 @@ public final class GLRenderer implements Renderer {
         }
     }
 
-    public void updateShaderSourceData(ShaderSource source) {
-        int id = source.getId();
-        if (id == -1) {
-            // Create id
-            id = gl.glCreateShader(convertShaderType(source.getType()));
-            if (id <= 0) {
-                throw new RendererException("Invalid ID received when trying to create shader.");
-            }
-
-            source.setId(id);
-            if (debug && caps.contains(Caps.GLDebug)) {
-                if(source.getName()!=null) glext.glObjectLabel(GLExt.GL_SHADER, id, source.getName());
-            }
-        } else {
-            throw new RendererException("Cannot recompile shader source");
-        }
-
+    /**
+     * Merges the version header, renderer defines, source defines and code
+     * into the string that is handed to the GLSL compiler.
+     */
+    private String buildShaderSource(ShaderSource source) {
         boolean gles3 = caps.contains(Caps.OpenGLES30);
         boolean gles2 = caps.contains(Caps.OpenGLES20);
         String language = source.getLanguage();
@@ -1581,7 +1628,6 @@ public final class GLRenderer implements Renderer {
                     + "Only GLSL 1.00 shaders are supported.");
         }
 
-        // Upload shader source.
         // Merge the defines and source code.
         stringBuf.setLength(0);
         int version = Integer.parseInt(language.substring(4));
@@ -1620,11 +1666,31 @@ public final class GLRenderer implements Renderer {
 
         stringBuf.append(source.getDefines());
         stringBuf.append(source.getSource());
+        return stringBuf.toString();
+    }
 
+    public void updateShaderSourceData(ShaderSource source) {
+        int id = source.getId();
+        if (id == -1) {
+            // Create id
+            id = gl.glCreateShader(convertShaderType(source.getType()));
+            if (id <= 0) {
+                throw new RendererException("Invalid ID received when trying to create shader.");
+            }
+
+            source.setId(id);
+            if (debug && caps.contains(Caps.GLDebug)) {
+                if(source.getName()!=null) glext.glObjectLabel(GLExt.GL_SHADER, id, source.getName());
+            }
+        } else {
+            throw new RendererException("Cannot recompile shader source");
+        }
+
+        String code = buildShaderSource(source);
 
         intBuf1.clear();
-        intBuf1.put(0, stringBuf.length());
-        gl.glShaderSource(id, new String[]{ stringBuf.toString() }, intBuf1);
+        intBuf1.put(0, code.length());
+        gl.glShaderSource(id, new String[]{ code }, intBuf1);
         gl.glCompileShader(id);
 
         gl.glGetShader(id, GL.GL_COMPILE_STATUS, intBuf1);
@@ -1676,36 +1742,57 @@ public final class GLRenderer implements Renderer {
             needRegister = true;
         }
 
-        // If using GLSL 1.5, we bind the outputs for the user
-        // For versions 3.3 and up, user should use layout qualifiers instead.
-        boolean bindFragDataRequired = false;
+        String binaryKey = null;
+        boolean linkOK = false;
+        if (programBinaryCache != null && caps.contains(Caps.ProgramBinary)) {
+            List<String> sources = new ArrayList<>();
+            for (ShaderSource source : shader.getSources()) {
+                sources.add(buildShaderSource(source));
+            }
+            binaryKey = ProgramBinaryCache.createKey(sources, glVendor, glRenderer, glVersion);
+            linkOK = loadProgramBinary(id, binaryKey);
+        }
 
-        for (ShaderSource source : shader.getSources()) {
-            if (source.isUpdateNeeded()) {
-                updateShaderSourceData(source);
+        if (!linkOK) {
+            // If using GLSL 1.5, we bind the outputs for the user
+            // For versions 3.3 and up, user should use layout qualifiers instead.
+            boolean bindFragDataRequired = false;
+
+            for (ShaderSource source : shader.getSources()) {
+                if (source.isUpdateNeeded()) {
+                    updateShaderSourceData(source);
+                }
+                if (source.getType() == ShaderType.Fragment
+                        && source.getLanguage().equals("GLSL150")) {
+                    bindFragDataRequired = true;
+                }
+                gl.glAttachShader(id, source.getId());
             }
-            if (source.getType() == ShaderType.Fragment
-                    && source.getLanguage().equals("GLSL150")) {
-                bindFragDataRequired = true;
+
+            if (bindFragDataRequired) {
+                // Check if GLSL version is 1.5 for shader
+                gl3.glBindFragDataLocation(id, 0, "outFragColor");
+                // For MRT
+                for (int i = 0; i < limits.get(Limits.FrameBufferMrtAttachments); i++) {
+                    gl3.glBindFragDataLocation(id, i, "outFragData[" + i + "]");
+                }
             }
-            gl.glAttachShader(id, source.getId());
-        }
 
-        if (bindFragDataRequired) {
-            // Check if GLSL version is 1.5 for shader
-            gl3.glBindFragDataLocation(id, 0, "outFragColor");
-            // For MRT
-            for (int i = 0; i < limits.get(Limits.FrameBufferMrtAttachments); i++) {
-                gl3.glBindFragDataLocation(id, i, "outFragData[" + i + "]");
+            if (binaryKey != null) {
+                gl4.glProgramParameteri(id, GL4.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL.GL_TRUE);
             }
-        }
 
-        // Link shaders to program
-        gl.glLinkProgram(id);
+            // Link shaders to program
+            gl.glLinkProgram(id);
 
-        // Check link status
-        gl.glGetProgram(id, GL.GL_LINK_STATUS, intBuf1);
-        boolean linkOK = intBuf1.get(0) == GL.GL_TRUE;
+            // Check link status
+            gl.glGetProgram(id, GL.GL_LINK_STATUS, intBuf1);
+            linkOK = intBuf1.get(0) == GL.GL_TRUE;
+
+            if (linkOK && binaryKey != null) {
+                storeProgramBinary(id, binaryKey);
+            }
+        }
         String infoLog = null;
 
         if (VALIDATE_SHADER || !linkOK) {
@@ -1741,6 +1828,51 @@ public final class GLRenderer implements Renderer {
         }
     }
 
+    /**
+     * Loads the cached binary of a program.
+     *
+     * @return true if the driver accepted the binary and the program is linked
+     */
+    private boolean loadProgramBinary(int id, String key) {
+        ProgramBinaryCache.ProgramBinary binary = programBinaryCache.load(key);
+        if (binary == null) {
+            return false;
+        }
+        ByteBuffer data = BufferUtils.createByteBuffer(binary.getData().length);
+        data.put(binary.getData()).flip();
+        gl4.glProgramBinary(id, binary.getFormat(), data);
+        BufferUtils.destroyDirectBuffer(data);
+
+        gl.glGetProgram(id, GL.GL_LINK_STATUS, intBuf1);
+        if (intBuf1.get(0) == GL.GL_TRUE) {
+            logger.log(Level.FINE, "Loaded program binary {0}", key);
+            return true;
+        }
+        // the driver may reject binaries of an older version
+        logger.log(Level.FINE, "Program binary {0} was rejected, compiling", key);
+        programBinaryCache.remove(key);
+        return false;
+    }
+
+    private void storeProgramBinary(int id, String key) {
+        gl.glGetProgram(id, GL4.GL_PROGRAM_BINARY_LENGTH, intBuf1);
+        int length = intBuf1.get(0);
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer data = BufferUtils.createByteBuffer(length);
+        intBuf1.clear();
+        intBuf16.clear();
+        gl4.glGetProgramBinary(id, intBuf1, intBuf16, data);
+        int written = intBuf1.get(0);
+        if (written > 0) {
+            byte[] bytes = new byte[written];
+            data.get(bytes);
+            programBinaryCache.store(key, new ProgramBinaryCache.ProgramBinary(intBuf16.get(0), bytes));
+        }
+        BufferUtils.destroyDirectBuffer(data);
+    }
+
     @Override
     public void setShader(Shader shader) {
         if (shader == null) {
@@ -2028,6 +2160,8 @@ public final class GLRenderer implements Renderer {
                 statistics.onFrameBufferUse(null, true);
                 context.boundFBO = defaultFBO;
                 context.boundFB = null;
+            } else {
+                statistics.onFrameBufferUse(null, false);
             }
         } else {
             assert fb.getId() != -1 && fb.getId() != 0;
@@ -2546,6 +2680,9 @@ public final class GLRenderer implements Renderer {
         if (context.boundTextureUnit != unit) {
             gl.glActiveTexture(GL.GL_TEXTURE0 + unit);
             context.boundTextureUnit = unit;
+            statistics.onTextureUnitUse(true);
+        } else {
+            statistics.onTextureUnitUse(false);
         }
         if (context.boundTextures[unit]==null||context.boundTextures[unit].get() != img.getWeakRef().get()) {
             gl.glBindTexture(target, img.getId());
@@ -2569,6 +2706,9 @@ public final class GLRenderer implements Renderer {
             if (context.boundTextureUnit != unit) {
                 gl.glActiveTexture(GL.GL_TEXTURE0 + unit);
                 context.boundTextureUnit = unit;
+                statistics.onTextureUnitUse(true);
+            } else {
+                statistics.onTextureUnitUse(false);
             }
             gl.glBindTexture(target, img.getId());
             context.boundTextures[unit] = img.getWeakRef();
@@ -2759,10 +2899,15 @@ public final class GLRenderer implements Renderer {
             updateUniformBufferObjectData(bufferObject);
         }
 
-        if (context.boundBO[bindingPoint] == null || context.boundBO[bindingPoint].get() != bufferObject) {
+        if (context.boundBO[bindingPoint] == null || context.boundBO[bindingPoint].get() != bufferObject
+                || context.boundBOOffset[bindingPoint] != -1) {
             gl3.glBindBufferBase(GL3.GL_UNIFORM_BUFFER, bindingPoint, bufferObject.getId());
             bufferObject.setBinding(bindingPoint);
             context.boundBO[bindingPoint] = bufferObject.getWeakRef();
+            context.boundBOOffset[bindingPoint] = -1;
+            statistics.onBufferObjectUse(bufferObject, true);
+        } else {
+            statistics.onBufferObjectUse(bufferObject, false);
         }
 
         bufferObject.setBinding(bindingPoint);
@@ -2773,15 +2918,39 @@ public final class GLRenderer implements Renderer {
 
     }
 
+    @Override
+    public void setUniformBufferObjectRange(int bindingPoint, BufferObject bufferObject, int offset, int length) {
+        if (bufferObject.isUpdateNeeded()) {
+            updateUniformBufferObjectData(bufferObject);
+        }
+
+        if (context.boundBO[bindingPoint] == null || context.boundBO[bindingPoint].get() != bufferObject
+                || context.boundBOOffset[bindingPoint] != offset) {
+            gl3.glBindBufferRange(GL3.GL_UNIFORM_BUFFER, bindingPoint, bufferObject.getId(), offset, length);
+            context.boundBO[bindingPoint] = bufferObject.getWeakRef();
+            context.boundBOOffset[bindingPoint] = offset;
+            statistics.onBufferObjectUse(bufferObject, true);
+        } else {
+            statistics.onBufferObjectUse(bufferObject, false);
+        }
+
+        bufferObject.setBinding(bindingPoint);
+    }
+
     @Override
     public void setShaderStorageBufferObject(int bindingPoint, BufferObject bufferObject) {
         if (bufferObject.isUpdateNeeded()) {
             updateShaderStorageBufferObjectData(bufferObject);
         }
-        if (context.boundBO[bindingPoint] == null || context.boundBO[bindingPoint].get() != bufferObject) {
+        if (context.boundBO[bindingPoint] == null || context.boundBO[bindingPoint].get() != bufferObject
+                || context.boundBOOffset[bindingPoint] != -1) {
             gl4.glBindBufferBase(GL4.GL_SHADER_STORAGE_BUFFER, bindingPoint, bufferObject.getId());
             bufferObject.setBinding(bindingPoint);
             context.boundBO[bindingPoint] = bufferObject.getWeakRef();
+            context.boundBOOffset[bindingPoint] = -1;
+            statistics.onBufferObjectUse(bufferObject, true);
+        } else {
+            statistics.onBufferObjectUse(bufferObject, false);
         }
         bufferObject.setBinding(bindingPoint);
 
@@ -2915,18 +3084,18 @@ public final class GLRenderer implements Renderer {
             if (context.boundElementArrayVBO != bufId) {
                 gl.glBindBuffer(target, bufId);
                 context.boundElementArrayVBO = bufId;
-                //statistics.onVertexBufferUse(vb, true);
+                statistics.onVertexBufferUse(vb, true);
             } else {
-                //statistics.onVertexBufferUse(vb, false);
+                statistics.onVertexBufferUse(vb, false);
             }
         } else {
             target = GL.GL_ARRAY_BUFFER;
             if (context.boundArrayVBO != bufId) {
                 gl.glBindBuffer(target, bufId);
                 context.boundArrayVBO = bufId;
-                //statistics.onVertexBufferUse(vb, true);
+                statistics.onVertexBufferUse(vb, true);
             } else {
-                //statistics.onVertexBufferUse(vb, false);
+                statistics.onVertexBufferUse(vb, false);
             }
         }
 
@@ -3028,15 +3197,19 @@ public final class GLRenderer implements Renderer {
         DirtyRegionsIterator it = bo.getDirtyRegions();
         BufferRegion reg;
 
+        // bind once for all the dirty regions
+        boolean bound = false;
         while ((reg = it.next()) != null) {
-            gl3.glBindBuffer(type, bufferId);
+            if (!bound) {
+                gl3.glBindBuffer(type, bufferId);
+                bound = true;
+            }
             if (reg.isFullBufferRegion()) {
                 ByteBuffer bbf = bo.getData();
                 if (logger.isLoggable(java.util.logging.Level.FINER)) {
                     logger.log(java.util.logging.Level.FINER, "Update full buffer {0} with {1} bytes", new Object[] { bo, bbf.remaining() });
                 }
                 gl.glBufferData(type, bbf, usage);
-                gl3.glBindBuffer(type, 0);
                 reg.clearDirty();
                 break;
             } else {
@@ -3044,10 +3217,12 @@ public final class GLRenderer implements Renderer {
                     logger.log(java.util.logging.Level.FINER, "Update region {0} of {1}", new Object[] { reg, bo });
                 }
                 gl.glBufferSubData(type, reg.getStart(), reg.getData());
-                gl3.glBindBuffer(type, 0);
                 reg.clearDirty();
             }
         }
+        if (bound) {
+            gl3.glBindBuffer(type, 0);
+        }
         bo.clearUpdateNeeded();
     }
 
@@ -3079,6 +3254,10 @@ public final class GLRenderer implements Renderer {
 
         gl.glDeleteBuffers(intBuf1);
 
+        if (context.boundDrawIndirectBuffer == bufferId) {
+            context.boundDrawIndirectBuffer = 0;
+        }
+
         bo.resetObject();
     }
 
@@ -3159,9 +3338,9 @@ public final class GLRenderer implements Renderer {
             if (context.boundArrayVBO != bufId) {
                 gl.glBindBuffer(GL.GL_ARRAY_BUFFER, bufId);
                 context.boundArrayVBO = bufId;
-                //statistics.onVertexBufferUse(vb, true);
+                statistics.onVertexBufferUse(vb, true);
             } else {
-                //statistics.onVertexBufferUse(vb, false);
+                statistics.onVertexBufferUse(vb, false);
             }
 
             if (slotsRequired == 1) {
@@ -3221,11 +3400,7 @@ public final class GLRenderer implements Renderer {
         }
     }
 
-    public void drawTriangleList(VertexBuffer indexBuf, Mesh mesh, int count) {
-        if (indexBuf.getBufferType() != VertexBuffer.Type.Index) {
-            throw new IllegalArgumentException("Only index buffers are allowed as triangle lists.");
-        }
-
+    private void bindIndexBuffer(VertexBuffer indexBuf) {
         switch (indexBuf.getFormat()) {
             case UnsignedByte:
             case UnsignedShort:
@@ -3252,11 +3427,19 @@ public final class GLRenderer implements Renderer {
         if (context.boundElementArrayVBO != bufId) {
             gl.glBindBuffer(GL.GL_ELEMENT_ARRAY_BUFFER, bufId);
             context.boundElementArrayVBO = bufId;
-            //statistics.onVertexBufferUse(indexBuf, true);
+            statistics.onVertexBufferUse(indexBuf, true);
         } else {
-            //statistics.onVertexBufferUse(indexBuf, true);
+            statistics.onVertexBufferUse(indexBuf, false);
+        }
+    }
+
+    public void drawTriangleList(VertexBuffer indexBuf, Mesh mesh, int count) {
+        if (indexBuf.getBufferType() != VertexBuffer.Type.Index) {
+            throw new IllegalArgumentException("Only index buffers are allowed as triangle lists.");
         }
 
+        bindIndexBuffer(indexBuf);
+
         int vertCount = mesh.getVertexCount();
         boolean useInstancing = count > 1 && caps.contains(Caps.MeshInstancing);
 
@@ -3359,6 +3542,9 @@ public final class GLRenderer implements Renderer {
         if (context.boundVertexArray != id) {
             gl3.glBindVertexArray(id);
             context.boundVertexArray = id;
+            statistics.onVertexArrayUse(true);
+        } else {
+            statistics.onVertexArrayUse(false);
         }
 
         VertexBuffer interleavedData = mesh.getBuffer(Type.InterleavedData);
@@ -3393,11 +3579,6 @@ public final class GLRenderer implements Renderer {
         // the method is collapsed again.  -pspeed
         count = Math.max(mesh.getInstanceCount(), count);
 
-        VertexBuffer interleavedData = mesh.getBuffer(Type.InterleavedData);
-        if (interleavedData != null && interleavedData.isUpdateNeeded()) {
-            updateBufferData(interleavedData);
-        }
-
         VertexBuffer indices;
         if (mesh.getNumLodLevels() > 0) {
             indices = mesh.getLodLevel(lod);
@@ -3405,6 +3586,21 @@ public final class GLRenderer implements Renderer {
             indices = mesh.getBuffer(Type.Index);
         }
 
+        setMeshVertexAttribs(mesh, instanceData);
+
+        if (indices != null) {
+            drawTriangleList(indices, mesh, count);
+        } else {
+            drawTriangleArray(mesh.getMode(), count, mesh.getVertexCount());
+        }
+    }
+
+    private void setMeshVertexAttribs(Mesh mesh, VertexBuffer[] instanceData) {
+        VertexBuffer interleavedData = mesh.getBuffer(Type.InterleavedData);
+        if (interleavedData != null && interleavedData.isUpdateNeeded()) {
+            updateBufferData(interleavedData);
+        }
+
         if (instanceData != null) {
             for (VertexBuffer vb : instanceData) {
                 setVertexAttrib(vb, null);
@@ -3428,12 +3624,6 @@ public final class GLRenderer implements Renderer {
         }
 
         clearVertexAttribs();
-
-        if (indices != null) {
-            drawTriangleList(indices, mesh, count);
-        } else {
-            drawTriangleArray(mesh.getMode(), count, mesh.getVertexCount());
-        }
     }
 
     @Override
@@ -3449,6 +3639,7 @@ public final class GLRenderer implements Renderer {
         if (mesh.getLineWidth() != 1f && context.lineWidth != mesh.getLineWidth()) {
             gl.glLineWidth(mesh.getLineWidth());
             context.lineWidth = mesh.getLineWidth();
+            appliedRenderStateValid = false;
         }
 
         if (gl4 != null && mesh.getMode().equals(Mode.Patch)) {
@@ -3462,6 +3653,43 @@ public final class GLRenderer implements Renderer {
 //        }
     }
 
+    @Override
+    public void renderMultiDrawIndirect(Mesh mesh, VertexBuffer[] instanceData, BufferObject commands, int drawCount) {
+        if (!caps.contains(Caps.MultiDrawIndirect)) {
+            throw new RendererException("Multi-draw indirect is not supported by the video hardware");
+        }
+        if (drawCount == 0 || mesh.getVertexCount() == 0) {
+            return;
+        }
+
+        VertexBuffer indices = mesh.getBuffer(Type.Index);
+        if (indices == null) {
+            throw new IllegalArgumentException("Multi-draw indirect requires an indexed mesh");
+        }
+
+        if (commands.isUpdateNeeded()) {
+            // leaves GL_DRAW_INDIRECT_BUFFER unbound
+            updateBufferData(GL4.GL_DRAW_INDIRECT_BUFFER, commands);
+            context.boundDrawIndirectBuffer = 0;
+        }
+
+        statistics.onMeshDrawn(mesh, 0);
+        setMeshVertexAttribs(mesh, instanceData);
+        bindIndexBuffer(indices);
+
+        int bufId = commands.getId();
+        if (context.boundDrawIndirectBuffer != bufId) {
+            gl.glBindBuffer(GL4.GL_DRAW_INDIRECT_BUFFER, bufId);
+            context.boundDrawIndirectBuffer = bufId;
+            statistics.onBufferObjectUse(commands, true);
+        } else {
+            statistics.onBufferObjectUse(commands, false);
+        }
+
+        gl4.glMultiDrawElementsIndirect(convertElementMode(mesh.getMode()),
+                convertFormat(indices.getFormat()), 0, drawCount, 0);
+    }
+
     @Override
     public void setMainFrameBufferSrgb(boolean enableSrgb) {
         // Gamma correction
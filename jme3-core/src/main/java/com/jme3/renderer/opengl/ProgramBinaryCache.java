@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Stores linked shader program binaries on disk, so that programs seen in an
+ * earlier run do not have to be compiled again.
+ * <p>
+ * Entries are keyed by a hash of the final source code of every stage, which
+ * already contains the defines, and of the GL vendor, renderer and version
+ * strings. A driver update therefore changes the key, and a binary the driver
+ * still rejects is removed by the renderer. Files that are truncated, fail
+ * their checksum or were written by another version of this format are
+ * ignored and deleted.
+ *
+ * @see GLRenderer#setProgramBinaryCache(ProgramBinaryCache)
+ */
+public class ProgramBinaryCache {
+
+    private static final Logger logger = Logger.getLogger(ProgramBinaryCache.class.getName());
+
+    /**
+     * Version of the file format, bump it whenever the layout or the key
+     * computation changes.
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int MAGIC = 0x4A4D5042; // "JMPB"
+    private static final String EXTENSION = ".bin";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * A program binary together with the driver specific format it was
+     * retrieved in.
+     */
+    public static class ProgramBinary {
+
+        private final int format;
+        private final byte[] data;
+
+        public ProgramBinary(int format, byte[] data) {
+            this.format = format;
+            this.data = data;
+        }
+
+        /**
+         * @return the binary format reported by glGetProgramBinary
+         */
+        public int getFormat() {
+            return format;
+        }
+
+        /**
+         * @return the binary data (not a copy)
+         */
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    private final File directory;
+
+    /**
+     * Creates a cache storing its entries in the given directory, which is
+     * created when the first entry is stored.
+     *
+     * @param directory the cache directory
+     */
+    public ProgramBinaryCache(File directory) {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory cannot be null");
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * @return the cache directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Computes the key of a program.
+     *
+     * @param sources the final source code of every stage, in attach order
+     * @param vendor the GL_VENDOR string
+     * @param renderer the GL_RENDERER string
+     * @param version the GL_VERSION string
+     * @return a hexadecimal key that is safe to use as a file name
+     */
+    public static String createKey(List<String> sources, String vendor, String renderer, String version) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+        update(digest, Integer.toString(FORMAT_VERSION));
+        update(digest, vendor);
+        update(digest, renderer);
+        update(digest, version);
+        for (String source : sources) {
+            update(digest, source);
+        }
+        byte[] hash = digest.digest();
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+        // prefix with the length so that moving text between parts changes the key
+        int length = bytes.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    /**
+     * Loads the binary stored for the key. Invalid entries are deleted.
+     *
+     * @param key the key from {@link #createKey(List, String, String, String)}
+     * @return the binary, or null if there is no valid entry
+     */
+    public ProgramBinary load(String key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return read(in, key);
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Discarding invalid program binary " + file, ex);
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Stores a binary for the key, replacing any previous entry. Failures are
+     * logged and otherwise ignored, the cache is only an optimization.
+     *
+     * @param key the key from {@link #createKey(List, String, String, String)}
+     * @param binary the binary to store
+     */
+    public void store(String key, ProgramBinary binary) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            logger.log(Level.WARNING, "Cannot create program binary cache directory {0}", directory);
+            return;
+        }
+        File file = getFile(key);
+        File temp = new File(directory, key + ".tmp");
+        try {
+            try (OutputStream out = new FileOutputStream(temp)) {
+                write(out, key, binary);
+            }
+            // write to a temporary file first so a crash never leaves half an entry behind
+            if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+                throw new IOException("Cannot rename " + temp + " to " + file);
+            }
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "Failed to store program binary " + file, ex);
+            temp.delete();
+        }
+    }
+
+    /**
+     * Removes the entry for the key, if any.
+     *
+     * @param key the key of the entry
+     */
+    public void remove(String key) {
+        File file = getFile(key);
+        if (file.exists() && !file.delete()) {
+            logger.log(Level.WARNING, "Cannot delete program binary {0}", file);
+        }
+    }
+
+    private File getFile(String key) {
+        return new File(directory, key + EXTENSION);
+    }
+
+    /**
+     * Writes an entry.
+     *
+     * @param out the stream to write to
+     * @param key the key of the entry
+     * @param binary the binary
+     * @throws IOException if writing fails
+     */
+    public static void write(OutputStream out, String key, ProgramBinary binary) throws IOException {
+        byte[] data = binary.getData();
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(MAGIC);
+        dos.writeInt(FORMAT_VERSION);
+        dos.writeUTF(key);
+        dos.writeInt(binary.getFormat());
+        dos.writeInt(data.length);
+        dos.writeLong(crc.getValue());
+        dos.write(data);
+        dos.flush();
+    }
+
+    /**
+     * Reads an entry written by {@link #write(OutputStream, String, ProgramBinary)}.
+     *
+     * @param in the stream to read from
+     * @param key the expected key
+     * @return the binary
+     * @throws IOException if the entry is truncated, corrupted, was written
+     * with another format version or belongs to another key
+     */
+    public static ProgramBinary read(InputStream in, String key) throws IOException {
+        DataInputStream dis = new DataInputStream(in);
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a program binary");
+        }
+        int version = dis.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported program binary version " + version);
+        }
+        if (!dis.readUTF().equals(key)) {
+            throw new IOException("Program binary key mismatch");
+        }
+        int format = dis.readInt();
+        int length = dis.readInt();
+        long checksum = dis.readLong();
+        if (length <= 0) {
+            throw new IOException("Invalid program binary length " + length);
+        }
+        byte[] data = new byte[length];
+        dis.readFully(data);
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        if (crc.getValue() != checksum) {
+            throw new IOException("Program binary checksum mismatch");
+        }
+        if (dis.read() != -1) {
+            throw new IOException("Trailing data after program binary");
+        }
+        return new ProgramBinary(format, data);
+    }
+}
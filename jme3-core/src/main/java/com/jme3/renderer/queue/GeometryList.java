@@ -31,6 +31,7 @@
  */
 package com.jme3.renderer.queue;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -49,9 +50,21 @@ import com.jme3.util.ListSort;
 public class GeometryList implements Iterable<Geometry>{
 
     private static final int DEFAULT_SIZE = 32;
+    /**
+     * Below this size, keyed lists are sorted by insertion sort.
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX_SIZE = 1 << RADIX_BITS;
+    private static final int RADIX_PASSES = Long.SIZE / RADIX_BITS;
 
     private Geometry[] geometries;
     private final ListSort listSort;
+    // scratch data for sorting with a KeyedGeometryComparator
+    private Geometry[] sortTemp;
+    private long[] keys;
+    private long[] keysTemp;
+    private int[] histograms;
     private int size;
     private GeometryComparator comparator;
 
@@ -150,10 +163,17 @@ public class GeometryList implements Iterable<Geometry>{
 
     /**
      * Sorts the elements in the list according to their Comparator.
+     * If the comparator is a {@link KeyedGeometryComparator} that
+     * {@link KeyedGeometryComparator#usesSortKey() uses its keys}, the list
+     * is radix sorted on the keys of the geometries. Either way, the sort is
+     * stable.
      */
     @SuppressWarnings("unchecked")
     public void sort() {
-        if (size > 1) {
+        if (size > 1 && comparator instanceof KeyedGeometryComparator
+                && ((KeyedGeometryComparator) comparator).usesSortKey()) {
+            sortByKeys((KeyedGeometryComparator) comparator);
+        } else if (size > 1) {
             // sort the spatial list using the comparator
             if (listSort.getLength() != size) {
                 listSort.allocateStack(size);
@@ -162,6 +182,116 @@ public class GeometryList implements Iterable<Geometry>{
         }
     }
 
+    private void sortByKeys(KeyedGeometryComparator keyed) {
+        if (keys == null || keys.length < geometries.length) {
+            keys = new long[geometries.length];
+            keysTemp = new long[geometries.length];
+            sortTemp = new Geometry[geometries.length];
+        }
+        // flip the sign bit so the keys can be sorted as unsigned numbers
+        for (int i = 0; i < size; i++) {
+            keys[i] = keyed.getSortKey(geometries[i]) ^ Long.MIN_VALUE;
+        }
+
+        if (size < INSERTION_SORT_THRESHOLD) {
+            insertionSort();
+        } else {
+            radixSort();
+        }
+    }
+
+    private void insertionSort() {
+        for (int i = 1; i < size; i++) {
+            long key = keys[i];
+            Geometry geom = geometries[i];
+            int j = i - 1;
+            while (j >= 0 && Long.compareUnsigned(keys[j], key) > 0) {
+                keys[j + 1] = keys[j];
+                geometries[j + 1] = geometries[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            geometries[j + 1] = geom;
+        }
+    }
+
+    /**
+     * Least significant digit radix sort of the geometries on their keys,
+     * one byte per pass. Passes where all keys share the same byte are
+     * skipped, so keys that only use a few bits are cheap to sort.
+     */
+    private void radixSort() {
+        if (histograms == null) {
+            histograms = new int[RADIX_PASSES * RADIX_SIZE];
+        } else {
+            Arrays.fill(histograms, 0);
+        }
+        // count the bytes of all passes at once
+        for (int i = 0; i < size; i++) {
+            long key = keys[i];
+            for (int pass = 0; pass < RADIX_PASSES; pass++) {
+                int digit = (int) (key >>> (pass * RADIX_BITS)) & (RADIX_SIZE - 1);
+                histograms[pass * RADIX_SIZE + digit]++;
+            }
+        }
+
+        long[] srcKeys = keys;
+        long[] dstKeys = keysTemp;
+        Geometry[] src = geometries;
+        Geometry[] dst = sortTemp;
+        for (int pass = 0; pass < RADIX_PASSES; pass++) {
+            int shift = pass * RADIX_BITS;
+            int offset = pass * RADIX_SIZE;
+            int firstDigit = (int) (srcKeys[0] >>> shift) & (RADIX_SIZE - 1);
+            if (histograms[offset + firstDigit] == size) {
+                continue;
+            }
+
+            // turn the counts into start positions
+            int sum = 0;
+            for (int i = offset; i < offset + RADIX_SIZE; i++) {
+                int count = histograms[i];
+                histograms[i] = sum;
+                sum += count;
+            }
+            for (int i = 0; i < size; i++) {
+                long key = srcKeys[i];
+                int position = histograms[offset + ((int) (key >>> shift) & (RADIX_SIZE - 1))]++;
+                dstKeys[position] = key;
+                dst[position] = src[i];
+            }
+
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            Geometry[] swap = src;
+            src = dst;
+            dst = swap;
+        }
+
+        keys = srcKeys;
+        keysTemp = dstKeys;
+        if (src != geometries) {
+            sortTemp = geometries;
+            geometries = src;
+        }
+        // don't hold on to geometries from the scratch array
+        Arrays.fill(sortTemp, 0, size, null);
+    }
+
+    /**
+     * Converts a float into an int with the same ordering, for use in
+     * {@link KeyedGeometryComparator#getSortKey(Geometry) sort keys}.
+     * Negative and positive zero map to the same value.
+     *
+     * @param value the value to convert
+     * @return an int that compares like the float
+     */
+    static int floatToSortableInt(float value) {
+        int bits = Float.floatToIntBits(value + 0.0f);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+
     @Override
     public Iterator<Geometry> iterator() {
         return new Iterator<Geometry>() {
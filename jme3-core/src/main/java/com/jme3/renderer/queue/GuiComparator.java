@@ -40,7 +40,17 @@ import com.jme3.scene.Geometry;
  *
  * @author Kirill Vainer
  */
-public class GuiComparator implements GeometryComparator {
+public class GuiComparator implements KeyedGeometryComparator {
+
+    @Override
+    public boolean usesSortKey() {
+        return getClass() == GuiComparator.class;
+    }
+
+    @Override
+    public long getSortKey(Geometry geom) {
+        return GeometryList.floatToSortableInt(geom.getWorldTranslation().getZ());
+    }
 
     @Override
     public int compare(Geometry o1, Geometry o2) {
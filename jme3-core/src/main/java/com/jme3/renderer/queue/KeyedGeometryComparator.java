@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.queue;
+
+import com.jme3.scene.Geometry;
+
+/**
+ * A {@link GeometryComparator} that can express its ordering as a single
+ * 64-bit key per geometry.
+ *
+ * <p>When the comparator of a {@link GeometryList} implements this interface
+ * the list computes the key of each geometry once per sort and orders them
+ * with a radix sort over the keys, instead of calling
+ * {@link #compare(Object, Object) compare()} O(n log n) times.
+ *
+ * <p>Keys are compared as signed longs, so for any two geometries
+ * <code>Long.compare(getSortKey(a), getSortKey(b))</code> must have the same
+ * sign as <code>compare(a, b)</code>. Geometries with equal keys keep their
+ * queuing order. Comparators whose keys may not match
+ * {@link #compare(Object, Object) compare()}, such as subclasses that only
+ * override <code>compare()</code>, return false from {@link #usesSortKey()}.
+ */
+public interface KeyedGeometryComparator extends GeometryComparator {
+
+    /**
+     * Computes the sort key of the given geometry, using the camera last
+     * passed to {@link #setCamera(com.jme3.renderer.Camera)}.
+     *
+     * @param geom the geometry to compute the key for (not null)
+     * @return the sort key
+     */
+    public long getSortKey(Geometry geom);
+
+    /**
+     * Tests whether a {@link GeometryList} may sort with
+     * {@link #getSortKey(Geometry)} instead of
+     * {@link #compare(Object, Object) compare()}.
+     *
+     * <p>The built-in comparators return false for their subclasses, which
+     * may only override <code>compare()</code>. A subclass that keeps its
+     * keys consistent can override this method to return true.
+     *
+     * @return true to sort on the keys, false to sort with compare()
+     * (default=true)
+     */
+    public default boolean usesSortKey() {
+        return true;
+    }
+}
@@ -40,7 +40,17 @@ import com.jme3.scene.Geometry;
  * 
  * @author Kirill Vainer
  */
-public class NullComparator implements GeometryComparator {
+public class NullComparator implements KeyedGeometryComparator {
+    @Override
+    public boolean usesSortKey() {
+        return getClass() == NullComparator.class;
+    }
+
+    @Override
+    public long getSortKey(Geometry geom) {
+        return 0L;
+    }
+
     @Override
     public int compare(Geometry o1, Geometry o2) {
         return 0;
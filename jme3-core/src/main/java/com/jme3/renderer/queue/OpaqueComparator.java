@@ -36,7 +36,7 @@ import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 
-public class OpaqueComparator implements GeometryComparator {
+public class OpaqueComparator implements KeyedGeometryComparator {
 
     private Camera cam;
     private final Vector3f tempVec  = new Vector3f();
@@ -70,6 +70,21 @@ public class OpaqueComparator implements GeometryComparator {
         return spat.queueDistance;
     }
 
+    @Override
+    public boolean usesSortKey() {
+        return getClass() == OpaqueComparator.class;
+    }
+
+    /**
+     * Packs the material sort id in the upper half of the key and the
+     * distance to the camera in the lower half.
+     */
+    @Override
+    public long getSortKey(Geometry geom) {
+        long distance = GeometryList.floatToSortableInt(distanceToCam(geom)) ^ Integer.MIN_VALUE;
+        return ((long) geom.getMaterial().getSortId() << 32) | (distance & 0xFFFFFFFFL);
+    }
+
     @Override
     public int compare(Geometry o1, Geometry o2) {
         Material m1 = o1.getMaterial();
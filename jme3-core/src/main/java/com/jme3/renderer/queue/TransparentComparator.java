@@ -35,7 +35,7 @@ import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 
-public class TransparentComparator implements GeometryComparator {
+public class TransparentComparator implements KeyedGeometryComparator {
 
     private Camera cam;
     private final Vector3f tempVec = new Vector3f();
@@ -51,6 +51,17 @@ public class TransparentComparator implements GeometryComparator {
         return spat.getWorldBound().distanceToEdge(cam.getLocation());
     }
 
+    @Override
+    public boolean usesSortKey() {
+        return getClass() == TransparentComparator.class;
+    }
+
+    @Override
+    public long getSortKey(Geometry geom) {
+        // back to front
+        return -(long) GeometryList.floatToSortableInt(distanceToCam(geom));
+    }
+
     @Override
     public int compare(Geometry o1, Geometry o2) {
         float d1 = distanceToCam(o1);
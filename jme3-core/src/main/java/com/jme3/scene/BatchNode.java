@@ -707,6 +707,11 @@ public class BatchNode extends GeometryGroupNode {
         return clone;
     }
 
+    @Override
+    protected boolean usesClonePlan() {
+        return false;
+    }
+
     /**
      * Called internally by com.jme3.util.clone.Cloner.  Do not call directly.
      */
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/**
+ * Keeps the world bound of a wide {@link Node} up to date incrementally.
+ * The axis-aligned box of every child is cached, and only the children that
+ * reported a bound change since the last update are looked at: their new
+ * boxes are merged into the bound of the node, which only ever grows in
+ * that step.
+ *
+ * <p>When a child whose old box touched the bound of the node moves inward
+ * or is detached, the bound may be larger than needed. It is then shrunk by
+ * a full merge of all children, but only after {@link #SHRINK_DELAY} more
+ * updates, so that nodes whose children keep moving don't pay for a full
+ * merge every frame. Until then the bound is conservative, which is safe
+ * for culling and picking.</p>
+ *
+ * <p>A full merge also happens when the node itself moves, or when most of
+ * the children moved at once.</p>
+ *
+ * @see Node#setIncrementalBoundEnabled(boolean)
+ */
+final class ChildBoundTracker {
+
+    /**
+     * The number of updates a pending shrink waits for.
+     */
+    static final int SHRINK_DELAY = 8;
+
+    private static final class Entry {
+        final float[] box = new float[6];
+        boolean hasBound;
+        boolean moved;
+    }
+
+    private final Node node;
+    private final IdentityHashMap<Spatial, Entry> entries = new IdentityHashMap<>();
+    private final ArrayList<Spatial> moved = new ArrayList<>();
+    private final float[] union = new float[6];
+    private final float[] previous = new float[6];
+    private boolean empty = true;
+    private boolean full = true;
+    private boolean shrinkPending;
+    private int shrinkCountdown;
+    private int fullMerges;
+
+    ChildBoundTracker(Node node) {
+        this.node = node;
+    }
+
+    /**
+     * Records that the bound of a child changed. May be called from the
+     * threads of a parallel logical update.
+     */
+    synchronized void childMoved(Spatial child) {
+        if (full) {
+            return;
+        }
+        Entry entry = entries.get(child);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(child, entry);
+        }
+        if (!entry.moved) {
+            entry.moved = true;
+            moved.add(child);
+        }
+    }
+
+    /**
+     * Forgets a detached child. The bound of the node is shrunk lazily if
+     * the child was on its boundary.
+     */
+    synchronized void remove(Spatial child) {
+        Entry entry = entries.remove(child);
+        if (entry == null || full) {
+            return;
+        }
+        if (entry.moved) {
+            moved.remove(child);
+        }
+        if (entry.hasBound && touchesUnion(entry.box)) {
+            requestShrink();
+        }
+    }
+
+    /**
+     * Requests a full merge at the next update.
+     */
+    synchronized void invalidate() {
+        full = true;
+    }
+
+    /**
+     * @return the number of full merges done so far
+     */
+    int getFullMergeCount() {
+        return fullMerges;
+    }
+
+    /**
+     * Brings the world bound of the node up to date, once the bounds of its
+     * children are.
+     */
+    synchronized void update() {
+        if (!full && moved.size() * 4 > node.children.size()) {
+            // cheaper, and tight
+            full = true;
+        }
+        if (!full) {
+            for (int i = 0, n = moved.size(); i < n; i++) {
+                Spatial child = moved.get(i);
+                Entry entry = entries.get(child);
+                entry.moved = false;
+                boolean hadBound = entry.hasBound;
+                System.arraycopy(entry.box, 0, previous, 0, 6);
+                entry.hasBound = computeBox(child.getWorldBound(), entry.box);
+                if (hadBound && leftBoundary(previous, entry)) {
+                    requestShrink();
+                }
+                if (entry.hasBound) {
+                    grow(entry.box);
+                }
+            }
+            moved.clear();
+            if (shrinkPending && --shrinkCountdown <= 0) {
+                full = true;
+            }
+        }
+        if (full) {
+            mergeAll();
+        }
+        store();
+    }
+
+    private void requestShrink() {
+        if (!shrinkPending) {
+            shrinkPending = true;
+            shrinkCountdown = SHRINK_DELAY;
+        }
+    }
+
+    private void mergeAll() {
+        for (int i = 0, n = moved.size(); i < n; i++) {
+            Entry entry = entries.get(moved.get(i));
+            if (entry != null) {
+                entry.moved = false;
+            }
+        }
+        moved.clear();
+        empty = true;
+        for (Spatial child : node.children.getArray()) {
+            Entry entry = entries.get(child);
+            if (entry == null) {
+                entry = new Entry();
+                entries.put(child, entry);
+            }
+            entry.hasBound = computeBox(child.getWorldBound(), entry.box);
+            if (entry.hasBound) {
+                grow(entry.box);
+            }
+        }
+        full = false;
+        shrinkPending = false;
+        fullMerges++;
+    }
+
+    private boolean touchesUnion(float[] box) {
+        return box[0] <= union[0] || box[1] <= union[1] || box[2] <= union[2]
+                || box[3] >= union[3] || box[4] >= union[4] || box[5] >= union[5];
+    }
+
+    /**
+     * Tests whether a child that was on the boundary of the union moved
+     * away from it, so that the union might shrink.
+     */
+    private boolean leftBoundary(float[] old, Entry entry) {
+        if (!entry.hasBound) {
+            return touchesUnion(old);
+        }
+        float[] box = entry.box;
+        for (int i = 0; i < 3; i++) {
+            if (old[i] <= union[i] && box[i] > old[i]
+                    || old[i + 3] >= union[i + 3] && box[i + 3] < old[i + 3]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void grow(float[] box) {
+        if (empty) {
+            System.arraycopy(box, 0, union, 0, 6);
+            empty = false;
+            return;
+        }
+        for (int i = 0; i < 3; i++) {
+            union[i] = Math.min(union[i], box[i]);
+            union[i + 3] = Math.max(union[i + 3], box[i + 3]);
+        }
+    }
+
+    private static boolean computeBox(BoundingVolume bound, float[] box) {
+        if (bound == null) {
+            return false;
+        }
+        Vector3f center = bound.getCenter();
+        float x, y, z;
+        switch (bound.getType()) {
+            case AABB:
+                BoundingBox bb = (BoundingBox) bound;
+                x = bb.getXExtent();
+                y = bb.getYExtent();
+                z = bb.getZExtent();
+                break;
+            case Sphere:
+                x = y = z = ((BoundingSphere) bound).getRadius();
+                break;
+            default:
+                return false;
+        }
+        box[0] = center.x - x;
+        box[1] = center.y - y;
+        box[2] = center.z - z;
+        box[3] = center.x + x;
+        box[4] = center.y + y;
+        box[5] = center.z + z;
+        return true;
+    }
+
+    private void store() {
+        BoundingBox result = node.worldBound instanceof BoundingBox
+                ? (BoundingBox) node.worldBound : new BoundingBox();
+        if (empty) {
+            result.setCenter(node.getWorldTranslation());
+            result.setXExtent(0f);
+            result.setYExtent(0f);
+            result.setZExtent(0f);
+        } else {
+            result.getCenter().set((union[0] + union[3]) * 0.5f,
+                    (union[1] + union[4]) * 0.5f, (union[2] + union[5]) * 0.5f);
+            result.setXExtent((union[3] - union[0]) * 0.5f);
+            result.setYExtent((union[4] - union[1]) * 0.5f);
+            result.setZExtent((union[5] - union[2]) * 0.5f);
+        }
+        node.worldBound = result;
+    }
+}
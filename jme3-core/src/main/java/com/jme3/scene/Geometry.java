@@ -332,6 +332,11 @@ public class Geometry extends Spatial {
     @Override
     protected void updateWorldTransforms() {
         super.updateWorldTransforms();
+        onWorldTransformChange();
+    }
+
+    @Override
+    void onWorldTransformChange() {
         computeWorldMatrix();
 
         if (isGrouped()) {
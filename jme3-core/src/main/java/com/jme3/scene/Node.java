@@ -77,6 +77,21 @@ public class Node extends Spatial {
      * a whole list every time the scene graph changes.
      */
     private boolean updateListValid = false;
+    /**
+     * Optional bounding volume hierarchy over the children, used to cull
+     * wide nodes without testing every child.
+     */
+    transient SpatialIndex childIndex = null;
+    /**
+     * Optional flat copy of the transforms of this subtree, used to update
+     * world transforms in one linear pass.
+     */
+    transient TransformStore ownTransformStore = null;
+    /**
+     * Optional cache of the child bounds, used to update the world bound of
+     * wide nodes from the children that moved only.
+     */
+    transient ChildBoundTracker boundTracker = null;
 
     /**
      * Instantiate a <code>Node</code> with no name, no parent, and no children.
@@ -146,9 +161,22 @@ public class Node extends Spatial {
         }
     }
 
+    @Override
+    protected void setBoundRefresh() {
+        if (boundTracker != null) {
+            // our own bound changed for a reason other than a moved child
+            boundTracker.invalidate();
+        }
+        super.setBoundRefresh();
+    }
+
     @Override
     protected void updateWorldBound() {
         super.updateWorldBound();
+        if (boundTracker != null) {
+            boundTracker.update();
+            return;
+        }
         // for a node, the world bound is a combination of all its children
         // bounds
         BoundingVolume resultBound = null;
@@ -207,7 +235,7 @@ public class Node extends Spatial {
         }
     }
 
-    private SafeArrayList<Spatial> getUpdateList() {
+    SafeArrayList<Spatial> getUpdateList() {
         if (updateListValid) {
             return updateList;
         }
@@ -235,17 +263,55 @@ public class Node extends Spatial {
             return;
         }
 
-        for (Spatial s : getUpdateList().getArray()) {
-            s.updateLogicalState(tpf);
+        SafeArrayList<Spatial> list = getUpdateList();
+        Spatial[] array = list.acquireArray();
+        try {
+            for (Spatial s : array) {
+                s.updateLogicalState(tpf);
+            }
+        } finally {
+            list.releaseArray(array);
         }
     }
 
     @Override
     public void updateGeometricState() {
-        if (refreshFlags == 0) {
+        if (!beginGeometricState()) {
             // This branch has no geometric state that requires updates.
             return;
         }
+        if (!children.isEmpty()) {
+            // the important part- make sure child geometric state is refreshed
+            // first before updating own world bound. This saves
+            // a round-trip later on.
+            // NOTE 9/19/09
+            // Although it does save a round trip,
+            Spatial[] array = children.acquireArray();
+            try {
+                for (Spatial child : array) {
+                    child.updateGeometricState();
+                }
+            } finally {
+                children.releaseArray(array);
+            }
+        }
+        endGeometricState();
+    }
+
+    /**
+     * Refreshes the state this node inherits from its parent, before its
+     * children are updated. Shared with {@link ParallelSceneUpdater}.
+     *
+     * @return false if nothing in this branch requires an update
+     */
+    boolean beginGeometricState() {
+        if (ownTransformStore != null) {
+            // resolves all pending transforms of the subtree at once
+            ownTransformStore.update();
+        }
+        if (refreshFlags == 0) {
+            return false;
+        }
         if ((refreshFlags & RF_LIGHTLIST) != 0) {
             updateWorldLightList();
         }
@@ -259,17 +325,14 @@ public class Node extends Spatial {
         }
 
         refreshFlags &= ~RF_CHILD_LIGHTLIST;
-        if (!children.isEmpty()) {
-            // the important part- make sure child geometric state is refreshed
-            // first before updating own world bound. This saves
-            // a round-trip later on.
-            // NOTE 9/19/09
-            // Although it does save a round trip,
-            for (Spatial child : children.getArray()) {
-                child.updateGeometricState();
-            }
-        }
+        return true;
+    }
 
+    /**
+     * Refreshes the world bound of this node, once all of its children are
+     * up to date.
+     */
+    void endGeometricState() {
         if ((refreshFlags & RF_BOUND) != 0) {
             updateWorldBound();
         }
@@ -356,6 +419,12 @@ public class Node extends Spatial {
             }
             child.setParent(this);
             children.add(index, child);
+            if (childIndex != null) {
+                childIndex.add(child);
+            }
+            if (transformStore != null) {
+                transformStore.invalidate();
+            }
             // XXX: Not entirely correct? Forces bound update up the
             // tree stemming from the attached child. Also forces
             // transform update down the tree-
@@ -430,12 +499,24 @@ public class Node extends Spatial {
     public Spatial detachChildAt(int index) {
         Spatial child = children.remove(index);
         if (child != null) {
+            if (childIndex != null) {
+                childIndex.remove(child);
+            }
+            if (child.transformStore != null) {
+                child.transformStore.invalidate();
+            }
             child.setParent(null);
             logger.log(Level.FINE, "{0}: Child removed.", this);
 
             // since a child with a bound was detached;
             // our own bound will probably change.
-            setBoundRefresh();
+            if (boundTracker != null) {
+                // shrinks lazily, without merging all the children again
+                boundTracker.remove(child);
+                super.setBoundRefresh();
+            } else {
+                setBoundRefresh();
+            }
 
             // our world transform no longer influences the child.
             // XXX: Not necessary? Since child will have transform updated
@@ -464,6 +545,147 @@ public class Node extends Spatial {
         logger.log(Level.FINE, "{0}: All children removed.", this);
     }
 
+    /**
+     * Enables or disables the {@link SpatialIndex} over the children of this
+     * node. When enabled, the render manager culls the children by querying
+     * the index, so only the children near the camera frustum are visited
+     * instead of all of them. This pays off for nodes with hundreds or
+     * thousands of children, most of them static.
+     *
+     * <p>The index only changes which children are visited, each of them is
+     * still culled and rendered as usual. The order in which visible children
+     * are queued may differ from their order in the node.
+     *
+     * @param enabled true to build and maintain the index, false to drop it
+     *     (default=false)
+     */
+    public void setChildIndexEnabled(boolean enabled) {
+        if (!enabled) {
+            if (childIndex != null) {
+                for (Spatial child : children.getArray()) {
+                    child.indexProxy = -1;
+                }
+                childIndex = null;
+            }
+        } else if (childIndex == null) {
+            childIndex = new SpatialIndex();
+            for (Spatial child : children.getArray()) {
+                childIndex.add(child);
+            }
+        }
+    }
+
+    /**
+     * Tests whether this node maintains a {@link SpatialIndex} over its
+     * children.
+     *
+     * @return true if enabled, otherwise false
+     * @see #setChildIndexEnabled(boolean)
+     */
+    public boolean isChildIndexEnabled() {
+        return childIndex != null;
+    }
+
+    /**
+     * Returns the index over the children of this node, if enabled.
+     *
+     * @return the pre-existing index, or null if disabled
+     * @see #setChildIndexEnabled(boolean)
+     */
+    public SpatialIndex getSpatialIndex() {
+        return childIndex;
+    }
+
+    /**
+     * Enables or disables the {@link TransformStore} of this subtree. When
+     * enabled, the local and world transforms of this node and all of its
+     * descendants are also kept in flat arrays, ordered parent before child,
+     * and {@link #updateGeometricState()} recomputes the world transforms of
+     * the changed parts of the subtree in one linear pass over them. This
+     * pays off for large subtrees, most of them static, where walking the
+     * scene graph object by object dominates the update.
+     *
+     * <p>The store is rebuilt after spatials are attached or detached
+     * anywhere in the subtree, so it suits subtrees whose structure rarely
+     * changes. A subtree can't have more than one store.
+     *
+     * @param enabled true to build and maintain the store, false to drop it
+     *     (default=false)
+     * @throws IllegalStateException if an ancestor already has a store
+     */
+    public void setTransformStoreEnabled(boolean enabled) {
+        if (!enabled) {
+            if (ownTransformStore != null) {
+                ownTransformStore.dispose();
+                ownTransformStore = null;
+            }
+        } else if (ownTransformStore == null) {
+            for (Node p = parent; p != null; p = p.parent) {
+                if (p.ownTransformStore != null) {
+                    throw new IllegalStateException("Ancestor " + p.getName()
+                            + " already has a transform store");
+                }
+            }
+            ownTransformStore = new TransformStore(this);
+            setTransformRefresh();
+        }
+    }
+
+    /**
+     * Tests whether this node maintains a {@link TransformStore} over its
+     * subtree.
+     *
+     * @return true if enabled, otherwise false
+     * @see #setTransformStoreEnabled(boolean)
+     */
+    public boolean isTransformStoreEnabled() {
+        return ownTransformStore != null;
+    }
+
+    /**
+     * Returns the transform store of this subtree, if enabled.
+     *
+     * @return the pre-existing store, or null if disabled
+     * @see #setTransformStoreEnabled(boolean)
+     */
+    public TransformStore getTransformStore() {
+        return ownTransformStore;
+    }
+
+    /**
+     * Enables or disables the incremental update of the world bound of this
+     * node. When enabled, the bound of every child is cached and
+     * {@link #updateGeometricState()} only merges the bounds of the children
+     * that moved, instead of all of them. A wide node with a few moving
+     * children then costs time in proportion to the movers, not to the
+     * children.
+     *
+     * <p>The world bound of the node becomes a {@link BoundingBox}. It grows
+     * as soon as a child moves out of it, but only shrinks a few updates
+     * after a child on its boundary moved inward or was detached, so it can
+     * be larger than needed for a while.
+     *
+     * @param enabled true to update the bound incrementally, false to merge
+     *     all the children on every change (default=false)
+     */
+    public void setIncrementalBoundEnabled(boolean enabled) {
+        if (enabled == (boundTracker != null)) {
+            return;
+        }
+        boundTracker = enabled ? new ChildBoundTracker(this) : null;
+        setBoundRefresh();
+    }
+
+    /**
+     * Tests whether the world bound of this node is updated incrementally.
+     *
+     * @return true if enabled, otherwise false
+     * @see #setIncrementalBoundEnabled(boolean)
+     */
+    public boolean isIncrementalBoundEnabled() {
+        return boundTracker != null;
+    }
+
     /**
      * <code>getChildIndex</code> returns the index of the given spatial
      * in this node's list of children.
@@ -714,6 +936,17 @@ public class Node extends Spatial {
         return nodeClone;
     }
 
+    @Override
+    public Spatial[] clone(boolean cloneMaterials, int count) {
+        Spatial[] clones = super.clone(cloneMaterials, count);
+        for (Spatial clone : clones) {
+            Node nodeClone = (Node) clone;
+            nodeClone.updateList = null;
+            nodeClone.updateListValid = false;
+        }
+        return clones;
+    }
+
     @Override
     public Spatial deepClone() {
         Node nodeClone = (Node) super.deepClone();
@@ -749,6 +982,18 @@ public class Node extends Spatial {
         // or not... after all, we might be cloning a root node in which case
         // cloning this list is fine.
         this.updateList = cloner.clone(updateList);
+
+        // The index refers to the original children, build a new one.
+        if (childIndex != null) {
+            childIndex = null;
+            setChildIndexEnabled(true);
+        }
+        if (ownTransformStore != null) {
+            ownTransformStore = new TransformStore(this);
+        }
+        if (boundTracker != null) {
+            boundTracker = new ChildBoundTracker(this);
+        }
     }
 
     @Override
@@ -756,6 +1001,9 @@ public class Node extends Spatial {
     public void write(JmeExporter e) throws IOException {
         super.write(e);
         e.getCapsule(this).writeSavableArrayList(new ArrayList(children), "children", null);
+        e.getCapsule(this).write(childIndex != null, "childIndex", false);
+        e.getCapsule(this).write(ownTransformStore != null, "transformStore", false);
+        e.getCapsule(this).write(boundTracker != null, "incrementalBound", false);
     }
 
     @Override
@@ -774,6 +1022,9 @@ public class Node extends Spatial {
             }
         }
         super.read(importer);
+        setChildIndexEnabled(importer.getCapsule(this).readBoolean("childIndex", false));
+        setTransformStoreEnabled(importer.getCapsule(this).readBoolean("transformStore", false));
+        setIncrementalBoundEnabled(importer.getCapsule(this).readBoolean("incrementalBound", false));
     }
 
     @Override
@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.control.Control;
+import com.jme3.util.ObjectIntMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the logical and geometric updates of a scene graph, spreading the
+ * independent parts of the work over a {@link ForkJoinPool}.
+ *
+ * <p>{@link #updateLogicalState(Spatial, float)} first updates, on the
+ * calling thread and in the usual order, every control that is not
+ * {@link AbstractControl#isThreadSafe() thread-safe} and every spatial that
+ * overrides {@link Spatial#updateLogicalState(float)}. The thread-safe
+ * controls are then updated as a task graph: a control runs after the
+ * controls it declared with {@link AbstractControl#addUpdateDependency(Control)},
+ * after all the controls of the spatials it declared with
+ * {@link AbstractControl#addUpdateDependency(Spatial)}, after the
+ * controls that precede it on its own spatial, and after the controls of
+ * the ancestors of its spatial. Everything else runs concurrently. The
+ * method returns once all controls are updated, so the geometric update
+ * always sees their results. Thread-safe controls may move their own
+ * spatial, but must not attach or detach spatials, nor change lights or
+ * material parameter overrides.
+ *
+ * <p>Moving a spatial marks its ancestors and descendants for refresh.
+ * Running the controls of ancestors first keeps a control from marking
+ * the same spatial as a concurrent one, so a control of an ancestor must
+ * not depend on the controls of its descendants.
+ *
+ * <p>{@link #updateGeometricState(Spatial)} relies on sibling subtrees
+ * only reading the state they inherit from their common ancestors, which is
+ * refreshed before they are visited, so they can be updated concurrently.
+ * Ranges of dirty children are split across tasks
+ * until the work in a range, estimated from the dirty children and their
+ * own children, falls below the {@link #setSplitThreshold(int) split
+ * threshold}. A node merges the world bounds of its children only after
+ * all of them completed, in child order, so the result is exactly the same
+ * as the serial update.
+ *
+ * <p>Only plain {@link Node}s are split. Subclasses that override the
+ * update, such as {@link GeometryGroupNode}s that track the transforms of
+ * their geometries, are updated as a whole by a single thread.
+ *
+ * <p>Controls and listeners must not modify the scene graph while the
+ * geometric update runs, as with the serial update.
+ */
+public class ParallelSceneUpdater {
+
+    /**
+     * Spatials that override updateLogicalState() and so are updated as a
+     * whole on the calling thread.
+     */
+    private static final ClassValue<Boolean> CUSTOM_LOGICAL_UPDATE = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                Class<?> owner = type.getMethod("updateLogicalState", float.class).getDeclaringClass();
+                return owner != Spatial.class && owner != Node.class;
+            } catch (NoSuchMethodException ex) {
+                return true;
+            }
+        }
+    };
+
+    private final ForkJoinPool pool;
+    private int splitThreshold = 256;
+    private int controlBatchSize = 8;
+
+    // task graph of the thread-safe controls, rebuilt every frame
+    private final List<AbstractControl> parallelControls = new ArrayList<>();
+    private final ObjectIntMap<Object> controlSlots = new ObjectIntMap<>(16, true);
+    private final ObjectIntMap<Spatial> lastSlotOfSpatial = new ObjectIntMap<>(16, true);
+    private int[] levels = new int[16];
+    private int[] levelStarts = new int[16];
+    private AbstractControl[] batch = new AbstractControl[16];
+
+    /**
+     * Creates an updater using the common fork-join pool.
+     */
+    public ParallelSceneUpdater() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates an updater using the given pool.
+     *
+     * @param pool the pool to run update tasks on (not null)
+     */
+    public ParallelSceneUpdater(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * @return the pool used for update tasks
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the estimated number of spatials a range of children must
+     * cover before it is split across tasks.
+     *
+     * @return the threshold (&ge;2)
+     */
+    public int getSplitThreshold() {
+        return splitThreshold;
+    }
+
+    /**
+     * Sets the estimated number of spatials a range of children must cover
+     * before it is split across tasks. The estimate counts each dirty child
+     * and the children of dirty child nodes. The default is 256.
+     *
+     * @param splitThreshold the threshold (&ge;2)
+     */
+    public void setSplitThreshold(int splitThreshold) {
+        if (splitThreshold < 2) {
+            throw new IllegalArgumentException("splitThreshold must be at least 2");
+        }
+        this.splitThreshold = splitThreshold;
+    }
+
+    /**
+     * Returns the number of thread-safe controls updated by each task.
+     *
+     * @return the batch size (&ge;1)
+     */
+    public int getControlBatchSize() {
+        return controlBatchSize;
+    }
+
+    /**
+     * Sets the number of thread-safe controls updated by each task. Larger
+     * batches reduce the scheduling overhead for cheap controls. The
+     * default is 8.
+     *
+     * @param controlBatchSize the batch size (&ge;1)
+     */
+    public void setControlBatchSize(int controlBatchSize) {
+        if (controlBatchSize < 1) {
+            throw new IllegalArgumentException("controlBatchSize must be at least 1");
+        }
+        this.controlBatchSize = controlBatchSize;
+    }
+
+    /**
+     * Updates the controls of the scene, running the thread-safe ones
+     * concurrently. Equivalent to {@link Spatial#updateLogicalState(float)}
+     * when no control is thread-safe.
+     *
+     * <p>Must be called from a single thread at a time.
+     *
+     * @param scene the scene to update (not null)
+     * @param tpf the time per frame (in seconds)
+     * @throws IllegalStateException if the declared dependencies form a cycle
+     */
+    public void updateLogicalState(Spatial scene, float tpf) {
+        if (!(scene instanceof Node) || scene.getParent() != null
+                || CUSTOM_LOGICAL_UPDATE.get(scene.getClass())) {
+            scene.updateLogicalState(tpf);
+            return;
+        }
+        try {
+            collectControls(scene, tpf);
+            for (Spatial spatial : ((Node) scene).getUpdateList().getArray()) {
+                collectControls(spatial, tpf);
+            }
+            if (!parallelControls.isEmpty()) {
+                runControls(tpf);
+            }
+        } finally {
+            parallelControls.clear();
+            controlSlots.clear();
+            lastSlotOfSpatial.clear();
+            Arrays.fill(batch, null);
+        }
+    }
+
+    /**
+     * Updates the serial controls of a spatial right away and records its
+     * thread-safe ones.
+     */
+    private void collectControls(Spatial spatial, float tpf) {
+        if (CUSTOM_LOGICAL_UPDATE.get(spatial.getClass())) {
+            spatial.updateLogicalState(tpf);
+            return;
+        }
+        for (Control control : spatial.controls.getArray()) {
+            if (control instanceof AbstractControl && ((AbstractControl) control).isThreadSafe()) {
+                controlSlots.put(control, parallelControls.size());
+                parallelControls.add((AbstractControl) control);
+            } else {
+                control.update(tpf);
+            }
+        }
+    }
+
+    /**
+     * Sorts the thread-safe controls into levels of independent controls and
+     * runs the levels one after the other.
+     */
+    private void runControls(float tpf) {
+        int count = parallelControls.size();
+        if (levels.length < count) {
+            int capacity = Math.max(count, levels.length * 2);
+            levels = new int[capacity];
+            batch = new AbstractControl[capacity];
+        }
+        Arrays.fill(levels, 0, count, -1);
+        int maxLevel = 0;
+        for (int i = 0; i < count; i++) {
+            maxLevel = Math.max(maxLevel, computeLevel(i));
+        }
+
+        // counting sort by level, stable so each level keeps scene order
+        if (levelStarts.length < maxLevel + 2) {
+            levelStarts = new int[maxLevel + 2];
+        }
+        Arrays.fill(levelStarts, 0, maxLevel + 2, 0);
+        for (int i = 0; i < count; i++) {
+            levelStarts[levels[i] + 1]++;
+        }
+        for (int l = 1; l <= maxLevel + 1; l++) {
+            levelStarts[l] += levelStarts[l - 1];
+        }
+        for (int i = 0; i < count; i++) {
+            batch[levelStarts[levels[i]]++] = parallelControls.get(i);
+        }
+
+        int from = 0;
+        for (int l = 0; l <= maxLevel; l++) {
+            int to = levelStarts[l];
+            if (to - from <= controlBatchSize) {
+                for (int i = from; i < to; i++) {
+                    batch[i].update(tpf);
+                }
+            } else {
+                pool.invoke(new ControlTask(batch, from, to, tpf));
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Returns the level of a thread-safe control: one more than the highest
+     * level among the controls it has to wait for.
+     */
+    private int computeLevel(int slot) {
+        int level = levels[slot];
+        if (level >= 0) {
+            return level;
+        }
+        if (level == -2) {
+            throw new IllegalStateException("Cyclic update dependencies involving "
+                    + parallelControls.get(slot));
+        }
+        levels[slot] = -2;
+
+        AbstractControl control = parallelControls.get(slot);
+        level = 0;
+        // keep the order of the controls of the same spatial
+        if (slot > 0 && parallelControls.get(slot - 1).getSpatial() == control.getSpatial()
+                && control.getSpatial() != null) {
+            level = computeLevel(slot - 1) + 1;
+        }
+        // moving a spatial writes the refresh flags of its ancestors and
+        // descendants, so wait for the closest ancestor that has controls
+        Spatial spatial = control.getSpatial();
+        if (spatial != null) {
+            for (Spatial parent = spatial.getParent(); parent != null; parent = parent.getParent()) {
+                int other = lastSlotOf(parent);
+                if (other >= 0) {
+                    level = Math.max(level, computeLevel(other) + 1);
+                    break;
+                }
+            }
+        }
+        for (Object dependency : control.getUpdateDependencies()) {
+            int other = -1;
+            if (dependency instanceof Spatial) {
+                other = lastSlotOf((Spatial) dependency);
+            } else {
+                other = controlSlots.get(dependency, -1);
+            }
+            if (other >= 0 && other != slot) {
+                level = Math.max(level, computeLevel(other) + 1);
+            }
+        }
+        levels[slot] = level;
+        return level;
+    }
+
+    /**
+     * Returns the slot of the last thread-safe control of a spatial, or -1
+     * if it has none.
+     */
+    private int lastSlotOf(Spatial spatial) {
+        int cached = lastSlotOfSpatial.get(spatial, -2);
+        if (cached != -2) {
+            return cached;
+        }
+        int last = -1;
+        Control[] controls = spatial.controls.getArray();
+        for (int i = controls.length - 1; i >= 0 && last < 0; i--) {
+            last = controlSlots.get(controls[i], -1);
+        }
+        lastSlotOfSpatial.put(spatial, last);
+        return last;
+    }
+
+    /**
+     * Updates the geometric state of the scene, with the same result as
+     * {@link Spatial#updateGeometricState()}.
+     *
+     * @param scene the scene to update (not null)
+     */
+    public void updateGeometricState(Spatial scene) {
+        if (!isSplittable(scene)) {
+            scene.updateGeometricState();
+            return;
+        }
+        Node node = (Node) scene;
+        if (!node.beginGeometricState()) {
+            return;
+        }
+        Spatial[] children = node.children.getArray();
+        updateRange(children, 0, children.length);
+        node.endGeometricState();
+    }
+
+    private static boolean isSplittable(Spatial spatial) {
+        return spatial.getClass() == Node.class;
+    }
+
+    /**
+     * Estimates the work of updating a range of children: the dirty
+     * children plus the children of dirty child nodes.
+     */
+    private static int estimate(Spatial[] children, int from, int to) {
+        int work = 0;
+        for (int i = from; i < to; i++) {
+            Spatial child = children[i];
+            if (child.refreshFlags == 0) {
+                continue;
+            }
+            work++;
+            if (child instanceof Node) {
+                work += ((Node) child).getQuantity();
+            }
+        }
+        return work;
+    }
+
+    private void update(Spatial spatial) {
+        if (!isSplittable(spatial)) {
+            spatial.updateGeometricState();
+            return;
+        }
+        Node node = (Node) spatial;
+        if (!node.beginGeometricState()) {
+            return;
+        }
+        Spatial[] children = node.children.getArray();
+        updateRange(children, 0, children.length);
+        node.endGeometricState();
+    }
+
+    /**
+     * Updates a range of children, splitting it into tasks if it is large
+     * enough.
+     */
+    private void updateRange(Spatial[] children, int from, int to) {
+        if (to - from > 1 && estimate(children, from, to) >= splitThreshold) {
+            if (ForkJoinTask.getPool() != pool) {
+                // enter the pool, the task splits the range again
+                pool.invoke(new UpdateTask(children, from, to));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            ForkJoinTask.invokeAll(new UpdateTask(children, from, mid),
+                    new UpdateTask(children, mid, to));
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            update(children[i]);
+        }
+    }
+
+    private class ControlTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AbstractControl[] controls;
+        private final int from;
+        private final int to;
+        private final float tpf;
+
+        ControlTask(AbstractControl[] controls, int from, int to, float tpf) {
+            this.controls = controls;
+            this.from = from;
+            this.to = to;
+            this.tpf = tpf;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > controlBatchSize) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ControlTask(controls, from, mid, tpf),
+                        new ControlTask(controls, mid, to, tpf));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                controls[i].update(tpf);
+            }
+        }
+    }
+
+    private class UpdateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Spatial[] children;
+        private final int from;
+        private final int to;
+
+        UpdateTask(Spatial[] children, int from, int to) {
+            this.children = children;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            updateRange(children, from, to);
+        }
+    }
+}
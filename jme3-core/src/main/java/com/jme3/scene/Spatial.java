@@ -51,6 +51,7 @@ import com.jme3.renderer.queue.RenderQueue.ShadowMode;
 import com.jme3.scene.control.Control;
 import com.jme3.util.SafeArrayList;
 import com.jme3.util.TempVars;
+import com.jme3.util.clone.ClonePlan;
 import com.jme3.util.clone.Cloner;
 import com.jme3.util.clone.IdentityCloneFunction;
 import com.jme3.util.clone.JmeCloneable;
@@ -170,6 +171,17 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      * updated to reflect the correct state.
      */
     protected transient int refreshFlags = 0;
+    /**
+     * Slot of this spatial in its parent's {@link SpatialIndex}, if the
+     * parent has one.
+     */
+    transient int indexProxy = -1;
+    /**
+     * The {@link TransformStore} this spatial belongs to, if any, and the
+     * slot of this spatial in it.
+     */
+    transient TransformStore transformStore = null;
+    transient int storeIndex = -1;
 
     /**
      * Set to true if a subclass requires updateLogicalState() even
@@ -280,6 +292,9 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
     protected void setTransformRefresh() {
         refreshFlags |= RF_TRANSFORM;
         setBoundRefresh();
+        if (transformStore != null) {
+            transformStore.markDirty(this);
+        }
     }
 
     protected void setLightListRefresh() {
@@ -317,18 +332,35 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      */
     protected void setBoundRefresh() {
         refreshFlags |= RF_BOUND;
+        setIndexRefresh();
 
-        Spatial p = parent;
+        Spatial child = this;
+        Node p = parent;
         while (p != null) {
+            if (p.boundTracker != null) {
+                p.boundTracker.childMoved(child);
+            }
             if ((p.refreshFlags & RF_BOUND) != 0) {
                 return;
             }
 
             p.refreshFlags |= RF_BOUND;
+            p.setIndexRefresh();
+            child = p;
             p = p.parent;
         }
     }
 
+    /**
+     * Tells the parent's {@link SpatialIndex}, if any, that the culling
+     * information of this spatial has changed.
+     */
+    void setIndexRefresh() {
+        if (parent != null && parent.childIndex != null) {
+            parent.childIndex.markDirty(this);
+        }
+    }
+
     /**
      * (Internal use only) Forces a refresh of the given types of data.
      *
@@ -348,6 +380,24 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         }
     }
 
+    /**
+     * Verifies that no state of this spatial has changed since the last
+     * call to {@link #updateGeometricState()}.
+     * <p>
+     * This method is called by the renderer before culling. Usually it
+     * should not be called directly.
+     *
+     * @throws IllegalStateException if the spatial needs an update
+     */
+    public void checkUpdated() {
+        if (refreshFlags != 0) {
+            throw new IllegalStateException("Scene graph is not properly updated for rendering.\n"
+                    + "State was changed after rootNode.updateGeometricState() call. \n"
+                    + "Make sure you do not modify the scene from another thread!\n"
+                    + "Problem spatial name: " + getName());
+        }
+    }
+
     /**
      * <code>checkCulling</code> checks the spatial with the camera to see if it
      * should be culled.
@@ -360,12 +410,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      * (should be rendered), false if outside.
      */
     public boolean checkCulling(Camera cam) {
-        if (refreshFlags != 0) {
-            throw new IllegalStateException("Scene graph is not properly updated for rendering.\n"
-                    + "State was changed after rootNode.updateGeometricState() call. \n"
-                    + "Make sure you do not modify the scene from another thread!\n"
-                    + "Problem spatial name: " + getName());
-        }
+        checkUpdated();
 
         CullHint cm = getCullHint();
         assert cm != CullHint.Inherit : "CullHint should never be inherit. Problem spatial name: " + getName();
@@ -660,6 +705,13 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         }
     }
 
+    /**
+     * Called after the world transform of this spatial was recomputed by a
+     * {@link TransformStore}, in place of {@link #updateWorldTransforms()}.
+     */
+    void onWorldTransformChange() {
+    }
+
     /**
      * Computes the world transform of this Spatial in the most
      * efficient manner possible.
@@ -739,8 +791,13 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
             return;
         }
 
-        for (Control c : controls.getArray()) {
-            c.update(tpf);
+        Control[] array = controls.acquireArray();
+        try {
+            for (Control c : array) {
+                c.update(tpf);
+            }
+        } finally {
+            controls.releaseArray(array);
         }
     }
 
@@ -759,8 +816,13 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
             return;
         }
 
-        for (Control c : controls.getArray()) {
-            c.render(rm, vp);
+        Control[] array = controls.acquireArray();
+        try {
+            for (Control c : array) {
+                c.render(rm, vp);
+            }
+        } finally {
+            controls.releaseArray(array);
         }
     }
 
@@ -1406,6 +1468,65 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      * @see Mesh#cloneForAnim()
      */
     public Spatial clone(boolean cloneMaterial) {
+        Cloner cloner = createCloner(cloneMaterial);
+
+        // Clone it!
+        Spatial clone = cloner.clone(this);
+
+        // Because we've nulled the parent out we need to make sure
+        // the transforms and stuff get refreshed.
+        clone.setTransformRefresh();
+        clone.setLightListRefresh();
+        clone.setMatParamOverrideRefresh();
+
+        return clone;
+    }
+
+    /**
+     * Creates several clones of this spatial at once, as if by calling
+     * {@link #clone(boolean)} repeatedly. The first clone records a
+     * {@link ClonePlan} of the scene graph, and the other clones replay it,
+     * which is faster for large graphs such as animated characters.
+     *
+     * @param cloneMaterial true to clone materials, false to share them
+     * @param count the number of clones to create (&ge;0)
+     * @return a new array of new clones
+     */
+    public Spatial[] clone(boolean cloneMaterial, int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Count cannot be negative: " + count);
+        }
+        Spatial[] result = new Spatial[count];
+        if (!usesClonePlan()) {
+            for (int i = 0; i < count; i++) {
+                result[i] = clone(cloneMaterial);
+            }
+            return result;
+        }
+        Cloner cloner = createCloner(cloneMaterial);
+        ClonePlan plan = new ClonePlan();
+        for (int i = 0; i < count; i++) {
+            Spatial clone = cloner.clone(this, plan);
+            clone.setTransformRefresh();
+            clone.setLightListRefresh();
+            clone.setMatParamOverrideRefresh();
+            result[i] = clone;
+        }
+        return result;
+    }
+
+    /**
+     * Tests whether {@link #clone(boolean, int)} may replay a clone plan.
+     * Subclasses that fix up each clone in {@link #clone(boolean)} return
+     * false, and are then cloned one at a time.
+     *
+     * @return true to replay a clone plan, false to clone one at a time
+     */
+    protected boolean usesClonePlan() {
+        return true;
+    }
+
+    private Cloner createCloner(boolean cloneMaterial) {
         // Set up the cloner for the type of cloning we want to do.
         Cloner cloner = new Cloner();
 
@@ -1422,17 +1543,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         // may choose to selectively force them to be cloned, but
         // normally they will be shared.
         cloner.setCloneFunction(Mesh.class, new IdentityCloneFunction<Mesh>());
-
-        // Clone it!
-        Spatial clone = cloner.clone(this);
-
-        // Because we've nulled the parent out we need to make sure
-        // the transforms and stuff get refreshed.
-        clone.setTransformRefresh();
-        clone.setLightListRefresh();
-        clone.setMatParamOverrideRefresh();
-
-        return clone;
+        return cloner;
     }
 
     /**
@@ -1515,6 +1626,8 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
         this.worldOverrides = cloner.clone(worldOverrides);
         this.localOverrides = cloner.clone(localOverrides);
         this.controls = cloner.clone(controls);
+        this.transformStore = null;
+        this.storeIndex = -1;
 
         // Cloner doesn't handle maps on its own just yet.
         // Note: this is more advanced cloning than the old clone() method
@@ -1689,6 +1802,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      */
     public void setCullHint(CullHint hint) {
         cullHint = hint;
+        setIndexRefresh();
     }
 
     /**
@@ -1729,6 +1843,7 @@ public abstract class Spatial implements Savable, Cloneable, Collidable,
      */
     public void setQueueBucket(RenderQueue.Bucket queueBucket) {
         this.queueBucket = queueBucket;
+        setIndexRefresh();
     }
 
     /**
@@ -0,0 +1,654 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Plane;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+
+/**
+ * A dynamic bounding volume hierarchy over the children of a {@link Node},
+ * used to find the children that may be visible to a camera without testing
+ * every one of them.
+ *
+ * <p>Each child is stored with a "fat" axis-aligned box, enlarged by a
+ * margin around its world bound. Children are only reinserted when their
+ * bound leaves the fat box, so static children cost nothing per frame and
+ * moving ones cost O(log n). The tree is kept balanced with the rotations
+ * described by Erin Catto for Box2D's b2DynamicTree.
+ *
+ * <p>Children that must never be culled by the frustum (a local cull hint of
+ * {@link Spatial.CullHint#Never}, a local queue bucket of {@link Bucket#Gui}
+ * or no world bound) are kept outside of the tree and always returned.
+ *
+ * <p>The index is created by {@link Node#setChildIndexEnabled(boolean)} and
+ * kept current by the scene graph. It returns candidates only: the caller
+ * still has to check each of them, e.g. with
+ * {@link Spatial#checkCulling(com.jme3.renderer.Camera)}.
+ */
+public class SpatialIndex {
+
+    private static final int NULL = -1;
+    private static final float DEFAULT_MARGIN = 0.1f;
+
+    // node pool, stored as parallel arrays
+    private float[] minX, minY, minZ, maxX, maxY, maxZ;
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    private int[] height;
+    private Spatial[] items;
+    private boolean[] dirty;
+    private boolean[] unbounded;
+    private int capacity;
+    private int freeList = NULL;
+    private int root = NULL;
+
+    private int[] dirtyList = new int[16];
+    private int dirtyCount;
+    private int[] unboundedList = new int[4];
+    private int unboundedCount;
+
+    private int[] stack = new int[64];
+    private Spatial[] results = new Spatial[16];
+    private int resultCount;
+    private int count;
+
+    private float margin = DEFAULT_MARGIN;
+    private final Vector3f tempExtent = new Vector3f();
+
+    /**
+     * Creates an empty index.
+     */
+    public SpatialIndex() {
+        allocate(16);
+    }
+
+    /**
+     * Returns the margin by which the box of each child is enlarged, as a
+     * fraction of the child's largest extent.
+     *
+     * @return the margin (&ge;0)
+     */
+    public float getMargin() {
+        return margin;
+    }
+
+    /**
+     * Sets the margin by which the box of each child is enlarged, as a
+     * fraction of the child's largest extent. Larger margins mean fewer
+     * reinsertions for moving children but looser culling. The default is 0.1.
+     *
+     * @param margin the margin (&ge;0)
+     */
+    public void setMargin(float margin) {
+        if (margin < 0f) {
+            throw new IllegalArgumentException("margin must not be negative");
+        }
+        this.margin = margin;
+    }
+
+    /**
+     * @return the number of spatials in the index
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the height of the tree, 0 if empty or a single leaf
+     */
+    public int getHeight() {
+        return root == NULL ? 0 : height[root];
+    }
+
+    /**
+     * Finds the spatials whose (enlarged) bounds are not outside the camera
+     * frustum. The results can be read with {@link #getCullResults()} until
+     * the next call.
+     *
+     * <p>Pending changes to the children's bounds are applied first, so the
+     * world bounds of the children must be up to date.
+     *
+     * @param cam the camera to cull against (not null, unaffected)
+     * @param planeState the planes already known to contain the owning node,
+     *     as in {@link Camera#getPlaneState()}
+     * @return the number of results
+     */
+    public int cull(Camera cam, int planeState) {
+        refresh();
+
+        resultCount = 0;
+        for (int i = 0; i < unboundedCount; i++) {
+            addResult(items[unboundedList[i]]);
+        }
+        if (root == NULL) {
+            return resultCount;
+        }
+
+        // pairs of (node, plane state)
+        int top = 0;
+        stack[top++] = root;
+        stack[top++] = planeState;
+        while (top > 0) {
+            int state = stack[--top];
+            int node = stack[--top];
+
+            if (state != Camera.ALL_PLANES) {
+                state = intersectPlanes(cam, node, state);
+                if (state < 0) {
+                    continue;
+                }
+            }
+
+            if (height[node] == 0) {
+                addResult(items[node]);
+            } else {
+                if (top + 4 > stack.length) {
+                    int[] newStack = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, newStack, 0, top);
+                    stack = newStack;
+                }
+                // push the second child first so that the first one is
+                // visited first
+                stack[top++] = child2[node];
+                stack[top++] = state;
+                stack[top++] = child1[node];
+                stack[top++] = state;
+            }
+        }
+        return resultCount;
+    }
+
+    /**
+     * Returns the results of the last {@link #cull(Camera, int)}. Only the
+     * first entries, up to the count returned by cull, are valid.
+     *
+     * @return the internal array of results (do not modify)
+     */
+    public Spatial[] getCullResults() {
+        return results;
+    }
+
+    /**
+     * Adds a spatial to the index. Its bound is read the next time the index
+     * is queried.
+     *
+     * @param spatial the spatial to add (not null, not in an index)
+     */
+    void add(Spatial spatial) {
+        int proxy = allocateNode();
+        items[proxy] = spatial;
+        height[proxy] = 0;
+        spatial.indexProxy = proxy;
+        count++;
+        markDirty(proxy);
+    }
+
+    /**
+     * Removes a spatial from the index.
+     *
+     * @param spatial the spatial to remove (not null, in this index)
+     */
+    void remove(Spatial spatial) {
+        int proxy = spatial.indexProxy;
+        spatial.indexProxy = NULL;
+        // stale entries in the dirty list are skipped by refresh()
+        dirty[proxy] = false;
+        if (unbounded[proxy]) {
+            removeFromList(unboundedList, unboundedCount--, proxy);
+            unbounded[proxy] = false;
+        } else if (isInTree(proxy)) {
+            removeLeaf(proxy);
+        }
+        freeNode(proxy);
+        count--;
+    }
+
+    /**
+     * Notes that the bound, cull hint or queue bucket of a spatial may have
+     * changed.
+     *
+     * @param spatial the spatial (not null, in this index)
+     */
+    void markDirty(Spatial spatial) {
+        // thread-safe controls may move sibling children concurrently
+        synchronized (this) {
+            markDirty(spatial.indexProxy);
+        }
+    }
+
+    private void markDirty(int proxy) {
+        if (!dirty[proxy]) {
+            dirty[proxy] = true;
+            if (dirtyCount == dirtyList.length) {
+                int[] newList = new int[dirtyCount * 2];
+                System.arraycopy(dirtyList, 0, newList, 0, dirtyCount);
+                dirtyList = newList;
+            }
+            dirtyList[dirtyCount++] = proxy;
+        }
+    }
+
+    /**
+     * Applies the pending changes.
+     */
+    private void refresh() {
+        for (int i = 0; i < dirtyCount; i++) {
+            int proxy = dirtyList[i];
+            if (!dirty[proxy]) {
+                continue;
+            }
+            dirty[proxy] = false;
+            Spatial spatial = items[proxy];
+            BoundingVolume bound = spatial.getWorldBound();
+
+            boolean alwaysVisible = bound == null
+                    || spatial.getLocalCullHint() == Spatial.CullHint.Never
+                    || spatial.getLocalQueueBucket() == Bucket.Gui
+                    || !computeExtent(bound, tempExtent);
+            if (alwaysVisible) {
+                if (!unbounded[proxy]) {
+                    if (isInTree(proxy)) {
+                        removeLeaf(proxy);
+                    }
+                    unbounded[proxy] = true;
+                    addToUnbounded(proxy);
+                }
+                continue;
+            }
+
+            if (unbounded[proxy]) {
+                unbounded[proxy] = false;
+                removeFromList(unboundedList, unboundedCount--, proxy);
+            } else if (isInTree(proxy)) {
+                if (fatBoxContains(proxy, bound.getCenter(), tempExtent)) {
+                    continue;
+                }
+                removeLeaf(proxy);
+            }
+
+            Vector3f c = bound.getCenter();
+            float m = margin * Math.max(tempExtent.x, Math.max(tempExtent.y, tempExtent.z));
+            minX[proxy] = c.x - tempExtent.x - m;
+            minY[proxy] = c.y - tempExtent.y - m;
+            minZ[proxy] = c.z - tempExtent.z - m;
+            maxX[proxy] = c.x + tempExtent.x + m;
+            maxY[proxy] = c.y + tempExtent.y + m;
+            maxZ[proxy] = c.z + tempExtent.z + m;
+            insertLeaf(proxy);
+        }
+        dirtyCount = 0;
+    }
+
+    private static boolean computeExtent(BoundingVolume bound, Vector3f store) {
+        if (bound instanceof BoundingBox) {
+            BoundingBox box = (BoundingBox) bound;
+            store.set(box.getXExtent(), box.getYExtent(), box.getZExtent());
+            return true;
+        } else if (bound instanceof BoundingSphere) {
+            float r = ((BoundingSphere) bound).getRadius();
+            store.set(r, r, r);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean fatBoxContains(int node, Vector3f c, Vector3f e) {
+        return minX[node] <= c.x - e.x && minY[node] <= c.y - e.y && minZ[node] <= c.z - e.z
+                && maxX[node] >= c.x + e.x && maxY[node] >= c.y + e.y && maxZ[node] >= c.z + e.z;
+    }
+
+    private int intersectPlanes(Camera cam, int node, int state) {
+        float cx = (minX[node] + maxX[node]) * 0.5f;
+        float cy = (minY[node] + maxY[node]) * 0.5f;
+        float cz = (minZ[node] + maxZ[node]) * 0.5f;
+        float ex = (maxX[node] - minX[node]) * 0.5f;
+        float ey = (maxY[node] - minY[node]) * 0.5f;
+        float ez = (maxZ[node] - minZ[node]) * 0.5f;
+        for (int planeId = 0; planeId < 6; planeId++) {
+            int mask = 1 << planeId;
+            if ((state & mask) != 0) {
+                continue;
+            }
+            Plane plane = cam.getWorldPlane(planeId);
+            Vector3f n = plane.getNormal();
+            float radius = Math.abs(ex * n.x) + Math.abs(ey * n.y) + Math.abs(ez * n.z);
+            float distance = n.x * cx + n.y * cy + n.z * cz - plane.getConstant();
+            if (distance < -radius) {
+                return -1;
+            } else if (distance > radius) {
+                state |= mask;
+            }
+        }
+        return state;
+    }
+
+    private void addResult(Spatial spatial) {
+        if (resultCount == results.length) {
+            Spatial[] newResults = new Spatial[resultCount * 2];
+            System.arraycopy(results, 0, newResults, 0, resultCount);
+            results = newResults;
+        }
+        results[resultCount++] = spatial;
+    }
+
+    private void addToUnbounded(int proxy) {
+        if (unboundedCount == unboundedList.length) {
+            int[] newList = new int[unboundedCount * 2];
+            System.arraycopy(unboundedList, 0, newList, 0, unboundedCount);
+            unboundedList = newList;
+        }
+        unboundedList[unboundedCount++] = proxy;
+    }
+
+    private static void removeFromList(int[] list, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (list[i] == value) {
+                list[i] = list[count - 1];
+                return;
+            }
+        }
+    }
+
+    private boolean isInTree(int leaf) {
+        return leaf == root || parent[leaf] != NULL;
+    }
+
+    // ------------------------------------------------------------------
+    // node pool
+
+    private void allocate(int newCapacity) {
+        minX = grow(minX, newCapacity);
+        minY = grow(minY, newCapacity);
+        minZ = grow(minZ, newCapacity);
+        maxX = grow(maxX, newCapacity);
+        maxY = grow(maxY, newCapacity);
+        maxZ = grow(maxZ, newCapacity);
+        parent = grow(parent, newCapacity);
+        child1 = grow(child1, newCapacity);
+        child2 = grow(child2, newCapacity);
+        height = grow(height, newCapacity);
+        Spatial[] newItems = new Spatial[newCapacity];
+        boolean[] newDirty = new boolean[newCapacity];
+        boolean[] newUnbounded = new boolean[newCapacity];
+        if (items != null) {
+            System.arraycopy(items, 0, newItems, 0, capacity);
+            System.arraycopy(dirty, 0, newDirty, 0, capacity);
+            System.arraycopy(unbounded, 0, newUnbounded, 0, capacity);
+        }
+        items = newItems;
+        dirty = newDirty;
+        unbounded = newUnbounded;
+
+        // link the new nodes into the free list
+        for (int i = newCapacity - 1; i >= capacity; i--) {
+            parent[i] = freeList;
+            height[i] = -1;
+            freeList = i;
+        }
+        capacity = newCapacity;
+    }
+
+    private static float[] grow(float[] array, int length) {
+        float[] result = new float[length];
+        if (array != null) {
+            System.arraycopy(array, 0, result, 0, array.length);
+        }
+        return result;
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] result = new int[length];
+        if (array != null) {
+            System.arraycopy(array, 0, result, 0, array.length);
+        }
+        return result;
+    }
+
+    private int allocateNode() {
+        if (freeList == NULL) {
+            allocate(capacity * 2);
+        }
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        items[node] = null;
+        height[node] = -1;
+        parent[node] = freeList;
+        freeList = node;
+    }
+
+    // ------------------------------------------------------------------
+    // tree maintenance
+
+    private static float area(float x0, float y0, float z0, float x1, float y1, float z1) {
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float dz = z1 - z0;
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private float area(int node) {
+        return area(minX[node], minY[node], minZ[node], maxX[node], maxY[node], maxZ[node]);
+    }
+
+    private float unionArea(int a, int b) {
+        return area(Math.min(minX[a], minX[b]), Math.min(minY[a], minY[b]), Math.min(minZ[a], minZ[b]),
+                Math.max(maxX[a], maxX[b]), Math.max(maxY[a], maxY[b]), Math.max(maxZ[a], maxZ[b]));
+    }
+
+    private void setUnion(int node, int a, int b) {
+        minX[node] = Math.min(minX[a], minX[b]);
+        minY[node] = Math.min(minY[a], minY[b]);
+        minZ[node] = Math.min(minZ[a], minZ[b]);
+        maxX[node] = Math.max(maxX[a], maxX[b]);
+        maxY[node] = Math.max(maxY[a], maxY[b]);
+        maxZ[node] = Math.max(maxZ[a], maxZ[b]);
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+
+        // find the best sibling, using the surface area heuristic
+        int index = root;
+        while (height[index] > 0) {
+            int c1 = child1[index];
+            int c2 = child2[index];
+
+            float nodeArea = area(index);
+            float combinedArea = unionArea(index, leaf);
+
+            // cost of creating a new parent for this node and the new leaf
+            float cost = 2f * combinedArea;
+            // minimum cost of pushing the leaf further down the tree
+            float inheritanceCost = 2f * (combinedArea - nodeArea);
+
+            float cost1 = descendCost(c1, leaf) + inheritanceCost;
+            float cost2 = descendCost(c2, leaf) + inheritanceCost;
+
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+            index = cost1 < cost2 ? c1 : c2;
+        }
+        int sibling = index;
+
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        setUnion(newParent, leaf, sibling);
+        height[newParent] = height[sibling] + 1;
+
+        if (oldParent != NULL) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+
+        fixUpwards(parent[leaf]);
+    }
+
+    private float descendCost(int child, int leaf) {
+        float union = unionArea(child, leaf);
+        if (height[child] == 0) {
+            return union;
+        }
+        return union - area(child);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+
+        int p = parent[leaf];
+        int grandParent = parent[p];
+        int sibling = child1[p] == leaf ? child2[p] : child1[p];
+        parent[leaf] = NULL;
+
+        if (grandParent != NULL) {
+            if (child1[grandParent] == p) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(p);
+            fixUpwards(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(p);
+        }
+    }
+
+    private void fixUpwards(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int c1 = child1[index];
+            int c2 = child2[index];
+            height[index] = 1 + Math.max(height[c1], height[c2]);
+            setUnion(index, c1, c2);
+            index = parent[index];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if node a is imbalanced.
+     *
+     * @return the new root of the subtree
+     */
+    private int balance(int a) {
+        if (height[a] < 2) {
+            return a;
+        }
+
+        int b = child1[a];
+        int c = child2[a];
+        int diff = height[c] - height[b];
+
+        if (diff > 1) {
+            return rotate(a, c, b);
+        }
+        if (diff < -1) {
+            return rotate(a, b, c);
+        }
+        return a;
+    }
+
+    /**
+     * Promotes the taller child <code>up</code> of <code>a</code> in place
+     * of <code>a</code>.
+     */
+    private int rotate(int a, int up, int other) {
+        int f = child1[up];
+        int g = child2[up];
+
+        // swap a and up
+        child1[up] = a;
+        parent[up] = parent[a];
+        parent[a] = up;
+
+        if (parent[up] != NULL) {
+            if (child1[parent[up]] == a) {
+                child1[parent[up]] = up;
+            } else {
+                child2[parent[up]] = up;
+            }
+        } else {
+            root = up;
+        }
+
+        // keep the taller grandchild under up, move the other under a
+        int keep = height[f] > height[g] ? f : g;
+        int move = keep == f ? g : f;
+
+        child2[up] = keep;
+        if (child1[a] == up) {
+            child1[a] = move;
+        } else {
+            child2[a] = move;
+        }
+        parent[move] = a;
+
+        setUnion(a, other, move);
+        height[a] = 1 + Math.max(height[other], height[move]);
+        setUnion(up, a, keep);
+        height[up] = 1 + Math.max(height[a], height[keep]);
+        return up;
+    }
+}
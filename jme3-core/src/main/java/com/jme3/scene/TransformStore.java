@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * A structure-of-arrays copy of the transforms of a subtree, used to
+ * recompute world transforms in one linear pass instead of walking the
+ * scene graph.
+ *
+ * <p>The spatials of the subtree are flattened in pre-order, so each parent
+ * comes before all of its descendants and each subtree is a contiguous range
+ * of slots. The local and world transform of every slot are kept in
+ * primitive float arrays, {@value #STRIDE} floats per slot: translation
+ * (x, y, z), rotation (x, y, z, w) and scale (x, y, z).
+ *
+ * <p>Setting the local transform of a member writes it through to the store
+ * and marks its slot dirty. On {@link #update()}, each dirty slot and the
+ * rest of its subtree are recomputed from the parent slot, and the results
+ * are copied back into {@link Spatial#getWorldTransform()}, so the regular
+ * accessors keep working. Clean ranges are skipped entirely.
+ *
+ * <p>The store is created by {@link Node#setTransformStoreEnabled(boolean)}
+ * and updated from {@link Node#updateGeometricState()} of its root. Attaching
+ * or detaching anywhere in the subtree invalidates the layout, which is then
+ * rebuilt on the next update. Stores can't be nested.
+ */
+public class TransformStore {
+
+    /**
+     * Number of floats stored per slot.
+     */
+    public static final int STRIDE = 10;
+
+    private final Node root;
+    private Spatial[] spatials = new Spatial[16];
+    private int[] parents = new int[16];
+    private int[] subtreeEnds = new int[16];
+    private float[] local = new float[16 * STRIDE];
+    private float[] world = new float[16 * STRIDE];
+    private final BitSet dirty = new BitSet();
+    private int count;
+    private boolean valid;
+
+    TransformStore(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the node at the top of the stored subtree.
+     *
+     * @return the root node (not null)
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the number of spatials in the store, as of the last
+     * {@link #update()}.
+     *
+     * @return the count (&ge;0)
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the spatial stored at the given slot.
+     *
+     * @param index the slot index (&ge;0, &lt;size)
+     * @return the pre-existing spatial
+     */
+    public Spatial getSpatial(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds");
+        }
+        return spatials[index];
+    }
+
+    /**
+     * Returns the slot of the given spatial.
+     *
+     * @param spatial the spatial to look up
+     * @return the slot index, or -1 if the spatial isn't stored
+     */
+    public int indexOf(Spatial spatial) {
+        if (!valid || spatial.transformStore != this) {
+            return -1;
+        }
+        return spatial.storeIndex;
+    }
+
+    /**
+     * Returns the world transforms of all slots, {@value #STRIDE} floats per
+     * slot, as of the last {@link #update()}. The array is owned by the store
+     * and must not be modified.
+     *
+     * @return the pre-existing array
+     */
+    public float[] getWorldTransforms() {
+        return world;
+    }
+
+    /**
+     * Tests whether the layout of the store matches the subtree.
+     *
+     * @return false if the subtree changed since the last update
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Drops the layout after a structural change of the subtree. It is
+     * rebuilt on the next update.
+     */
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Writes the local transform of a member through to the store and marks
+     * its slot for recomputation. Synchronized since thread-safe controls
+     * may move members concurrently.
+     */
+    synchronized void markDirty(Spatial spatial) {
+        if (!valid) {
+            return;
+        }
+        int index = spatial.storeIndex;
+        readLocal(spatial, index);
+        dirty.set(index);
+    }
+
+    /**
+     * Recomputes the world transform of every dirty slot and its subtree,
+     * rebuilding the layout first if needed.
+     */
+    public void update() {
+        if (!valid) {
+            rebuild();
+        }
+        int i = dirty.nextSetBit(0);
+        while (i >= 0) {
+            int end = subtreeEnds[i];
+            for (int j = i; j < end; j++) {
+                computeWorld(j);
+            }
+            dirty.clear(i, end);
+            i = end < count ? dirty.nextSetBit(end) : -1;
+        }
+    }
+
+    /**
+     * Detaches the store from its members.
+     */
+    void dispose() {
+        for (int i = 0; i < count; i++) {
+            Spatial s = spatials[i];
+            if (s.transformStore == this) {
+                s.transformStore = null;
+                s.storeIndex = -1;
+            }
+            spatials[i] = null;
+        }
+        count = 0;
+        valid = false;
+    }
+
+    private void rebuild() {
+        dispose();
+        add(root, -1);
+        dirty.clear();
+        dirty.set(0, count);
+        valid = true;
+    }
+
+    private void add(Spatial spatial, int parentIndex) {
+        if (spatial != root && spatial instanceof Node
+                && ((Node) spatial).ownTransformStore != null) {
+            throw new IllegalStateException("Nested transform stores are not supported: "
+                    + spatial.getName());
+        }
+        int index = count++;
+        ensureCapacity(count);
+        spatials[index] = spatial;
+        parents[index] = parentIndex;
+        spatial.transformStore = this;
+        spatial.storeIndex = index;
+        readLocal(spatial, index);
+        if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                add(child, index);
+            }
+        }
+        subtreeEnds[index] = count;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= spatials.length) {
+            return;
+        }
+        int capacity = Math.max(size, spatials.length * 2);
+        spatials = Arrays.copyOf(spatials, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        subtreeEnds = Arrays.copyOf(subtreeEnds, capacity);
+        local = Arrays.copyOf(local, capacity * STRIDE);
+        world = Arrays.copyOf(world, capacity * STRIDE);
+    }
+
+    private void readLocal(Spatial spatial, int index) {
+        Transform t = spatial.localTransform;
+        Vector3f tr = t.getTranslation();
+        Quaternion rot = t.getRotation();
+        Vector3f sc = t.getScale();
+        int o = index * STRIDE;
+        float[] l = local;
+        l[o] = tr.x;
+        l[o + 1] = tr.y;
+        l[o + 2] = tr.z;
+        l[o + 3] = rot.getX();
+        l[o + 4] = rot.getY();
+        l[o + 5] = rot.getZ();
+        l[o + 6] = rot.getW();
+        l[o + 7] = sc.x;
+        l[o + 8] = sc.y;
+        l[o + 9] = sc.z;
+    }
+
+    /**
+     * Same math as {@link Transform#combineWithParent(Transform)}, on the
+     * flat arrays.
+     */
+    private void computeWorld(int index) {
+        float[] l = local;
+        float[] w = world;
+        int o = index * STRIDE;
+        float tx = l[o], ty = l[o + 1], tz = l[o + 2];
+        float rx = l[o + 3], ry = l[o + 4], rz = l[o + 5], rw = l[o + 6];
+        float sx = l[o + 7], sy = l[o + 8], sz = l[o + 9];
+
+        int p = parents[index];
+        Spatial spatial = spatials[index];
+        if (p >= 0 || spatial.parent != null) {
+            float ptx, pty, ptz, prx, pry, prz, prw, psx, psy, psz;
+            if (p >= 0) {
+                int po = p * STRIDE;
+                ptx = w[po];
+                pty = w[po + 1];
+                ptz = w[po + 2];
+                prx = w[po + 3];
+                pry = w[po + 4];
+                prz = w[po + 5];
+                prw = w[po + 6];
+                psx = w[po + 7];
+                psy = w[po + 8];
+                psz = w[po + 9];
+            } else {
+                // the root of the store is attached to an outer node
+                Transform pt = spatial.parent.worldTransform;
+                Vector3f v = pt.getTranslation();
+                ptx = v.x;
+                pty = v.y;
+                ptz = v.z;
+                Quaternion q = pt.getRotation();
+                prx = q.getX();
+                pry = q.getY();
+                prz = q.getZ();
+                prw = q.getW();
+                v = pt.getScale();
+                psx = v.x;
+                psy = v.y;
+                psz = v.z;
+            }
+
+            sx *= psx;
+            sy *= psy;
+            sz *= psz;
+
+            float qx = prx * rw + pry * rz - prz * ry + prw * rx;
+            float qy = -prx * rz + pry * rw + prz * rx + prw * ry;
+            float qz = prx * ry - pry * rx + prz * rw + prw * rz;
+            float qw = -prx * rx - pry * ry - prz * rz + prw * rw;
+            rx = qx;
+            ry = qy;
+            rz = qz;
+            rw = qw;
+
+            float vx = tx * psx, vy = ty * psy, vz = tz * psz;
+            float x = prx, y = pry, z = prz, ww = prw;
+            tx = ww * ww * vx + 2 * y * ww * vz - 2 * z * ww * vy + x * x * vx
+                    + 2 * y * x * vy + 2 * z * x * vz - z * z * vx - y * y * vx;
+            ty = 2 * x * y * vx + y * y * vy + 2 * z * y * vz + 2 * ww * z
+                    * vx - z * z * vy + ww * ww * vy - 2 * x * ww * vz - x * x
+                    * vy;
+            tz = 2 * x * z * vx + 2 * y * z * vy + z * z * vz - 2 * ww * y * vx
+                    - y * y * vz + 2 * ww * x * vy - x * x * vz + ww * ww * vz;
+            tx += ptx;
+            ty += pty;
+            tz += ptz;
+        }
+
+        w[o] = tx;
+        w[o + 1] = ty;
+        w[o + 2] = tz;
+        w[o + 3] = rx;
+        w[o + 4] = ry;
+        w[o + 5] = rz;
+        w[o + 6] = rw;
+        w[o + 7] = sx;
+        w[o + 8] = sy;
+        w[o + 9] = sz;
+
+        Transform wt = spatial.worldTransform;
+        wt.setTranslation(tx, ty, tz);
+        wt.getRotation().set(rx, ry, rz, rw);
+        wt.setScale(sx, sy, sz);
+        spatial.refreshFlags &= ~Spatial.RF_TRANSFORM;
+        spatial.onWorldTransformChange();
+    }
+}
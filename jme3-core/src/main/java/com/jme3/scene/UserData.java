@@ -61,6 +61,12 @@ public final class UserData implements Savable {
      */
     public static final String JME_SHAREDMESH    = "JmeSharedMesh";
 
+    /**
+     * Boolean type on Spatials to indicate that they (and their children)
+     * never move and may be rendered into cached shadow maps.
+     */
+    public static final String JME_STATICSHADOW  = "JmeStaticShadow";
+
     private static final int   TYPE_INTEGER      = 0;
     private static final int   TYPE_FLOAT        = 1;
     private static final int   TYPE_BOOLEAN      = 2;
@@ -41,6 +41,9 @@ import com.jme3.scene.Spatial;
 import com.jme3.util.clone.Cloner;
 import com.jme3.util.clone.JmeCloneable;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * An abstract implementation of the Control interface.
@@ -51,6 +54,8 @@ public abstract class AbstractControl implements Control, JmeCloneable {
 
     protected boolean enabled = true;
     protected Spatial spatial;
+    private List<Object> updateDependencies = new ArrayList<>(0);
+    private List<Object> dependencyView = Collections.unmodifiableList(updateDependencies);
 
     public AbstractControl(){
     }
@@ -75,6 +80,75 @@ public abstract class AbstractControl implements Control, JmeCloneable {
         return enabled;
     }
 
+    /**
+     * Tests whether this control may be updated concurrently with other
+     * thread-safe controls by a {@link com.jme3.scene.ParallelSceneUpdater}.
+     * Subclasses return true to opt in, which promises that
+     * {@link #controlUpdate(float)} only modifies the controlled spatial and
+     * the control's own state, and only reads other spatials and controls
+     * declared with {@link #addUpdateDependency(Spatial)} or
+     * {@link #addUpdateDependency(Control)}.
+     *
+     * <p>Controls that do not opt in are updated serially, as usual.
+     *
+     * @return true if thread-safe, otherwise false (default=false)
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * Declares that this control reads the given spatial while updating, so
+     * all the controls of that spatial must be updated first.
+     *
+     * @param other the spatial read by this control (not null)
+     */
+    public void addUpdateDependency(Spatial other) {
+        addDependency(other);
+    }
+
+    /**
+     * Declares that this control reads the given control while updating, so
+     * that control must be updated first.
+     *
+     * @param other the control read by this control (not null, not this)
+     */
+    public void addUpdateDependency(Control other) {
+        if (other == this) {
+            throw new IllegalArgumentException("A control cannot depend on itself");
+        }
+        addDependency(other);
+    }
+
+    private void addDependency(Object other) {
+        if (other == null) {
+            throw new IllegalArgumentException("dependency cannot be null");
+        }
+        if (!updateDependencies.contains(other)) {
+            updateDependencies.add(other);
+        }
+    }
+
+    /**
+     * Removes a dependency added with one of the
+     * <code>addUpdateDependency</code> methods.
+     *
+     * @param other the spatial or control to remove
+     * @return true if it was a dependency, otherwise false
+     */
+    public boolean removeUpdateDependency(Object other) {
+        return updateDependencies.remove(other);
+    }
+
+    /**
+     * Returns the spatials and controls this control reads while updating.
+     *
+     * @return an unmodifiable list (not null)
+     */
+    public List<Object> getUpdateDependencies() {
+        return dependencyView;
+    }
+
     /**
      * To be implemented in subclass.
      *
@@ -108,6 +182,13 @@ public abstract class AbstractControl implements Control, JmeCloneable {
     @Override
     public void cloneFields(Cloner cloner, Object original) {
         this.spatial = cloner.clone(spatial);
+        // dependencies in the cloned subtree map to their clones
+        List<Object> originalDependencies = updateDependencies;
+        this.updateDependencies = new ArrayList<>(originalDependencies.size());
+        for (Object dependency : originalDependencies) {
+            updateDependencies.add(cloner.clone(dependency));
+        }
+        this.dependencyView = Collections.unmodifiableList(updateDependencies);
     }
 
     @Override
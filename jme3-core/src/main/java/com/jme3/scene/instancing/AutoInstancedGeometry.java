@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.instancing;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.util.BufferUtils;
+import com.jme3.util.TempVars;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+/**
+ * A transient geometry used by the {@link com.jme3.renderer.RenderManager}
+ * to draw a run of queued geometries that share a mesh and a material as a
+ * single instanced draw.
+ * <p>
+ * It is never attached to a scene graph. Before each draw,
+ * {@link #setInstances(java.util.List) } writes the world matrices of the
+ * run into a direct buffer that is reused, and only grown, from one run to
+ * the next.
+ *
+ * @see com.jme3.renderer.RenderManager#setAutoInstancing(boolean)
+ */
+public class AutoInstancedGeometry extends InstancedGeometry {
+
+    private static final int INSTANCE_SIZE = 16;
+
+    private final VertexBuffer transforms;
+    private final VertexBuffer[] instanceData;
+    private FloatBuffer buffer;
+    private int numInstances;
+
+    public AutoInstancedGeometry() {
+        super("AutoInstancedGeometry");
+        buffer = BufferUtils.createFloatBuffer(64 * INSTANCE_SIZE);
+        transforms = new VertexBuffer(Type.InstanceData);
+        transforms.setInstanced(true);
+        transforms.setupData(Usage.Stream, INSTANCE_SIZE, Format.Float, buffer);
+        instanceData = new VertexBuffer[]{transforms};
+    }
+
+    /**
+     * Uses the mesh, material and LOD level of the first geometry and the
+     * world matrices of all of them.
+     *
+     * @param geometries the run to draw (not null, not empty, unaffected)
+     */
+    public void setInstances(List<Geometry> geometries) {
+        Geometry first = geometries.get(0);
+        // never part of a scene graph, so the fields can be set directly
+        mesh = first.getMesh();
+        material = first.getMaterial();
+        lodLevel = first.getLodLevel();
+
+        int count = geometries.size();
+        if (buffer.capacity() < count * INSTANCE_SIZE) {
+            BufferUtils.destroyDirectBuffer(buffer);
+            buffer = BufferUtils.createFloatBuffer(
+                    Math.max(count, buffer.capacity() / INSTANCE_SIZE * 2) * INSTANCE_SIZE);
+        }
+
+        buffer.clear();
+        TempVars vars = TempVars.get();
+        float[] temp = vars.matrixWrite;
+        for (int i = 0; i < count; i++) {
+            updateInstance(geometries.get(i).getWorldMatrix(), temp, 0, vars.tempMat3, vars.quat1);
+            buffer.put(temp);
+        }
+        vars.release();
+        buffer.flip();
+        transforms.updateData(buffer);
+        numInstances = count;
+    }
+
+    /**
+     * Drops the references to the last run's mesh and material.
+     */
+    public void clearInstances() {
+        mesh = null;
+        material = null;
+        lodLevel = 0;
+        numInstances = 0;
+    }
+
+    @Override
+    public int getNumVisibleInstances() {
+        return numInstances;
+    }
+
+    @Override
+    public VertexBuffer[] getAllInstanceData() {
+        return instanceData;
+    }
+}
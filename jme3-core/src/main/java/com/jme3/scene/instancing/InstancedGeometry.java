@@ -164,9 +164,9 @@ public class InstancedGeometry extends Geometry {
         return transformInstanceData;
     }
 
-    private void updateInstance(Matrix4f worldMatrix, float[] store,
-                                int offset, Matrix3f tempMat3,
-                                Quaternion tempQuat) {
+    static void updateInstance(Matrix4f worldMatrix, float[] store,
+                               int offset, Matrix3f tempMat3,
+                               Quaternion tempQuat) {
         worldMatrix.toRotationMatrix(tempMat3);
         tempMat3.invertLocal();
 
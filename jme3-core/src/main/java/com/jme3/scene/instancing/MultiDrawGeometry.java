@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.instancing;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResults;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.shader.bufferobject.BufferObject;
+import com.jme3.util.BufferUtils;
+import com.jme3.util.TempVars;
+import com.jme3.util.clone.Cloner;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * A geometry that draws many indexed meshes sharing one material with a single
+ * multi-draw indirect call.
+ * <p>
+ * The meshes of the member geometries are packed into one vertex and index
+ * arena and every member gets one draw command pointing at its range.
+ * Members sharing a mesh share its range. The world transform of each member
+ * is stored in the same per-instance format as {@link InstancedGeometry} and
+ * selected through the base instance of its command, so any material with
+ * <code>UseInstancing</code> enabled can render it without changes.
+ * <p>
+ * Instances are created by {@link MultiDrawNode}; they are not meant to be
+ * built by hand.
+ */
+public class MultiDrawGeometry extends Geometry {
+
+    private static final int INSTANCE_SIZE = 16;
+
+    /**
+     * Size in bytes of one DrawElementsIndirectCommand.
+     */
+    static final int COMMAND_SIZE = 20;
+
+    private Geometry[] geometries;
+    private BufferObject commandBuffer;
+    private VertexBuffer transformInstanceData;
+    private VertexBuffer[] allInstanceData;
+    private boolean transformsDirty = true;
+
+    /**
+     * Serialization only. Do not use.
+     */
+    protected MultiDrawGeometry() {
+        super();
+    }
+
+    /**
+     * Packs the given geometries into a new multi-draw geometry.
+     * All geometries must use indexed triangle meshes with the same vertex
+     * buffer layout.
+     *
+     * @param name the name of the geometry
+     * @param members the geometries to draw (not null, not empty, unaffected)
+     */
+    public MultiDrawGeometry(String name, List<Geometry> members) {
+        super(name);
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("members cannot be empty");
+        }
+        setIgnoreTransform(true);
+        setBatchHint(BatchHint.Never);
+        geometries = members.toArray(new Geometry[members.size()]);
+        setMaterial(geometries[0].getMaterial());
+        setMesh(packMeshes(geometries));
+        commandBuffer = createCommands(geometries, mesh);
+
+        transformInstanceData = new VertexBuffer(Type.InstanceData);
+        transformInstanceData.setInstanced(true);
+        transformInstanceData.setupData(Usage.Dynamic, INSTANCE_SIZE, Format.Float,
+                BufferUtils.createFloatBuffer(geometries.length * INSTANCE_SIZE));
+        allInstanceData = new VertexBuffer[]{transformInstanceData};
+    }
+
+    /**
+     * Builds the arena mesh. Each distinct mesh is copied once, in the order
+     * it is first met, which is the order {@link #createCommands} assumes.
+     */
+    private static Mesh packMeshes(Geometry[] geometries) {
+        IdentityHashMap<Mesh, Mesh> unique = new IdentityHashMap<>();
+        int totalVerts = 0;
+        int totalIndices = 0;
+        boolean needInts = false;
+        for (Geometry geom : geometries) {
+            Mesh m = geom.getMesh();
+            if (unique.put(m, m) == null) {
+                totalVerts += m.getVertexCount();
+                totalIndices += m.getBuffer(Type.Index).getNumElements()
+                        * m.getBuffer(Type.Index).getNumComponents();
+                needInts |= m.getVertexCount() > 65536;
+            }
+        }
+
+        Mesh first = geometries[0].getMesh();
+        Mesh arena = new Mesh();
+        for (VertexBuffer vb : first.getBufferList().getArray()) {
+            if (vb.getBufferType() == Type.Index) {
+                continue;
+            }
+            VertexBuffer out = new VertexBuffer(vb.getBufferType());
+            out.setupData(Usage.Static, vb.getNumComponents(), vb.getFormat(),
+                    VertexBuffer.createBuffer(vb.getFormat(), vb.getNumComponents(), totalVerts));
+            out.setNormalized(vb.isNormalized());
+            arena.setBuffer(out);
+        }
+
+        Buffer indexData = needInts
+                ? BufferUtils.createIntBuffer(totalIndices)
+                : BufferUtils.createShortBuffer(totalIndices);
+
+        IdentityHashMap<Mesh, Boolean> copied = new IdentityHashMap<>();
+        int baseVertex = 0;
+        for (Geometry geom : geometries) {
+            Mesh m = geom.getMesh();
+            if (copied.put(m, Boolean.TRUE) != null) {
+                continue;
+            }
+            int vertCount = m.getVertexCount();
+            for (VertexBuffer out : arena.getBufferList().getArray()) {
+                m.getBuffer(out.getBufferType()).copyElements(0, out, baseVertex, vertCount);
+            }
+            // indices stay local to the mesh, the base vertex offsets them
+            IndexBuffer ib = m.getIndicesAsList();
+            for (int i = 0; i < ib.size(); i++) {
+                if (needInts) {
+                    ((IntBuffer) indexData).put(ib.get(i));
+                } else {
+                    ((ShortBuffer) indexData).put((short) ib.get(i));
+                }
+            }
+            baseVertex += vertCount;
+        }
+        indexData.flip();
+        arena.setBuffer(Type.Index, 1,
+                needInts ? Format.UnsignedInt : Format.UnsignedShort, indexData);
+        arena.updateCounts();
+        arena.updateBound();
+        return arena;
+    }
+
+    private static BufferObject createCommands(Geometry[] geometries, Mesh arena) {
+        BufferObject commands = new BufferObject();
+        commands.setAccessHint(BufferObject.AccessHint.Static);
+        commands.initializeEmpty(geometries.length * COMMAND_SIZE);
+        ByteBuffer data = commands.getData();
+
+        IdentityHashMap<Mesh, int[]> ranges = new IdentityHashMap<>();
+        int firstIndex = 0;
+        int baseVertex = 0;
+        for (int i = 0; i < geometries.length; i++) {
+            Mesh m = geometries[i].getMesh();
+            int[] range = ranges.get(m);
+            if (range == null) {
+                VertexBuffer ib = m.getBuffer(Type.Index);
+                int count = ib.getNumElements() * ib.getNumComponents();
+                range = new int[]{count, firstIndex, baseVertex};
+                ranges.put(m, range);
+                firstIndex += count;
+                baseVertex += m.getVertexCount();
+            }
+            data.putInt(range[0]);  // count
+            data.putInt(1);         // instanceCount
+            data.putInt(range[1]);  // firstIndex
+            data.putInt(range[2]);  // baseVertex
+            data.putInt(i);         // baseInstance
+        }
+        data.clear();
+        commands.setUpdateNeeded();
+        return commands;
+    }
+
+    /**
+     * @return the number of draw commands, one per member geometry
+     */
+    public int getDrawCount() {
+        return geometries.length;
+    }
+
+    /**
+     * @return the member geometries, in command order
+     */
+    public Geometry[] getGeometries() {
+        return geometries;
+    }
+
+    /**
+     * @return the buffer holding the draw commands
+     */
+    public BufferObject getCommandBuffer() {
+        return commandBuffer;
+    }
+
+    /**
+     * @return the per-instance buffers used by the renderer
+     */
+    public VertexBuffer[] getAllInstanceData() {
+        return allInstanceData;
+    }
+
+    /**
+     * Flags the member transforms for upload on the next
+     * {@link #updateTransforms()}.
+     */
+    public void setTransformsDirty() {
+        transformsDirty = true;
+    }
+
+    /**
+     * @return true if a member transform changed since the last upload
+     */
+    public boolean isTransformsDirty() {
+        return transformsDirty;
+    }
+
+    /**
+     * Writes the world matrices of the members into the instance buffer and
+     * recomputes the world bound from the members' bounds.
+     * <p>
+     * This does not touch the refresh flags, so it is safe to call while
+     * rendering.
+     */
+    public void updateTransforms() {
+        FloatBuffer fb = (FloatBuffer) transformInstanceData.getData();
+        fb.clear();
+        TempVars vars = TempVars.get();
+        float[] temp = vars.matrixWrite;
+        for (Geometry geom : geometries) {
+            InstancedGeometry.updateInstance(geom.getWorldMatrix(), temp, 0, vars.tempMat3, vars.quat1);
+            fb.put(temp);
+        }
+        vars.release();
+        fb.flip();
+        transformInstanceData.updateData(fb);
+        worldBound = mergeBounds(worldBound);
+        transformsDirty = false;
+    }
+
+    private BoundingVolume mergeBounds(BoundingVolume store) {
+        BoundingVolume result = null;
+        for (Geometry geom : geometries) {
+            BoundingVolume bv = geom.getWorldBound();
+            if (bv == null) {
+                continue;
+            }
+            if (result == null) {
+                result = bv.clone(store);
+            } else {
+                result.mergeLocal(bv);
+            }
+        }
+        if (result == null) {
+            result = new BoundingBox(getWorldTranslation(), 0f, 0f, 0f);
+        }
+        return result;
+    }
+
+    @Override
+    protected void updateWorldBound() {
+        refreshFlags &= ~RF_BOUND;
+        worldBound = mergeBounds(worldBound);
+    }
+
+    @Override
+    public int collideWith(Collidable other, CollisionResults results) {
+        return 0; // Ignore collision
+    }
+
+    /**
+     *  Called internally by com.jme3.util.clone.Cloner.  Do not call directly.
+     */
+    @Override
+    public void cloneFields(Cloner cloner, Object original) {
+        super.cloneFields(cloner, original);
+
+        this.geometries = cloner.clone(geometries);
+        this.commandBuffer = commandBuffer.clone();
+        this.transformInstanceData = cloner.clone(transformInstanceData);
+        this.allInstanceData = new VertexBuffer[]{transformInstanceData};
+        this.transformsDirty = true;
+    }
+
+    /**
+     *  Destroy internal buffers.
+     */
+    protected void cleanup() {
+        BufferUtils.destroyDirectBuffer(transformInstanceData.getData());
+        transformInstanceData = null;
+        allInstanceData = null;
+        geometries = null;
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.instancing;
+
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.material.MatParam;
+import com.jme3.material.Material;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.scene.*;
+import com.jme3.scene.Mesh.Mode;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.control.Control;
+import com.jme3.util.clone.Cloner;
+import com.jme3.util.clone.JmeCloneable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A node that draws its descendant geometries with one multi-draw indirect
+ * call per material, even when their meshes differ.
+ * <p>
+ * Call {@link #batch()} once the subtree is built. Geometries are grouped by
+ * material, bucket, shadow mode and vertex layout; each group becomes a
+ * {@link MultiDrawGeometry} attached to this node, while the members stay
+ * in the scene graph but are no longer rendered on their own. Member
+ * transforms are picked up automatically; mesh and material changes, as
+ * well as removed members, trigger a rebatch on the next update.
+ * <p>
+ * A geometry is only batched if its material has <code>UseInstancing</code>
+ * set, its mesh is an indexed, non-animated triangle list without LOD
+ * levels, and no local lights or material parameter overrides are set
+ * between it and this node. Everything else renders normally.
+ * <p>
+ * If the renderer lacks {@link Caps#MultiDrawIndirect}, the node ungroups
+ * its members the first time it is rendered and behaves like a plain
+ * {@link Node} from then on.
+ */
+public class MultiDrawNode extends GeometryGroupNode {
+
+    private static final class BatchKey {
+
+        final Material material;
+        final RenderQueue.Bucket bucket;
+        final RenderQueue.ShadowMode shadowMode;
+        final String layout;
+
+        BatchKey(Geometry geom) {
+            this.material = geom.getMaterial();
+            this.bucket = geom.getQueueBucket();
+            this.shadowMode = geom.getShadowMode();
+            this.layout = layoutOf(geom.getMesh());
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 41 * hash + System.identityHashCode(material);
+            hash = 41 * hash + bucket.hashCode();
+            hash = 41 * hash + shadowMode.hashCode();
+            hash = 41 * hash + layout.hashCode();
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey other = (BatchKey) obj;
+            return material == other.material
+                    && bucket == other.bucket
+                    && shadowMode == other.shadowMode
+                    && layout.equals(other.layout);
+        }
+    }
+
+    private static class MultiDrawNodeControl implements Control, JmeCloneable {
+
+        private MultiDrawNode node;
+
+        public MultiDrawNodeControl() {
+        }
+
+        @Deprecated
+        @Override
+        public Control cloneForSpatial(Spatial spatial) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Object jmeClone() {
+            try {
+                return super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new RuntimeException("Error cloning control", e);
+            }
+        }
+
+        @Override
+        public void cloneFields(Cloner cloner, Object original) {
+            this.node = cloner.clone(node);
+        }
+
+        @Override
+        public void setSpatial(Spatial spatial) {
+            this.node = (MultiDrawNode) spatial;
+        }
+
+        @Override
+        public void update(float tpf) {
+            if (node != null) {
+                node.updateFromControl();
+            }
+        }
+
+        @Override
+        public void render(RenderManager rm, ViewPort vp) {
+            if (node != null) {
+                node.renderFromControl(rm);
+            }
+        }
+
+        @Override
+        public void write(JmeExporter ex) throws IOException {
+        }
+
+        @Override
+        public void read(JmeImporter im) throws IOException {
+        }
+    }
+
+    private MultiDrawNodeControl control;
+
+    private ArrayList<MultiDrawGeometry> batches = new ArrayList<>();
+    private HashMap<Geometry, MultiDrawGeometry> batchByGeom = new HashMap<>();
+
+    private boolean needsRebatch = false;
+    private boolean unsupported = false;
+    private boolean ungrouping = false;
+
+    /**
+     * Serialization only. Do not use.
+     */
+    protected MultiDrawNode() {
+        super();
+    }
+
+    public MultiDrawNode(String name) {
+        super(name);
+        control = new MultiDrawNodeControl();
+        addControl(control);
+    }
+
+    /**
+     * @return the multi-draw geometries currently attached to this node
+     */
+    public List<MultiDrawGeometry> getBatches() {
+        return batches;
+    }
+
+    /**
+     * @return false if the renderer turned out not to support multi-draw
+     * indirect and the node fell back to regular rendering
+     */
+    public boolean isMultiDrawEnabled() {
+        return !unsupported;
+    }
+
+    private static String layoutOf(Mesh mesh) {
+        StringBuilder sb = new StringBuilder();
+        for (Type type : Type.values()) {
+            if (type == Type.Index) {
+                continue;
+            }
+            VertexBuffer vb = mesh.getBuffer(type);
+            if (vb != null) {
+                sb.append(type.name()).append(':').append(vb.getFormat().name())
+                        .append(':').append(vb.getNumComponents())
+                        .append(vb.isNormalized() ? "n;" : ";");
+            }
+        }
+        return sb.toString();
+    }
+
+    private boolean isBatchable(Geometry geom) {
+        if (geom.isGrouped() || geom.getBatchHint() == BatchHint.Never
+                || geom.getCullHint() == CullHint.Always || geom.isIgnoreTransform()) {
+            return false;
+        }
+        Material material = geom.getMaterial();
+        MatParam param = material == null ? null : material.getParam("UseInstancing");
+        if (param == null || !((Boolean) param.getValue()).booleanValue()) {
+            return false;
+        }
+        RenderQueue.Bucket bucket = geom.getQueueBucket();
+        if (bucket == RenderQueue.Bucket.Transparent
+                || bucket == RenderQueue.Bucket.Translucent
+                || bucket == RenderQueue.Bucket.Gui) {
+            return false;
+        }
+        Mesh mesh = geom.getMesh();
+        if (mesh == null || mesh.getMode() != Mode.Triangles || mesh.getVertexCount() == 0
+                || mesh.getBuffer(Type.Index) == null || mesh.getNumLodLevels() > 0
+                || mesh.isAnimated() || mesh.getBuffer(Type.InterleavedData) != null) {
+            return false;
+        }
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            if (vb.isInstanced() || vb.getStride() != 0) {
+                return false;
+            }
+        }
+        for (Spatial s = geom; s != this && s != null; s = s.getParent()) {
+            if (s.getLocalLightList().size() > 0 || !s.getLocalMatParamOverrides().isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void collect(Spatial s, Map<BatchKey, List<Geometry>> groups) {
+        if (s instanceof Geometry) {
+            Geometry g = (Geometry) s;
+            if (isBatchable(g)) {
+                BatchKey key = new BatchKey(g);
+                List<Geometry> list = groups.get(key);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    groups.put(key, list);
+                }
+                list.add(g);
+            }
+        } else if (s instanceof Node) {
+            for (Spatial child : ((Node) s).getChildren()) {
+                if (child instanceof GeometryGroupNode) {
+                    continue;
+                }
+                collect(child, groups);
+            }
+        }
+    }
+
+    private void ungroupMembers() {
+        ungrouping = true;
+        try {
+            for (MultiDrawGeometry batch : batches) {
+                for (Geometry g : batch.getGeometries()) {
+                    if (g.isGrouped() && batchByGeom.get(g) == batch) {
+                        g.unassociateFromGroupNode();
+                    }
+                }
+            }
+            batchByGeom.clear();
+        } finally {
+            ungrouping = false;
+        }
+    }
+
+    private void removeBatches() {
+        ungroupMembers();
+        for (MultiDrawGeometry batch : new ArrayList<>(batches)) {
+            detachChild(batch);
+        }
+        batches.clear();
+    }
+
+    private void ungroupStale(Spatial s) {
+        if (s instanceof Node) {
+            for (Spatial child : ((Node) s).getChildren()) {
+                if (child instanceof GeometryGroupNode) {
+                    continue;
+                }
+                ungroupStale(child);
+            }
+        } else if (s instanceof Geometry) {
+            Geometry g = (Geometry) s;
+            // members carried over by cloning or loading
+            if (g.isGrouped() && !batchByGeom.containsKey(g)) {
+                g.unassociateFromGroupNode();
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the multi-draw geometries from the current subtree. Call this
+     * after building the subtree, and after changing the bucket or shadow
+     * mode of descendants; other changes are picked up automatically.
+     * Does nothing once the node has fallen back to regular rendering.
+     */
+    public void batch() {
+        needsRebatch = false;
+        removeBatches();
+        ungrouping = true;
+        try {
+            ungroupStale(this);
+        } finally {
+            ungrouping = false;
+        }
+        if (unsupported) {
+            return;
+        }
+
+        Map<BatchKey, List<Geometry>> groups = new LinkedHashMap<>();
+        collect(this, groups);
+        for (Map.Entry<BatchKey, List<Geometry>> e : groups.entrySet()) {
+            BatchKey key = e.getKey();
+            List<Geometry> members = e.getValue();
+            MultiDrawGeometry batch = new MultiDrawGeometry("multidraw-"
+                    + key.material.getMaterialDef().getName() + "," + members.size(), members);
+            batch.setUserData(UserData.JME_PHYSICSIGNORE, true);
+            // bounds are refreshed while rendering, see renderFromControl
+            batch.setCullHint(CullHint.Never);
+            batch.setQueueBucket(key.bucket);
+            batch.setShadowMode(key.shadowMode);
+            for (int i = 0; i < members.size(); i++) {
+                Geometry g = members.get(i);
+                g.associateWithGroupNode(this, i);
+                batchByGeom.put(g, batch);
+            }
+            batches.add(batch);
+            attachChild(batch);
+        }
+    }
+
+    private void updateFromControl() {
+        if (unsupported) {
+            if (!batches.isEmpty()) {
+                removeBatches();
+            }
+        } else if (needsRebatch) {
+            batch();
+        }
+    }
+
+    private void renderFromControl(RenderManager rm) {
+        if (unsupported || batches.isEmpty()) {
+            return;
+        }
+        if (!rm.getRenderer().getCaps().contains(Caps.MultiDrawIndirect)) {
+            // The scene graph cannot change structure while it is rendered,
+            // so hide the batches now and detach them on the next update.
+            unsupported = true;
+            ungroupMembers();
+            for (MultiDrawGeometry batch : batches) {
+                batch.setCullHint(CullHint.Always);
+            }
+            return;
+        }
+        for (MultiDrawGeometry batch : batches) {
+            if (batch.isTransformsDirty()) {
+                batch.updateTransforms();
+            }
+        }
+    }
+
+    private void ungroupSceneGraph(Spatial s) {
+        if (s instanceof Node) {
+            for (Spatial sp : ((Node) s).getChildren()) {
+                ungroupSceneGraph(sp);
+            }
+        } else if (s instanceof Geometry) {
+            Geometry g = (Geometry) s;
+            if (g.isGrouped()) {
+                // Will invoke onGeometryUnassociated automatically.
+                g.unassociateFromGroupNode();
+            }
+        }
+    }
+
+    @Override
+    public Spatial detachChildAt(int index) {
+        Spatial s = super.detachChildAt(index);
+        if (s instanceof MultiDrawGeometry) {
+            MultiDrawGeometry batch = (MultiDrawGeometry) s;
+            if (batches.remove(batch)) {
+                batch.cleanup();
+            }
+        } else if (s instanceof Node) {
+            ungroupSceneGraph(s);
+        }
+        return s;
+    }
+
+    @Override
+    public MultiDrawNode clone() {
+        return clone(true);
+    }
+
+    @Override
+    public MultiDrawNode clone(boolean cloneMaterials) {
+        return (MultiDrawNode) super.clone(cloneMaterials);
+    }
+
+    /**
+     *  Called internally by com.jme3.util.clone.Cloner.  Do not call directly.
+     */
+    @Override
+    public void cloneFields(Cloner cloner, Object original) {
+        super.cloneFields(cloner, original);
+
+        // The clone rebuilds its own batches on its first update.
+        for (int i = children.size() - 1; i >= 0; i--) {
+            if (children.get(i) instanceof MultiDrawGeometry) {
+                children.remove(i);
+            }
+        }
+        this.control = cloner.clone(control);
+        this.batches = new ArrayList<>();
+        this.batchByGeom = new HashMap<>();
+        this.needsRebatch = !((MultiDrawNode) original).batches.isEmpty();
+    }
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+        // batches are rebuilt on load
+        ArrayList<Spatial> saved = new ArrayList<>(children);
+        children.removeAll(batches);
+        try {
+            super.write(ex);
+        } finally {
+            children.clear();
+            children.addAll(saved);
+        }
+        ex.getCapsule(this).write(!batches.isEmpty(), "batched", false);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+        super.read(im);
+        for (int i = 0; i < getNumControls(); i++) {
+            if (getControl(i) instanceof MultiDrawNodeControl) {
+                control = (MultiDrawNodeControl) getControl(i);
+                control.setSpatial(this);
+            }
+        }
+        needsRebatch = im.getCapsule(this).readBoolean("batched", false);
+    }
+
+    @Override
+    public void onTransformChange(Geometry geom) {
+        MultiDrawGeometry batch = batchByGeom.get(geom);
+        if (batch != null) {
+            batch.setTransformsDirty();
+        }
+    }
+
+    @Override
+    public void onMaterialChange(Geometry geom) {
+        needsRebatch = true;
+    }
+
+    @Override
+    public void onMeshChange(Geometry geom) {
+        needsRebatch = true;
+    }
+
+    @Override
+    public void onGeometryUnassociated(Geometry geom) {
+        if (!ungrouping) {
+            batchByGeom.remove(geom);
+            needsRebatch = true;
+        }
+    }
+}
@@ -52,6 +52,12 @@ public class ShaderBufferBlock extends ShaderVariable {
     protected BufferObject bufferObject;
     protected WeakReference<BufferObject> bufferObjectRef;
     protected BufferType type;
+    /**
+     * Byte range of the buffer object that is bound to the block, a length
+     * of zero binds the whole buffer.
+     */
+    protected int offset;
+    protected int length;
 
     /**
      * Set the new buffer object.
@@ -63,13 +69,55 @@ public class ShaderBufferBlock extends ShaderVariable {
         if (bufferObject == null) {
             throw new IllegalArgumentException("for storage block " + name + ": storageData cannot be null");
         }
-        if (bufferObject == this.bufferObject && type == this.type) return;
+        if (bufferObject == this.bufferObject && type == this.type && offset == 0 && length == 0) return;
         this.bufferObject = bufferObject;
         this.bufferObjectRef = new WeakReference<BufferObject>(bufferObject);
         this.type = type;
+        this.offset = 0;
+        this.length = 0;
         updateNeeded = true;
     }
 
+    /**
+     * Set the new buffer object and the range of it that is bound to the block.
+     * Changing only the range does not require the block binding to be updated.
+     *
+     * @param type the type of the block
+     * @param bufferObject the new buffer object.
+     * @param offset the offset of the range in bytes
+     * @param length the length of the range in bytes, or 0 for the whole buffer
+     */
+    public void setBufferObject(BufferType type, BufferObject bufferObject, int offset, int length) {
+        if (bufferObject == null) {
+            throw new IllegalArgumentException("for storage block " + name + ": storageData cannot be null");
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Invalid range " + offset + ", " + length + " for block " + name);
+        }
+        if (bufferObject != this.bufferObject || type != this.type) {
+            this.bufferObject = bufferObject;
+            this.bufferObjectRef = new WeakReference<BufferObject>(bufferObject);
+            this.type = type;
+            updateNeeded = true;
+        }
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return the offset in bytes of the bound range
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return the length in bytes of the bound range, 0 if the whole buffer is bound
+     */
+    public int getLength() {
+        return length;
+    }
+
     public BufferType getType() {
         return type;
     }
@@ -42,6 +42,7 @@ import com.jme3.math.Matrix4f;
 import com.jme3.math.Vector4f;
 import com.jme3.post.Filter;
 import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Renderer;
 import com.jme3.renderer.ViewPort;
 import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.texture.FrameBuffer;
@@ -132,6 +133,11 @@ public abstract class AbstractShadowFilter<T extends AbstractShadowRenderer> ext
         shadowRenderer.initialize(renderManager, vp);
         this.viewPort = vp;
     }
+
+    @Override
+    protected void cleanUpFilter(Renderer r) {
+        shadowRenderer.cleanup();
+    }
     
       /**
      * How far the shadows are rendered in the view
@@ -283,6 +289,73 @@ public abstract class AbstractShadowFilter<T extends AbstractShadowRenderer> ext
         return shadowRenderer.isRenderBackFacesShadows();
     }
 
+    /**
+     * Enables or disables the caching of static shadow casters.
+     *
+     * @see AbstractShadowRenderer#setStaticShadowCaching(boolean)
+     * @param enabled true to cache static casters, false to render every
+     * caster each frame
+     */
+    public void setStaticShadowCaching(boolean enabled) {
+        shadowRenderer.setStaticShadowCaching(enabled);
+    }
+
+    /**
+     * Tests whether static shadow casters are cached.
+     *
+     * @return true if static casters are cached, otherwise false
+     */
+    public boolean isStaticShadowCaching() {
+        return shadowRenderer.isStaticShadowCaching();
+    }
+
+    /**
+     * Sets the margin of the cached static shadow maps.
+     *
+     * @see AbstractShadowRenderer#setStaticShadowMargin(float)
+     * @param margin the margin (&ge;0)
+     */
+    public void setStaticShadowMargin(float margin) {
+        shadowRenderer.setStaticShadowMargin(margin);
+    }
+
+    /**
+     * Returns the margin of the cached static shadow maps.
+     *
+     * @return the margin
+     */
+    public float getStaticShadowMargin() {
+        return shadowRenderer.getStaticShadowMargin();
+    }
+
+    /**
+     * Forces the cached static shadow maps to be rendered again on the next
+     * frame.
+     */
+    public void invalidateStaticShadows() {
+        shadowRenderer.invalidateStaticShadows();
+    }
+
+    /**
+     * Renders the shadow maps into tiles of a shared atlas.
+     *
+     * @see AbstractShadowRenderer#setShadowAtlas(com.jme3.shadow.ShadowAtlas)
+     * @param shadowAtlas the atlas to render into, or null to use the own
+     * shadow maps of this filter
+     */
+    public void setShadowAtlas(ShadowAtlas shadowAtlas) {
+        shadowRenderer.setShadowAtlas(shadowAtlas);
+    }
+
+    /**
+     * Returns the atlas the shadow maps are rendered into.
+     *
+     * @return the atlas, or null if this filter uses its own shadow maps
+     */
+    public ShadowAtlas getShadowAtlas() {
+        return shadowRenderer.getShadowAtlas();
+    }
+
     /**
      * returns the pre shadows pass render state.
      * use it to adjust the RenderState parameters of the pre shadow pass.
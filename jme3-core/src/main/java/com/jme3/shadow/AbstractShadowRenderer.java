@@ -38,12 +38,15 @@ import com.jme3.light.NullLightFilter;
 import com.jme3.material.Material;
 import com.jme3.material.RenderState;
 import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
 import com.jme3.math.Matrix4f;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
 import com.jme3.post.SceneProcessor;
 import com.jme3.profile.AppProfiler;
 import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.Renderer;
 import com.jme3.renderer.ViewPort;
@@ -128,6 +131,21 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
      * true to skip the post pass when there are no shadow casters
      */
     protected boolean skipPostPass;
+    /**
+     * cached depth maps of the static casters, null unless static shadow
+     * caching is enabled
+     */
+    private StaticShadowCache staticCache;
+    private float staticShadowMargin = 0.25f;
+    private Camera staticCacheCam;
+    private GeometryList dynamicOccluders = new GeometryList(new OpaqueComparator());
+    /**
+     * shared atlas the shadow maps are rendered into, null to use the own
+     * shadow maps of this renderer
+     */
+    private ShadowAtlas shadowAtlas;
+    private ShadowAtlas.Tile[] atlasTiles;
+    private Camera atlasCam;
 
     /**
      * used for serialization
@@ -206,9 +224,9 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
      */
     protected final void setPostShadowMaterial(Material postShadowMat) {
         this.postshadowMat = postShadowMat;
-        postshadowMat.setFloat("ShadowMapSize", shadowMapSize);
+        postshadowMat.setFloat("ShadowMapSize", getSampledShadowMapSize());
         for (int i = 0; i < nbShadowMaps; i++) {
-            postshadowMat.setTexture(shadowMapStringCache[i], shadowMaps[i]);
+            postshadowMat.setTexture(shadowMapStringCache[i], getSampledShadowMap(i));
         }
         setShadowCompareMode(shadowCompareMode);
         setEdgeFilteringMode(edgeFilteringMode);
@@ -231,14 +249,32 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
         postshadowMat.setFloat("PCFEdge", edgesThickness);
         if (shadowCompareMode == CompareMode.Hardware) {
             for (Texture2D shadowMap : shadowMaps) {
-                if (filterMode == EdgeFilteringMode.Bilinear) {
-                    shadowMap.setMagFilter(MagFilter.Bilinear);
-                    shadowMap.setMinFilter(MinFilter.BilinearNoMipMaps);
-                } else {
-                    shadowMap.setMagFilter(MagFilter.Nearest);
-                    shadowMap.setMinFilter(MinFilter.NearestNoMipMaps);
-                }
+                setHardwareFiltering(shadowMap);
             }
+            if (shadowAtlas != null) {
+                setHardwareFiltering(shadowAtlas.getShadowMap());
+            }
+        }
+    }
+
+    private void setCompareMode(Texture2D shadowMap) {
+        if (shadowCompareMode == CompareMode.Hardware) {
+            shadowMap.setShadowCompareMode(ShadowCompareMode.LessOrEqual);
+            setHardwareFiltering(shadowMap);
+        } else {
+            shadowMap.setShadowCompareMode(ShadowCompareMode.Off);
+            shadowMap.setMagFilter(MagFilter.Nearest);
+            shadowMap.setMinFilter(MinFilter.NearestNoMipMaps);
+        }
+    }
+
+    private void setHardwareFiltering(Texture2D shadowMap) {
+        if (edgeFilteringMode == EdgeFilteringMode.Bilinear) {
+            shadowMap.setMagFilter(MagFilter.Bilinear);
+            shadowMap.setMinFilter(MinFilter.BilinearNoMipMaps);
+        } else {
+            shadowMap.setMagFilter(MagFilter.Nearest);
+            shadowMap.setMinFilter(MinFilter.NearestNoMipMaps);
         }
     }
 
@@ -264,20 +300,10 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
 
         this.shadowCompareMode = compareMode;
         for (Texture2D shadowMap : shadowMaps) {
-            if (compareMode == CompareMode.Hardware) {
-                shadowMap.setShadowCompareMode(ShadowCompareMode.LessOrEqual);
-                if (edgeFilteringMode == EdgeFilteringMode.Bilinear) {
-                    shadowMap.setMagFilter(MagFilter.Bilinear);
-                    shadowMap.setMinFilter(MinFilter.BilinearNoMipMaps);
-                } else {
-                    shadowMap.setMagFilter(MagFilter.Nearest);
-                    shadowMap.setMinFilter(MinFilter.NearestNoMipMaps);
-                }
-            } else {
-                shadowMap.setShadowCompareMode(ShadowCompareMode.Off);
-                shadowMap.setMagFilter(MagFilter.Nearest);
-                shadowMap.setMinFilter(MinFilter.NearestNoMipMaps);
-            }
+            setCompareMode(shadowMap);
+        }
+        if (shadowAtlas != null) {
+            setCompareMode(shadowAtlas.getShadowMap());
         }
         postshadowMat.setBoolean("HardwareShadows", compareMode == CompareMode.Hardware);
     }
@@ -408,6 +434,12 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
 
         updateShadowCams(viewPort.getCamera());
 
+        if (shadowAtlas != null && !requestAtlasTiles(false)) {
+            // the atlas is full, this light gets no shadows
+            skipPostPass = true;
+            return;
+        }
+
         Renderer r = renderManager.getRenderer();
         renderManager.setForcedMaterial(preshadowMat);
         renderManager.setForcedTechnique("PreShadow");
@@ -433,6 +465,13 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
     protected void renderShadowMap(int shadowMapIndex) {
         shadowMapOccluders = getOccludersToRender(shadowMapIndex, shadowMapOccluders);
         Camera shadowCam = getShadowCam(shadowMapIndex);
+        if (staticCache != null) {
+            renderCachedShadowMap(shadowMapIndex, shadowCam);
+            return;
+        } else if (shadowAtlas != null) {
+            renderAtlasShadowMap(shadowMapIndex, shadowCam);
+            return;
+        }
 
         //saving light view projection matrix for this split
         lightViewProjectionsMatrices[shadowMapIndex].set(shadowCam.getViewProjectionMatrix());
@@ -440,12 +479,163 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
 
         renderManager.getRenderer().setFrameBuffer(shadowFB[shadowMapIndex]);
         renderManager.getRenderer().clearBuffers(true, true, true);
+
+        renderOccluders(shadowMapOccluders, shadowCam, true);
+    }
+
+    /**
+     * Renders a shadow map from the cached static casters and the dynamic
+     * casters of the frame. The shadow map is rendered with the view
+     * projection of the cache, which contains the one of the shadow camera.
+     */
+    private void renderCachedShadowMap(int shadowMapIndex, Camera shadowCam) {
+        Renderer r = renderManager.getRenderer();
+        boolean blit = r.getCaps().contains(Caps.FrameBufferBlit);
+        if (staticCacheCam == null) {
+            staticCacheCam = shadowCam.clone();
+        }
+        staticCacheCam.copyFrom(shadowCam);
+
+        GeometryList staticCasters = staticCache.casters[shadowMapIndex];
+        if (staticCache.isValid(shadowMapIndex, shadowCam.getViewProjectionMatrix())) {
+            staticCacheCam.setProjectionMatrix(staticCache.getProjection(shadowMapIndex, shadowCam.getViewMatrix()));
+        } else {
+            staticCacheCam.setProjectionMatrix(staticCache.enlarge(shadowCam.getProjectionMatrix()));
+            staticCasters.clear();
+            for (Spatial scene : viewPort.getScenes()) {
+                ShadowUtil.getStaticCastersInVolume(scene, staticCacheCam.getViewProjectionMatrix(), staticCasters);
+            }
+            staticCache.store(shadowMapIndex, staticCacheCam.getViewProjectionMatrix());
+            if (blit) {
+                renderManager.setCamera(staticCacheCam, false);
+                r.setFrameBuffer(staticCache.frameBuffers[shadowMapIndex]);
+                r.clearBuffers(true, true, true);
+                renderOccluders(staticCasters, staticCacheCam, false);
+            }
+        }
+
+        dynamicOccluders.clear();
+        for (int i = 0; i < shadowMapOccluders.size(); i++) {
+            Geometry occluder = shadowMapOccluders.get(i);
+            if (!ShadowUtil.isStaticShadowCaster(occluder)) {
+                dynamicOccluders.add(occluder);
+            }
+        }
+        shadowMapOccluders.clear();
+
+        //saving light view projection matrix for this split
+        lightViewProjectionsMatrices[shadowMapIndex].set(staticCacheCam.getViewProjectionMatrix());
+        renderManager.setCamera(staticCacheCam, false);
+
+        if (blit) {
+            r.copyFrameBuffer(staticCache.frameBuffers[shadowMapIndex], shadowFB[shadowMapIndex], false, true);
+            r.setFrameBuffer(shadowFB[shadowMapIndex]);
+        } else {
+            // no way to copy the cached depth, draw the cached casters again
+            r.setFrameBuffer(shadowFB[shadowMapIndex]);
+            r.clearBuffers(true, true, true);
+            renderOccluders(staticCasters, staticCacheCam, false);
+        }
+        renderOccluders(dynamicOccluders, staticCacheCam, true);
+    }
+
+    /**
+     * Renders a shadow map into its tile of the shadow atlas. The saved
+     * light view projection maps to the tile, so that the post shadow pass
+     * samples the atlas.
+     */
+    private void renderAtlasShadowMap(int shadowMapIndex, Camera shadowCam) {
+        ShadowAtlas.Tile tile = atlasTiles[shadowMapIndex];
+        float atlasSize = shadowAtlas.getSize();
+        int padding = shadowAtlas.getPadding();
+        if (atlasCam == null) {
+            atlasCam = shadowCam.clone();
+        }
+        atlasCam.copyFrom(shadowCam);
+        atlasCam.resize(shadowAtlas.getSize(), shadowAtlas.getSize(), false);
+
+        //saving light view projection matrix for this split, in the atlas
+        Matrix4f tileMatrix = shadowAtlas.getTileMatrix(tile, lightViewProjectionsMatrices[shadowMapIndex]);
+        tileMatrix.multLocal(shadowCam.getViewProjectionMatrix());
+
+        Renderer r = renderManager.getRenderer();
+        r.setFrameBuffer(shadowAtlas.getFrameBuffer());
+        // clear the whole tile, then render inside the padding
+        atlasCam.setViewPort(tile.getX() / atlasSize, (tile.getX() + tile.getSize()) / atlasSize,
+                tile.getY() / atlasSize, (tile.getY() + tile.getSize()) / atlasSize);
+        renderManager.setCamera(atlasCam, false);
+        r.clearBuffers(true, true, true);
+        atlasCam.setViewPort((tile.getX() + padding) / atlasSize, (tile.getX() + tile.getSize() - padding) / atlasSize,
+                (tile.getY() + padding) / atlasSize, (tile.getY() + tile.getSize() - padding) / atlasSize);
+        renderManager.setCamera(atlasCam, false);
+
+        renderOccluders(shadowMapOccluders, atlasCam, true);
+    }
+
+    /**
+     * Requests the atlas tiles of this renderer, sized after the importance
+     * of the light for the view port camera.
+     *
+     * @param update true to send a new request, false to only send one if
+     * none was made yet
+     * @return true if every shadow map has a tile
+     */
+    private boolean requestAtlasTiles(boolean update) {
+        if (update || atlasTiles == null) {
+            float importance = FastMath.clamp(getShadowImportance(viewPort.getCamera()), 0f, 1f);
+            int desiredSize = (int) (shadowMapSize * importance);
+            atlasTiles = shadowAtlas.request(this, nbShadowMaps, desiredSize, importance);
+        }
+        for (ShadowAtlas.Tile tile : atlasTiles) {
+            if (!tile.isAllocated()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns how important the shadows of this renderer are for the given
+     * view camera, used to size its tiles in a {@link ShadowAtlas}. The
+     * default implementation returns 1.
+     *
+     * @param viewCam the view camera (not null, unaffected)
+     * @return the importance (between 0 and 1)
+     */
+    protected float getShadowImportance(Camera viewCam) {
+        return 1f;
+    }
+
+    /**
+     * Returns the region of the shadow atlas holding a shadow map, so that
+     * the post shadow shaders can keep their lookups inside the tile.
+     *
+     * @param shadowMapIndex the index of the shadow map
+     * @param store storage for the result (not null, modified)
+     * @return store, or null if the shadow map has no tile in an atlas
+     */
+    protected Vector4f getAtlasTileRect(int shadowMapIndex, Vector4f store) {
+        if (shadowAtlas == null || atlasTiles == null || !atlasTiles[shadowMapIndex].isAllocated()) {
+            return null;
+        }
+        return shadowAtlas.getTileRect(atlasTiles[shadowMapIndex], store);
+    }
+
+    private Texture2D getSampledShadowMap(int shadowMapIndex) {
+        return shadowAtlas != null ? shadowAtlas.getShadowMap() : shadowMaps[shadowMapIndex];
+    }
+
+    private float getSampledShadowMapSize() {
+        return shadowAtlas != null ? shadowAtlas.getSize() : shadowMapSize;
+    }
+
+    private void renderOccluders(GeometryList occluders, Camera shadowCam, boolean clear) {
         renderManager.setForcedRenderState(forcedRenderState);
 
         // render shadow casters to shadow map and disables the lightfilter
         LightFilter tmpLightFilter = renderManager.getLightFilter();
         renderManager.setLightFilter(NULL_LIGHT_FILTER);
-        viewPort.getQueue().renderShadowQueue(shadowMapOccluders, renderManager, shadowCam, true);
+        viewPort.getQueue().renderShadowQueue(occluders, renderManager, shadowCam, clear);
         renderManager.setLightFilter(tmpLightFilter);
         renderManager.setForcedRenderState(null);
     }
@@ -564,14 +754,14 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
         //iterating through the mat cache and setting the parameters
         for (Material mat : matCache) {
 
-            mat.setFloat("ShadowMapSize", shadowMapSize);
+            mat.setFloat("ShadowMapSize", getSampledShadowMapSize());
 
             for (int j = 0; j < nbShadowMaps; j++) {
                 mat.setMatrix4(lightViewStringCache[j], lightViewProjectionsMatrices[j]);
             }
 
             for (int j = 0; j < nbShadowMaps; j++) {
-                mat.setTexture(shadowMapStringCache[j], shadowMaps[j]);
+                mat.setTexture(shadowMapStringCache[j], getSampledShadowMap(j));
             }
 
             mat.setBoolean("HardwareShadows", shadowCompareMode == CompareMode.Hardware);
@@ -617,7 +807,7 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
         setMaterialParameters(postshadowMat);
         for (int j = 0; j < nbShadowMaps; j++) {
             postshadowMat.setMatrix4(lightViewStringCache[j], lightViewProjectionsMatrices[j]);
-            postshadowMat.setTexture(shadowMapStringCache[j], shadowMaps[j]);
+            postshadowMat.setTexture(shadowMapStringCache[j], getSampledShadowMap(j));
         }
         if (fadeInfo != null) {
             postshadowMat.setVector2("FadeInfo", fadeInfo);
@@ -701,10 +891,29 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
 
     @Override
     public void preFrame(float tpf) {
+        if (shadowAtlas != null && viewPort != null) {
+            // tiles may only move before any shadow map of the frame is rendered
+            requestAtlasTiles(true);
+        }
     }
 
     @Override
     public void cleanup() {
+        if (shadowAtlas != null) {
+            shadowAtlas.release(this);
+            atlasTiles = null;
+        }
+        disposeStaticCache();
+    }
+
+    /**
+     * Deletes the GPU resources of the static shadow cache, if any. The cache
+     * itself is only dropped by the caller.
+     */
+    private void disposeStaticCache() {
+        if (staticCache != null && renderManager != null) {
+            staticCache.dispose(renderManager.getRenderer());
+        }
     }
 
     @Override
@@ -823,6 +1032,127 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
         return renderBackFacesShadows;
     }
 
+    /**
+     * Enables or disables the caching of static shadow casters. Spatials are
+     * flagged as static casters with the {@link
+     * com.jme3.scene.UserData#JME_STATICSHADOW} user data, which is inherited
+     * by their children.
+     *
+     * When enabled, static casters are rendered into a separate cached depth
+     * map that is refreshed only when the light or the shadow map volume
+     * moves beyond the {@link #setStaticShadowMargin(float) margin}. Each
+     * frame the cached depth is copied into the shadow map and only the
+     * dynamic casters are rendered on top of it. Hardware without frame
+     * buffer blitting still skips the static caster gathering but draws the
+     * cached casters every frame.
+     *
+     * Call {@link #invalidateStaticShadows()} after moving, adding or
+     * removing static casters. The default is disabled.
+     *
+     * @param enabled true to cache static casters, false to render every
+     * caster each frame
+     */
+    public void setStaticShadowCaching(boolean enabled) {
+        if (enabled == (staticCache != null)) {
+            return;
+        }
+        if (enabled && shadowAtlas != null) {
+            throw new IllegalStateException("Static shadow caching cannot be used with a shadow atlas");
+        }
+        disposeStaticCache();
+        staticCache = enabled
+                ? new StaticShadowCache(nbShadowMaps, (int) shadowMapSize, dummyTex, staticShadowMargin)
+                : null;
+    }
+
+    /**
+     * Tests whether static shadow casters are cached.
+     *
+     * @see #setStaticShadowCaching(boolean)
+     * @return true if static casters are cached, otherwise false
+     */
+    public boolean isStaticShadowCaching() {
+        return staticCache != null;
+    }
+
+    /**
+     * Sets the fraction by which the volume of a cached static shadow map is
+     * enlarged around the shadow camera volume. Larger margins refresh the
+     * cache less often at the cost of shadow map resolution. The default is
+     * 0.25.
+     *
+     * @param margin the margin (&ge;0)
+     */
+    public void setStaticShadowMargin(float margin) {
+        if (!(margin >= 0f)) {
+            throw new IllegalArgumentException("margin must be >= 0, got " + margin);
+        }
+        this.staticShadowMargin = margin;
+        if (staticCache != null) {
+            disposeStaticCache();
+            staticCache = new StaticShadowCache(nbShadowMaps, (int) shadowMapSize, dummyTex, margin);
+        }
+    }
+
+    /**
+     * Returns the margin of the cached static shadow maps.
+     *
+     * @see #setStaticShadowMargin(float)
+     * @return the margin
+     */
+    public float getStaticShadowMargin() {
+        return staticShadowMargin;
+    }
+
+    /**
+     * Forces the cached static shadow maps to be rendered again on the next
+     * frame. Has no effect unless static shadow caching is enabled.
+     */
+    public void invalidateStaticShadows() {
+        if (staticCache != null) {
+            staticCache.invalidate();
+        }
+    }
+
+    /**
+     * Renders the shadow maps of this renderer into tiles of a shared
+     * {@link ShadowAtlas} instead of its own shadow maps. The tile size
+     * follows the {@link #getShadowImportance(com.jme3.renderer.Camera)
+     * importance} of the light, up to the shadow map size of this renderer.
+     * When the atlas has no room left for this renderer, its light casts no
+     * shadows.
+     *
+     * Cannot be combined with {@link #setStaticShadowCaching(boolean)}.
+     *
+     * @param shadowAtlas the atlas to render into, or null to use the own
+     * shadow maps of this renderer
+     */
+    public void setShadowAtlas(ShadowAtlas shadowAtlas) {
+        if (shadowAtlas == this.shadowAtlas) {
+            return;
+        }
+        if (shadowAtlas != null && staticCache != null) {
+            throw new IllegalStateException("A shadow atlas cannot be used with static shadow caching");
+        }
+        if (this.shadowAtlas != null) {
+            this.shadowAtlas.release(this);
+        }
+        this.shadowAtlas = shadowAtlas;
+        atlasTiles = null;
+        atlasCam = null;
+        setPostShadowMaterial(postshadowMat);
+    }
+
+    /**
+     * Returns the atlas the shadow maps are rendered into.
+     *
+     * @see #setShadowAtlas(com.jme3.shadow.ShadowAtlas)
+     * @return the atlas, or null if this renderer uses its own shadow maps
+     */
+    public ShadowAtlas getShadowAtlas() {
+        return shadowAtlas;
+    }
+
     @Override
     public Object jmeClone() {
         try {
@@ -836,6 +1166,13 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
     public void cloneFields(final Cloner cloner, final Object original) {
         forcedRenderState = cloner.clone(forcedRenderState);
         init(assetManager, nbShadowMaps, (int) shadowMapSize);
+        dynamicOccluders = new GeometryList(new OpaqueComparator());
+        staticCacheCam = null;
+        atlasTiles = null;
+        atlasCam = null;
+        if (staticCache != null) {
+            staticCache = new StaticShadowCache(nbShadowMaps, (int) shadowMapSize, dummyTex, staticShadowMargin);
+        }
     }
 
     @Override
@@ -861,6 +1198,8 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
         init(assetManager, nbShadowMaps, (int) shadowMapSize);
         edgesThickness = ic.readFloat("edgesThickness", 1.0f);
         postshadowMat.setFloat("PCFEdge", edgesThickness);
+        staticShadowMargin = ic.readFloat("staticShadowMargin", 0.25f);
+        setStaticShadowCaching(ic.readBoolean("staticShadowCaching", false));
     }
 
     /**
@@ -878,5 +1217,7 @@ public abstract class AbstractShadowRenderer implements SceneProcessor, Savable,
         oc.write(edgeFilteringMode, "edgeFilteringMode", EdgeFilteringMode.Bilinear);
         oc.write(shadowCompareMode, "shadowCompareMode", CompareMode.Hardware);
         oc.write(edgesThickness, "edgesThickness", 1.0f);
+        oc.write(staticShadowMargin, "staticShadowMargin", 0.25f);
+        oc.write(staticCache != null, "staticShadowCaching", false);
     }
 }
@@ -39,10 +39,12 @@ import com.jme3.export.OutputCapsule;
 import com.jme3.light.DirectionalLight;
 import com.jme3.material.Material;
 import com.jme3.math.ColorRGBA;
+import com.jme3.math.Matrix4f;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
 import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
@@ -69,6 +71,9 @@ public class DirectionalLightShadowRenderer extends AbstractShadowRenderer {
     protected float[] splitsArray;
     protected DirectionalLight light;
     protected Vector3f[] points = new Vector3f[8];
+    private Vector3f[][] splitPoints;
+    private GeometryList[] splitOccluders;
+    private Matrix4f[] splitProjections;
     //Holding the info for fading shadows in the far distance   
     private boolean stabilize = true;
 
@@ -108,6 +113,16 @@ public class DirectionalLightShadowRenderer extends AbstractShadowRenderer {
         for (int i = 0; i < points.length; i++) {
             points[i] = new Vector3f();
         }
+        splitPoints = new Vector3f[nbSplits][8];
+        splitOccluders = new GeometryList[nbSplits];
+        splitProjections = new Matrix4f[nbSplits];
+        for (int i = 0; i < nbSplits; i++) {
+            for (int j = 0; j < 8; j++) {
+                splitPoints[i][j] = new Vector3f();
+            }
+            splitOccluders[i] = new GeometryList(new OpaqueComparator());
+            splitProjections[i] = new Matrix4f();
+        }
     }
 
     @Override
@@ -182,17 +197,33 @@ public class DirectionalLightShadowRenderer extends AbstractShadowRenderer {
     @Override
     protected GeometryList getOccludersToRender(int shadowMapIndex, GeometryList shadowMapOccluders) {
 
-        // update frustum points based on current camera and split
-        ShadowUtil.updateFrustumPoints(viewPort.getCamera(), splitsArray[shadowMapIndex], splitsArray[shadowMapIndex + 1], 1.0f, points);
+        if (shadowMapIndex == 0) {
+            // update frustum points based on current camera and splits
+            for (int i = 0; i < nbShadowMaps; i++) {
+                ShadowUtil.updateFrustumPoints(viewPort.getCamera(), splitsArray[i], splitsArray[i + 1], 1.0f, splitPoints[i]);
+                splitOccluders[i].clear();
+            }
 
-        //Updating shadow cam with current split frusta
-        if (lightReceivers.size()==0) {
-            for (Spatial scene : viewPort.getScenes()) {
-              ShadowUtil.getGeometriesInCamFrustum(scene, viewPort.getCamera(), RenderQueue.ShadowMode.Receive, lightReceivers);
+            if (lightReceivers.size()==0) {
+                for (Spatial scene : viewPort.getScenes()) {
+                  ShadowUtil.getGeometriesInCamFrustum(scene, viewPort.getCamera(), RenderQueue.ShadowMode.Receive, lightReceivers);
+                }
             }
+            //Cropping the shadow cam for all the split frusta in one scene traversal
+            ShadowUtil.updateShadowCameras(viewPort, lightReceivers, shadowCam, splitPoints, splitOccluders,
+                    splitProjections, stabilize?shadowMapSize:0);
         }
-        ShadowUtil.updateShadowCamera(viewPort, lightReceivers, shadowCam, points, shadowMapOccluders, stabilize?shadowMapSize:0);
 
+        for (int i = 0; i < points.length; i++) {
+            points[i].set(splitPoints[shadowMapIndex][i]);
+        }
+        shadowCam.setProjectionMatrix(splitProjections[shadowMapIndex]);
+
+        GeometryList occluders = splitOccluders[shadowMapIndex];
+        for (int i = 0; i < occluders.size(); i++) {
+            shadowMapOccluders.add(occluders.get(i));
+        }
+        occluders.clear();
         return shadowMapOccluders;
     }
 
@@ -90,6 +90,25 @@ public class PointLightShadowFilter extends AbstractShadowFilter<PointLightShado
         shadowRenderer.setLight(light);
     }
 
+    /**
+     * Returns the culler used to collect the shadow casters of the six faces.
+     *
+     * @return the culler (not null)
+     */
+    public ShadowCasterCuller getShadowCasterCuller() {
+        return shadowRenderer.getShadowCasterCuller();
+    }
+
+    /**
+     * Sets the culler used to collect the shadow casters of the six faces.
+     *
+     * @see PointLightShadowRenderer#setShadowCasterCuller(ShadowCasterCuller)
+     * @param casterCuller the culler (not null)
+     */
+    public void setShadowCasterCuller(ShadowCasterCuller casterCuller) {
+        shadowRenderer.setShadowCasterCuller(casterCuller);
+    }
+
     @Override
     public void write(JmeExporter ex) throws IOException {
         super.write(ex);
@@ -41,6 +41,7 @@ import com.jme3.material.Material;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
 import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
@@ -61,6 +62,8 @@ public class PointLightShadowRenderer extends AbstractShadowRenderer {
     protected PointLight light;
     protected Camera[] shadowCams;
     private Geometry[] frustums = null;
+    private ShadowCasterCuller casterCuller = new ShadowCasterCuller();
+    private GeometryList[] faceOccluders;
 
     /**
      * Used for serialization.
@@ -86,8 +89,10 @@ public class PointLightShadowRenderer extends AbstractShadowRenderer {
 
     private void init(int shadowMapSize) {
         shadowCams = new Camera[CAM_NUMBER];
+        faceOccluders = new GeometryList[CAM_NUMBER];
         for (int i = 0; i < CAM_NUMBER; i++) {
             shadowCams[i] = new Camera(shadowMapSize, shadowMapSize);
+            faceOccluders[i] = new GeometryList(new OpaqueComparator());
         }
     }
     
@@ -136,12 +141,46 @@ public class PointLightShadowRenderer extends AbstractShadowRenderer {
 
     @Override
     protected GeometryList getOccludersToRender(int shadowMapIndex, GeometryList shadowMapOccluders) {
-        for (Spatial scene : viewPort.getScenes()) {
-            ShadowUtil.getGeometriesInCamFrustum(scene, shadowCams[shadowMapIndex], RenderQueue.ShadowMode.Cast, shadowMapOccluders);
+        if (shadowMapIndex == 0) {
+            // cull the casters of all the faces in one traversal
+            for (GeometryList occluders : faceOccluders) {
+                occluders.clear();
+            }
+            for (Spatial scene : viewPort.getScenes()) {
+                casterCuller.cull(scene, shadowCams, RenderQueue.ShadowMode.Cast, faceOccluders);
+            }
         }
+        GeometryList occluders = faceOccluders[shadowMapIndex];
+        for (int i = 0; i < occluders.size(); i++) {
+            shadowMapOccluders.add(occluders.get(i));
+        }
+        occluders.clear();
         return shadowMapOccluders;
     }
 
+    /**
+     * Returns the culler used to collect the shadow casters of the six faces.
+     *
+     * @return the culler (not null)
+     */
+    public ShadowCasterCuller getShadowCasterCuller() {
+        return casterCuller;
+    }
+
+    /**
+     * Sets the culler used to collect the shadow casters of the six faces,
+     * for example one running on a fork-join pool. The default culler
+     * traverses the scene once, on the render thread.
+     *
+     * @param casterCuller the culler (not null)
+     */
+    public void setShadowCasterCuller(ShadowCasterCuller casterCuller) {
+        if (casterCuller == null) {
+            throw new IllegalArgumentException("casterCuller cannot be null");
+        }
+        this.casterCuller = casterCuller;
+    }
+
     @Override
     protected void getReceivers(GeometryList lightReceivers) {
         lightReceivers.clear();
@@ -155,6 +194,14 @@ public class PointLightShadowRenderer extends AbstractShadowRenderer {
         return shadowCams[shadowMapIndex];
     }
 
+    @Override
+    protected float getShadowImportance(Camera viewCam) {
+        if (light == null) {
+            return 0f;
+        }
+        return ShadowAtlas.computeImportance(viewCam, light.getPosition(), light.getRadius());
+    }
+
     @Override
     protected void doDisplayFrustumDebug(int shadowMapIndex) {
         if (frustums == null) {
@@ -0,0 +1,522 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shadow;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.renderer.Camera;
+import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.FrameBuffer.FrameBufferTarget;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.Texture2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single depth texture shared by the shadow maps of several shadow
+ * renderers.
+ *
+ * <p>Each renderer attached with
+ * {@link AbstractShadowRenderer#setShadowAtlas(ShadowAtlas)} requests one
+ * square tile per shadow map at the start of every frame. The size of the
+ * tiles follows the screen-space importance of the light, rounded to a power
+ * of two. Tiles are packed with a quadtree allocator; when a request does
+ * not fit, all the tiles are packed again and the least important lights
+ * are given smaller tiles, down to the minimum tile size, or no tile at all.
+ * Once space is freed, by a release or a smaller request, the next request
+ * packs the tiles again so that the shrunk and dropped tiles grow back.
+ *
+ * <p>Shadow memory is bounded by the size of the atlas, and all the
+ * renderers render into and sample from the same frame buffer and texture.
+ *
+ * <p>Tiles only move when requests are made, which renderers do in
+ * {@link AbstractShadowRenderer#preFrame(float)}, so they are stable
+ * between the shadow pass and the post shadow pass of a view port.
+ */
+public class ShadowAtlas {
+
+    private final int size;
+    private final int minTileSize;
+    private final int levels;
+    private int padding = 2;
+    private final Texture2D shadowMap;
+    private final FrameBuffer frameBuffer;
+    private final Map<Object, Allocation> allocations = new LinkedHashMap<>();
+    /**
+     * free squares of each quadtree level, level 0 being the whole atlas
+     */
+    private final List<List<int[]>> freeLists = new ArrayList<>();
+    private int repackCount;
+    /**
+     * true if space was freed while some tiles are smaller than requested
+     */
+    private boolean repackPending;
+
+    /**
+     * Creates an atlas with a minimum tile size of 64 texels.
+     *
+     * @param size the size of each edge of the atlas (a power of two &ge;64)
+     */
+    public ShadowAtlas(int size) {
+        this(size, 64);
+    }
+
+    /**
+     * Creates an atlas.
+     *
+     * @param size the size of each edge of the atlas (a power of two)
+     * @param minTileSize the smallest tile size handed out (a power of two
+     * &le;size)
+     */
+    public ShadowAtlas(int size, int minTileSize) {
+        if (!FastMath.isPowerOfTwo(size)) {
+            throw new IllegalArgumentException("size must be a power of two, got " + size);
+        }
+        if (!FastMath.isPowerOfTwo(minTileSize) || minTileSize > size) {
+            throw new IllegalArgumentException("minTileSize must be a power of two <= size, got " + minTileSize);
+        }
+        this.size = size;
+        this.minTileSize = minTileSize;
+        this.levels = Integer.numberOfTrailingZeros(size / minTileSize) + 1;
+        for (int i = 0; i < levels; i++) {
+            freeLists.add(new ArrayList<>());
+        }
+        freeLists.get(0).add(new int[]{0, 0});
+
+        shadowMap = new Texture2D(size, size, Format.Depth);
+        frameBuffer = new FrameBuffer(size, size, 1);
+        frameBuffer.setDepthTarget(FrameBufferTarget.newTarget(shadowMap));
+        //DO NOT COMMENT THIS (it prevents the OSX incomplete read-buffer crash)
+        frameBuffer.addColorTarget(FrameBufferTarget.newTarget(new Texture2D(size, size, Format.RGBA8)));
+    }
+
+    /**
+     * @return the size of each edge of the atlas (in texels)
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the smallest tile size handed out (in texels)
+     */
+    public int getMinTileSize() {
+        return minTileSize;
+    }
+
+    /**
+     * Returns the number of texels left empty around the shadow map of each
+     * tile.
+     *
+     * @return the padding (in texels)
+     */
+    public int getPadding() {
+        return padding;
+    }
+
+    /**
+     * Sets the number of texels left empty around the shadow map of each
+     * tile, so that filtering does not sample the neighboring tiles. The
+     * default is 2.
+     *
+     * @param padding the padding (&ge;0, less than half the minimum tile
+     * size)
+     */
+    public void setPadding(int padding) {
+        if (padding < 0 || padding * 2 >= minTileSize) {
+            throw new IllegalArgumentException("padding must be >= 0 and < " + minTileSize / 2 + ", got " + padding);
+        }
+        this.padding = padding;
+    }
+
+    /**
+     * @return the depth texture of the atlas
+     */
+    public Texture2D getShadowMap() {
+        return shadowMap;
+    }
+
+    /**
+     * @return the frame buffer rendering into the atlas
+     */
+    public FrameBuffer getFrameBuffer() {
+        return frameBuffer;
+    }
+
+    /**
+     * @return the number of times all the tiles have been packed again
+     */
+    public int getRepackCount() {
+        return repackCount;
+    }
+
+    /**
+     * Requests tiles for the shadow maps of an owner. The tiles are only
+     * reallocated when the requested size changes, or when freed space lets
+     * tiles that were shrunk or dropped grow back; the returned tiles stay
+     * the same instances for as long as the owner keeps the same count,
+     * but their location and size may change on any later request.
+     *
+     * @param owner the owner of the tiles, usually a shadow renderer (not
+     * null)
+     * @param count the number of tiles (&gt;0)
+     * @param desiredSize the desired size of each tile (in texels), rounded
+     * to a power of two between the minimum tile size and the atlas size
+     * @param importance the importance of the owner, used to decide which
+     * tiles shrink first when the atlas is full (between 0 and 1)
+     * @return the tiles of the owner, some of which may not be allocated
+     */
+    public Tile[] request(Object owner, int count, int desiredSize, float importance) {
+        if (owner == null) {
+            throw new IllegalArgumentException("owner cannot be null");
+        }
+        if (count <= 0) {
+            throw new IllegalArgumentException("count must be > 0, got " + count);
+        }
+        int requested = clampSize(desiredSize);
+
+        Allocation allocation = allocations.get(owner);
+        if (allocation != null && allocation.tiles.length != count) {
+            release(owner);
+            allocation = null;
+        }
+        if (allocation == null) {
+            allocation = new Allocation(count);
+            allocations.put(owner, allocation);
+        } else if (allocation.requestedSize == requested) {
+            allocation.importance = importance;
+            if (repackPending) {
+                repack();
+            }
+            return allocation.tiles;
+        }
+        boolean shrinking = requested < allocation.packedSize;
+        allocation.requestedSize = requested;
+        allocation.importance = importance;
+
+        freeTiles(allocation);
+        allocation.packedSize = requested;
+        int level = levelOf(requested);
+        for (Tile tile : allocation.tiles) {
+            if (!allocate(tile, level)) {
+                repackPending = true;
+                break;
+            }
+        }
+        if (shrinking) {
+            checkShrunkTiles();
+        }
+        if (repackPending) {
+            repack();
+        }
+        return allocation.tiles;
+    }
+
+    /**
+     * Frees the tiles of an owner.
+     *
+     * @param owner the owner of the tiles
+     */
+    public void release(Object owner) {
+        Allocation allocation = allocations.remove(owner);
+        if (allocation != null) {
+            freeTiles(allocation);
+            checkShrunkTiles();
+        }
+    }
+
+    /**
+     * Packs the tiles again on the next request if freed space may fit the
+     * tiles that the last repack shrank or dropped.
+     */
+    private void checkShrunkTiles() {
+        for (Allocation allocation : allocations.values()) {
+            if (allocation.packedSize < allocation.requestedSize) {
+                repackPending = true;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Computes the screen-space importance of a light volume, that is the
+     * fraction of the view height covered by its bounding sphere, clamped
+     * to 1.
+     *
+     * @param viewCam the view camera (not null, unaffected)
+     * @param center the center of the light volume (not null, unaffected)
+     * @param radius the radius of the light volume, or 0 if unbounded
+     * @return the importance (between 0 and 1)
+     */
+    public static float computeImportance(Camera viewCam, Vector3f center, float radius) {
+        if (radius <= 0f) {
+            return 1f;
+        }
+        float distance = viewCam.getLocation().distance(center);
+        if (distance <= radius) {
+            return 1f;
+        }
+        float viewHeight;
+        if (viewCam.isParallelProjection()) {
+            viewHeight = viewCam.getFrustumTop() - viewCam.getFrustumBottom();
+            return Math.min(1f, 2f * radius / viewHeight);
+        }
+        viewHeight = (viewCam.getFrustumTop() - viewCam.getFrustumBottom()) / viewCam.getFrustumNear();
+        return Math.min(1f, 2f * radius / (distance * viewHeight));
+    }
+
+    /**
+     * Computes the matrix mapping the clip space of a shadow map to the clip
+     * space of its tile within the atlas, padding excluded.
+     *
+     * @param tile the tile (not null, allocated)
+     * @param store storage for the result (not null, modified)
+     * @return store
+     */
+    Matrix4f getTileMatrix(Tile tile, Matrix4f store) {
+        float scale = (tile.size - 2f * padding) / size;
+        float offsetX = (tile.x + padding) * 2f / size;
+        float offsetY = (tile.y + padding) * 2f / size;
+        store.loadIdentity();
+        store.m00 = scale;
+        store.m11 = scale;
+        store.m03 = scale + offsetX - 1f;
+        store.m13 = scale + offsetY - 1f;
+        return store;
+    }
+
+    /**
+     * Computes the region of the atlas holding the shadow map of a tile,
+     * padding excluded, in texture coordinates.
+     *
+     * @param tile the tile (not null, allocated)
+     * @param store storage for the result (not null, modified)
+     * @return store, with the offset in x and y and the size in z and w
+     */
+    Vector4f getTileRect(Tile tile, Vector4f store) {
+        float extent = (tile.size - 2f * padding) / size;
+        return store.set((tile.x + padding) / (float) size, (tile.y + padding) / (float) size, extent, extent);
+    }
+
+    private int clampSize(int desiredSize) {
+        int clamped = Math.max(minTileSize, Math.min(size, desiredSize));
+        return FastMath.nearestPowerOfTwo(clamped);
+    }
+
+    private int levelOf(int tileSize) {
+        return Integer.numberOfTrailingZeros(size / tileSize);
+    }
+
+    /**
+     * Packs all the tiles again, largest first. Before packing, the least
+     * important owners are shrunk until the tiles fit in the atlas.
+     */
+    private void repack() {
+        repackCount++;
+        repackPending = false;
+        for (List<int[]> freeList : freeLists) {
+            freeList.clear();
+        }
+        freeLists.get(0).add(new int[]{0, 0});
+
+        List<Allocation> byImportance = new ArrayList<>(allocations.values());
+        Collections.sort(byImportance, new Comparator<Allocation>() {
+            @Override
+            public int compare(Allocation a, Allocation b) {
+                return Float.compare(a.importance, b.importance);
+            }
+        });
+
+        long capacity = (long) size * size;
+        long area = 0;
+        for (Allocation allocation : byImportance) {
+            allocation.packedSize = allocation.requestedSize;
+            area += allocation.area();
+        }
+        // shrink the least important owners first, then drop them
+        for (int i = 0; area > capacity && i < byImportance.size(); i++) {
+            Allocation allocation = byImportance.get(i);
+            while (area > capacity && allocation.packedSize > minTileSize) {
+                area -= allocation.area();
+                allocation.packedSize >>= 1;
+                area += allocation.area();
+            }
+        }
+        for (int i = 0; area > capacity && i < byImportance.size(); i++) {
+            Allocation allocation = byImportance.get(i);
+            area -= allocation.area();
+            allocation.packedSize = 0;
+        }
+
+        List<Allocation> bySize = new ArrayList<>(byImportance);
+        Collections.sort(bySize, new Comparator<Allocation>() {
+            @Override
+            public int compare(Allocation a, Allocation b) {
+                return Integer.compare(b.packedSize, a.packedSize);
+            }
+        });
+        for (Allocation allocation : bySize) {
+            for (Tile tile : allocation.tiles) {
+                tile.size = 0;
+                if (allocation.packedSize > 0) {
+                    // always fits, the tiles are sorted and their total area fits
+                    allocate(tile, levelOf(allocation.packedSize));
+                }
+            }
+        }
+    }
+
+    private boolean allocate(Tile tile, int level) {
+        int from = level;
+        while (from >= 0 && freeLists.get(from).isEmpty()) {
+            from--;
+        }
+        if (from < 0) {
+            return false;
+        }
+        int[] square = freeLists.get(from).remove(freeLists.get(from).size() - 1);
+        // split down to the requested level, keeping the first quadrant
+        for (int l = from + 1; l <= level; l++) {
+            int half = size >> l;
+            List<int[]> freeList = freeLists.get(l);
+            freeList.add(new int[]{square[0] + half, square[1] + half});
+            freeList.add(new int[]{square[0], square[1] + half});
+            freeList.add(new int[]{square[0] + half, square[1]});
+        }
+        tile.x = square[0];
+        tile.y = square[1];
+        tile.size = size >> level;
+        return true;
+    }
+
+    private void freeTiles(Allocation allocation) {
+        for (Tile tile : allocation.tiles) {
+            if (tile.size > 0) {
+                free(tile.x, tile.y, levelOf(tile.size));
+                tile.size = 0;
+            }
+        }
+    }
+
+    /**
+     * Frees a square, merging it with its three siblings when they are free.
+     */
+    private void free(int x, int y, int level) {
+        if (level > 0) {
+            int parentSize = size >> (level - 1);
+            int px = x - x % parentSize;
+            int py = y - y % parentSize;
+            List<int[]> freeList = freeLists.get(level);
+            int[] siblings = new int[3];
+            int found = 0;
+            for (int i = 0; i < freeList.size() && found < 3; i++) {
+                int[] square = freeList.get(i);
+                if (square[0] >= px && square[0] < px + parentSize
+                        && square[1] >= py && square[1] < py + parentSize) {
+                    siblings[found++] = i;
+                }
+            }
+            if (found == 3) {
+                for (int i = 2; i >= 0; i--) {
+                    freeList.remove(siblings[i]);
+                }
+                free(px, py, level - 1);
+                return;
+            }
+        }
+        freeLists.get(level).add(new int[]{x, y});
+    }
+
+    /**
+     * A square region of the atlas holding one shadow map.
+     */
+    public static final class Tile {
+
+        private int x;
+        private int y;
+        private int size;
+
+        /**
+         * @return the left edge of the tile (in texels)
+         */
+        public int getX() {
+            return x;
+        }
+
+        /**
+         * @return the bottom edge of the tile (in texels)
+         */
+        public int getY() {
+            return y;
+        }
+
+        /**
+         * @return the size of each edge of the tile (in texels), or 0 if the
+         * tile is not allocated
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return true if the tile has a region of the atlas
+         */
+        public boolean isAllocated() {
+            return size > 0;
+        }
+    }
+
+    private static final class Allocation {
+
+        final Tile[] tiles;
+        int requestedSize;
+        int packedSize;
+        float importance;
+
+        Allocation(int count) {
+            tiles = new Tile[count];
+            for (int i = 0; i < count; i++) {
+                tiles[i] = new Tile();
+            }
+        }
+
+        long area() {
+            return (long) packedSize * packedSize * tiles.length;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shadow;
+
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.RenderQueue.ShadowMode;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.util.SafeArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Collects the shadow casters of a scene for several shadow cameras in a
+ * single traversal, optionally splitting the work across a
+ * {@link ForkJoinPool}.
+ *
+ * <p>Every spatial is tested only against the cameras that see its parent,
+ * tracked as a bit mask, and the world bound of a spatial is only read once
+ * for all of them. The geometries are added to the output lists on the
+ * calling thread, in the same order as
+ * {@link ShadowUtil#getGeometriesInCamFrustum(com.jme3.scene.Spatial,
+ * com.jme3.renderer.Camera, com.jme3.renderer.queue.RenderQueue.ShadowMode,
+ * com.jme3.renderer.queue.GeometryList)} called once per camera.
+ *
+ * <p>The plane states of the cameras are neither used nor modified.
+ */
+public class ShadowCasterCuller {
+
+    /**
+     * The maximum number of cameras that can be culled in one pass.
+     */
+    public static final int MAX_CAMERAS = 32;
+
+    private final ForkJoinPool pool;
+    private final CasterBatch serialBatch = new CasterBatch();
+    private int splitThreshold = 64;
+
+    /**
+     * Creates a culler that traverses the scene on the calling thread.
+     */
+    public ShadowCasterCuller() {
+        this.pool = null;
+    }
+
+    /**
+     * Creates a culler that splits wide nodes across the given pool.
+     *
+     * @param pool the pool to run culling tasks on (not null)
+     */
+    public ShadowCasterCuller(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool cannot be null");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * @return the pool used for culling tasks, or null if the scene is
+     * traversed on the calling thread
+     */
+    public ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the number of children a node must have before its children
+     * are culled in parallel.
+     *
+     * @return the threshold (&ge;2)
+     */
+    public int getSplitThreshold() {
+        return splitThreshold;
+    }
+
+    /**
+     * Sets the number of children a node must have before its children are
+     * culled in parallel. Ranges of children are split until they are
+     * smaller than this threshold. Has no effect without a pool. The default
+     * is 64.
+     *
+     * @param splitThreshold the threshold (&ge;2)
+     */
+    public void setSplitThreshold(int splitThreshold) {
+        if (splitThreshold < 2) {
+            throw new IllegalArgumentException("splitThreshold must be at least 2");
+        }
+        this.splitThreshold = splitThreshold;
+    }
+
+    /**
+     * Adds the geometries of the scene that match the given shadow mode and
+     * intersect the frustum of each camera to the list of that camera.
+     *
+     * @param rootScene the root of the scene to traverse (may be null)
+     * @param cameras the shadow cameras (not null, at most
+     * {@link #MAX_CAMERAS})
+     * @param mode the ShadowMode to test for
+     * @param outputs the output list of each camera (not null, same length as
+     * cameras, modified)
+     */
+    public void cull(Spatial rootScene, Camera[] cameras, ShadowMode mode, GeometryList[] outputs) {
+        int count = cameras.length;
+        if (count > MAX_CAMERAS) {
+            throw new IllegalArgumentException("Cannot cull more than " + MAX_CAMERAS + " cameras at once");
+        }
+        if (outputs.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " output lists, got " + outputs.length);
+        }
+        if (count == 0 || !(rootScene instanceof Node)) {
+            return;
+        }
+
+        int activeMask = count == 32 ? -1 : (1 << count) - 1;
+        int[] planeStates = new int[count];
+        if (pool == null) {
+            cullNode((Node) rootScene, cameras, mode, activeMask, planeStates, serialBatch, 0);
+            serialBatch.flush(outputs);
+            serialBatch.clear();
+        } else {
+            Spatial[] roots = {rootScene};
+            pool.invoke(new CullTask(this, cameras, mode, roots, 0, 1, activeMask, planeStates)).flush(outputs);
+        }
+    }
+
+    private void cullSpatial(Spatial spatial, Camera[] cams, ShadowMode mode, int activeMask,
+            int[] parentStates, CasterBatch batch, int depth) {
+        if (spatial instanceof Node) {
+            cullNode((Node) spatial, cams, mode, activeMask, parentStates, batch, depth);
+        } else if (spatial instanceof Geometry) {
+            Geometry geom = (Geometry) spatial;
+            if (geom.getCullHint() == Spatial.CullHint.Always || geom.isGrouped()
+                    || !matches(geom.getShadowMode(), mode)) {
+                return;
+            }
+            int visibleMask = 0;
+            for (int i = 0; i < cams.length; i++) {
+                int bit = 1 << i;
+                if ((activeMask & bit) != 0
+                        && cams[i].intersectPlanes(geom.getWorldBound(), parentStates[i]) >= 0) {
+                    visibleMask |= bit;
+                }
+            }
+            if (visibleMask != 0) {
+                batch.add(geom, visibleMask);
+            }
+        }
+    }
+
+    private void cullNode(Node node, Camera[] cams, ShadowMode mode, int activeMask,
+            int[] parentStates, CasterBatch batch, int depth) {
+        if (node.getCullHint() == Spatial.CullHint.Always) {
+            return;
+        }
+        int visibleMask = 0;
+        int[] states = batch.getStates(depth, cams.length);
+        for (int i = 0; i < cams.length; i++) {
+            int bit = 1 << i;
+            if ((activeMask & bit) == 0) {
+                continue;
+            }
+            int state = cams[i].intersectPlanes(node.getWorldBound(), parentStates[i]);
+            if (state >= 0) {
+                states[i] = state;
+                visibleMask |= bit;
+            }
+        }
+        if (visibleMask == 0) {
+            return;
+        }
+
+        Spatial[] children = ((SafeArrayList<Spatial>) node.getChildren()).getArray();
+        int size = children.length;
+        if (pool != null && size >= splitThreshold) {
+            // the tasks keep their own scratch, so the states of this depth
+            // stay untouched until they are done
+            batch.append(new CullTask(this, cams, mode, children, 0, size, visibleMask, states).invoke());
+        } else {
+            for (int i = 0; i < size; i++) {
+                cullSpatial(children[i], cams, mode, visibleMask, states, batch, depth + 1);
+            }
+        }
+    }
+
+    private static boolean matches(ShadowMode shadowMode, ShadowMode desired) {
+        switch (desired) {
+            case Cast:
+                return shadowMode == ShadowMode.Cast || shadowMode == ShadowMode.CastAndReceive;
+            case Receive:
+                return shadowMode == ShadowMode.Receive || shadowMode == ShadowMode.CastAndReceive;
+            case CastAndReceive:
+                return shadowMode != ShadowMode.Off;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Culls a range of sibling spatials, splitting the range in halves
+     * until it is below the threshold.
+     */
+    private static class CullTask extends RecursiveTask<CasterBatch> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ShadowCasterCuller culler;
+        private final Camera[] cams;
+        private final ShadowMode mode;
+        private final Spatial[] spatials;
+        private final int from;
+        private final int to;
+        private final int activeMask;
+        private final int[] parentStates;
+
+        CullTask(ShadowCasterCuller culler, Camera[] cams, ShadowMode mode, Spatial[] spatials,
+                int from, int to, int activeMask, int[] parentStates) {
+            this.culler = culler;
+            this.cams = cams;
+            this.mode = mode;
+            this.spatials = spatials;
+            this.from = from;
+            this.to = to;
+            this.activeMask = activeMask;
+            this.parentStates = parentStates;
+        }
+
+        @Override
+        protected CasterBatch compute() {
+            if (to - from > culler.splitThreshold) {
+                int mid = (from + to) >>> 1;
+                CullTask left = new CullTask(culler, cams, mode, spatials, from, mid, activeMask, parentStates);
+                CullTask right = new CullTask(culler, cams, mode, spatials, mid, to, activeMask, parentStates);
+                left.fork();
+                CasterBatch rightBatch = right.compute();
+                CasterBatch leftBatch = left.join();
+                leftBatch.append(rightBatch);
+                return leftBatch;
+            }
+
+            CasterBatch batch = new CasterBatch();
+            for (int i = from; i < to; i++) {
+                culler.cullSpatial(spatials[i], cams, mode, activeMask, parentStates, batch, 0);
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * The ordered output of a culling task: geometries with the mask of the
+     * cameras that see them. Also holds the plane states of the nodes being
+     * traversed by the task, one array per depth.
+     */
+    private static class CasterBatch {
+
+        private Geometry[] geometries = new Geometry[16];
+        private int[] masks = new int[16];
+        private int size;
+        private int[][] states = new int[8][];
+
+        int[] getStates(int depth, int count) {
+            if (depth == states.length) {
+                states = Arrays.copyOf(states, depth * 2);
+            }
+            int[] result = states[depth];
+            if (result == null || result.length < count) {
+                result = new int[count];
+                states[depth] = result;
+            }
+            return result;
+        }
+
+        void add(Geometry geom, int mask) {
+            ensureCapacity(size + 1);
+            geometries[size] = geom;
+            masks[size] = mask;
+            size++;
+        }
+
+        void append(CasterBatch other) {
+            ensureCapacity(size + other.size);
+            System.arraycopy(other.geometries, 0, geometries, size, other.size);
+            System.arraycopy(other.masks, 0, masks, size, other.size);
+            size += other.size;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > geometries.length) {
+                int newLength = Math.max(capacity, geometries.length * 2);
+                Geometry[] newGeometries = new Geometry[newLength];
+                int[] newMasks = new int[newLength];
+                System.arraycopy(geometries, 0, newGeometries, 0, size);
+                System.arraycopy(masks, 0, newMasks, 0, size);
+                geometries = newGeometries;
+                masks = newMasks;
+            }
+        }
+
+        void clear() {
+            Arrays.fill(geometries, 0, size, null);
+            size = 0;
+        }
+
+        void flush(GeometryList[] outputs) {
+            for (int i = 0; i < size; i++) {
+                int mask = masks[i];
+                for (int c = 0; c < outputs.length; c++) {
+                    if ((mask & (1 << c)) != 0) {
+                        outputs[c].add(geometries[i]);
+                    }
+                }
+            }
+        }
+    }
+}
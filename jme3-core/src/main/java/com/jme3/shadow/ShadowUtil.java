@@ -32,6 +32,7 @@
 package com.jme3.shadow;
 
 import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
 import com.jme3.bounding.BoundingVolume;
 import com.jme3.math.FastMath;
 import com.jme3.math.Matrix4f;
@@ -45,6 +46,7 @@ import com.jme3.renderer.queue.RenderQueue;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
+import com.jme3.scene.UserData;
 import com.jme3.util.TempVars;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
@@ -527,8 +529,202 @@ public class ShadowUtil {
             return;
         }
 
+        Matrix4f result = computeCropProjection(splitBB, casterBB, receiverBB, casterCount != receiverCount,
+                shadowCam.getProjectionMatrix(), shadowMapSize, vars, new Matrix4f());
+        vars.release();
+
+        shadowCam.setProjectionMatrix(result);
+    }
+
+    /**
+     * Computes the cropped projections of every split of a shadow camera in a
+     * single traversal of the scene. The result is the same as calling
+     * {@link #updateShadowCamera(com.jme3.renderer.ViewPort,
+     * com.jme3.renderer.queue.GeometryList, com.jme3.renderer.Camera,
+     * com.jme3.math.Vector3f[], com.jme3.renderer.queue.GeometryList, float)}
+     * once per split, except that each bound is transformed to light space
+     * only once and tested against all the splits, and that the projections
+     * are stored instead of being set on the camera.
+     *
+     * @param viewPort the ViewPort containing the scenes (not null)
+     * @param receivers a list of receiving geometries (not null)
+     * @param shadowCam the shadow camera (not null, projection reset)
+     * @param splitPoints the frustum corners of each split (not null, at most
+     * 32 splits, unaffected)
+     * @param splitOccluders storage for the occluders of each split (not null,
+     * modified)
+     * @param splitProjections storage for the projection of each split (not
+     * null, modified)
+     * @param shadowMapSize the size of each edge of the shadow map (in pixels)
+     */
+    public static void updateShadowCameras(ViewPort viewPort,
+            GeometryList receivers,
+            Camera shadowCam,
+            Vector3f[][] splitPoints,
+            GeometryList[] splitOccluders,
+            Matrix4f[] splitProjections,
+            float shadowMapSize) {
+        int splitCount = splitPoints.length;
+        if (splitCount > 32) {
+            throw new IllegalArgumentException("Cannot update more than 32 splits at once");
+        }
+
+        shadowCam.setProjectionMatrix(null);
+        if (shadowCam.isParallelProjection()) {
+            shadowCam.setFrustum(-shadowCam.getFrustumFar(), shadowCam.getFrustumFar(), -1, 1, 1, -1);
+        }
+
+        Matrix4f viewProjMatrix = shadowCam.getViewProjectionMatrix();
+        BoundingBox[] splitBBs = new BoundingBox[splitCount];
+        BoundingBox[] casterBBs = new BoundingBox[splitCount];
+        BoundingBox[] receiverBBs = new BoundingBox[splitCount];
+        int[] receiverCounts = new int[splitCount];
+        for (int k = 0; k < splitCount; k++) {
+            splitBBs[k] = computeBoundForPoints(splitPoints[k], viewProjMatrix);
+            casterBBs[k] = new BoundingBox();
+            receiverBBs[k] = new BoundingBox();
+        }
+
+        TempVars vars = TempVars.get();
+
+        for (int i = 0; i < receivers.size(); i++) {
+            BoundingVolume recvBox = receivers.get(i).getWorldBound().transform(viewProjMatrix, vars.bbox);
+            //Nehon : prevent NaN and infinity values to screw the final bounding box
+            if (Float.isNaN(recvBox.getCenter().x) || Float.isInfinite(recvBox.getCenter().x)) {
+                continue;
+            }
+            for (int k = 0; k < splitCount; k++) {
+                if (splitBBs[k].intersects(recvBox)) {
+                    receiverBBs[k].mergeLocal(recvBox);
+                    receiverCounts[k]++;
+                }
+            }
+        }
+
+        SplitOccludersExtractor occExt = new SplitOccludersExtractor(viewProjMatrix, splitBBs, casterBBs, splitOccluders);
+        int allSplits = splitCount == 32 ? -1 : (1 << splitCount) - 1;
+        for (Spatial scene : viewPort.getScenes()) {
+            if (scene != null) {
+                occExt.process(scene, allSplits);
+            }
+        }
+
+        Matrix4f projMatrix = shadowCam.getProjectionMatrix();
+        for (int k = 0; k < splitCount; k++) {
+            int casterCount = occExt.casterCounts[k];
+            if (casterCount == 0) {
+                splitProjections[k].set(projMatrix);
+            } else {
+                computeCropProjection(splitBBs[k], casterBBs[k], receiverBBs[k], casterCount != receiverCounts[k],
+                        projMatrix, shadowMapSize, vars, splitProjections[k]);
+            }
+        }
+        vars.release();
+    }
+
+    /**
+     * Collects the occluders of several splits in one traversal, with the
+     * same rules as {@link OccludersExtractor}. Each spatial is only tested
+     * against the splits whose volume intersects its parent, given as a bit
+     * mask.
+     */
+    private static final class SplitOccludersExtractor {
+
+        private final Matrix4f viewProjMatrix;
+        private final BoundingBox[] splitBBs;
+        private final BoundingBox[] casterBBs;
+        private final GeometryList[] splitOccluders;
+        private final int[] casterCounts;
+        private final BoundingBox occBox = new BoundingBox();
+        private final BoundingBox extendedBox = new BoundingBox();
+
+        SplitOccludersExtractor(Matrix4f viewProjMatrix, BoundingBox[] splitBBs, BoundingBox[] casterBBs,
+                GeometryList[] splitOccluders) {
+            this.viewProjMatrix = viewProjMatrix;
+            this.splitBBs = splitBBs;
+            this.casterBBs = casterBBs;
+            this.splitOccluders = splitOccluders;
+            this.casterCounts = new int[splitBBs.length];
+        }
+
+        void process(Spatial scene, int splitMask) {
+            if (scene.getCullHint() == Spatial.CullHint.Always) return;
+
+            BoundingVolume bv = scene.getWorldBound();
+            if (bv == null) return;
+
+            if (scene instanceof Geometry) {
+                Geometry occluder = (Geometry) scene;
+                RenderQueue.ShadowMode shadowMode = scene.getShadowMode();
+                if (shadowMode == RenderQueue.ShadowMode.Off || shadowMode == RenderQueue.ShadowMode.Receive
+                        || occluder.isGrouped()) {
+                    return;
+                }
+                BoundingVolume occ = bv.transform(viewProjMatrix, occBox);
+                BoundingBox extended = extend(occ);
+                boolean finite = !Float.isNaN(occ.getCenter().x) && !Float.isInfinite(occ.getCenter().x);
+                for (int k = 0; k < splitBBs.length; k++) {
+                    if ((splitMask & (1 << k)) == 0) {
+                        continue;
+                    }
+                    if (splitBBs[k].intersects(occ)) {
+                        casterBBs[k].mergeLocal(occ);
+                        casterCounts[k]++;
+                        splitOccluders[k].add(occluder);
+                    } else if (extended != null && splitBBs[k].intersects(extended)) {
+                        if (finite) {
+                            casterBBs[k].mergeLocal(occ);
+                            casterCounts[k]++;
+                        }
+                        splitOccluders[k].add(occluder);
+                    }
+                }
+            } else if (scene instanceof Node) {
+                BoundingVolume occ = bv.transform(viewProjMatrix, occBox);
+                BoundingBox extended = extend(occ);
+                int childMask = 0;
+                for (int k = 0; k < splitBBs.length; k++) {
+                    int bit = 1 << k;
+                    if ((splitMask & bit) != 0 && (splitBBs[k].intersects(occ)
+                            || extended != null && splitBBs[k].intersects(extended))) {
+                        childMask |= bit;
+                    }
+                }
+                if (childMask != 0) {
+                    for (Spatial child : ((Node) scene).getChildren()) {
+                        process(child, childMask);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Extends a light space bound further into the frustum, so casters
+         * outside of the view camera still cast their shadow into it.
+         */
+        private BoundingBox extend(BoundingVolume occ) {
+            if (!(occ instanceof BoundingBox)) {
+                return null;
+            }
+            BoundingBox occBB = (BoundingBox) occ;
+            extendedBox.setCenter(occBB.getCenter());
+            extendedBox.getCenter().addLocal(0, 0, 25);
+            extendedBox.setXExtent(occBB.getXExtent());
+            extendedBox.setYExtent(occBB.getYExtent());
+            extendedBox.setZExtent(occBB.getZExtent() + 50);
+            return extendedBox;
+        }
+    }
+
+    /**
+     * Computes the cropped projection of a shadow camera from the light space
+     * bounds of a split, its casters and its receivers.
+     */
+    private static Matrix4f computeCropProjection(BoundingBox splitBB, BoundingBox casterBB,
+            BoundingBox receiverBB, boolean padCasters, Matrix4f projMatrix, float shadowMapSize,
+            TempVars vars, Matrix4f store) {
         //Nehon 08/18/2010 this is to avoid shadow bleeding when the ground is set to only receive shadows
-        if (casterCount != receiverCount) {
+        if (padCasters) {
             casterBB.setXExtent(casterBB.getXExtent() + 2.0f);
             casterBB.setYExtent(casterBB.getYExtent() + 2.0f);
             casterBB.setZExtent(casterBB.getZExtent() + 2.0f);
@@ -545,12 +741,6 @@ public class ShadowUtil {
 
         splitMin.z = 0;
 
-//        if (!ortho) {
-//            shadowCam.setFrustumPerspective(45, 1, 1, splitMax.z);
-//        }
-
-        Matrix4f projMatrix = shadowCam.getProjectionMatrix();
-
         Vector3f cropMin = vars.vect7;
         Vector3f cropMax = vars.vect8;
 
@@ -611,12 +801,9 @@ public class ShadowUtil {
                 0f, 0f, 0f, 1f);
 
 
-        Matrix4f result = new Matrix4f();
-        result.set(cropMatrix);
-        result.multLocal(projMatrix);
-        vars.release();
-
-        shadowCam.setProjectionMatrix(result);
+        store.set(cropMatrix);
+        store.multLocal(projMatrix);
+        return store;
     }
 
     /**
@@ -794,4 +981,117 @@ public class ShadowUtil {
         }
     }
 
+
+    /**
+     * Tests whether a spatial has been flagged as a static shadow caster,
+     * either directly or through one of its ancestors.
+     *
+     * @param spatial the spatial to test (not null, unaffected)
+     * @return true if the {@link UserData#JME_STATICSHADOW} flag is set on
+     * the spatial or one of its ancestors, otherwise false
+     */
+    public static boolean isStaticShadowCaster(Spatial spatial) {
+        for (Spatial s = spatial; s != null; s = s.getParent()) {
+            Boolean flag = s.getUserData(UserData.JME_STATICSHADOW);
+            if (flag != null) {
+                return flag;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Populates the outputGeometryList with the static shadow casters of the
+     * scene whose world bound overlaps the clip volume of the given view
+     * projection matrix.
+     *
+     * @param rootScene the root of the scene to traverse (may be null)
+     * @param viewProjection the light view projection matrix (not null,
+     * unaffected)
+     * @param outputGeometryList the output list of static casters (not null,
+     * modified)
+     * @see #isStaticShadowCaster(com.jme3.scene.Spatial)
+     */
+    public static void getStaticCastersInVolume(Spatial rootScene, Matrix4f viewProjection,
+            GeometryList outputGeometryList) {
+        if (rootScene != null) {
+            boolean isStatic = rootScene.getParent() != null
+                    && isStaticShadowCaster(rootScene.getParent());
+            addStaticCastersInVolume(rootScene, isStatic, viewProjection, outputGeometryList);
+        }
+    }
+
+    private static void addStaticCastersInVolume(Spatial scene, boolean parentStatic,
+            Matrix4f viewProjection, GeometryList outputGeometryList) {
+        if (scene.getCullHint() == Spatial.CullHint.Always) {
+            return;
+        }
+        Boolean flag = scene.getUserData(UserData.JME_STATICSHADOW);
+        boolean isStatic = flag != null ? flag : parentStatic;
+
+        BoundingVolume bv = scene.getWorldBound();
+        if (bv != null && !intersectsClipVolume(bv, viewProjection)) {
+            return;
+        }
+        if (scene instanceof Node) {
+            for (Spatial child : ((Node) scene).getChildren()) {
+                addStaticCastersInVolume(child, isStatic, viewProjection, outputGeometryList);
+            }
+        } else if (scene instanceof Geometry) {
+            Geometry geom = (Geometry) scene;
+            if (isStatic && bv != null && !geom.isGrouped()
+                    && checkShadowMode(geom.getShadowMode(), RenderQueue.ShadowMode.Cast)) {
+                outputGeometryList.add(geom);
+            }
+        }
+    }
+
+    /**
+     * Conservatively tests a bounding volume against the [-1, 1] clip cube
+     * of a view projection matrix. Volumes crossing the w=0 plane are
+     * always reported as intersecting.
+     */
+    private static boolean intersectsClipVolume(BoundingVolume bv, Matrix4f viewProjection) {
+        Vector3f center = bv.getCenter();
+        float ex, ey, ez;
+        if (bv instanceof BoundingBox) {
+            BoundingBox bb = (BoundingBox) bv;
+            ex = bb.getXExtent();
+            ey = bb.getYExtent();
+            ez = bb.getZExtent();
+        } else if (bv instanceof BoundingSphere) {
+            ex = ey = ez = ((BoundingSphere) bv).getRadius();
+        } else {
+            return true;
+        }
+
+        TempVars vars = TempVars.get();
+        Vector3f corner = vars.vect1;
+        Vector3f clip = vars.vect2;
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        boolean crossesEye = false;
+        for (int i = 0; i < 8; i++) {
+            corner.set(center.x + ((i & 1) == 0 ? -ex : ex),
+                    center.y + ((i & 2) == 0 ? -ey : ey),
+                    center.z + ((i & 4) == 0 ? -ez : ez));
+            float w = viewProjection.multProj(corner, clip);
+            if (w <= FastMath.ZERO_TOLERANCE) {
+                crossesEye = true;
+                break;
+            }
+            clip.divideLocal(w);
+            minX = Math.min(minX, clip.x);
+            minY = Math.min(minY, clip.y);
+            minZ = Math.min(minZ, clip.z);
+            maxX = Math.max(maxX, clip.x);
+            maxY = Math.max(maxY, clip.y);
+            maxZ = Math.max(maxZ, clip.z);
+        }
+        vars.release();
+
+        return crossesEye || (maxX >= -1f && minX <= 1f
+                && maxY >= -1f && minY <= 1f
+                && maxZ >= -1f && minZ <= 1f);
+    }
 }
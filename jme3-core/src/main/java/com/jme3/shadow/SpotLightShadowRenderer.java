@@ -41,6 +41,7 @@ import com.jme3.material.Material;
 import com.jme3.math.FastMath;
 import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
 import com.jme3.renderer.Camera;
 import com.jme3.renderer.queue.GeometryList;
 import com.jme3.renderer.queue.RenderQueue;
@@ -67,6 +68,7 @@ public class SpotLightShadowRenderer extends AbstractShadowRenderer {
     protected Camera shadowCam;    
     protected SpotLight light;
     protected Vector3f[] points = new Vector3f[8];
+    private Vector4f atlasTileRect;
     //Holding the info for fading shadows in the far distance 
    
 
@@ -95,6 +97,7 @@ public class SpotLightShadowRenderer extends AbstractShadowRenderer {
         for (int i = 0; i < points.length; i++) {
             points[i] = new Vector3f();
         }
+        atlasTileRect = new Vector4f();
     }
 
     @Override
@@ -171,6 +174,20 @@ public class SpotLightShadowRenderer extends AbstractShadowRenderer {
         return shadowCam;
     }
 
+    @Override
+    protected float getShadowImportance(Camera viewCam) {
+        if (light == null) {
+            return 0f;
+        }
+        // bounding sphere of the lit range, centered halfway down the cone
+        float halfRange = light.getSpotRange() * 0.5f;
+        TempVars vars = TempVars.get();
+        Vector3f center = vars.vect1.set(light.getDirection()).multLocal(halfRange).addLocal(light.getPosition());
+        float importance = ShadowAtlas.computeImportance(viewCam, center, halfRange);
+        vars.release();
+        return importance;
+    }
+
     @Override
     protected void doDisplayFrustumDebug(int shadowMapIndex) {
         Vector3f[] points2 = points.clone();
@@ -184,12 +201,20 @@ public class SpotLightShadowRenderer extends AbstractShadowRenderer {
     protected void setMaterialParameters(Material material) {    
          material.setVector3("LightPos", light.getPosition());
          material.setVector3("LightDir", light.getDirection());
+         // keeps the falloff and the lookups inside the tile of the atlas
+         Vector4f tileRect = getAtlasTileRect(0, atlasTileRect);
+         if (tileRect != null && material.getMaterialDef().getMaterialParam("ShadowAtlasTile") != null) {
+             material.setVector4("ShadowAtlasTile", tileRect);
+         } else {
+             material.clearParam("ShadowAtlasTile");
+         }
     }
 
     @Override
     protected void clearMaterialParameters(Material material) {
         material.clearParam("LightPos");
         material.clearParam("LightDir");
+        material.clearParam("ShadowAtlasTile");
     }
 
     @Override
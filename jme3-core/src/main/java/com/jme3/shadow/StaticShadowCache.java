@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shadow;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Renderer;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.FrameBuffer.FrameBufferTarget;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.Texture2D;
+import com.jme3.util.TempVars;
+
+/**
+ * Per shadow map state of the static shadow cache of an
+ * {@link AbstractShadowRenderer}.
+ *
+ * Static casters are rendered into their own depth map with a light view
+ * projection enlarged by a margin. As long as the view projection requested
+ * for a frame stays inside that enlarged volume, and still covers a large
+ * enough part of it, the cached depth map is reused and only the dynamic
+ * casters are drawn on top of it.
+ */
+final class StaticShadowCache {
+
+    private static final float EPSILON = 0.001f;
+
+    final FrameBuffer[] frameBuffers;
+    final Texture2D[] depthMaps;
+    /**
+     * static casters last rendered into each cached map
+     */
+    final GeometryList[] casters;
+    private final Matrix4f[] viewProjections;
+    private final boolean[] valid;
+    private final float margin;
+    private final float minCoverage;
+    private final Matrix4f tmpMatrix = new Matrix4f();
+    private final Matrix4f projection = new Matrix4f();
+
+    /**
+     * Creates the cache for the given number of shadow maps.
+     *
+     * @param nbShadowMaps the number of shadow maps (&gt;0)
+     * @param shadowMapSize the size of each edge of the shadow maps
+     * @param dummyTex the color target shared by the shadow frame buffers
+     * @param margin the fraction by which the cached volume is enlarged
+     * (&ge;0)
+     */
+    StaticShadowCache(int nbShadowMaps, int shadowMapSize, Texture2D dummyTex, float margin) {
+        this.margin = margin;
+        this.minCoverage = 1f / ((1f + margin) * (1f + margin));
+        frameBuffers = new FrameBuffer[nbShadowMaps];
+        depthMaps = new Texture2D[nbShadowMaps];
+        casters = new GeometryList[nbShadowMaps];
+        viewProjections = new Matrix4f[nbShadowMaps];
+        valid = new boolean[nbShadowMaps];
+        for (int i = 0; i < nbShadowMaps; i++) {
+            depthMaps[i] = new Texture2D(shadowMapSize, shadowMapSize, Format.Depth);
+            frameBuffers[i] = new FrameBuffer(shadowMapSize, shadowMapSize, 1);
+            frameBuffers[i].setDepthTarget(FrameBufferTarget.newTarget(depthMaps[i]));
+            //DO NOT COMMENT THIS (it prevents the OSX incomplete read-buffer crash)
+            frameBuffers[i].addColorTarget(FrameBufferTarget.newTarget(dummyTex));
+            casters[i] = new GeometryList(new OpaqueComparator());
+            viewProjections[i] = new Matrix4f();
+        }
+    }
+
+    /**
+     * Deletes the frame buffers and depth maps of the cache from the GPU.
+     * They are uploaded again if the cache is used afterwards.
+     *
+     * @param renderer the renderer the cache was rendered with
+     */
+    void dispose(Renderer renderer) {
+        for (int i = 0; i < frameBuffers.length; i++) {
+            renderer.deleteFrameBuffer(frameBuffers[i]);
+            renderer.deleteImage(depthMaps[i].getImage());
+            valid[i] = false;
+        }
+    }
+
+    float getMargin() {
+        return margin;
+    }
+
+    /**
+     * Marks every cached map as stale.
+     */
+    void invalidate() {
+        for (int i = 0; i < valid.length; i++) {
+            valid[i] = false;
+        }
+    }
+
+    /**
+     * Tests whether the cached map at the given index can be reused for a
+     * frame rendered with the given light view projection.
+     *
+     * @param index the shadow map index
+     * @param viewProjection the light view projection of the frame
+     * @return true if the cached map is still usable
+     */
+    boolean isValid(int index, Matrix4f viewProjection) {
+        return valid[index] && covers(viewProjections[index], viewProjection, minCoverage, tmpMatrix);
+    }
+
+    /**
+     * Computes the projection used to refresh a cached map, which is the
+     * given projection enlarged by the margin around the clip volume center.
+     *
+     * @param shadowProjection the projection of the shadow camera
+     * @return the enlarged projection (internal storage, valid until the next
+     * call)
+     */
+    Matrix4f enlarge(Matrix4f shadowProjection) {
+        float scale = 1f / (1f + margin);
+        tmpMatrix.loadIdentity();
+        tmpMatrix.m00 = scale;
+        tmpMatrix.m11 = scale;
+        tmpMatrix.m22 = scale;
+        return tmpMatrix.mult(shadowProjection, projection);
+    }
+
+    /**
+     * Records the view projection a cached map has been rendered with.
+     *
+     * @param index the shadow map index
+     * @param viewProjection the light view projection (not null, unaffected)
+     */
+    void store(int index, Matrix4f viewProjection) {
+        viewProjections[index].set(viewProjection);
+        valid[index] = true;
+    }
+
+    /**
+     * Computes the projection that, combined with the given view matrix,
+     * reproduces the view projection of a cached map.
+     *
+     * @param index the shadow map index
+     * @param viewMatrix the view matrix of the shadow camera
+     * @return the projection (internal storage, valid until the next call)
+     */
+    Matrix4f getProjection(int index, Matrix4f viewMatrix) {
+        viewMatrix.invert(tmpMatrix);
+        return viewProjections[index].mult(tmpMatrix, projection);
+    }
+
+    /**
+     * Tests whether the clip volume of a view projection lies inside the
+     * clip volume of a cached view projection and spans at least the given
+     * fraction of it in both x and y.
+     *
+     * @param cached the view projection of the cached map
+     * @param viewProjection the requested view projection
+     * @param minCoverage the minimum fraction of the cached volume to span
+     * @param tmp temporary storage (modified)
+     * @return true if the cached volume can be used for the requested one
+     */
+    static boolean covers(Matrix4f cached, Matrix4f viewProjection, float minCoverage, Matrix4f tmp) {
+        if (FastMath.abs(viewProjection.determinant()) <= 0f) {
+            return false;
+        }
+        viewProjection.invert(tmp);
+
+        TempVars vars = TempVars.get();
+        try {
+            return covers(cached, tmp, minCoverage, vars.vect1, vars.vect2);
+        } finally {
+            vars.release();
+        }
+    }
+
+    private static boolean covers(Matrix4f cached, Matrix4f inverseViewProjection, float minCoverage,
+            Vector3f corner, Vector3f clip) {
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < 8; i++) {
+            corner.set((i & 1) == 0 ? -1f : 1f, (i & 2) == 0 ? -1f : 1f, (i & 4) == 0 ? -1f : 1f);
+            float w = inverseViewProjection.multProj(corner, corner);
+            if (FastMath.abs(w) <= FastMath.ZERO_TOLERANCE) {
+                return false;
+            }
+            corner.divideLocal(w);
+            w = cached.multProj(corner, clip);
+            if (w <= FastMath.ZERO_TOLERANCE) {
+                return false;
+            }
+            clip.divideLocal(w);
+            float limit = 1f + EPSILON;
+            if (FastMath.abs(clip.x) > limit || FastMath.abs(clip.y) > limit || FastMath.abs(clip.z) > limit) {
+                return false;
+            }
+            minX = Math.min(minX, clip.x);
+            minY = Math.min(minY, clip.y);
+            maxX = Math.max(maxX, clip.x);
+            maxY = Math.max(maxY, clip.y);
+        }
+        float coverage = Math.min(maxX - minX, maxY - minY) * 0.5f;
+        return coverage + EPSILON >= minCoverage;
+    }
+}
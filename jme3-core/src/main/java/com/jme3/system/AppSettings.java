@@ -1393,6 +1393,36 @@ public final class AppSettings extends HashMap<String, Object> {
         putBoolean("UseRetinaFrameBuffer", useRetinaFrameBuffer);
     }
 
+    /**
+     * Get the directory in which linked shader programs are cached between
+     * runs.
+     *
+     * @return the directory, or null if shader programs are not cached
+     * @see #setProgramBinaryCacheDirectory(java.lang.String)
+     */
+    public String getProgramBinaryCacheDirectory() {
+        return getString("ProgramBinaryCacheDirectory");
+    }
+
+    /**
+     * Set a directory in which the renderer stores linked shader programs, so
+     * that later runs can load them instead of compiling their sources again.
+     * Only supported by the LWJGL renderers on drivers that implement
+     * GL_ARB_get_program_binary. Cache entries are tied to the driver version
+     * and are discarded when they no longer match. Default is null, which
+     * disables the cache.
+     *
+     * @param directory the cache directory, or null to disable the cache
+     * @see com.jme3.renderer.opengl.ProgramBinaryCache
+     */
+    public void setProgramBinaryCacheDirectory(String directory) {
+        if (directory == null) {
+            remove("ProgramBinaryCacheDirectory");
+        } else {
+            putString("ProgramBinaryCacheDirectory", directory);
+        }
+    }
+
     /**
      * Tests the state of the Center Window flag.
      *
@@ -192,6 +192,10 @@ public class NullRenderer implements Renderer {
     public void renderMesh(Mesh mesh, int lod, int count, VertexBuffer[] instanceData) {
     }
 
+    @Override
+    public void renderMultiDrawIndirect(Mesh mesh, VertexBuffer[] instanceData, BufferObject commands, int drawCount) {
+    }
+
     @Override
     public void resetGLObjects() {
     }
@@ -314,4 +318,9 @@ public class NullRenderer implements Renderer {
     public void setUniformBufferObject(int bindingPoint, BufferObject bufferObject) {
 
     }
+
+    @Override
+    public void setUniformBufferObjectRange(int bindingPoint, BufferObject bufferObject, int offset, int length) {
+
+    }
 }
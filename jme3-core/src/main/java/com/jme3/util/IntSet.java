@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of ints stored in a flat array with open addressing, so adding,
+ * removing and testing values neither boxes nor allocates.
+ *
+ * <p>The set is not synchronized and iteration is only offered through
+ * {@link #forEach(IntConsumer)}, which must not modify the set.</p>
+ */
+public final class IntSet implements Cloneable {
+
+    // 0 marks a free slot, the value 0 itself is tracked separately
+    private int[] slots;
+    private boolean containsZero;
+    private int size;
+    private int mask;
+    private int threshold;
+
+    public IntSet() {
+        this(16);
+    }
+
+    public IntSet(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity cannot be negative.");
+        }
+        allocate(IntObjectMap.tableSize(initialCapacity));
+    }
+
+    private void allocate(int length) {
+        slots = new int[length];
+        mask = length - 1;
+        threshold = (int) (length * 0.75f);
+    }
+
+    public boolean contains(int value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int i = IntObjectMap.hash(value) & mask;
+        int stored;
+        while ((stored = slots[i]) != 0) {
+            if (stored == value) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value the value to add
+     * @return true if the set did not contain the value yet
+     */
+    public boolean add(int value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int i = IntObjectMap.hash(value) & mask;
+        int stored;
+        while ((stored = slots[i]) != 0) {
+            if (stored == value) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        slots[i] = value;
+        if (++size > threshold) {
+            rehash(slots.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a value from the set.
+     *
+     * @param value the value to remove
+     * @return true if the set contained the value
+     */
+    public boolean remove(int value) {
+        if (value == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int i = IntObjectMap.hash(value) & mask;
+        int stored;
+        while ((stored = slots[i]) != value) {
+            if (stored == 0) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        size--;
+        // shift the rest of the probe sequence back, see IntObjectMap
+        int gap = i;
+        while (true) {
+            i = (i + 1) & mask;
+            if (slots[i] == 0) {
+                break;
+            }
+            int home = IntObjectMap.hash(slots[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                slots[gap] = slots[i];
+                gap = i;
+            }
+        }
+        slots[gap] = 0;
+        return true;
+    }
+
+    private void rehash(int length) {
+        int[] old = slots;
+        allocate(length);
+        for (int value : old) {
+            if (value != 0) {
+                int i = IntObjectMap.hash(value) & mask;
+                while (slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                slots[i] = value;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(slots, 0);
+            containsZero = false;
+            size = 0;
+        }
+    }
+
+    public void forEach(IntConsumer action) {
+        if (containsZero) {
+            action.accept(0);
+        }
+        for (int value : slots) {
+            if (value != 0) {
+                action.accept(value);
+            }
+        }
+    }
+
+    /**
+     * Returns the values of the set in no particular order.
+     *
+     * @return a new array
+     */
+    public int[] toArray() {
+        int[] result = new int[size];
+        int n = 0;
+        if (containsZero) {
+            result[n++] = 0;
+        }
+        for (int value : slots) {
+            if (value != 0) {
+                result[n++] = value;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public IntSet clone() {
+        try {
+            IntSet clone = (IntSet) super.clone();
+            clone.slots = slots.clone();
+            return clone;
+        } catch (CloneNotSupportedException ex) {
+            throw new AssertionError();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * A map from long keys to non-null objects, the long counterpart of
+ * {@link IntObjectMap}.  Neither lookups nor updates box the key or allocate
+ * an entry.
+ *
+ * <p>The map is not synchronized and iteration is only offered through
+ * {@link #forEachKey(LongConsumer)} and {@link #forEachValue(Consumer)}, which
+ * must not modify the map.</p>
+ *
+ * @param <V> the type of the values
+ */
+public final class LongObjectMap<V> implements Cloneable {
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    private int threshold;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    public LongObjectMap(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity cannot be negative.");
+        }
+        allocate(IntObjectMap.tableSize(initialCapacity));
+    }
+
+    static int hash(long key) {
+        return IntObjectMap.hash((int) (key ^ (key >>> 32)));
+    }
+
+    private void allocate(int length) {
+        keys = new long[length];
+        values = new Object[length];
+        mask = length - 1;
+        threshold = (int) (length * 0.75f);
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key the key to look up
+     * @return the value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = hash(key) & mask;
+        Object value;
+        while ((value = values[i]) != null) {
+            if (keys[i] == key) {
+                return (V) value;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Maps the given key to the given value.
+     *
+     * @param key the key
+     * @param value the value (not null)
+     * @return the value previously mapped to the key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value cannot be null.");
+        }
+        int i = hash(key) & mask;
+        Object old;
+        while ((old = values[i]) != null) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return (V) old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold) {
+            rehash(values.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping of the given key.
+     *
+     * @param key the key
+     * @return the value that was mapped to the key, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int i = hash(key) & mask;
+        Object old;
+        while ((old = values[i]) != null) {
+            if (keys[i] == key) {
+                removeSlot(i);
+                return (V) old;
+            }
+            i = (i + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Empties a slot and shifts the following entries of its probe sequence
+     * back, so lookups never need tombstones.
+     */
+    private void removeSlot(int slot) {
+        size--;
+        int gap = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == null) {
+                break;
+            }
+            int home = hash(keys[i]) & mask;
+            // move the entry if its home is not cyclically within (gap, i]
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = null;
+    }
+
+    private void rehash(int length) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(length);
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] != null) {
+                int i = hash(oldKeys[j]) & mask;
+                while (values[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+
+    public void forEachKey(LongConsumer action) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> action) {
+        for (Object value : values) {
+            if (value != null) {
+                action.accept((V) value);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public LongObjectMap<V> clone() {
+        try {
+            LongObjectMap<V> clone = (LongObjectMap<V>) super.clone();
+            clone.keys = keys.clone();
+            clone.values = values.clone();
+            return clone;
+        } catch (CloneNotSupportedException ex) {
+            throw new AssertionError();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(keys[i]).append('=').append(values[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
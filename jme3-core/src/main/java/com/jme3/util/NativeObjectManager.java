@@ -37,7 +37,6 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,7 +73,7 @@ public class NativeObjectManager {
     /**
      * List of currently active GLObjects.
      */
-    private final HashMap<Long, NativeObjectRef> refMap = new HashMap<>();
+    private final LongObjectMap<NativeObjectRef> refMap = new LongObjectMap<>();
     
     /**
      * List of real objects requested by user for deletion.
@@ -204,7 +203,8 @@ public class NativeObjectManager {
      */
     public void deleteAllObjects(Object rendererObject){
         deleteUnused(rendererObject);
-        ArrayList<NativeObjectRef> refMapCopy = new ArrayList<>(refMap.values());
+        ArrayList<NativeObjectRef> refMapCopy = new ArrayList<>(refMap.size());
+        refMap.forEachValue(refMapCopy::add);
         for (NativeObjectRef ref : refMapCopy) {
             deleteNativeObject(rendererObject, ref.objClone, ref, true, false);
         }
@@ -229,16 +229,16 @@ public class NativeObjectManager {
      * This is typically called when the context is restarted.
      */
     public void resetObjects(){
-        for (NativeObjectRef ref : refMap.values()) {
+        refMap.forEachValue(ref -> {
             // Must use the real object here, for this to be effective.
             NativeObject realObj = ref.realObj.get();
             if (realObj == null) {
-                continue;
+                return;
             }
             
             realObj.resetObject();
             logger.log(Level.FINEST, "Reset: {0}", realObj);
-        }
+        });
         refMap.clear();
         refQueue = new ReferenceQueue<Object>();
     }
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A map from non-null objects to int values, stored in two flat arrays with
+ * open addressing.  Unlike <code>HashMap&lt;K, Integer&gt;</code> neither
+ * lookups nor updates box the value or allocate an entry.  Keys are compared
+ * with equals() by default, or by identity when the map is created with
+ * {@link #ObjectIntMap(int, boolean)}.
+ *
+ * <p>The map is not synchronized and iteration is only offered through
+ * {@link #forEachKey(Consumer)}, which must not modify the map.</p>
+ *
+ * @param <K> the type of the keys
+ */
+public final class ObjectIntMap<K> implements Cloneable {
+
+    private final boolean identity;
+    private Object[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    private int threshold;
+
+    public ObjectIntMap() {
+        this(16, false);
+    }
+
+    public ObjectIntMap(int initialCapacity) {
+        this(initialCapacity, false);
+    }
+
+    /**
+     * Creates a map.
+     *
+     * @param initialCapacity the number of entries to hold without resizing
+     * @param identity true to compare keys by identity rather than equals()
+     */
+    public ObjectIntMap(int initialCapacity, boolean identity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity cannot be negative.");
+        }
+        this.identity = identity;
+        allocate(IntObjectMap.tableSize(initialCapacity));
+    }
+
+    private int hash(Object key) {
+        return IntObjectMap.hash(identity ? System.identityHashCode(key) : key.hashCode());
+    }
+
+    private boolean matches(Object stored, Object key) {
+        return stored == key || !identity && stored.equals(key);
+    }
+
+    private void allocate(int length) {
+        keys = new Object[length];
+        values = new int[length];
+        mask = length - 1;
+        threshold = (int) (length * 0.75f);
+    }
+
+    private int indexOf(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        int i = hash(key) & mask;
+        Object stored;
+        while ((stored = keys[i]) != null) {
+            if (matches(stored, key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value mapped to the given key.
+     *
+     * @param key the key to look up (may be null)
+     * @param defaultValue the value to return if the key is not mapped
+     * @return the mapped value, or defaultValue
+     */
+    public int get(Object key, int defaultValue) {
+        int i = indexOf(key);
+        return i < 0 ? defaultValue : values[i];
+    }
+
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * Maps the given key to the given value.
+     *
+     * @param key the key (not null)
+     * @param value the value
+     * @param defaultValue the value to return if the key was not mapped yet
+     * @return the value previously mapped to the key, or defaultValue
+     */
+    public int put(K key, int value, int defaultValue) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null.");
+        }
+        int i = hash(key) & mask;
+        Object stored;
+        while ((stored = keys[i]) != null) {
+            if (matches(stored, key)) {
+                int old = values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > threshold) {
+            rehash(keys.length << 1);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Maps the given key to the given value.
+     *
+     * @param key the key (not null)
+     * @param value the value
+     */
+    public void put(K key, int value) {
+        put(key, value, 0);
+    }
+
+    /**
+     * Removes the mapping of the given key.
+     *
+     * @param key the key (may be null)
+     * @param defaultValue the value to return if the key was not mapped
+     * @return the value that was mapped to the key, or defaultValue
+     */
+    public int remove(Object key, int defaultValue) {
+        int slot = indexOf(key);
+        if (slot < 0) {
+            return defaultValue;
+        }
+        int old = values[slot];
+        size--;
+        // shift the rest of the probe sequence back, see IntObjectMap
+        int gap = slot;
+        int i = slot;
+        while (true) {
+            i = (i + 1) & mask;
+            if (keys[i] == null) {
+                break;
+            }
+            int home = hash(keys[i]) & mask;
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = null;
+        return old;
+    }
+
+    private void rehash(int length) {
+        Object[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(length);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != null) {
+                int i = hash(oldKeys[j]) & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, null);
+            size = 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachKey(Consumer<? super K> action) {
+        for (Object key : keys) {
+            if (key != null) {
+                action.accept((K) key);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public ObjectIntMap<K> clone() {
+        try {
+            ObjectIntMap<K> clone = (ObjectIntMap<K>) super.clone();
+            clone.keys = keys.clone();
+            clone.values = values.clone();
+            return clone;
+        } catch (CloneNotSupportedException ex) {
+            throw new AssertionError();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                if (sb.length() > 1) {
+                    sb.append(", ");
+                }
+                sb.append(keys[i]).append('=').append(values[i]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -42,11 +42,19 @@ import java.util.*;
  *  array is only presenting a snap shot and so can be safely iterated while
  *  the list is changing.</p>
  *
- *  <p>All modifications, including set() operations will cause a copy of the
- *  data to be created that replaces the old version.  Because this list is
- *  not designed for threading concurrency it further optimizes the "many modifications"
- *  case by buffering them as a normal ArrayList until the next time the contents
- *  are accessed.</p>
+ *  <p>All modifications, including set() operations, are applied to an
+ *  internal work buffer and invalidate the current snapshot.  Because this list
+ *  is not designed for threading concurrency it further optimizes the "many
+ *  modifications" case by only building a new snapshot the next time the
+ *  contents are accessed as an array.</p>
+ *
+ *  <p>Snapshots are only guaranteed to be immutable forever when they escape
+ *  through getArray(), an iterator, or toArray().  Frame-loop code that only
+ *  needs the array for a bounded stretch should bracket its reads with
+ *  acquireArray() and releaseArray() instead.  A snapshot that was never handed
+ *  out through getArray() is recycled once its last reader is released, so a
+ *  list that changes every frame (a scene graph node gaining and losing
+ *  children, for example) does not allocate a fresh array on each change.</p>
  *
  *  <p>Normal list modification performance should be equal to ArrayList in a
  *  many situations and always better than CopyOnWriteArrayList.  Optimum usage
@@ -83,24 +91,56 @@ public class SafeArrayList<E> implements List<E>, Cloneable {
     //       the list.  This was because the callers couldn't remove a child
     //       without it being detached properly, for example.
 
+    private static final Object[] EMPTY = new Object[0];
+
+    /**
+     * The number of recycled snapshot arrays kept for reuse.
+     */
+    private static final int MAX_SPARES = 4;
+
+    /**
+     * The number of replaced snapshots that are still tracked while readers
+     * hold them.  Beyond that the oldest is simply left to the garbage
+     * collector, which is always safe.
+     */
+    private static final int MAX_RETIRED = 8;
+
     private final Class<E> elementType;
-    private List<E> buffer;
-    private E[] backingArray;
+
+    // The work buffer is always the source of truth, the snapshot is
+    // only a (possibly stale) copy of its first 'size' elements.
+    private Object[] buffer = EMPTY;
     private int size = 0;
 
+    private E[] snapshot;
+    private int readers;
+    private boolean shared;
+
+    private Object[][] spares;
+    private int spareCount;
+    private Object[][] retired;
+    private int[] retiredReaders;
+    private int retiredCount;
+
     public SafeArrayList(Class<E> elementType) {
         this.elementType = elementType;
     }
 
     public SafeArrayList(final Class<E> elementType, final int capacity) {
         this.elementType = elementType;
-        this.buffer = new ArrayList<>(capacity);
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        this.buffer = capacity == 0 ? EMPTY : new Object[capacity];
     }
 
     public SafeArrayList(final Class<E> elementType, final Collection<? extends E> collection) {
         this.elementType = elementType;
-        this.buffer = new ArrayList<>(collection);
-        this.size = buffer.size();
+        this.buffer = collection.toArray();
+        if (buffer.getClass() != Object[].class) {
+            buffer = Arrays.copyOf(buffer, buffer.length, Object[].class);
+        }
+        this.size = buffer.length;
     }
 
     @Override
@@ -109,13 +149,17 @@ public class SafeArrayList<E> implements List<E>, Cloneable {
         try {
             SafeArrayList<E> clone = (SafeArrayList<E>)super.clone();
 
-            // Clone whichever backing store is currently active
-            if (backingArray != null) {
-                clone.backingArray = backingArray.clone();
-            }
-            if (buffer != null) {
-                clone.buffer = (List<E>)((ArrayList<E>)buffer).clone();
-            }
+            // The clone starts out with its own buffer and nothing
+            // shared, pooled or pending with the original.
+            clone.buffer = size == 0 ? EMPTY : Arrays.copyOf(buffer, size);
+            clone.snapshot = null;
+            clone.readers = 0;
+            clone.shared = false;
+            clone.spares = null;
+            clone.spareCount = 0;
+            clone.retired = null;
+            clone.retiredReaders = null;
+            clone.retiredCount = 0;
 
             return clone;
         } catch (CloneNotSupportedException e) {
@@ -141,35 +185,179 @@ public class SafeArrayList<E> implements List<E>, Cloneable {
      * @return either the pre-existing array or a new one
      */
     public final E[] getArray() {
-        if (backingArray != null)
-            return backingArray;
+        E[] array = publish();
+        shared = true;
+        return array;
+    }
 
-        if (buffer == null) {
-            backingArray = createArray(0);
+    /**
+     *  Returns a current snapshot of this List's backing array for a bounded
+     *  read.  The array will not change until it is handed back through
+     *  {@link #releaseArray(Object[])}, no matter how the list is modified in
+     *  the meantime, but it may be reused for a later snapshot afterwards.
+     *  Acquisitions can be nested and every one of them must be released,
+     *  typically in a finally block.
+     *
+     * @return the current snapshot (not null)
+     */
+    public final E[] acquireArray() {
+        E[] array = publish();
+        if (!shared) {
+            readers++;
+        }
+        return array;
+    }
+
+    /**
+     *  Ends a read that was started with {@link #acquireArray()}.  Arrays that
+     *  did not come from acquireArray(), or that were also handed out through
+     *  getArray(), are ignored.
+     *
+     * @param array the array returned by acquireArray() (may be null)
+     */
+    public final void releaseArray(E[] array) {
+        if (array == null) {
+            return;
+        }
+        if (array == snapshot) {
+            if (readers > 0) {
+                readers--;
+            }
+            return;
+        }
+        for (int i = 0; i < retiredCount; i++) {
+            if (retired[i] == array) {
+                if (--retiredReaders[i] == 0) {
+                    retiredCount--;
+                    retired[i] = retired[retiredCount];
+                    retiredReaders[i] = retiredReaders[retiredCount];
+                    retired[retiredCount] = null;
+                    recycle(array);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Builds the snapshot for the current contents if there is none yet,
+     * preferably in a recycled array of the right length.
+     */
+    @SuppressWarnings("unchecked")
+    private E[] publish() {
+        E[] array = snapshot;
+        if (array != null) {
+            return array;
+        }
+        for (int i = 0; i < spareCount; i++) {
+            if (spares[i].length == size) {
+                array = (E[])spares[i];
+                spareCount--;
+                spares[i] = spares[spareCount];
+                spares[spareCount] = null;
+                break;
+            }
+        }
+        if (array == null) {
+            array = createArray(size);
+        }
+        System.arraycopy(buffer, 0, array, 0, size);
+        snapshot = array;
+        readers = 0;
+        shared = false;
+        return array;
+    }
+
+    /**
+     * Drops the current snapshot after a modification.  A snapshot that has
+     * escaped is forgotten, one that is still being read is retired until its
+     * readers are done and anything else goes straight back to the pool.
+     */
+    private void invalidate() {
+        E[] array = snapshot;
+        if (array == null) {
+            return;
+        }
+        snapshot = null;
+        if (shared) {
+            shared = false;
+        } else if (readers > 0) {
+            retire(array, readers);
         } else {
-            // Only keep the array or the buffer but never both at
-            // the same time.  1) it saves space, 2) it keeps the rest
-            // of the code safer.
-            backingArray = buffer.toArray(createArray(buffer.size()));
-            buffer = null;
+            recycle(array);
         }
-        return backingArray;
+        readers = 0;
     }
 
-    protected final List<E> getBuffer() {
-        if (buffer != null)
-            return buffer;
+    private void retire(Object[] array, int count) {
+        if (retired == null) {
+            retired = new Object[MAX_RETIRED][];
+            retiredReaders = new int[MAX_RETIRED];
+        }
+        if (retiredCount == MAX_RETIRED) {
+            // Most likely a reader that never released, stop tracking it
+            System.arraycopy(retired, 1, retired, 0, MAX_RETIRED - 1);
+            System.arraycopy(retiredReaders, 1, retiredReaders, 0, MAX_RETIRED - 1);
+            retiredCount--;
+        }
+        retired[retiredCount] = array;
+        retiredReaders[retiredCount] = count;
+        retiredCount++;
+    }
 
-        if (backingArray == null) {
-            buffer = new ArrayList<>();
+    private void recycle(Object[] array) {
+        if (array.length == 0) {
+            return;
+        }
+        Arrays.fill(array, null);
+        if (spares == null) {
+            spares = new Object[MAX_SPARES][];
+        }
+        if (spareCount < MAX_SPARES) {
+            spares[spareCount++] = array;
         } else {
-            // Only keep the array or the buffer but never both at
-            // the same time.  1) it saves space, 2) it keeps the rest
-            // of the code safer.
-            buffer = new ArrayList<>(Arrays.asList(backingArray));
-            backingArray = null;
+            // Replace the oldest so the pool follows the current sizes
+            System.arraycopy(spares, 1, spares, 0, MAX_SPARES - 1);
+            spares[MAX_SPARES - 1] = array;
         }
-        return buffer;
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > buffer.length) {
+            int newCapacity = Math.max(minCapacity, Math.max(buffer.length + (buffer.length >> 1), 10));
+            buffer = Arrays.copyOf(buffer, newCapacity);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index:" + index + ", Size:" + size);
+        }
+    }
+
+    private void checkPositionIndex(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index:" + index + ", Size:" + size);
+        }
+    }
+
+    private void fastRemove(int index) {
+        int moved = size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(buffer, index + 1, buffer, index, moved);
+        }
+        buffer[--size] = null;
+    }
+
+    /**
+     * Returns this list as the modifiable view.  Kept for subclasses written
+     * against the older implementation, which buffered modifications in a
+     * separate ArrayList.
+     *
+     * @return this list
+     */
+    protected final List<E> getBuffer() {
+        return this;
     }
 
     @Override
@@ -200,16 +388,14 @@ public class SafeArrayList<E> implements List<E>, Cloneable {
     @Override
     @SuppressWarnings("unchecked")
     public <T> T[] toArray(T[] a) {
-
-        E[] array = getArray();
-        if (a.length < array.length) {
-            return (T[])Arrays.copyOf(array, array.length, a.getClass());
+        if (a.length < size) {
+            return (T[])Arrays.copyOf(buffer, size, a.getClass());
         }
 
-        System.arraycopy(array, 0, a, 0, array.length);
+        System.arraycopy(buffer, 0, a, 0, size);
 
-        if (a.length > array.length) {
-            a[array.length] = null;
+        if (a.length > size) {
+            a[size] = null;
         }
 
         return a;
@@ -217,54 +403,92 @@ public class SafeArrayList<E> implements List<E>, Cloneable {
 
     @Override
     public boolean add(E e) {
-        boolean result = getBuffer().add(e);
-        size = getBuffer().size();
-        return result;
+        invalidate();
+        ensureCapacity(size + 1);
+        buffer[size++] = e;
+        return true;
     }
 
     @Override
     public boolean remove(Object o) {
-        boolean result = getBuffer().remove(o);
-        size = getBuffer().size();
-        return result;
+        int index = indexOf(o);
+        if (index < 0) {
+            return false;
+        }
+        invalidate();
+        fastRemove(index);
+        return true;
     }
 
     @Override
     public boolean containsAll(Collection<?> c) {
-        return Arrays.asList(getArray()).containsAll(c);
+        for (Object o : c) {
+            if (indexOf(o) < 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
     public boolean addAll(Collection<? extends E> c) {
-        boolean result = getBuffer().addAll(c);
-        size = getBuffer().size();
-        return result;
+        return addAll(size, c);
     }
 
     @Override
     public boolean addAll(int index, Collection<? extends E> c) {
-        boolean result = getBuffer().addAll(index, c);
-        size = getBuffer().size();
-        return result;
+        checkPositionIndex(index);
+        Object[] added = c.toArray();
+        if (added.length == 0) {
+            return false;
+        }
+        invalidate();
+        ensureCapacity(size + added.length);
+        System.arraycopy(buffer, index, buffer, index + added.length, size - index);
+        System.arraycopy(added, 0, buffer, index, added.length);
+        size += added.length;
+        return true;
     }
 
     @Override
     public boolean removeAll(Collection<?> c) {
-        boolean result = getBuffer().removeAll(c);
-        size = getBuffer().size();
-        return result;
+        return batchRemove(c, false);
     }
 
     @Override
     public boolean retainAll(Collection<?> c) {
-        boolean result = getBuffer().retainAll(c);
-        size = getBuffer().size();
-        return result;
+        return batchRemove(c, true);
+    }
+
+    private boolean batchRemove(Collection<?> c, boolean keep) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (c.contains(buffer[i]) == keep) {
+                kept++;
+            }
+        }
+        if (kept == size) {
+            return false;
+        }
+        invalidate();
+        int w = 0;
+        for (int r = 0; r < size; r++) {
+            if (c.contains(buffer[r]) == keep) {
+                buffer[w++] = buffer[r];
+            }
+        }
+        Arrays.fill(buffer, w, size, null);
+        size = w;
+        return true;
     }
 
     @Override
     public void clear() {
-        getBuffer().clear();
+        if (size == 0) {
+            return;
+        }
+        invalidate();
+        Arrays.fill(buffer, 0, size, null);
         size = 0;
     }
 
@@ -275,10 +499,16 @@ public class SafeArrayList<E> implements List<E>, Cloneable {
             return true;
         } else if (o instanceof SafeArrayList) {
 
-            final Object[] targetArray = ((SafeArrayList) o).getArray();
-            final E[] array = getArray();
-
-            return Arrays.equals(targetArray, array);
+            final SafeArrayList<?> target = (SafeArrayList<?>) o;
+            if (target.size != size) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (!Objects.equals(buffer[i], target.buffer[i])) {
+                    return false;
+                }
+            }
+            return true;
         } else if (!(o instanceof List)) {//covers null too
             return false;
         }
@@ -300,46 +530,58 @@ public class SafeArrayList<E> implements List<E>, Cloneable {
     @Override
     public int hashCode() {
         // Exactly the hash code described in the List interface, basically
-        E[] array = getArray();
         int result = 1;
-        for (E e : array) {
+        for (int i = 0; i < size; i++) {
+            Object e = buffer[i];
             result = 31 * result + (e == null ? 0 : e.hashCode());
         }
         return result;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public final E get(int index) {
-        if (backingArray != null)
-            return backingArray[index];
-        if (buffer != null)
-            return buffer.get(index);
-        throw new IndexOutOfBoundsException("Index:" + index + ", Size:0");
+        checkIndex(index);
+        return (E)buffer[index];
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public E set(int index, E element) {
-        return getBuffer().set(index, element);
+        checkIndex(index);
+        E old = (E)buffer[index];
+        if (old != element) {
+            invalidate();
+            buffer[index] = element;
+        }
+        return old;
     }
 
     @Override
     public void add(int index, E element) {
-        getBuffer().add(index, element);
-        size = getBuffer().size();
+        checkPositionIndex(index);
+        invalidate();
+        ensureCapacity(size + 1);
+        System.arraycopy(buffer, index, buffer, index + 1, size - index);
+        buffer[index] = element;
+        size++;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public E remove(int index) {
-        E result = getBuffer().remove(index);
-        size = getBuffer().size();
+        checkIndex(index);
+        invalidate();
+        E result = (E)buffer[index];
+        fastRemove(index);
         return result;
     }
 
     @Override
     public int indexOf(Object o) {
-        E[] array = getArray();
-        for (int i = 0; i < array.length; i++) {
-            E element = array[i];
+        Object[] array = buffer;
+        for (int i = 0; i < size; i++) {
+            Object element = array[i];
             if (element == o) {
                 return i;
             }
@@ -352,9 +594,9 @@ public class SafeArrayList<E> implements List<E>, Cloneable {
 
     @Override
     public int lastIndexOf(Object o) {
-        E[] array = getArray();
-        for (int i = array.length - 1; i >= 0; i--) {
-            E element = array[i];
+        Object[] array = buffer;
+        for (int i = size - 1; i >= 0; i--) {
+            Object element = array[i];
             if (element == o) {
                 return i;
             }
@@ -384,17 +626,16 @@ public class SafeArrayList<E> implements List<E>, Cloneable {
 
     @Override
     public String toString() {
-        E[] array = getArray();
-        if (array.length == 0) {
+        if (size == 0) {
             return "[]";
         }
 
         StringBuilder sb = new StringBuilder();
         sb.append('[');
-        for (int i = 0; i < array.length; i++) {
+        for (int i = 0; i < size; i++) {
             if (i > 0)
                 sb.append(", ");
-            E e = array[i];
+            Object e = buffer[i];
             sb.append(e == this ? "(this Collection)" : e);
         }
         sb.append(']');
@@ -36,10 +36,12 @@ import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -111,11 +113,37 @@ public class Cloner {
      */
     private final Map<Class, CloneFunction> functions = new HashMap<>();
 
+    /**
+     *  Types known to have no custom clone function, so that they are only
+     *  searched for once.
+     */
+    private final Set<Class<?>> typesWithoutFunction = new HashSet<>();
+
     /**
      *  Cache the clone methods once for all cloners.
      */
     private static final Map<Class, Method> methodCache = new ConcurrentHashMap<>();
 
+    /**
+     *  The plan being recorded or replayed, if any.
+     */
+    private ClonePlan plan;
+    private boolean replaying;
+    private int cursor;
+    private int pendingSlot;
+    private Object[] planSlots;
+
+    /**
+     *  Thrown when a replayed plan doesn't match the object graph.
+     */
+    private static class PlanMismatchException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        PlanMismatchException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
     /**
      *  Creates a new cloner with only default clone functions and an empty
      *  object index.
@@ -213,15 +241,21 @@ public class Cloner {
             return null;
         }
 
+        Class<T> type = objectClass(object);
+        if (replaying) {
+            return type.cast(replay(object));
+        }
+
         if (log.isLoggable(Level.FINER)) {
             log.finer("cloning:" + object.getClass() + "@" + System.identityHashCode(object));
         }
 
-        Class<T> type = objectClass(object);
-
         // Check the index to see if we already have it
         Object clone = index.get(object);
         if (clone != null || index.containsKey(object)) {
+            if (plan != null) {
+                plan.recordCached(object, clone);
+            }
             if (log.isLoggable(Level.FINER)) {
                 log.finer("cloned:" + object.getClass() + "@" + System.identityHashCode(object)
                             + " as cached:" + (clone == null ? "null" : (clone.getClass() + "@" + System.identityHashCode(clone))));
@@ -232,6 +266,9 @@ public class Cloner {
         // See if there is a custom function... that trumps everything.
         CloneFunction<T> f = getCloneFunction(type);
         if (f != null) {
+            if (plan != null) {
+                plan.recordNew(ClonePlan.FUNCTION, object, f);
+            }
             T result = f.cloneObject(this, object);
 
             // Store the object in the identity map so that any circular references
@@ -253,6 +290,12 @@ public class Cloner {
             return result;
         }
 
+        if (plan != null) {
+            plan.recordNew(object.getClass().isArray() ? ClonePlan.ARRAY
+                    : object instanceof JmeCloneable ? ClonePlan.JME_CLONEABLE
+                    : ClonePlan.JAVA_CLONE, object, null);
+        }
+
         if (object.getClass().isArray()) {
             // Perform an array clone
             clone = arrayClone(object);
@@ -304,6 +347,7 @@ public class Cloner {
      * setting
      */
     public <T> void setCloneFunction(Class<T> type, CloneFunction<T> function) {
+        typesWithoutFunction.clear();
         if (function == null) {
             functions.remove(type);
         } else {
@@ -322,7 +366,7 @@ public class Cloner {
     @SuppressWarnings("unchecked")
     public <T> CloneFunction<T> getCloneFunction(Class<T> type) {
         CloneFunction<T> result = functions.get(type);
-        if (result == null) {
+        if (result == null && !typesWithoutFunction.contains(type)) {
             // Do a more exhaustive search
             for (Map.Entry<Class, CloneFunction> e : functions.entrySet()) {
                 if (e.getKey().isAssignableFrom(type)) {
@@ -333,6 +377,8 @@ public class Cloner {
             if (result != null) {
                 // Cache it for later
                 functions.put(type, result);
+            } else {
+                typesWithoutFunction.add(type);
             }
         }
         return result;
@@ -350,6 +396,14 @@ public class Cloner {
      * @param clone the instance to be returned (alias created)
      */
     public <T> void setClonedValue(T original, T clone) {
+        if (replaying) {
+            int op = next(original, ClonePlan.SET_VALUE);
+            planSlots[plan.slots[op]] = clone;
+            return;
+        }
+        if (plan != null) {
+            plan.recordNew(ClonePlan.SET_VALUE, original, null);
+        }
         index.put(original, clone);
     }
 
@@ -363,7 +417,14 @@ public class Cloner {
      * @return true if the object has been cloned, otherwise false
      */
     public boolean isCloned(Object o) {
-        return index.containsKey(o);
+        if (replaying) {
+            return (Boolean) plan.values[next(o, ClonePlan.IS_CLONED)];
+        }
+        boolean result = index.containsKey(o);
+        if (plan != null) {
+            plan.recordIsCloned(o, result);
+        }
+        return result;
     }
 
     /**
@@ -435,19 +496,156 @@ public class Cloner {
         Object clone = Array.newInstance(elementType, size);
 
         // Store the clone for later lookups
-        index.put(object, clone);
+        register(object, clone);
 
         if (elementType.isPrimitive()) {
             // Then our job is a bit easier
             System.arraycopy(object, 0, clone, 0, size);
         } else {
             // Else it's an object array, so we'll clone it and its children.
+            Object[] source = (Object[]) object;
+            Object[] target = (Object[]) clone;
             for (int i = 0; i < size; i++) {
-                Object element = clone(Array.get(object, i));
-                Array.set(clone, i, element);
+                target[i] = clone(source[i]);
             }
         }
 
         return type.cast(clone);
     }
+
+    /**
+     *  Deep clones the specified object like {@link #clone(Object)}, using a
+     *  plan to speed up repeated clones of the same object.  If the plan is
+     *  empty then the object is cloned normally and the plan records how.
+     *  Otherwise the recorded plan is replayed.
+     *
+     *  <p>Values set with {@link #setClonedValue(Object, Object)} and the
+     *  clone functions in place when the plan is recorded are part of it.
+     *  Each call clones the object as a whole, as if the index had been
+     *  cleared before.</p>
+     *
+     * @param <T> the type of object to be cloned
+     * @param object the object to be cloned (not null)
+     * @param plan the plan to record or replay (not null)
+     * @return a new instance
+     * @throws IllegalArgumentException if the plan was recorded for another
+     *     object
+     * @see ClonePlan
+     */
+    public <T> T clone(T object, ClonePlan plan) {
+        if (object == null || plan == null) {
+            throw new IllegalArgumentException("Object and plan cannot be null");
+        }
+        if (this.plan != null) {
+            throw new IllegalStateException("A plan is already in use by this cloner");
+        }
+        if (!plan.isRecorded()) {
+            return record(object, plan);
+        }
+        if (plan.getOriginal() != object) {
+            throw new IllegalArgumentException("The plan was recorded for another object");
+        }
+
+        this.plan = plan;
+        replaying = true;
+        cursor = 0;
+        planSlots = new Object[plan.slotCount];
+        try {
+            T result = clone(object);
+            if (cursor != plan.size) {
+                throw new PlanMismatchException("Plan not fully replayed");
+            }
+            return result;
+        } catch (PlanMismatchException e) {
+            log.log(Level.FINE, "Recording the plan again: {0}", e.getMessage());
+            Map<Object, Object> presets = plan.getPresets();
+            this.plan = null;
+            replaying = false;
+            index.clear();
+            index.putAll(presets);
+            return record(object, plan);
+        } finally {
+            if (replaying) {
+                replaying = false;
+                this.plan = null;
+            }
+            planSlots = null;
+        }
+    }
+
+    private <T> T record(T object, ClonePlan plan) {
+        plan.startRecording(object, index);
+        this.plan = plan;
+        try {
+            T result = clone(object);
+            plan.finishRecording();
+            return result;
+        } catch (RuntimeException | Error e) {
+            plan.reset();
+            throw e;
+        } finally {
+            this.plan = null;
+        }
+    }
+
+    /**
+     *  Stores a new clone in the index, or in its slot while replaying.
+     */
+    private void register(Object original, Object clone) {
+        if (replaying) {
+            planSlots[pendingSlot] = clone;
+        } else {
+            index.put(original, clone);
+        }
+    }
+
+    /**
+     *  Moves to the next operation of the plan, checking that it is about
+     *  the given object.
+     */
+    private int next(Object object, byte kind) {
+        int op = cursor++;
+        if (op >= plan.size || plan.originals[op] != object
+                || (kind >= 0 && plan.kinds[op] != kind)) {
+            throw new PlanMismatchException("Unexpected object at operation " + op + ": " + object);
+        }
+        return op;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object replay(Object object) {
+        int op = next(object, (byte) -1);
+        int slot = plan.slots[op];
+        Object clone;
+        switch (plan.kinds[op]) {
+            case ClonePlan.CACHED:
+                return planSlots[slot];
+            case ClonePlan.CONSTANT:
+                return plan.values[op];
+            case ClonePlan.FUNCTION:
+                CloneFunction<Object> f = (CloneFunction<Object>) plan.values[op];
+                clone = f.cloneObject(this, object);
+                planSlots[slot] = clone;
+                f.cloneFields(this, clone, object);
+                return clone;
+            case ClonePlan.ARRAY:
+                pendingSlot = slot;
+                return arrayClone(object);
+            case ClonePlan.JME_CLONEABLE:
+                clone = ((JmeCloneable) object).jmeClone();
+                planSlots[slot] = clone;
+                ((JmeCloneable) clone).cloneFields(this, object);
+                return clone;
+            case ClonePlan.JAVA_CLONE:
+                try {
+                    clone = javaClone(object);
+                } catch (CloneNotSupportedException e) {
+                    throw new IllegalArgumentException("Object is not cloneable, type:" + object.getClass(), e);
+                }
+                planSlots[slot] = clone;
+                return clone;
+            default:
+                throw new PlanMismatchException("Expected a clone at operation " + op + ": " + object);
+        }
+    }
 }
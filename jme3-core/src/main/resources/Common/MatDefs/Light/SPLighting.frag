@@ -39,6 +39,9 @@ varying vec3 SpecularSum;
     uniform mat4 g_ViewMatrix;
     uniform vec4 g_LightData[NB_LIGHTS];
     varying vec3 vPos; 
+    #ifdef CLUSTERED_LIGHTING
+        #import "Common/ShaderLib/ClusteredLighting.glsllib"
+    #endif
 #endif
 
 #ifdef DIFFUSEMAP
@@ -196,9 +199,26 @@ void main(){
              vec4 refColor = Optics_GetEnvColor(m_EnvMap, refVec.xyz);
         #endif
 
-        for( int i = 0;i < NB_LIGHTS; i+=3){
-            vec4 lightColor = g_LightData[i];
-            vec4 lightData1 = g_LightData[i+1];                
+        #ifdef CLUSTERED_LIGHTING
+            ivec2 cluster = Clustered_GetCluster(gl_FragCoord.xy, -vPos.z);
+            int lightCount = NB_LIGHTS + cluster.y * 3;
+        #else
+            #define lightCount NB_LIGHTS
+        #endif
+        for( int i = 0;i < lightCount; i+=3){
+            vec4 lightColor;
+            vec4 lightData1;
+            vec4 lightData2;
+            #ifdef CLUSTERED_LIGHTING
+            if (i >= NB_LIGHTS) {
+                Clustered_GetLight(cluster.x + (i - NB_LIGHTS) / 3, lightColor, lightData1, lightData2);
+            } else
+            #endif
+            {
+                lightColor = g_LightData[i];
+                lightData1 = g_LightData[i+1];
+                lightData2 = g_LightData[i+2];
+            }
             vec4 lightDir;
             vec3 lightVec;            
             lightComputeDir(vPos, lightColor.w, lightData1, lightDir,lightVec);
@@ -208,7 +228,7 @@ void main(){
                 // allow use of control flow
             if(lightColor.w > 1.0){
             #endif
-                spotFallOff =  computeSpotFalloff(g_LightData[i+2], lightVec);
+                spotFallOff =  computeSpotFalloff(lightData2, lightVec);
             #if __VERSION__ >= 110
             }
             #endif
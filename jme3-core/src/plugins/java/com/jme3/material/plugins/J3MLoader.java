@@ -444,6 +444,28 @@ public class J3MLoader implements AssetLoader {
         }
     }
 
+    private void readParameterBlock(Statement statement) throws IOException{
+        String[] split = statement.getLine().split(whitespacePattern);
+        if (split.length != 2) {
+            throw new MatParseException("ParameterBlock <BlockName>", statement);
+        }
+        List<MatParam> members = new ArrayList<>();
+        for (Statement member : statement.getContents()) {
+            String paramName = member.getLine().trim();
+            MatParam param = materialDef.getMaterialParam(paramName);
+            if (param == null) {
+                throw new MatParseException("Material parameter '" + paramName
+                        + "' must be declared before it is used in a ParameterBlock", member);
+            }
+            members.add(param);
+        }
+        try {
+            materialDef.setParameterBlock(new ParameterBlock(split[1], members));
+        } catch (IllegalArgumentException ex) {
+            throw new MatParseException(ex.getMessage(), statement, ex);
+        }
+    }
+
     private void readWorldParams(List<Statement> worldParams) throws IOException{
         for (Statement statement : worldParams){
             technique.addWorldParam(statement.getLine());
@@ -657,6 +679,9 @@ public class J3MLoader implements AssetLoader {
             case SinglePassAndImageBased:
                 technique.setLogic(new SinglePassAndImageBasedLightingLogic(technique));
                 break;
+            case Clustered:
+                technique.setLogic(new ClusteredLightingLogic(technique));
+                break;
             default:
                 throw new IOException("Light mode not supported:" + technique.getLightMode());
         }
@@ -781,6 +806,8 @@ public class J3MLoader implements AssetLoader {
                     readTechnique(statement);
                 }else if (statType.equals("MaterialParameters")){
                     readMaterialParams(statement.getContents());
+                }else if (statType.equals("ParameterBlock")){
+                    readParameterBlock(statement);
                 }else{
                     throw new MatParseException("Expected material statement, got '"+statType+"'", statement);
                 }
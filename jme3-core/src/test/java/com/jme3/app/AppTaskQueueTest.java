@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app;
+
+import com.jme3.app.AppTaskQueue.Priority;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the ordering, time budget, coalescing and metrics of
+ * {@link AppTaskQueue}.
+ */
+public class AppTaskQueueTest {
+
+    @Test
+    public void testPriorityOrder() {
+        AppTaskQueue queue = new AppTaskQueue();
+        List<String> order = new ArrayList<>();
+        queue.enqueue(() -> order.add("low1"), Priority.Low);
+        queue.enqueue(() -> order.add("normal1"));
+        queue.enqueue(() -> order.add("high1"), Priority.High);
+        queue.enqueue(() -> order.add("normal2"), Priority.Normal);
+        queue.enqueue(() -> order.add("high2"), Priority.High);
+        Assert.assertEquals(5, queue.getQueueDepth());
+
+        Assert.assertEquals(5, queue.runTasks());
+        Assert.assertEquals(0, queue.getQueueDepth());
+        Assert.assertEquals(5, queue.getLastRunCount());
+        Assert.assertEquals("[high1, high2, normal1, normal2, low1]", order.toString());
+    }
+
+    @Test
+    public void testTimeBudgetDefersTasks() throws Exception {
+        AppTaskQueue queue = new AppTaskQueue();
+        queue.setTimeBudget(TimeUnit.MILLISECONDS.toNanos(5));
+        AtomicInteger done = new AtomicInteger();
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(queue.enqueue(() -> {
+                Thread.sleep(2);
+                return done.incrementAndGet();
+            }));
+        }
+
+        int first = queue.runTasks();
+        Assert.assertTrue(first >= 1 && first < 10);
+        Assert.assertEquals(10 - first, queue.getQueueDepth());
+        Assert.assertTrue(queue.getLastRunTime() >= TimeUnit.MILLISECONDS.toNanos(5));
+
+        int frames = 1;
+        while (queue.getQueueDepth() > 0) {
+            Assert.assertTrue(queue.runTasks() >= 1);
+            frames++;
+        }
+        Assert.assertTrue(frames > 1);
+        Assert.assertEquals(10, done.get());
+        Assert.assertEquals(10, queue.getTotalRunCount());
+        for (int i = 0; i < futures.size(); i++) {
+            Assert.assertEquals(i + 1, (int) futures.get(i).get());
+        }
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        AppTaskQueue queue = new AppTaskQueue();
+        AtomicInteger runs = new AtomicInteger();
+        Future<Integer> first = queue.enqueue(runs::incrementAndGet, Priority.Normal, "rebuild");
+        Future<Integer> second = queue.enqueue(() -> runs.addAndGet(100), Priority.Normal, "rebuild");
+        Future<Integer> other = queue.enqueue(runs::incrementAndGet, Priority.Normal, "other");
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, other);
+        Assert.assertEquals(2, queue.getQueueDepth());
+        Assert.assertEquals(1, queue.getCoalescedCount());
+
+        queue.runTasks();
+        Assert.assertEquals(2, runs.get());
+        Assert.assertEquals(1, (int) first.get());
+
+        // the key is free again once the task ran
+        Future<Integer> third = queue.enqueue(runs::incrementAndGet, Priority.Normal, "rebuild");
+        Assert.assertNotSame(first, third);
+        queue.runTasks();
+        Assert.assertEquals(3, (int) third.get());
+    }
+
+    @Test
+    public void testCancelledTaskReleasesKey() {
+        AppTaskQueue queue = new AppTaskQueue();
+        AtomicInteger runs = new AtomicInteger();
+        Future<Integer> first = queue.enqueue(runs::incrementAndGet, Priority.Normal, "key");
+        first.cancel(false);
+        Future<Integer> second = queue.enqueue(runs::incrementAndGet, Priority.Normal, "key");
+        Assert.assertNotSame(first, second);
+
+        Assert.assertEquals(2, queue.runTasks());
+        Assert.assertEquals(1, runs.get());
+        Assert.assertTrue(second.isDone());
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final AppTaskQueue queue = new AppTaskQueue();
+        final int producers = 4;
+        final int perProducer = 5000;
+        final int[] lastSeen = new int[producers];
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int i = 1; i <= perProducer; i++) {
+                    final int value = i;
+                    queue.enqueue(() -> {
+                        // tasks of one producer run in order
+                        Assert.assertEquals(lastSeen[producer] + 1, value);
+                        lastSeen[producer] = value;
+                        return null;
+                    }, producer % 2 == 0 ? Priority.Normal : Priority.Low);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        int total = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread thread : threads) {
+                running |= thread.isAlive();
+            }
+            total += queue.runTasks();
+        }
+        total += queue.runTasks();
+
+        Assert.assertEquals(producers * perProducer, total);
+        Assert.assertEquals(0, queue.getQueueDepth());
+        for (int p = 0; p < producers; p++) {
+            Assert.assertEquals(perProducer, lastSeen[p]);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeBudget() {
+        new AppTaskQueue().setTimeBudget(-1);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app;
+
+import com.jme3.light.DirectionalLight;
+import com.jme3.light.PointLight;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.profile.AppStep;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.Statistics;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives a headless frame loop through an {@link AllocationProfiler} and
+ * verifies that a steady-state frame stays below an allocation budget.
+ */
+public class FrameAllocationTest {
+
+    /**
+     * The most bytes one steady-state frame of the test scene may allocate.
+     */
+    private static final long FRAME_BUDGET = 4096;
+
+    private Statistics statistics;
+    private RenderManager renderManager;
+    private Node rootNode;
+    private AllocationProfiler profiler;
+
+    private static class Spin extends AbstractControl {
+        @Override
+        protected void controlUpdate(float tpf) {
+            spatial.rotate(0, tpf, 0);
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(AllocationProfiler.isSupported());
+
+        NullRenderer renderer = new NullRenderer();
+        statistics = renderer.getStatistics();
+        statistics.setEnabled(true);
+        renderManager = TestUtil.createRenderManager(renderer);
+
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 4f / 3f, 1f, 1000f);
+        cam.setLocation(new Vector3f(0, 20f, -100f));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        ViewPort vp = renderManager.createMainView("Default", cam);
+        vp.setClearFlags(true, true, true);
+
+        Material unshaded = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        unshaded.setColor("Color", ColorRGBA.Blue);
+        Material lit = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Light/Lighting.j3md");
+
+        Mesh mesh = new Box(1, 1, 1);
+        rootNode = new Node("Root");
+        for (int g = 0; g < 10; g++) {
+            Node group = new Node("Group" + g);
+            group.setLocalTranslation(FastMath.cos(g) * 40f, 0, FastMath.sin(g) * 40f);
+            group.addControl(new Spin());
+            for (int i = 0; i < 20; i++) {
+                Geometry geom = new Geometry("Geom" + g + "_" + i, mesh);
+                geom.setMaterial(i % 2 == 0 ? unshaded : lit);
+                geom.setLocalTranslation(i % 5 * 3f, i / 5 * 3f, 0);
+                if (i % 7 == 0) {
+                    geom.setQueueBucket(Bucket.Transparent);
+                }
+                group.attachChild(geom);
+            }
+            rootNode.attachChild(group);
+        }
+        rootNode.addLight(new DirectionalLight(new Vector3f(-1, -1, -1).normalizeLocal()));
+        PointLight point = new PointLight(new Vector3f(0, 10f, 0), 60f);
+        rootNode.addLight(point);
+        vp.attachScene(rootNode);
+
+        profiler = new AllocationProfiler();
+        profiler.setStatistics(statistics);
+        renderManager.setAppProfiler(profiler);
+    }
+
+    private void frame(float tpf) {
+        profiler.appStep(AppStep.BeginFrame);
+        profiler.appStep(AppStep.SpatialUpdate);
+        rootNode.updateLogicalState(tpf);
+        profiler.appStep(AppStep.StateManagerUpdate);
+        profiler.appStep(AppStep.SpatialUpdate);
+        rootNode.updateGeometricState();
+        profiler.appStep(AppStep.StateManagerRender);
+        profiler.appStep(AppStep.RenderFrame);
+        statistics.clearFrame();
+        renderManager.render(tpf, true);
+        profiler.appStep(AppStep.EndFrame);
+    }
+
+    @Test
+    public void testSteadyStateFrame() {
+        for (int i = 0; i < 200; i++) {
+            frame(0.016f);
+        }
+        profiler.resetMaxFrameBytes();
+        for (int i = 0; i < 100; i++) {
+            frame(0.016f);
+        }
+
+        Assert.assertEquals(300, profiler.getFrameCount());
+        long max = profiler.getMaxFrameBytes();
+        Assert.assertTrue("Steady-state frame allocated " + max + " bytes. "
+                + profiler.getSummary(), max <= FRAME_BUDGET);
+    }
+
+    @Test
+    public void testAllocationsAreAttributed() {
+        Spatial garbage = new Node("Garbage") {
+            @Override
+            public void updateLogicalState(float tpf) {
+                super.updateLogicalState(tpf);
+                for (int i = 0; i < 16; i++) {
+                    new Node("Temp" + i);
+                }
+            }
+        };
+        rootNode.attachChild(garbage);
+        for (int i = 0; i < 20; i++) {
+            frame(0.016f);
+        }
+
+        long bytes = profiler.getBytes(AppStep.SpatialUpdate);
+        Assert.assertTrue(bytes > 16 * 64);
+        Assert.assertTrue(profiler.getFrameBytes() >= bytes);
+
+        // the total reaches the statistics at the end of the frame
+        int[] data = new int[statistics.getLabels().length];
+        statistics.getData(data);
+        Assert.assertEquals("Allocated Bytes", statistics.getLabels()[data.length - 1]);
+        Assert.assertEquals(profiler.getFrameBytes(), data[data.length - 1]);
+    }
+}
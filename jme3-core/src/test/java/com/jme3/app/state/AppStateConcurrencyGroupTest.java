@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.app.state;
+
+import com.jme3.app.Application;
+import com.jme3.app.LegacyApplication;
+import com.jme3.profile.AppProfiler;
+import com.jme3.profile.AppStep;
+import com.jme3.profile.SpStep;
+import com.jme3.profile.VpStep;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that app states with different concurrency groups are updated
+ * concurrently, and that the others keep running on the calling thread.
+ */
+public class AppStateConcurrencyGroupTest {
+
+    private LegacyApplication app;
+    private AppStateManager stateManager;
+    private ForkJoinPool pool;
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        app = new LegacyApplication();
+        stateManager = app.getStateManager();
+        pool = new ForkJoinPool(4);
+        stateManager.setUpdatePool(pool);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private class TestState extends BaseAppState {
+
+        private final CountDownLatch latch;
+        private Thread updateThread;
+        private int updates;
+
+        TestState(String id, String group, CountDownLatch latch) {
+            super(id);
+            setConcurrencyGroup(group);
+            this.latch = latch;
+        }
+
+        @Override
+        public void update(float tpf) {
+            updateThread = Thread.currentThread();
+            updates++;
+            log.add(getId());
+            if (latch != null) {
+                latch.countDown();
+                try {
+                    // only returns if the other group runs at the same time
+                    Assert.assertTrue(getId() + " ran alone", latch.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+
+        @Override
+        protected void initialize(Application app) {
+        }
+
+        @Override
+        protected void cleanup(Application app) {
+        }
+
+        @Override
+        protected void onEnable() {
+        }
+
+        @Override
+        protected void onDisable() {
+        }
+    }
+
+    @Test
+    public void testGroupsRunConcurrently() {
+        CountDownLatch latch = new CountDownLatch(2);
+        TestState main1 = new TestState("main1", null, null);
+        TestState net1 = new TestState("net1", "network", latch);
+        TestState net2 = new TestState("net2", "network", null);
+        TestState ai = new TestState("ai", "ai", latch);
+        TestState main2 = new TestState("main2", null, null);
+        stateManager.attachAll(main1, net1, net2, ai, main2);
+
+        List<String> steps = Collections.synchronizedList(new ArrayList<>());
+        app.setAppProfiler(new RecordingProfiler(steps));
+        stateManager.update(0.1f);
+
+        Thread caller = Thread.currentThread();
+        Assert.assertSame(caller, main1.updateThread);
+        Assert.assertSame(caller, main2.updateThread);
+        Assert.assertNotSame(caller, net1.updateThread);
+        Assert.assertSame(net1.updateThread, net2.updateThread);
+        Assert.assertNotSame(net1.updateThread, ai.updateThread);
+
+        // the order within a group and on the calling thread is kept
+        Assert.assertTrue(log.indexOf("net1") < log.indexOf("net2"));
+        Assert.assertTrue(log.indexOf("main1") < log.indexOf("main2"));
+
+        Assert.assertTrue(steps.contains("TestState"));
+        Assert.assertTrue(steps.contains("ConcurrencyGroups"));
+        Assert.assertTrue(steps.contains("time:network/TestState"));
+        Assert.assertTrue(steps.contains("time:ai/TestState"));
+    }
+
+    @Test
+    public void testDisabledAndRegroupedStates() {
+        TestState a = new TestState("a", "one", null);
+        TestState b = new TestState("b", "two", null);
+        stateManager.attachAll(a, b);
+        stateManager.update(0.1f);
+        b.setEnabled(false);
+        a.setConcurrencyGroup(null);
+        stateManager.update(0.1f);
+        Assert.assertEquals(2, a.updates);
+        Assert.assertEquals(1, b.updates);
+        Assert.assertSame(Thread.currentThread(), a.updateThread);
+    }
+
+    @Test
+    public void testFailureIsRethrown() {
+        TestState ok = new TestState("ok", "one", null);
+        BaseAppState failing = new TestState("failing", "two", null) {
+            @Override
+            public void update(float tpf) {
+                throw new IllegalStateException("boom");
+            }
+        };
+        stateManager.attachAll(ok, failing);
+        try {
+            stateManager.update(0.1f);
+            Assert.fail("Expected the failure of the group");
+        } catch (IllegalStateException ex) {
+            Assert.assertTrue(ex.getMessage().contains("boom"));
+        }
+        Assert.assertEquals(1, ok.updates);
+    }
+
+    private static class RecordingProfiler implements AppProfiler {
+
+        private final List<String> steps;
+
+        RecordingProfiler(List<String> steps) {
+            this.steps = steps;
+        }
+
+        @Override
+        public void appStep(AppStep step) {
+        }
+
+        @Override
+        public void appSubStep(String... additionalInfo) {
+            steps.add(String.join("/", additionalInfo));
+        }
+
+        @Override
+        public void appSubStepTime(long nanos, String... additionalInfo) {
+            Assert.assertTrue(nanos >= 0);
+            steps.add("time:" + String.join("/", additionalInfo));
+        }
+
+        @Override
+        public void vpStep(VpStep step, ViewPort vp, Bucket bucket) {
+        }
+
+        @Override
+        public void spStep(SpStep step, String... additionalInfo) {
+        }
+    }
+}
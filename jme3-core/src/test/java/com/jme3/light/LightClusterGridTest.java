@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.light;
+
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the light assignment of {@link LightClusterGrid}.
+ */
+public class LightClusterGridTest {
+
+    private static Camera createCamera() {
+        Camera cam = new Camera(1280, 720);
+        cam.setFrustumPerspective(60f, 16f / 9f, 0.5f, 200f);
+        cam.setLocation(new Vector3f(0, 0, 10f));
+        cam.lookAtDirection(Vector3f.UNIT_Z.negate(), Vector3f.UNIT_Y);
+        cam.update();
+        return cam;
+    }
+
+    /**
+     * Creates point lights which are all in front of the camera, so their
+     * buffer index is their position in the list.
+     */
+    private static List<Light> createLights(int count) {
+        Random random = new Random(42);
+        List<Light> lights = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Vector3f position = new Vector3f((random.nextFloat() - 0.5f) * 80f,
+                    (random.nextFloat() - 0.5f) * 40f, -random.nextFloat() * 100f);
+            lights.add(new PointLight(position, 1f + random.nextFloat() * 6f));
+        }
+        return lights;
+    }
+
+    private static boolean clusterHasLight(LightClusterGrid grid, int cluster, int light) {
+        for (int n = 0; n < grid.getClusterLightCount(cluster); n++) {
+            if (grid.getClusterLight(cluster, n) == light) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testClustersContainOverlappingLights() {
+        Camera cam = createCamera();
+        List<Light> lights = createLights(50);
+        LightClusterGrid grid = new LightClusterGrid();
+        grid.setPool(null);
+        grid.update(cam, lights, 1);
+        Assert.assertEquals(50, grid.getLightCount());
+        Assert.assertEquals(1, grid.getStamp());
+
+        Random random = new Random(7);
+        Vector3f world = new Vector3f();
+        Vector3f view = new Vector3f();
+        int checked = 0;
+        for (int p = 0; p < 2000; p++) {
+            PointLight light = (PointLight) lights.get(random.nextInt(lights.size()));
+            // a point inside the light's sphere
+            world.set(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f)
+                    .normalizeLocal().multLocal(light.getRadius() * random.nextFloat() * 0.99f)
+                    .addLocal(light.getPosition());
+            cam.getViewMatrix().mult(world, view);
+            int cluster = grid.getCluster(view);
+            if (cluster < 0) {
+                continue;
+            }
+            checked++;
+            for (int i = 0; i < lights.size(); i++) {
+                PointLight other = (PointLight) lights.get(i);
+                if (other.getPosition().distance(world) < other.getRadius()) {
+                    Assert.assertTrue("light " + i + " missing from cluster " + cluster,
+                            clusterHasLight(grid, cluster, i));
+                }
+            }
+        }
+        Assert.assertTrue(checked > 100);
+        Assert.assertTrue(grid.getAssignmentCount() < lights.size() * grid.getClusterCount() / 4);
+    }
+
+    @Test
+    public void testLightsOutOfRange() {
+        Camera cam = createCamera();
+        List<Light> lights = new ArrayList<>();
+        PointLight behind = new PointLight(new Vector3f(0, 0, 30f), 5f);
+        PointLight visible = new PointLight(new Vector3f(0, 0, -10f), 5f);
+        PointLight disabled = new PointLight(new Vector3f(0, 0, -10f), 5f);
+        disabled.setEnabled(false);
+        DirectionalLight sun = new DirectionalLight(Vector3f.UNIT_Y.negate());
+        lights.add(behind);
+        lights.add(visible);
+        lights.add(disabled);
+        lights.add(sun);
+
+        LightClusterGrid grid = new LightClusterGrid();
+        grid.update(cam, lights, 3);
+        Assert.assertTrue(grid.contains(behind));
+        Assert.assertTrue(grid.contains(visible));
+        Assert.assertFalse(grid.contains(disabled));
+        Assert.assertFalse(grid.contains(sun));
+        Assert.assertEquals(1, grid.getLightCount());
+
+        int cluster = grid.getCluster(new Vector3f(0, 0, -20f));
+        Assert.assertEquals(1, grid.getClusterLightCount(cluster));
+        Assert.assertEquals(0, grid.getClusterLight(cluster, 0));
+        Assert.assertEquals(-1, grid.getCluster(new Vector3f(0, 0, 5f)));
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        Camera cam = createCamera();
+        List<Light> lights = createLights(300);
+        LightClusterGrid serial = new LightClusterGrid();
+        serial.setPool(null);
+        serial.update(cam, lights, 1);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            LightClusterGrid parallel = new LightClusterGrid();
+            parallel.setPool(pool);
+            parallel.setParallelThreshold(0);
+            parallel.update(cam, lights, 1);
+
+            Assert.assertEquals(serial.getAssignmentCount(), parallel.getAssignmentCount());
+            for (int c = 0; c < serial.getClusterCount(); c++) {
+                Assert.assertEquals(serial.getClusterLightCount(c), parallel.getClusterLightCount(c));
+                for (int n = 0; n < serial.getClusterLightCount(c); n++) {
+                    Assert.assertEquals(serial.getClusterLight(c, n), parallel.getClusterLight(c, n));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidGrid() {
+        new LightClusterGrid(16, 0, 24);
+    }
+}
@@ -35,6 +35,7 @@ import com.jme3.math.Vector3f;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
 import org.junit.Test;
 
 /**
@@ -112,4 +113,58 @@ public class LightSortTest {
 //        assert list.get(2) instanceof SpotLight;
 //        assert list.get(3) instanceof PointLight;
     }
+
+    @Test
+    public void testSortOnFirstUpdate() {
+        // the distances need the world bound, which is refreshed while
+        // the world light list is being sorted
+        Node root = new Node("root");
+        Node child = new Node("child");
+        root.attachChild(child);
+        for (int i = 0; i < 40; i++) {
+            root.addLight(new PointLight(new Vector3f((i * 37) % 100, 0, 0), 5f));
+        }
+        AmbientLight ambient = new AmbientLight();
+        root.addLight(ambient);
+        for (int i = 0; i < 10; i++) {
+            child.addLight(new PointLight(new Vector3f((i * 53) % 100, 10f, 0), 5f));
+        }
+        Geometry g = new Geometry("geom", new Box(1, 1, 1));
+        g.setLocalTranslation(30f, 0, 0);
+        child.attachChild(g);
+        root.updateGeometricState();
+
+        LightList list = g.getWorldLightList();
+        assert list.get(0) == ambient;
+        float last = Float.NEGATIVE_INFINITY;
+        for (int i = 1; i < list.size(); i++) {
+            float distance = g.getWorldBound().distanceSquaredTo(((PointLight) list.get(i)).getPosition());
+            assert distance >= last;
+            last = distance;
+        }
+    }
+
+    @Test
+    public void testSortKeepsDistancesInList() {
+        // lights are shared between geometries, which may be sorted on
+        // different threads
+        PointLight near = new PointLight(Vector3f.ZERO);
+        PointLight far = new PointLight(new Vector3f(10f, 0, 0));
+        Geometry g = new Geometry("geom", new Mesh());
+        LightList list = new LightList(g);
+        list.add(far);
+        list.add(near);
+        list.sort(true);
+
+        assert list.get(0) == near;
+        assert list.get(1) == far;
+        assert near.lastDistance == -1;
+        assert far.lastDistance == -1;
+
+        list.remove(0);
+        list.add(near);
+        list.sort(true);
+        assert list.get(0) == near;
+        assert list.get(1) == far;
+    }
 }
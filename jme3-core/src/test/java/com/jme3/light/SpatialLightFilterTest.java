@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.light;
+
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.FastMath;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link SpatialLightFilter} selects the same lights as
+ * {@link DefaultLightFilter} while lights and geometries move.
+ */
+public class SpatialLightFilterTest {
+
+    private final Random random = new Random(99);
+
+    private Vector3f randomPosition(float size) {
+        return new Vector3f((random.nextFloat() - 0.5f) * size,
+                (random.nextFloat() - 0.5f) * size, (random.nextFloat() - 0.5f) * size);
+    }
+
+    private Light createLight() {
+        switch (random.nextInt(4)) {
+            case 0:
+                return new PointLight(randomPosition(200f), 2f + random.nextFloat() * 20f);
+            case 1:
+                SpotLight spot = new SpotLight(randomPosition(200f), randomPosition(2f).normalizeLocal(),
+                        5f + random.nextFloat() * 30f);
+                spot.setSpotOuterAngle(0.3f + random.nextFloat() * 0.5f);
+                spot.setSpotInnerAngle(0.1f);
+                return spot;
+            case 2:
+                PointLight light = new PointLight(randomPosition(200f), 5f);
+                light.setEnabled(random.nextInt(3) != 0);
+                return light;
+            default:
+                return new PointLight(randomPosition(200f), 0.5f + random.nextFloat());
+        }
+    }
+
+    private static List<Light> filter(LightFilter filter, Geometry geometry) {
+        LightList list = new LightList(geometry);
+        filter.filterLights(geometry, list);
+        List<Light> result = new ArrayList<>();
+        for (Light light : list) {
+            result.add(light);
+        }
+        return result;
+    }
+
+    @Test
+    public void testMatchesDefaultFilter() {
+        Node root = new Node("Root");
+        root.addLight(new AmbientLight(ColorRGBA.DarkGray));
+        root.addLight(new DirectionalLight(Vector3f.UNIT_Y.negate()));
+        root.addLight(new PointLight(Vector3f.ZERO, 0f));
+        List<Light> rootLights = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            Light light = createLight();
+            rootLights.add(light);
+            root.addLight(light);
+        }
+        Node room = new Node("Room");
+        root.attachChild(room);
+        for (int i = 0; i < 20; i++) {
+            room.addLight(createLight());
+        }
+        Node small = new Node("Small");
+        room.attachChild(small);
+        small.addLight(new PointLight(Vector3f.ZERO, 50f));
+
+        Mesh box = new Box(1f, 2f, 3f);
+        Mesh sphereBound = new Box(2f, 2f, 2f);
+        sphereBound.setBound(new BoundingSphere());
+        sphereBound.updateBound();
+        List<Geometry> geometries = new ArrayList<>();
+        Node[] parents = {root, room, small};
+        for (int i = 0; i < 300; i++) {
+            Geometry geometry = new Geometry("Geom" + i, i % 5 == 0 ? sphereBound : box);
+            geometry.setLocalTranslation(randomPosition(200f));
+            parents[i % 3].attachChild(geometry);
+            geometries.add(geometry);
+        }
+
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(70f, 4f / 3f, 1f, 300f);
+        cam.setLocation(new Vector3f(0, 0, -150f));
+        cam.lookAtDirection(Vector3f.UNIT_Z, Vector3f.UNIT_Y);
+        cam.update();
+
+        DefaultLightFilter reference = new DefaultLightFilter();
+        SpatialLightFilter filter = new SpatialLightFilter();
+        filter.setIndexThreshold(8);
+
+        int compared = 0;
+        for (int frame = 0; frame < 20; frame++) {
+            // move a few lights and geometries, some lights keep still
+            for (int i = 0; i < 5; i++) {
+                Light light = rootLights.get(i);
+                if (light instanceof PointLight) {
+                    ((PointLight) light).getPosition().addLocal(randomPosition(4f));
+                    ((PointLight) light).setPosition(((PointLight) light).getPosition());
+                } else {
+                    ((SpotLight) light).setDirection(randomPosition(2f).normalizeLocal());
+                }
+            }
+            geometries.get(frame).move(randomPosition(10f));
+            if (frame == 7) {
+                Light removed = rootLights.remove(rootLights.size() - 1);
+                root.removeLight(removed);
+            } else if (frame == 12) {
+                Light added = createLight();
+                rootLights.add(added);
+                room.addLight(added);
+            } else if (frame == 15) {
+                rootLights.get(30).setEnabled(!rootLights.get(30).isEnabled());
+                ((PointLight) root.getLocalLightList().get(2)).setRadius(10f);
+            }
+            cam.setLocation(cam.getLocation().add(0, 0, FastMath.sin(frame) * 5f));
+            cam.update();
+            root.updateGeometricState();
+
+            reference.setCamera(cam);
+            filter.setCamera(cam);
+            for (Geometry geometry : geometries) {
+                List<Light> expected = filter(reference, geometry);
+                List<Light> actual = filter(filter, geometry);
+                String message = geometry.getName() + " in frame " + frame;
+                if (frame == 0) {
+                    // the world light lists were just sorted
+                    Assert.assertEquals(message, expected, actual);
+                } else {
+                    Assert.assertEquals(message, expected.size(), actual.size());
+                    Assert.assertEquals(message, new HashSet<>(expected), new HashSet<>(actual));
+                }
+                compared += expected.size();
+            }
+        }
+        Assert.assertTrue(compared > 1000);
+    }
+
+    @Test
+    public void testSmallListsAreNotIndexed() {
+        Node root = new Node("Root");
+        PointLight near = new PointLight(new Vector3f(0, 0, 10f), 5f);
+        PointLight far = new PointLight(new Vector3f(0, 0, 100f), 5f);
+        root.addLight(near);
+        root.addLight(far);
+        Geometry geometry = new Geometry("Geom", new Box(1, 1, 1));
+        geometry.setLocalTranslation(0, 0, 10f);
+        root.attachChild(geometry);
+        root.updateGeometricState();
+
+        Camera cam = new Camera(512, 512);
+        cam.setFrustumPerspective(45, 1, 1, 1000);
+        cam.lookAtDirection(Vector3f.UNIT_Z, Vector3f.UNIT_Y);
+        SpatialLightFilter filter = new SpatialLightFilter();
+        filter.setCamera(cam);
+        List<Light> lights = filter(filter, geometry);
+        Assert.assertEquals(1, lights.size());
+        Assert.assertSame(near, lights.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreshold() {
+        new SpatialLightFilter().setIndexThreshold(0);
+    }
+}
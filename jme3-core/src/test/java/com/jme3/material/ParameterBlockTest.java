@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.VarType;
+import com.jme3.shader.bufferobject.BufferObject;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import com.jme3.util.ListMap;
+import com.jme3.util.SafeArrayList;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the std140 layout of {@link ParameterBlock} and the reuse of its
+ * ring buffer slots by materials.
+ */
+public class ParameterBlockTest {
+
+    /**
+     * Records the offsets of the bound uniform buffer ranges.
+     */
+    private static class RecordingRenderer extends NullRenderer {
+
+        final List<Integer> offsets = new ArrayList<>();
+
+        @Override
+        public void setUniformBufferObjectRange(int bindingPoint, BufferObject bufferObject, int offset, int length) {
+            offsets.add(offset);
+        }
+    }
+
+    private static ParameterBlock createBlock(VarType... types) {
+        List<MatParam> members = new ArrayList<>();
+        for (int i = 0; i < types.length; i++) {
+            members.add(new MatParam(types[i], "P" + i, null));
+        }
+        return new ParameterBlock("Block", members);
+    }
+
+    @Test
+    public void testStd140Offsets() {
+        ParameterBlock block = createBlock(VarType.Float, VarType.Vector3, VarType.Float,
+                VarType.Vector2, VarType.Matrix4, VarType.Boolean);
+
+        Assert.assertEquals(0, block.getOffset(0));
+        Assert.assertEquals(16, block.getOffset(1));
+        // a scalar may fill the padding after a vec3
+        Assert.assertEquals(28, block.getOffset(2));
+        Assert.assertEquals(32, block.getOffset(3));
+        Assert.assertEquals(48, block.getOffset(4));
+        Assert.assertEquals(112, block.getOffset(5));
+        Assert.assertEquals(128, block.getSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTexturesAreRejected() {
+        createBlock(VarType.Float, VarType.Texture2D);
+    }
+
+    @Test
+    public void testSlotsAreInvalidatedWhenTheRingWraps() {
+        ParameterBlock block = createBlock(VarType.Float);
+        block.setSlotCount(2);
+        block.getRingBuffer(256);
+        ListMap<String, MatParam> values = new ListMap<>();
+
+        long first = block.write(values, null, null);
+        long second = block.write(values, null, null);
+        Assert.assertEquals(0, first % 2);
+        Assert.assertEquals(1, second % 2);
+        Assert.assertEquals(256, block.getSlotOffset(1));
+        Assert.assertTrue(block.isSlotValid(0, first));
+
+        long third = block.write(values, null, null);
+        Assert.assertEquals(0, third % 2);
+        Assert.assertFalse(block.isSlotValid(0, first));
+        Assert.assertTrue(block.isSlotValid(0, third));
+        Assert.assertTrue(block.isSlotValid(1, second));
+    }
+
+    @Test
+    public void testOverridePrecedence() {
+        ParameterBlock block = createBlock(VarType.Float, VarType.Float);
+        BufferObject ring = block.getRingBuffer(256);
+        ListMap<String, MatParam> values = new ListMap<>();
+        values.put("P0", new MatParam(VarType.Float, "P0", 1f));
+        values.put("P1", new MatParam(VarType.Float, "P1", 1f));
+        SafeArrayList<MatParamOverride> world = new SafeArrayList<>(MatParamOverride.class);
+        world.add(new MatParamOverride(VarType.Float, "P0", 2f));
+        world.add(new MatParamOverride(VarType.Float, "P1", 2f));
+        SafeArrayList<MatParamOverride> forced = new SafeArrayList<>(MatParamOverride.class);
+        forced.add(new MatParamOverride(VarType.Float, "P1", 3f));
+
+        Assert.assertTrue(block.isOverridden(world));
+        block.write(values, world, forced);
+        ByteBuffer data = ring.getData();
+        Assert.assertEquals(2f, data.getFloat(block.getOffset(0)), 0f);
+        Assert.assertEquals(3f, data.getFloat(block.getOffset(1)), 0f);
+        Assert.assertTrue(ring.getRegion(0).isDirty());
+    }
+
+    @Test
+    public void testMaterialsReuseTheirSlot() {
+        MaterialDef def = (MaterialDef) TestUtil.createAssetManager()
+                .loadAsset("Common/MatDefs/Misc/Unshaded.j3md");
+        def.setParameterBlock(new ParameterBlock("MaterialBlock", Arrays.asList(
+                def.getMaterialParam("Color"), def.getMaterialParam("AlphaDiscardThreshold"))));
+        RecordingRenderer renderer = new RecordingRenderer();
+        RenderManager renderManager = TestUtil.createRenderManager(renderer);
+
+        Material a = new Material(def);
+        Material b = new Material(def);
+        Geometry geomA = new Geometry("A", new Box(1, 1, 1));
+        geomA.setMaterial(a);
+        Geometry geomB = new Geometry("B", new Box(1, 1, 1));
+        geomB.setMaterial(b);
+
+        renderManager.renderGeometry(geomA);
+        renderManager.renderGeometry(geomB);
+        renderManager.renderGeometry(geomA);
+        a.setColor("Color", ColorRGBA.Red);
+        renderManager.renderGeometry(geomA);
+        renderManager.renderGeometry(geomB);
+
+        int slot = def.getParameterBlock().getSlotOffset(1);
+        Assert.assertEquals(Arrays.asList(0, slot, 0, 2 * slot, slot), renderer.offsets);
+    }
+}
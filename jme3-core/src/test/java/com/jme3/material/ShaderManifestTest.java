@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetManager;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.DefineList;
+import com.jme3.shader.Shader;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that a {@link ShaderManifest} records the shader permutations
+ * materials select, and that a {@link ShaderPrecompiler} compiles them
+ * ahead of use.
+ */
+public class ShaderManifestTest {
+
+    /**
+     * Records every shader that is set.
+     */
+    private static class RecordingRenderer extends NullRenderer {
+
+        final List<Shader> shaders = new ArrayList<>();
+
+        @Override
+        public void setShader(Shader shader) {
+            shaders.add(shader);
+        }
+    }
+
+    private static final String UNSHADED = "Common/MatDefs/Misc/Unshaded.j3md";
+
+    private AssetManager assetManager;
+
+    @Before
+    public void setUp() {
+        assetManager = TestUtil.createAssetManager();
+    }
+
+    private static void preload(AssetManager assetManager, RenderManager renderManager, boolean vertexColor) {
+        Material material = new Material(assetManager, UNSHADED);
+        material.setBoolean("VertexColor", vertexColor);
+        Geometry geom = new Geometry("Geom", new Box(1, 1, 1));
+        geom.setMaterial(material);
+        renderManager.preloadScene(geom);
+    }
+
+    /**
+     * Records a session with its own asset manager, so the material
+     * definition it loads does not cache the recorded shaders.
+     */
+    private static ShaderManifest record() {
+        AssetManager sessionAssets = TestUtil.createAssetManager();
+        ShaderManifest manifest = new ShaderManifest();
+        RenderManager renderManager = TestUtil.createRenderManager();
+        renderManager.setShaderManifest(manifest);
+        preload(sessionAssets, renderManager, false);
+        preload(sessionAssets, renderManager, true);
+        preload(sessionAssets, renderManager, true);
+        return manifest;
+    }
+
+    private static ShaderManifest reload(ShaderManifest manifest) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        manifest.save(out);
+        return ShaderManifest.load(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void testRecordAndReload() throws IOException {
+        ShaderManifest manifest = record();
+
+        List<ShaderManifest.Entry> entries = manifest.getEntries();
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals(UNSHADED, entries.get(0).getMaterialDefName());
+        Assert.assertEquals(TechniqueDef.DEFAULT_TECHNIQUE_NAME, entries.get(0).getTechniqueName());
+        Assert.assertFalse(entries.get(0).getDefines().containsKey("HAS_VERTEXCOLOR"));
+        Assert.assertEquals(Integer.valueOf(1), entries.get(1).getDefines().get("HAS_VERTEXCOLOR"));
+
+        Assert.assertEquals(entries, reload(manifest).getEntries());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMalformedManifest() throws IOException {
+        ShaderManifest.load(new ByteArrayInputStream("not a manifest\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testPrecompiledShadersAreUsed() throws IOException {
+        ShaderManifest manifest = reload(record());
+        manifest.add(new ShaderManifest.Entry(UNSHADED, TechniqueDef.DEFAULT_TECHNIQUE_NAME, 0,
+                Collections.singletonMap("NO_SUCH_DEFINE", 1)));
+
+        RecordingRenderer renderer = new RecordingRenderer();
+        ShaderPrecompiler precompiler = new ShaderPrecompiler(manifest);
+        precompiler.setTimeBudget(0);
+        // generate on the calling thread
+        precompiler.start(assetManager, renderer.getCaps(), Runnable::run);
+
+        // a zero budget still compiles one shader per update
+        precompiler.update(renderer);
+        Assert.assertEquals(1, precompiler.getCompiledCount());
+        Assert.assertFalse(precompiler.isDone());
+        precompiler.update(renderer);
+        Assert.assertTrue(precompiler.isDone());
+        Assert.assertEquals(2, precompiler.getCompiledCount());
+        Assert.assertEquals(1, precompiler.getSkippedCount());
+
+        ShaderManifest.Entry entry = manifest.getEntries().get(1);
+        MaterialDef def = assetManager.loadAsset(new AssetKey<MaterialDef>(UNSHADED));
+        TechniqueDef techniqueDef = entry.findTechniqueDef(def);
+        DefineList defines = entry.createDefineList(techniqueDef);
+        Shader precompiled = techniqueDef.getCachedShader(defines);
+        Assert.assertTrue(renderer.shaders.contains(precompiled));
+
+        // a material selecting the permutation gets the precompiled shader
+        RenderManager renderManager = TestUtil.createRenderManager(renderer);
+        renderer.shaders.clear();
+        preload(assetManager, renderManager, true);
+        Assert.assertSame(precompiled, renderer.shaders.get(0));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.material;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.AssetManager;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.RendererException;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.DefineList;
+import com.jme3.shader.Shader;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Replays shader manifests through a {@link ShaderPrecompiler} with a mock
+ * renderer.
+ */
+public class ShaderPrecompilerTest {
+
+    /**
+     * Records every shader that is set, optionally failing to compile them.
+     */
+    private static class MockRenderer extends NullRenderer {
+
+        final List<Shader> shaders = new ArrayList<>();
+        boolean fail;
+
+        @Override
+        public void setShader(Shader shader) {
+            if (fail) {
+                throw new RendererException("compile error");
+            }
+            shaders.add(shader);
+        }
+    }
+
+    private static final String UNSHADED = "Common/MatDefs/Misc/Unshaded.j3md";
+
+    private AssetManager assetManager;
+    private MockRenderer renderer;
+
+    @Before
+    public void setUp() {
+        assetManager = TestUtil.createAssetManager();
+        renderer = new MockRenderer();
+    }
+
+    private static ShaderManifest.Entry entry(Map<String, Integer> defines) {
+        return new ShaderManifest.Entry(UNSHADED, TechniqueDef.DEFAULT_TECHNIQUE_NAME, 0, defines);
+    }
+
+    private Shader getCachedShader(ShaderManifest.Entry entry) {
+        MaterialDef def = assetManager.loadAsset(new AssetKey<MaterialDef>(UNSHADED));
+        TechniqueDef techniqueDef = entry.findTechniqueDef(def);
+        DefineList defines = entry.createDefineList(techniqueDef);
+        return techniqueDef.getCachedShader(defines);
+    }
+
+    private ShaderPrecompiler replay(ShaderManifest manifest) {
+        ShaderPrecompiler precompiler = new ShaderPrecompiler(manifest);
+        // generate on the calling thread
+        precompiler.start(assetManager, renderer.getCaps(), Runnable::run);
+        while (!precompiler.isDone()) {
+            precompiler.update(renderer);
+        }
+        return precompiler;
+    }
+
+    @Test
+    public void testReplayCompilesEveryPermutation() {
+        ShaderManifest manifest = new ShaderManifest();
+        ShaderManifest.Entry plain = entry(Collections.<String, Integer>emptyMap());
+        ShaderManifest.Entry vertexColor = entry(Collections.singletonMap("HAS_VERTEXCOLOR", 1));
+        manifest.add(plain);
+        manifest.add(vertexColor);
+
+        ShaderPrecompiler precompiler = replay(manifest);
+        Assert.assertEquals(2, precompiler.getCompiledCount());
+        Assert.assertEquals(0, precompiler.getSkippedCount());
+        Assert.assertEquals(2, renderer.shaders.size());
+        Assert.assertTrue(renderer.shaders.contains(getCachedShader(plain)));
+        Assert.assertTrue(renderer.shaders.contains(getCachedShader(vertexColor)));
+    }
+
+    @Test
+    public void testDeferredGeneration() {
+        ShaderManifest manifest = new ShaderManifest();
+        manifest.add(entry(Collections.<String, Integer>emptyMap()));
+
+        List<Runnable> tasks = new ArrayList<>();
+        ShaderPrecompiler precompiler = new ShaderPrecompiler(manifest);
+        precompiler.start(assetManager, renderer.getCaps(), tasks::add);
+        precompiler.update(renderer);
+        Assert.assertFalse(precompiler.isDone());
+        Assert.assertEquals(0, precompiler.getCompiledCount());
+
+        // the definition is loaded first, and queues its permutations
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+        Assert.assertFalse(precompiler.isDone());
+        precompiler.update(renderer);
+        Assert.assertTrue(precompiler.isDone());
+        Assert.assertEquals(1, precompiler.getCompiledCount());
+    }
+
+    @Test
+    public void testStaleAndMissingPermutationsAreSkipped() {
+        ShaderManifest manifest = new ShaderManifest();
+        manifest.add(entry(Collections.singletonMap("NO_SUCH_DEFINE", 1)));
+        manifest.add(new ShaderManifest.Entry(UNSHADED, "NoSuchTechnique", 0,
+                Collections.<String, Integer>emptyMap()));
+        manifest.add(new ShaderManifest.Entry("Common/MatDefs/NoSuch.j3md",
+                TechniqueDef.DEFAULT_TECHNIQUE_NAME, 0, Collections.<String, Integer>emptyMap()));
+
+        ShaderPrecompiler precompiler = replay(manifest);
+        Assert.assertEquals(0, precompiler.getCompiledCount());
+        Assert.assertEquals(3, precompiler.getSkippedCount());
+        Assert.assertTrue(renderer.shaders.isEmpty());
+    }
+
+    @Test
+    public void testFailedCompileIsLeftToTheMaterial() {
+        ShaderManifest manifest = new ShaderManifest();
+        ShaderManifest.Entry plain = entry(Collections.<String, Integer>emptyMap());
+        manifest.add(plain);
+
+        renderer.fail = true;
+        ShaderPrecompiler precompiler = replay(manifest);
+        Assert.assertEquals(0, precompiler.getCompiledCount());
+        Assert.assertEquals(1, precompiler.getSkippedCount());
+        Assert.assertNull(getCachedShader(plain));
+    }
+
+    @Test
+    public void testShadersLoadedByMaterialsAreSkipped() {
+        // a material selects the permutation before it is compiled
+        ShaderManifest manifest = new ShaderManifest();
+        RenderManager renderManager = TestUtil.createRenderManager(renderer);
+        renderManager.setShaderManifest(manifest);
+        Geometry geom = new Geometry("Geom", new Box(1, 1, 1));
+        geom.setMaterial(new Material(assetManager, UNSHADED));
+        renderManager.preloadScene(geom);
+        Shader loaded = getCachedShader(manifest.getEntries().get(0));
+        Assert.assertNotNull(loaded);
+
+        ShaderPrecompiler precompiler = replay(manifest);
+        Assert.assertEquals(0, precompiler.getCompiledCount());
+        Assert.assertEquals(1, precompiler.getSkippedCount());
+        Assert.assertSame(loaded, getCachedShader(manifest.getEntries().get(0)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStartTwice() {
+        ShaderPrecompiler precompiler = new ShaderPrecompiler(new ShaderManifest());
+        precompiler.start(assetManager, renderer.getCaps(), Runnable::run);
+        precompiler.start(assetManager, renderer.getCaps(), Runnable::run);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.material.MatParamOverride;
+import com.jme3.material.Material;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.NullComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.shader.VarType;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link RenderManager#setAutoInstancing(boolean) automatic
+ * instancing} merges runs of identical geometries into instanced draws.
+ */
+public class AutoInstancingTest {
+
+    /**
+     * Records the instance count and first instance translation of every draw.
+     */
+    private static class RecordingRenderer extends NullRenderer {
+
+        final List<Integer> counts = new ArrayList<>();
+        final List<Float> firstX = new ArrayList<>();
+
+        @Override
+        public void renderMesh(Mesh mesh, int lod, int count, VertexBuffer[] instanceData) {
+            counts.add(count);
+            if (instanceData != null) {
+                FloatBuffer fb = (FloatBuffer) instanceData[0].getData();
+                firstX.add(fb.get(12));
+            }
+        }
+    }
+
+    private final Mesh box = new Box(1, 1, 1);
+    private final Mesh sphere = new Sphere(8, 8, 1);
+    private Material material;
+    private RecordingRenderer renderer;
+    private RenderManager renderManager;
+
+    @Before
+    public void setUp() {
+        material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        renderer = new RecordingRenderer();
+        renderManager = TestUtil.createRenderManager(renderer);
+    }
+
+    private GeometryList createList(Mesh... meshes) {
+        GeometryList list = new GeometryList(new NullComparator());
+        for (int i = 0; i < meshes.length; i++) {
+            Geometry geom = new Geometry("Geom" + i, meshes[i]);
+            geom.setMaterial(material);
+            geom.setLocalTranslation(i, 0, 0);
+            geom.updateGeometricState();
+            list.add(geom);
+        }
+        return list;
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        Assert.assertFalse(renderManager.isAutoInstancing());
+        renderManager.renderGeometryList(createList(box, box, box));
+        Assert.assertEquals(3, renderer.counts.size());
+    }
+
+    @Test
+    public void testRunsBecomeInstancedDraws() {
+        renderManager.setAutoInstancing(true);
+        renderManager.renderGeometryList(createList(box, box, box, sphere, box, box));
+
+        Assert.assertEquals(Arrays.asList(3, 1, 2), renderer.counts);
+        Assert.assertEquals(Arrays.asList(0f, 4f), renderer.firstX);
+        // instancing is forced for the draw without touching the material
+        Assert.assertNull(material.getParam("UseInstancing"));
+        for (MatParamOverride override : renderManager.getForcedMatParams()) {
+            Assert.assertNotEquals("UseInstancing", override.getName());
+        }
+    }
+
+    @Test
+    public void testRenderFilterIsAppliedOncePerGeometry() {
+        final List<String> tested = new ArrayList<>();
+        renderManager.setRenderFilter(geom -> {
+            tested.add(geom.getName());
+            return !geom.getName().equals("Geom1");
+        });
+        renderManager.setAutoInstancing(true);
+        renderManager.renderGeometryList(createList(box, box, box, sphere));
+
+        Assert.assertEquals(Arrays.asList("Geom0", "Geom1", "Geom2", "Geom3"), tested);
+        Assert.assertEquals(Arrays.asList(2, 1), renderer.counts);
+    }
+
+    @Test
+    public void testOverridesDisableInstancing() {
+        renderManager.setAutoInstancing(true);
+        GeometryList list = createList(box, box);
+        list.get(1).addMatParamOverride(new MatParamOverride(
+                VarType.Boolean, "VertexColor", true));
+        list.get(1).updateGeometricState();
+        renderManager.renderGeometryList(list);
+
+        Assert.assertEquals(Arrays.asList(1, 1), renderer.counts);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.GeometryComparator;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link ParallelSceneCuller} fills the render queues with the
+ * same geometries, in the same order, as the serial traversal.
+ */
+public class ParallelSceneCullerTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+    private Material material;
+    private RenderManager renderManager;
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        renderManager = TestUtil.createRenderManager();
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private Node createScene() {
+        Random random = new Random(1234);
+        Node root = new Node("Root");
+        for (int g = 0; g < 20; g++) {
+            Node group = new Node("Group" + g);
+            group.setLocalTranslation((random.nextFloat() - 0.5f) * 400f,
+                    (random.nextFloat() - 0.5f) * 400f, (random.nextFloat() - 0.5f) * 400f);
+            int children = g % 3 == 0 ? 300 : 10;
+            for (int i = 0; i < children; i++) {
+                Geometry geom = new Geometry("Geom" + g + "_" + i, mesh);
+                geom.setMaterial(material);
+                geom.setLocalTranslation((random.nextFloat() - 0.5f) * 100f,
+                        (random.nextFloat() - 0.5f) * 100f, (random.nextFloat() - 0.5f) * 100f);
+                if (i % 50 == 7) {
+                    geom.setCullHint(Spatial.CullHint.Always);
+                } else if (i % 50 == 11) {
+                    geom.setCullHint(Spatial.CullHint.Never);
+                } else if (i % 50 == 13) {
+                    geom.setQueueBucket(Bucket.Transparent);
+                }
+                group.attachChild(geom);
+            }
+            root.attachChild(group);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    private ViewPort createViewPort(Vector3f location, Vector3f direction) {
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 4f / 3f, 1f, 500f);
+        cam.setLocation(location);
+        cam.lookAtDirection(direction, Vector3f.UNIT_Y);
+        ViewPort vp = new ViewPort("Test", cam);
+        // keep the queue in insertion order
+        GeometryComparator unsorted = new GeometryComparator() {
+            @Override
+            public void setCamera(Camera cam) {
+            }
+
+            @Override
+            public int compare(Geometry o1, Geometry o2) {
+                return 0;
+            }
+        };
+        for (Bucket bucket : new Bucket[]{Bucket.Opaque, Bucket.Transparent}) {
+            vp.getQueue().setGeometryComparator(bucket, unsorted);
+        }
+        return vp;
+    }
+
+    private List<String> drainQueue(ViewPort vp) {
+        final List<String> names = new ArrayList<>();
+        renderManager.setRenderFilter(geom -> {
+            names.add(geom.getName());
+            return false;
+        });
+        RenderQueue rq = vp.getQueue();
+        for (Bucket bucket : new Bucket[]{Bucket.Opaque, Bucket.Transparent}) {
+            names.add(bucket.name());
+            rq.renderQueue(bucket, renderManager, vp.getCamera(), true);
+        }
+        renderManager.setRenderFilter(null);
+        return names;
+    }
+
+    @Test
+    public void testSingleViewPortMatchesSerial() {
+        Node scene = createScene();
+        ViewPort vp = createViewPort(new Vector3f(0, 0, -250f), Vector3f.UNIT_Z);
+
+        renderManager.renderScene(scene, vp);
+        List<String> serial = drainQueue(vp);
+
+        ParallelSceneCuller culler = new ParallelSceneCuller(pool);
+        culler.setSplitThreshold(8);
+        renderManager.setParallelCuller(culler);
+        for (int i = 0; i < 5; i++) {
+            renderManager.renderScene(scene, vp);
+            Assert.assertEquals(serial, drainQueue(vp));
+        }
+        Assert.assertTrue(serial.size() > 2);
+    }
+
+    @Test
+    public void testMultipleViewPortsMatchSerial() {
+        Node scene = createScene();
+        ViewPort[] viewPorts = {
+            createViewPort(new Vector3f(0, 0, -250f), Vector3f.UNIT_Z),
+            createViewPort(new Vector3f(0, 0, 250f), Vector3f.UNIT_Z.negate()),
+            createViewPort(new Vector3f(0, 250f, 0), Vector3f.UNIT_Y.negate())
+        };
+
+        List<List<String>> serial = new ArrayList<>();
+        for (ViewPort vp : viewPorts) {
+            renderManager.renderScene(scene, vp);
+            serial.add(drainQueue(vp));
+        }
+
+        ParallelSceneCuller culler = new ParallelSceneCuller(pool);
+        culler.setSplitThreshold(8);
+        renderManager.setParallelCuller(culler);
+        renderManager.renderScene(scene, viewPorts);
+        for (int i = 0; i < viewPorts.length; i++) {
+            Assert.assertEquals(serial.get(i), drainQueue(viewPorts[i]));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testStaleSceneThrows() {
+        Node scene = createScene();
+        ViewPort vp = createViewPort(new Vector3f(0, 0, -250f), Vector3f.UNIT_Z);
+        ((Node) scene.getChild(0)).getChild(0).setLocalTranslation(1f, 0f, 0f);
+
+        ParallelSceneCuller culler = new ParallelSceneCuller(pool);
+        culler.setSplitThreshold(8);
+        renderManager.setParallelCuller(culler);
+        renderManager.renderScene(scene, vp);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.material.RenderState;
+import com.jme3.renderer.Statistics;
+import com.jme3.renderer.TextureUnitException;
+import com.jme3.shader.Shader;
+import com.jme3.shader.bufferobject.BufferObject;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link GLRenderer} skips binds and render states that match
+ * the cached context, and reports them in its {@link Statistics}, using a
+ * GL implementation that only counts calls.
+ */
+public class GLRendererStateTest {
+
+    private final Map<String, Integer> calls = new HashMap<>();
+    private GLRenderer renderer;
+    private Statistics statistics;
+    private String[] labels;
+    private int[] data;
+    private String[] cacheLabels;
+    private int[] cacheData;
+
+    @Before
+    public void setUp() {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                calls.merge(method.getName(), 1, Integer::sum);
+                Class<?> type = method.getReturnType();
+                if (type == boolean.class) {
+                    return false;
+                } else if (type == int.class) {
+                    return 0;
+                } else if (type == long.class) {
+                    return 0L;
+                } else if (type == float.class) {
+                    return 0f;
+                } else if (type == String.class) {
+                    return "";
+                }
+                return null;
+            }
+        };
+        Object gl = Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{GL.class, GL2.class, GL3.class, GL4.class, GLExt.class, GLFbo.class},
+                handler);
+        renderer = new GLRenderer((GL) gl, (GLExt) gl, (GLFbo) gl);
+        statistics = renderer.getStatistics();
+        statistics.setEnabled(true);
+        labels = statistics.getLabels();
+        data = new int[labels.length];
+        cacheLabels = statistics.getStateCacheLabels();
+        cacheData = new int[cacheLabels.length];
+    }
+
+    private int calls(String name) {
+        Integer count = calls.get(name);
+        return count == null ? 0 : count;
+    }
+
+    private int stat(String label) {
+        statistics.getData(data);
+        int index = Arrays.asList(labels).indexOf(label);
+        if (index >= 0) {
+            return data[index];
+        }
+        statistics.getStateCacheData(cacheData);
+        index = Arrays.asList(cacheLabels).indexOf(label);
+        Assert.assertTrue(label, index >= 0);
+        return cacheData[index];
+    }
+
+    @Test
+    public void testEqualRenderStatesAreSkipped() {
+        for (int i = 0; i < 10; i++) {
+            RenderState state = new RenderState();
+            state.setDepthWrite(false);
+            state.setBlendMode(RenderState.BlendMode.Alpha);
+            renderer.applyRenderState(state);
+        }
+        Assert.assertEquals(1, stat("Render States (S)"));
+        Assert.assertEquals(9, stat("Render States (R)"));
+        Assert.assertEquals(1, calls("glDepthMask"));
+        Assert.assertEquals(1, calls("glBlendFunc"));
+
+        // clearing the depth buffer turns depth writes back on
+        renderer.clearBuffers(true, true, true);
+        Assert.assertEquals(2, calls("glDepthMask"));
+        RenderState state = new RenderState();
+        state.setDepthWrite(false);
+        state.setBlendMode(RenderState.BlendMode.Alpha);
+        renderer.applyRenderState(state);
+        Assert.assertEquals(3, calls("glDepthMask"));
+        Assert.assertEquals(1, calls("glBlendFunc"));
+        Assert.assertEquals(2, stat("Render States (S)"));
+
+        renderer.invalidateState();
+        renderer.applyRenderState(state);
+        Assert.assertEquals(3, stat("Render States (S)"));
+
+        statistics.clearFrame();
+        Assert.assertEquals(0, stat("Render States (S)"));
+        Assert.assertEquals(0, stat("Render States (R)"));
+    }
+
+    @Test
+    public void testRedundantBindsAreSkipped() throws TextureUnitException {
+        Shader shader = new Shader();
+        shader.setId(5);
+        shader.clearUpdateNeeded();
+
+        Image image = new Image(Image.Format.RGB8, 1, 1, BufferUtils.createByteBuffer(3), ColorSpace.Linear);
+        image.setId(7);
+        image.clearUpdateNeeded();
+        Texture2D texture = new Texture2D(image);
+        texture.setMinFilter(Texture.MinFilter.BilinearNoMipMaps);
+
+        BufferObject bufferObject = new BufferObject();
+        bufferObject.setId(9);
+        bufferObject.clearUpdateNeeded();
+
+        for (int i = 0; i < 4; i++) {
+            renderer.setShader(shader);
+            renderer.setTexture(0, texture);
+            renderer.setTexture(1, texture);
+            renderer.setUniformBufferObject(0, bufferObject);
+        }
+
+        Assert.assertEquals(1, calls("glUseProgram"));
+        Assert.assertEquals(1, stat("Shaders (S)"));
+        Assert.assertEquals(3, stat("Shaders (R)"));
+
+        Assert.assertEquals(2, calls("glBindTexture"));
+        Assert.assertEquals(2, stat("Textures (S)"));
+        Assert.assertTrue(stat("Textures (R)") >= 6);
+        Assert.assertEquals(1, stat("Texture Units (S)"));
+
+        Assert.assertEquals(1, calls("glBindBufferBase"));
+        Assert.assertEquals(1, stat("Buffer Objects (S)"));
+        Assert.assertEquals(3, stat("Buffer Objects (R)"));
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.opengl.ProgramBinaryCache.ProgramBinary;
+import com.jme3.shader.Shader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies the keys and the file format of {@link ProgramBinaryCache}, and
+ * that {@link GLRenderer} loads cached programs instead of compiling them,
+ * using a GL implementation that only records calls.
+ */
+public class ProgramBinaryCacheTest {
+
+    private static final List<String> SOURCES = Arrays.asList("#version 110\nvoid main(){}", "#define A 1\n");
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("programs").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private static byte[] serialize(String key, ProgramBinary binary) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ProgramBinaryCache.write(out, key, binary);
+        return out.toByteArray();
+    }
+
+    private static void assertUnreadable(byte[] bytes, String key) {
+        try (InputStream in = new ByteArrayInputStream(bytes)) {
+            ProgramBinaryCache.read(in, key);
+            Assert.fail("Expected an IOException");
+        } catch (IOException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testKeyDependsOnSourcesAndDriver() {
+        String key = ProgramBinaryCache.createKey(SOURCES, "Vendor", "Renderer", "4.6");
+        Assert.assertEquals(key, ProgramBinaryCache.createKey(SOURCES, "Vendor", "Renderer", "4.6"));
+        Assert.assertEquals(64, key.length());
+        Assert.assertTrue(key.matches("[0-9a-f]+"));
+
+        Assert.assertNotEquals(key, ProgramBinaryCache.createKey(SOURCES, "Vendor", "Renderer", "4.5"));
+        Assert.assertNotEquals(key, ProgramBinaryCache.createKey(SOURCES, "Other", "Renderer", "4.6"));
+        Assert.assertNotEquals(key, ProgramBinaryCache.createKey(
+                Arrays.asList("#version 110\nvoid main(){}", "#define A 2\n"), "Vendor", "Renderer", "4.6"));
+        // moving text from one stage to another is a different program
+        Assert.assertNotEquals(key, ProgramBinaryCache.createKey(
+                Arrays.asList("#version 110\nvoid main(){}#define A 1\n", ""), "Vendor", "Renderer", "4.6"));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ProgramBinary binary = new ProgramBinary(0x1234, new byte[]{1, 2, 3, 4, 5});
+        byte[] bytes = serialize("key", binary);
+
+        ProgramBinary read = ProgramBinaryCache.read(new ByteArrayInputStream(bytes), "key");
+        Assert.assertEquals(0x1234, read.getFormat());
+        Assert.assertArrayEquals(binary.getData(), read.getData());
+    }
+
+    @Test
+    public void testInvalidEntriesAreRejected() throws IOException {
+        byte[] bytes = serialize("key", new ProgramBinary(1, new byte[]{1, 2, 3, 4, 5}));
+
+        assertUnreadable(bytes, "other");
+        assertUnreadable(Arrays.copyOf(bytes, bytes.length - 1), "key");
+        assertUnreadable(Arrays.copyOf(bytes, bytes.length + 1), "key");
+
+        byte[] corrupted = bytes.clone();
+        corrupted[corrupted.length - 1] ^= 1;
+        assertUnreadable(corrupted, "key");
+
+        byte[] version = bytes.clone();
+        version[7] = (byte) (ProgramBinaryCache.FORMAT_VERSION + 1);
+        assertUnreadable(version, "key");
+    }
+
+    @Test
+    public void testStoreAndLoad() throws IOException {
+        ProgramBinaryCache cache = new ProgramBinaryCache(new File(directory, "sub"));
+        Assert.assertNull(cache.load("key"));
+
+        cache.store("key", new ProgramBinary(7, new byte[]{9, 8, 7}));
+        ProgramBinary loaded = cache.load("key");
+        Assert.assertEquals(7, loaded.getFormat());
+        Assert.assertArrayEquals(new byte[]{9, 8, 7}, loaded.getData());
+
+        // a corrupted file is removed
+        File file = new File(new File(directory, "sub"), "key.bin");
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(0);
+        }
+        Assert.assertNull(cache.load("key"));
+        Assert.assertFalse(file.exists());
+        new File(directory, "sub").delete();
+    }
+
+    @Test
+    public void testRendererUsesCachedPrograms() {
+        final Map<String, Integer> calls = new HashMap<>();
+        final boolean[] rejectBinary = {false};
+        final boolean[] binaryRejected = {false};
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                calls.merge(name, 1, Integer::sum);
+                switch (name) {
+                    case "glCreateProgram":
+                    case "glCreateShader":
+                        return calls.get(name);
+                    case "glLinkProgram":
+                        binaryRejected[0] = false;
+                        return null;
+                    case "glProgramBinary":
+                        binaryRejected[0] = rejectBinary[0];
+                        return null;
+                    case "glGetShader":
+                        ((IntBuffer) args[2]).put(0, GL.GL_TRUE);
+                        return null;
+                    case "glGetProgram":
+                        if ((Integer) args[1] == GL4.GL_PROGRAM_BINARY_LENGTH) {
+                            ((IntBuffer) args[2]).put(0, 3);
+                        } else {
+                            ((IntBuffer) args[2]).put(0, binaryRejected[0] ? GL.GL_FALSE : GL.GL_TRUE);
+                        }
+                        return null;
+                    case "glGetProgramBinary":
+                        ((IntBuffer) args[1]).put(0, 3);
+                        ((IntBuffer) args[2]).put(0, 42);
+                        ((ByteBuffer) args[3]).put(0, (byte) 1).put(1, (byte) 2).put(2, (byte) 3);
+                        return null;
+                    default:
+                        return method.getReturnType() == int.class ? 0 : null;
+                }
+            }
+        };
+        Object gl = Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{GL.class, GL2.class, GL3.class, GL4.class, GLExt.class, GLFbo.class},
+                handler);
+        GLRenderer renderer = new GLRenderer((GL) gl, (GLExt) gl, (GLFbo) gl);
+        renderer.getCaps().add(Caps.ProgramBinary);
+        renderer.setProgramBinaryCache(new ProgramBinaryCache(directory));
+
+        renderer.updateShaderData(createShader());
+        Assert.assertEquals(2, (int) calls.get("glCompileShader"));
+        Assert.assertEquals(1, directory.listFiles().length);
+
+        Shader cached = createShader();
+        renderer.updateShaderData(cached);
+        Assert.assertEquals(1, (int) calls.get("glProgramBinary"));
+        Assert.assertEquals(2, (int) calls.get("glCompileShader"));
+        Assert.assertFalse(cached.isUpdateNeeded());
+
+        // a binary rejected by the driver is compiled and stored again
+        rejectBinary[0] = true;
+        renderer.updateShaderData(createShader());
+        Assert.assertEquals(2, (int) calls.get("glProgramBinary"));
+        Assert.assertEquals(4, (int) calls.get("glCompileShader"));
+        Assert.assertEquals(2, (int) calls.get("glGetProgramBinary"));
+        Assert.assertEquals(1, directory.listFiles().length);
+    }
+
+    private static Shader createShader() {
+        Shader shader = new Shader();
+        shader.addSource(Shader.ShaderType.Vertex, "Test.vert", "void main(){}", "", "GLSL110");
+        shader.addSource(Shader.ShaderType.Fragment, "Test.frag", "void main(){}", "", "GLSL110");
+        return shader;
+    }
+}
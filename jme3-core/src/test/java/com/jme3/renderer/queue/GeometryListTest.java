@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.queue;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.material.TechniqueDef;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that sorting a {@link GeometryList} on the keys of a
+ * {@link KeyedGeometryComparator} gives the same order as sorting it with
+ * the comparator itself.
+ */
+public class GeometryListTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+    private final Random random = new Random(1234);
+    private final Camera cam = new Camera(640, 480);
+    private Material[] materials;
+
+    @Before
+    public void setUp() {
+        AssetManager assetManager = TestUtil.createAssetManager();
+        RenderManager renderManager = TestUtil.createRenderManager();
+        String[] techniques = {TechniqueDef.DEFAULT_TECHNIQUE_NAME, "PreShadow", "PostShadow", "Glow"};
+        materials = new Material[techniques.length + 2];
+        for (int i = 0; i < techniques.length; i++) {
+            materials[i] = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
+            materials[i].selectTechnique(techniques[i], renderManager);
+        }
+        materials[techniques.length] = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        materials[techniques.length + 1] = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        materials[techniques.length + 1].setBoolean("VertexColor", true);
+        for (int i = techniques.length; i < materials.length; i++) {
+            materials[i].selectTechnique(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager);
+        }
+
+        cam.setFrustumPerspective(45f, 4f / 3f, 1f, 1000f);
+        cam.setLocation(new Vector3f(3f, -2f, 1f));
+        cam.lookAtDirection(new Vector3f(1f, 0.5f, 2f).normalizeLocal(), Vector3f.UNIT_Y);
+    }
+
+    private Geometry createGeometry(int index) {
+        Geometry geom = new Geometry("Geom" + index, mesh);
+        geom.setMaterial(materials[random.nextInt(materials.length)]);
+        // few distinct positions, so there are ties
+        geom.setLocalTranslation(random.nextInt(20) - 10f, random.nextInt(20) - 10f,
+                random.nextInt(20) - 10f);
+        geom.updateGeometricState();
+        return geom;
+    }
+
+    /**
+     * Sorts the same geometries once through the keys of the comparator, and
+     * once through a wrapper that hides them, then compares the orders.
+     */
+    private void assertKeyedSortMatches(final KeyedGeometryComparator comparator, int size) {
+        GeometryComparator plain = new GeometryComparator() {
+            @Override
+            public void setCamera(Camera cam) {
+                comparator.setCamera(cam);
+            }
+
+            @Override
+            public int compare(Geometry o1, Geometry o2) {
+                return comparator.compare(o1, o2);
+            }
+        };
+        GeometryList keyed = new GeometryList(comparator);
+        GeometryList expected = new GeometryList(plain);
+        keyed.setCamera(cam);
+        expected.setCamera(cam);
+
+        // sort several times so the scratch arrays get reused and grown
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < size; i++) {
+                Geometry geom = createGeometry(i);
+                keyed.add(geom);
+                expected.add(geom);
+            }
+            expected.sort();
+            keyed.sort();
+            Assert.assertEquals(expected.size(), keyed.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertSame("at index " + i, expected.get(i), keyed.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testOpaqueSort() {
+        assertKeyedSortMatches(new OpaqueComparator(), 10);
+        assertKeyedSortMatches(new OpaqueComparator(), 2000);
+    }
+
+    @Test
+    public void testTransparentSort() {
+        assertKeyedSortMatches(new TransparentComparator(), 10);
+        assertKeyedSortMatches(new TransparentComparator(), 2000);
+    }
+
+    @Test
+    public void testGuiSort() {
+        assertKeyedSortMatches(new GuiComparator(), 10);
+        assertKeyedSortMatches(new GuiComparator(), 2000);
+    }
+
+    @Test
+    public void testNullSortKeepsOrder() {
+        assertKeyedSortMatches(new NullComparator(), 2000);
+    }
+
+    @Test
+    public void testOverriddenCompareIsUsed() {
+        // reverses the material order, without touching the keys
+        OpaqueComparator reversed = new OpaqueComparator() {
+            @Override
+            public int compare(Geometry o1, Geometry o2) {
+                return super.compare(o2, o1);
+            }
+        };
+        Assert.assertFalse(reversed.usesSortKey());
+        Assert.assertTrue(new OpaqueComparator().usesSortKey());
+
+        GeometryList list = new GeometryList(reversed);
+        list.setCamera(cam);
+        for (int i = 0; i < 200; i++) {
+            list.add(createGeometry(i));
+        }
+        list.sort();
+        for (int i = 1; i < list.size(); i++) {
+            Assert.assertTrue(reversed.compare(list.get(i - 1), list.get(i)) <= 0);
+        }
+    }
+
+    @Test
+    public void testFloatToSortableInt() {
+        float[] values = {Float.NEGATIVE_INFINITY, -Float.MAX_VALUE, -2f, -1f,
+            -Float.MIN_VALUE, 0f, Float.MIN_VALUE, 1f, 2f, Float.MAX_VALUE, Float.POSITIVE_INFINITY};
+        for (int i = 1; i < values.length; i++) {
+            Assert.assertTrue(GeometryList.floatToSortableInt(values[i - 1])
+                    < GeometryList.floatToSortableInt(values[i]));
+        }
+        Assert.assertEquals(GeometryList.floatToSortableInt(0f), GeometryList.floatToSortableInt(-0f));
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link Node#setIncrementalBoundEnabled(boolean)} keeps the
+ * world bound of a node containing all of its children, and tight once it
+ * had time to shrink.
+ */
+public class IncrementalBoundTest {
+
+    private static final float EPSILON = 1e-3f;
+
+    private final Mesh mesh = new Box(1, 1, 1);
+
+    private Node createWide(int count, Random random) {
+        Node root = new Node("Root");
+        Node wide = new Node("Wide");
+        wide.setIncrementalBoundEnabled(true);
+        for (int i = 0; i < count; i++) {
+            Geometry geom = new Geometry("Geom" + i, mesh);
+            geom.setLocalTranslation(randomPosition(random, 100f));
+            wide.attachChild(geom);
+        }
+        root.attachChild(wide);
+        root.updateGeometricState();
+        return root;
+    }
+
+    private static Vector3f randomPosition(Random random, float range) {
+        return new Vector3f((random.nextFloat() - 0.5f) * range,
+                (random.nextFloat() - 0.5f) * range, (random.nextFloat() - 0.5f) * range);
+    }
+
+    private static BoundingBox tightBound(Node node) {
+        BoundingBox result = null;
+        for (Spatial child : node.getChildren()) {
+            if (result == null) {
+                result = (BoundingBox) child.getWorldBound().clone(null);
+            } else {
+                result.mergeLocal(child.getWorldBound());
+            }
+        }
+        return result;
+    }
+
+    private static void assertContainsChildren(Node node) {
+        BoundingBox bound = (BoundingBox) node.getWorldBound();
+        Vector3f min = bound.getMin(null).subtractLocal(EPSILON, EPSILON, EPSILON);
+        Vector3f max = bound.getMax(null).addLocal(EPSILON, EPSILON, EPSILON);
+        for (Spatial child : node.getChildren()) {
+            BoundingBox childBound = (BoundingBox) child.getWorldBound();
+            Vector3f childMin = childBound.getMin(null);
+            Vector3f childMax = childBound.getMax(null);
+            Assert.assertTrue(child.getName(), childMin.x >= min.x && childMin.y >= min.y
+                    && childMin.z >= min.z);
+            Assert.assertTrue(child.getName(), childMax.x <= max.x && childMax.y <= max.y
+                    && childMax.z <= max.z);
+        }
+    }
+
+    private static void assertTight(Node node) {
+        BoundingVolume bound = node.getWorldBound();
+        BoundingBox expected = tightBound(node);
+        Assert.assertEquals(0f, expected.getCenter().distance(bound.getCenter()), EPSILON);
+        BoundingBox box = (BoundingBox) bound;
+        Assert.assertEquals(expected.getXExtent(), box.getXExtent(), EPSILON);
+        Assert.assertEquals(expected.getYExtent(), box.getYExtent(), EPSILON);
+        Assert.assertEquals(expected.getZExtent(), box.getZExtent(), EPSILON);
+    }
+
+    @Test
+    public void testInitialBoundIsTight() {
+        Node root = createWide(500, new Random(1));
+        Node wide = (Node) root.getChild("Wide");
+        Assert.assertTrue(wide.isIncrementalBoundEnabled());
+        assertTight(wide);
+        // the root bound is made of the wide one
+        Assert.assertEquals(0f, root.getWorldBound().getCenter()
+                .distance(wide.getWorldBound().getCenter()), EPSILON);
+    }
+
+    @Test
+    public void testMoversStayContained() {
+        Random random = new Random(2);
+        Node root = createWide(1000, random);
+        Node wide = (Node) root.getChild("Wide");
+        int merges = wide.boundTracker.getFullMergeCount();
+
+        for (int frame = 0; frame < 100; frame++) {
+            for (int i = 0; i < 5; i++) {
+                Spatial child = wide.getChild(random.nextInt(wide.getQuantity()));
+                child.move(randomPosition(random, 10f));
+            }
+            root.updateGeometricState();
+            assertContainsChildren(wide);
+        }
+        // a few movers never cost a full merge every frame
+        Assert.assertTrue(wide.boundTracker.getFullMergeCount() - merges < 100 / ChildBoundTracker.SHRINK_DELAY + 2);
+
+        // once the movers stop, the bound shrinks to the tight bound
+        for (int frame = 0; frame <= ChildBoundTracker.SHRINK_DELAY; frame++) {
+            wide.getChild(0).move(0, 0, 0);
+            root.updateGeometricState();
+        }
+        assertTight(wide);
+    }
+
+    @Test
+    public void testGrowsWithoutFullMerge() {
+        Node root = createWide(1000, new Random(3));
+        Node wide = (Node) root.getChild("Wide");
+        int merges = wide.boundTracker.getFullMergeCount();
+
+        Spatial far = wide.getChild(10);
+        for (int frame = 1; frame <= 20; frame++) {
+            far.setLocalTranslation(200f + frame, 0, 0);
+            root.updateGeometricState();
+            assertTight(wide);
+        }
+        Assert.assertEquals(merges, wide.boundTracker.getFullMergeCount());
+    }
+
+    @Test
+    public void testShrinksAfterDetach() {
+        Node root = createWide(200, new Random(4));
+        Node wide = (Node) root.getChild("Wide");
+        Geometry far = new Geometry("Far", mesh);
+        far.setLocalTranslation(1000f, 0, 0);
+        wide.attachChild(far);
+        root.updateGeometricState();
+        assertTight(wide);
+
+        wide.detachChild(far);
+        root.updateGeometricState();
+        // still conservative
+        assertContainsChildren(wide);
+        Assert.assertTrue(((BoundingBox) wide.getWorldBound()).getMax(null).x > 999f);
+
+        for (int frame = 0; frame < ChildBoundTracker.SHRINK_DELAY; frame++) {
+            wide.getChild(0).move(0, 0, 0);
+            root.updateGeometricState();
+        }
+        assertTight(wide);
+    }
+
+    @Test
+    public void testNodeMove() {
+        Node root = createWide(300, new Random(5));
+        Node wide = (Node) root.getChild("Wide");
+        wide.move(50f, -20f, 5f);
+        root.updateGeometricState();
+        assertTight(wide);
+
+        root.rotate(0.3f, 0.2f, 0f);
+        root.updateGeometricState();
+        assertTight(wide);
+    }
+
+    @Test
+    public void testDisable() {
+        Node root = createWide(100, new Random(6));
+        Node wide = (Node) root.getChild("Wide");
+        Geometry far = (Geometry) wide.getChild(0);
+        far.setLocalTranslation(500f, 0, 0);
+        root.updateGeometricState();
+        far.setLocalTranslation(0, 0, 0);
+        root.updateGeometricState();
+
+        wide.setIncrementalBoundEnabled(false);
+        Assert.assertFalse(wide.isIncrementalBoundEnabled());
+        root.updateGeometricState();
+        assertTight(wide);
+    }
+
+    @Test
+    public void testClone() {
+        Node root = createWide(50, new Random(7));
+        Node copy = root.clone(false);
+        Node wide = (Node) copy.getChild("Wide");
+        Assert.assertTrue(wide.isIncrementalBoundEnabled());
+        Assert.assertNotSame(((Node) root.getChild("Wide")).boundTracker, wide.boundTracker);
+
+        wide.getChild(0).setLocalTranslation(300f, 0, 0);
+        copy.updateGeometricState();
+        assertTight(wide);
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.light.PointLight;
+import com.jme3.material.MatParamOverride;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.VarType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link ParallelSceneUpdater} leaves the scene graph in
+ * exactly the same state as the serial update, and that thread-safe
+ * controls respect their declared dependencies.
+ */
+public class ParallelSceneUpdaterTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private Node createScene(List<Spatial> all) {
+        Random random = new Random(99);
+        Node root = new Node("Root");
+        root.addLight(new PointLight(new Vector3f(1, 2, 3), ColorRGBA.White, 50f));
+        all.add(root);
+        for (int g = 0; g < 12; g++) {
+            // one group is a subclass, which must be updated as a whole
+            Node group = g == 4 ? new Node("Group" + g) { } : new Node("Group" + g);
+            group.setLocalTranslation(random.nextFloat() * 100f, 0f, random.nextFloat() * 100f);
+            if (g % 3 == 0) {
+                group.addLight(new PointLight(new Vector3f(g, 0, 0), ColorRGBA.Red, 10f));
+                group.addMatParamOverride(new MatParamOverride(VarType.Float, "Shininess", (float) g));
+            }
+            all.add(group);
+            int count = g % 4 == 0 ? 200 : 15;
+            for (int i = 0; i < count; i++) {
+                Geometry geom = new Geometry("Geom" + g + "_" + i, mesh);
+                geom.setLocalTranslation(random.nextFloat() * 10f, random.nextFloat() * 10f,
+                        random.nextFloat() * 10f);
+                geom.setLocalRotation(new Quaternion().fromAngles(random.nextFloat(), random.nextFloat(), 0f));
+                all.add(geom);
+                group.attachChild(geom);
+            }
+            root.attachChild(group);
+        }
+        return root;
+    }
+
+    private void assertSameState(List<Spatial> expected, List<Spatial> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Spatial e = expected.get(i);
+            Spatial a = actual.get(i);
+            String name = e.getName();
+            Assert.assertEquals(name, 0, a.refreshFlags);
+            Assert.assertEquals(name, e.getWorldTransform(), a.getWorldTransform());
+            Assert.assertEquals(name, e.getWorldBound(), a.getWorldBound());
+            Assert.assertEquals(name, e.getWorldLightList().size(), a.getWorldLightList().size());
+            for (int l = 0; l < e.getWorldLightList().size(); l++) {
+                Assert.assertEquals(name, ((PointLight) e.getWorldLightList().get(l)).getPosition(),
+                        ((PointLight) a.getWorldLightList().get(l)).getPosition());
+            }
+            Assert.assertEquals(name, e.getWorldMatParamOverrides(), a.getWorldMatParamOverrides());
+            if (e instanceof Geometry) {
+                Assert.assertEquals(name, ((Geometry) e).getWorldMatrix(), ((Geometry) a).getWorldMatrix());
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesSerial() {
+        List<Spatial> serial = new ArrayList<>();
+        List<Spatial> parallel = new ArrayList<>();
+        Node serialRoot = createScene(serial);
+        Node parallelRoot = createScene(parallel);
+
+        ParallelSceneUpdater updater = new ParallelSceneUpdater(pool);
+        updater.setSplitThreshold(16);
+
+        serialRoot.updateGeometricState();
+        updater.updateGeometricState(parallelRoot);
+        assertSameState(serial, parallel);
+
+        Random random = new Random(5);
+        for (int frame = 0; frame < 10; frame++) {
+            for (int m = 0; m < 50; m++) {
+                int index = random.nextInt(serial.size());
+                float dy = random.nextFloat();
+                serial.get(index).move(0f, dy, 0f);
+                parallel.get(index).move(0f, dy, 0f);
+            }
+            if (frame == 5) {
+                serialRoot.getChild("Group8").setLocalScale(2f);
+                parallelRoot.getChild("Group8").setLocalScale(2f);
+            }
+            serialRoot.updateGeometricState();
+            updater.updateGeometricState(parallelRoot);
+            assertSameState(serial, parallel);
+        }
+    }
+
+    @Test
+    public void testSubtreeBelowParent() {
+        List<Spatial> serial = new ArrayList<>();
+        List<Spatial> parallel = new ArrayList<>();
+        Node serialParent = new Node("Parent");
+        Node parallelParent = new Node("Parent");
+        serialParent.attachChild(createScene(serial));
+        parallelParent.attachChild(createScene(parallel));
+
+        ParallelSceneUpdater updater = new ParallelSceneUpdater(pool);
+        updater.setSplitThreshold(2);
+        serialParent.updateGeometricState();
+        updater.updateGeometricState(parallelParent);
+        assertSameState(serial, parallel);
+
+        // a leaf on its own is updated serially
+        Geometry leaf = (Geometry) parallel.get(parallel.size() - 1);
+        leaf.move(1f, 0f, 0f);
+        leaf.removeFromParent();
+        updater.updateGeometricState(leaf);
+        Assert.assertEquals(leaf.getLocalTranslation(), leaf.getWorldTranslation());
+    }
+
+    /**
+     * Counts its updates and records the count of the control it reads.
+     */
+    private static class CountingControl extends AbstractControl {
+
+        private final boolean threadSafe;
+        private final List<String> log;
+        private CountingControl source;
+        private volatile int count;
+        private int seen = -1;
+
+        CountingControl(boolean threadSafe, List<String> log) {
+            this.threadSafe = threadSafe;
+            this.log = log;
+        }
+
+        void readFrom(CountingControl source) {
+            this.source = source;
+            addUpdateDependency(source);
+        }
+
+        @Override
+        public boolean isThreadSafe() {
+            return threadSafe;
+        }
+
+        @Override
+        protected void controlUpdate(float tpf) {
+            if (source != null) {
+                seen = source.count;
+            }
+            if (log != null) {
+                log.add(spatial.getName());
+            }
+            spatial.move(0f, tpf, 0f);
+            count++;
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+        }
+    }
+
+    @Test
+    public void testSerialControlsKeepOrder() {
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        Node root = new Node("Root");
+        for (int i = 0; i < 20; i++) {
+            Geometry geom = new Geometry("Geom" + i, mesh);
+            geom.addControl(new CountingControl(false, log));
+            root.attachChild(geom);
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add("Geom" + i);
+        }
+
+        ParallelSceneUpdater updater = new ParallelSceneUpdater(pool);
+        updater.updateLogicalState(root, 0.5f);
+        Assert.assertEquals(expected, log);
+    }
+
+    @Test
+    public void testDependenciesAreUpdatedFirst() {
+        Node root = new Node("Root");
+        List<CountingControl> sources = new ArrayList<>();
+        List<CountingControl> readers = new ArrayList<>();
+        List<CountingControl> spatialReaders = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // readers come first in the scene, so only the graph orders them
+            Geometry reader = new Geometry("Reader" + i, mesh);
+            Geometry spatialReader = new Geometry("SpatialReader" + i, mesh);
+            Geometry source = new Geometry("Source" + i, mesh);
+            root.attachChild(reader);
+            root.attachChild(spatialReader);
+            root.attachChild(source);
+
+            CountingControl sourceControl = new CountingControl(true, null);
+            CountingControl secondControl = new CountingControl(true, null);
+            source.addControl(sourceControl);
+            source.addControl(secondControl);
+            CountingControl readerControl = new CountingControl(true, null);
+            readerControl.readFrom(sourceControl);
+            reader.addControl(readerControl);
+
+            CountingControl spatialControl = new CountingControl(true, null);
+            spatialControl.source = secondControl;
+            spatialControl.addUpdateDependency(source);
+            spatialReader.addControl(spatialControl);
+
+            sources.add(sourceControl);
+            readers.add(readerControl);
+            spatialReaders.add(spatialControl);
+        }
+
+        ParallelSceneUpdater updater = new ParallelSceneUpdater(pool);
+        updater.setControlBatchSize(2);
+        for (int frame = 1; frame <= 10; frame++) {
+            updater.updateLogicalState(root, 0.1f);
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals(frame, sources.get(i).count);
+                Assert.assertEquals(frame, readers.get(i).seen);
+                Assert.assertEquals(frame, spatialReaders.get(i).seen);
+            }
+            updater.updateGeometricState(root);
+        }
+        // two controls moved the source each frame
+        Assert.assertEquals(2f, root.getChild("Source0").getWorldTranslation().y, 1e-4f);
+    }
+
+    @Test
+    public void testParentAndChildControlsMove() {
+        Node root = new Node("Root");
+        List<CountingControl> children = new ArrayList<>();
+        for (int p = 0; p < 40; p++) {
+            Node parent = new Node("Parent" + p);
+            CountingControl parentControl = new CountingControl(true, null);
+            parent.addControl(parentControl);
+            for (int i = 0; i < 25; i++) {
+                Geometry child = new Geometry("Child" + p + "_" + i, mesh);
+                CountingControl childControl = new CountingControl(true, null);
+                // no declared dependency, the parent's controls run first anyway
+                childControl.source = parentControl;
+                child.addControl(childControl);
+                parent.attachChild(child);
+                children.add(childControl);
+            }
+            root.attachChild(parent);
+        }
+
+        ParallelSceneUpdater updater = new ParallelSceneUpdater(pool);
+        updater.setControlBatchSize(1);
+        for (int frame = 1; frame <= 50; frame++) {
+            updater.updateLogicalState(root, 0.1f);
+            for (CountingControl child : children) {
+                Assert.assertEquals(frame, child.seen);
+            }
+            updater.updateGeometricState(root);
+            for (Spatial parent : root.getChildren()) {
+                Assert.assertEquals(0, parent.refreshFlags);
+                Assert.assertEquals(frame * 0.1f, parent.getWorldTranslation().y, 1e-3f);
+                for (Spatial child : ((Node) parent).getChildren()) {
+                    Assert.assertEquals(0, child.refreshFlags);
+                    Assert.assertEquals(frame * 0.2f, child.getWorldTranslation().y, 1e-3f);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCyclicDependencies() {
+        Node root = new Node("Root");
+        Geometry a = new Geometry("A", mesh);
+        Geometry b = new Geometry("B", mesh);
+        CountingControl ca = new CountingControl(true, null);
+        CountingControl cb = new CountingControl(true, null);
+        a.addControl(ca);
+        b.addControl(cb);
+        ca.readFrom(cb);
+        cb.readFrom(ca);
+        root.attachChild(a);
+        root.attachChild(b);
+
+        new ParallelSceneUpdater(pool).updateLogicalState(root, 0.1f);
+    }
+
+    @Test
+    public void testClonedDependencies() {
+        Node root = new Node("Root");
+        Geometry reader = new Geometry("Reader", mesh);
+        Geometry source = new Geometry("Source", mesh);
+        root.attachChild(reader);
+        root.attachChild(source);
+        CountingControl sourceControl = new CountingControl(true, null);
+        source.addControl(sourceControl);
+        CountingControl readerControl = new CountingControl(true, null);
+        readerControl.addUpdateDependency(sourceControl);
+        readerControl.addUpdateDependency(source);
+        reader.addControl(readerControl);
+
+        Node copy = (Node) root.clone();
+        Spatial sourceCopy = copy.getChild("Source");
+        List<Object> dependencies = copy.getChild("Reader").getControl(CountingControl.class)
+                .getUpdateDependencies();
+        Assert.assertEquals(2, dependencies.size());
+        Assert.assertSame(sourceCopy.getControl(CountingControl.class), dependencies.get(0));
+        Assert.assertSame(sourceCopy, dependencies.get(1));
+        Assert.assertNotSame(readerControl.getUpdateDependencies(), dependencies);
+        Assert.assertSame(readerControl.getUpdateDependencies(), readerControl.getUpdateDependencies());
+    }
+}
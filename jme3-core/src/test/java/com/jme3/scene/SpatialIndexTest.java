@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that culling through a {@link SpatialIndex} queues the same
+ * geometries as visiting every child.
+ */
+public class SpatialIndexTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+    private final Random random = new Random(4321);
+    private Material material;
+    private RenderManager renderManager;
+
+    @Before
+    public void setUp() {
+        material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        renderManager = TestUtil.createRenderManager();
+    }
+
+    private Geometry createGeometry(String name) {
+        Geometry geom = new Geometry(name, mesh);
+        geom.setMaterial(material);
+        geom.setLocalTranslation(randomLocation());
+        return geom;
+    }
+
+    private Vector3f randomLocation() {
+        return new Vector3f((random.nextFloat() - 0.5f) * 400f,
+                (random.nextFloat() - 0.5f) * 400f, (random.nextFloat() - 0.5f) * 400f);
+    }
+
+    private Node createScene() {
+        Node root = new Node("Root");
+        for (int i = 0; i < 500; i++) {
+            Geometry geom = createGeometry("Geom" + i);
+            if (i % 50 == 7) {
+                geom.setCullHint(Spatial.CullHint.Always);
+            } else if (i % 50 == 11) {
+                geom.setCullHint(Spatial.CullHint.Never);
+            } else if (i % 50 == 13) {
+                geom.setQueueBucket(Bucket.Transparent);
+            }
+            root.attachChild(geom);
+        }
+        Node group = new Node("Group");
+        for (int i = 0; i < 20; i++) {
+            group.attachChild(createGeometry("Nested" + i));
+        }
+        root.attachChild(group);
+        return root;
+    }
+
+    private ViewPort createViewPort() {
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 4f / 3f, 1f, 300f);
+        cam.setLocation(new Vector3f(0, 0, -250f));
+        cam.lookAtDirection(Vector3f.UNIT_Z, Vector3f.UNIT_Y);
+        return new ViewPort("Test", cam);
+    }
+
+    /**
+     * Renders the scene and returns the sorted names of the queued geometries.
+     */
+    private List<String> render(Node scene, ViewPort vp) {
+        scene.updateGeometricState();
+        renderManager.renderScene(scene, vp);
+        final List<String> names = new ArrayList<>();
+        renderManager.setRenderFilter(geom -> {
+            names.add(geom.getName());
+            return false;
+        });
+        RenderQueue rq = vp.getQueue();
+        for (Bucket bucket : new Bucket[]{Bucket.Opaque, Bucket.Transparent}) {
+            rq.renderQueue(bucket, renderManager, vp.getCamera(), true);
+        }
+        renderManager.setRenderFilter(null);
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Renders the scene with and without its child index and compares the
+     * results.
+     */
+    private void assertSameAsUnindexed(Node scene, ViewPort vp) {
+        List<String> indexed = render(scene, vp);
+        scene.setChildIndexEnabled(false);
+        List<String> unindexed = render(scene, vp);
+        scene.setChildIndexEnabled(true);
+        Assert.assertEquals(unindexed, indexed);
+        Assert.assertFalse(unindexed.isEmpty());
+    }
+
+    @Test
+    public void testIndexedCullingMatchesUnindexed() {
+        Node scene = createScene();
+        ViewPort vp = createViewPort();
+        scene.setChildIndexEnabled(true);
+        Assert.assertEquals(scene.getQuantity(), scene.getSpatialIndex().size());
+        assertSameAsUnindexed(scene, vp);
+
+        for (int frame = 0; frame < 10; frame++) {
+            // move a few children, nested ones included
+            for (int i = 0; i < 25; i++) {
+                Spatial child = scene.getChild(random.nextInt(scene.getQuantity()));
+                child.setLocalTranslation(randomLocation());
+            }
+            Node group = (Node) scene.getChild("Group");
+            group.getChild(frame).setLocalTranslation(randomLocation());
+            // change hints and buckets
+            scene.getChild(frame * 3).setCullHint(Spatial.CullHint.Never);
+            scene.getChild(frame * 3 + 1).setCullHint(Spatial.CullHint.Always);
+            scene.getChild(frame * 3 + 2).setQueueBucket(Bucket.Gui);
+            // detach and attach
+            scene.detachChildAt(random.nextInt(scene.getQuantity()));
+            scene.attachChild(createGeometry("Added" + frame));
+
+            assertSameAsUnindexed(scene, vp);
+            Assert.assertEquals(scene.getQuantity(), scene.getSpatialIndex().size());
+        }
+    }
+
+    @Test
+    public void testCloneRebuildsIndex() {
+        Node scene = createScene();
+        scene.setChildIndexEnabled(true);
+        scene.updateGeometricState();
+
+        Node clone = scene.clone(false);
+        Assert.assertNotNull(clone.getSpatialIndex());
+        Assert.assertNotSame(scene.getSpatialIndex(), clone.getSpatialIndex());
+        Assert.assertEquals(clone.getQuantity(), clone.getSpatialIndex().size());
+
+        // moving the clone's children must not affect the original
+        for (Spatial child : clone.getChildren()) {
+            child.move(100f, 0, 0);
+        }
+        ViewPort vp = createViewPort();
+        assertSameAsUnindexed(clone, vp);
+        assertSameAsUnindexed(scene, vp);
+    }
+
+    @Test
+    public void testDisableReleasesChildren() {
+        Node scene = createScene();
+        scene.setChildIndexEnabled(true);
+        Assert.assertTrue(scene.isChildIndexEnabled());
+        scene.setChildIndexEnabled(false);
+        Assert.assertFalse(scene.isChildIndexEnabled());
+        Assert.assertNull(scene.getSpatialIndex());
+
+        // a detached child can join another indexed node
+        Spatial child = scene.getChild(0);
+        Node other = new Node("Other");
+        other.setChildIndexEnabled(true);
+        other.attachChild(child);
+        Assert.assertEquals(1, other.getSpatialIndex().size());
+        Assert.assertEquals(scene.getQuantity(), 499 + 1);
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.shape.Box;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that a {@link TransformStore} produces the same world transforms
+ * and bounds as the regular scene graph update.
+ */
+public class TransformStoreTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+
+    private Node createScene(long seed, List<Spatial> all) {
+        Random random = new Random(seed);
+        Node root = new Node("Root");
+        all.add(root);
+        for (int g = 0; g < 10; g++) {
+            Node group = new Node("Group" + g);
+            randomize(group, random);
+            all.add(group);
+            for (int h = 0; h < 3; h++) {
+                Node sub = new Node("Sub" + g + "_" + h);
+                randomize(sub, random);
+                all.add(sub);
+                for (int i = 0; i < 10; i++) {
+                    Geometry geom = new Geometry("Geom" + g + "_" + h + "_" + i, mesh);
+                    randomize(geom, random);
+                    all.add(geom);
+                    sub.attachChild(geom);
+                }
+                group.attachChild(sub);
+            }
+            root.attachChild(group);
+        }
+        return root;
+    }
+
+    private void randomize(Spatial spatial, Random random) {
+        spatial.setLocalTranslation(random.nextFloat() * 20f - 10f,
+                random.nextFloat() * 20f - 10f, random.nextFloat() * 20f - 10f);
+        spatial.setLocalRotation(new Quaternion().fromAngles(random.nextFloat() * FastMath.TWO_PI,
+                random.nextFloat() * FastMath.TWO_PI, random.nextFloat() * FastMath.TWO_PI));
+        spatial.setLocalScale(0.5f + random.nextFloat(), 0.5f + random.nextFloat(),
+                0.5f + random.nextFloat());
+    }
+
+    private void assertSameState(List<Spatial> expected, List<Spatial> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Spatial e = expected.get(i);
+            Spatial a = actual.get(i);
+            Assert.assertEquals(e.getName(), a.getName());
+            Transform et = e.getWorldTransform();
+            Transform at = a.getWorldTransform();
+            Assert.assertEquals(e.getName(), et.getTranslation(), at.getTranslation());
+            Assert.assertEquals(e.getName(), et.getRotation(), at.getRotation());
+            Assert.assertEquals(e.getName(), et.getScale(), at.getScale());
+            Assert.assertEquals(e.getName(), e.getWorldBound(), a.getWorldBound());
+            if (e instanceof Geometry) {
+                Assert.assertEquals(e.getName(), ((Geometry) e).getWorldMatrix(),
+                        ((Geometry) a).getWorldMatrix());
+            }
+        }
+    }
+
+    private void move(List<Spatial> all, int index, float dx) {
+        all.get(index).move(dx, 0f, 0f);
+        all.get(index).rotate(0f, dx * 0.1f, 0f);
+    }
+
+    @Test
+    public void testMatchesRegularUpdate() {
+        List<Spatial> classic = new ArrayList<>();
+        List<Spatial> stored = new ArrayList<>();
+        Node classicRoot = createScene(42, classic);
+        Node storedRoot = createScene(42, stored);
+        storedRoot.setTransformStoreEnabled(true);
+
+        classicRoot.updateGeometricState();
+        storedRoot.updateGeometricState();
+        assertSameState(classic, stored);
+        TransformStore store = storedRoot.getTransformStore();
+        Assert.assertEquals(stored.size(), store.size());
+        for (int i = 0; i < store.size(); i++) {
+            Spatial s = store.getSpatial(i);
+            Assert.assertEquals(i, store.indexOf(s));
+            if (s.getParent() != null && s != storedRoot) {
+                Assert.assertTrue(store.indexOf(s.getParent()) < i);
+            }
+        }
+
+        // move a few spatials at various depths, including the root
+        for (int frame = 0; frame < 5; frame++) {
+            for (int index : new int[]{0, 1 + frame, 7 + frame * 13, 100 + frame}) {
+                move(classic, index, frame + 1f);
+                move(stored, index, frame + 1f);
+            }
+            classicRoot.updateGeometricState();
+            storedRoot.updateGeometricState();
+            assertSameState(classic, stored);
+        }
+    }
+
+    @Test
+    public void testStructuralChanges() {
+        List<Spatial> classic = new ArrayList<>();
+        List<Spatial> stored = new ArrayList<>();
+        Node classicRoot = createScene(7, classic);
+        Node storedRoot = createScene(7, stored);
+        storedRoot.setTransformStoreEnabled(true);
+        classicRoot.updateGeometricState();
+        storedRoot.updateGeometricState();
+
+        // reparent a subtree and detach another one
+        Node classicGroup = (Node) classicRoot.getChild("Group3");
+        Node storedGroup = (Node) storedRoot.getChild("Group3");
+        ((Node) classicRoot.getChild("Group5")).attachChild(classicGroup.getChild("Sub3_1"));
+        ((Node) storedRoot.getChild("Group5")).attachChild(storedGroup.getChild("Sub3_1"));
+        Spatial detached = storedRoot.getChild("Group8");
+        classicRoot.detachChild(classicRoot.getChild("Group8"));
+        storedRoot.detachChild(detached);
+        Assert.assertFalse(storedRoot.getTransformStore().isValid());
+
+        classicRoot.updateGeometricState();
+        storedRoot.updateGeometricState();
+        TransformStore store = storedRoot.getTransformStore();
+        Assert.assertTrue(store.isValid());
+        Assert.assertEquals(-1, store.indexOf(detached));
+
+        List<Spatial> classicAfter = new ArrayList<>();
+        List<Spatial> storedAfter = new ArrayList<>();
+        classicRoot.depthFirstTraversal(classicAfter::add);
+        storedRoot.depthFirstTraversal(storedAfter::add);
+        assertSameState(classicAfter, storedAfter);
+        Assert.assertEquals(storedAfter.size(), store.size());
+
+        // the detached subtree keeps working on its own
+        detached.move(1f, 2f, 3f);
+        detached.updateGeometricState();
+        Assert.assertEquals(detached.getLocalTranslation(), detached.getWorldTranslation());
+    }
+
+    @Test
+    public void testStoreBelowParent() {
+        List<Spatial> classic = new ArrayList<>();
+        List<Spatial> stored = new ArrayList<>();
+        Node classicParent = new Node("Parent");
+        Node storedParent = new Node("Parent");
+        classicParent.attachChild(createScene(3, classic));
+        storedParent.attachChild(createScene(3, stored));
+        ((Node) stored.get(0)).setTransformStoreEnabled(true);
+
+        for (int frame = 0; frame < 3; frame++) {
+            classicParent.move(1f, 0f, 0f);
+            storedParent.move(1f, 0f, 0f);
+            classicParent.updateGeometricState();
+            storedParent.updateGeometricState();
+            assertSameState(classic, stored);
+        }
+
+        try {
+            storedParent.setTransformStoreEnabled(true);
+            storedParent.updateGeometricState();
+            Assert.fail("Nested stores should be rejected");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testDisableAndClone() {
+        List<Spatial> stored = new ArrayList<>();
+        Node root = createScene(11, stored);
+        root.setTransformStoreEnabled(true);
+        root.updateGeometricState();
+
+        Node copy = root.clone(false);
+        Assert.assertTrue(copy.isTransformStoreEnabled());
+        Assert.assertNotSame(root.getTransformStore(), copy.getTransformStore());
+        copy.move(5f, 0f, 0f);
+        copy.updateGeometricState();
+        Assert.assertEquals(stored.size(), copy.getTransformStore().size());
+        Assert.assertEquals(stored.size(), root.getTransformStore().size());
+        Assert.assertEquals(new Vector3f(5f, 0f, 0f).addLocal(root.getWorldTranslation()),
+                copy.getWorldTranslation());
+
+        root.setTransformStoreEnabled(false);
+        Assert.assertNull(root.getTransformStore());
+        stored.get(5).move(1f, 0f, 0f);
+        root.updateGeometricState();
+        Assert.assertEquals(-1, stored.get(5).storeIndex);
+    }
+}
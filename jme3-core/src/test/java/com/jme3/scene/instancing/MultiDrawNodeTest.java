@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.instancing;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Caps;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.system.TestUtil;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies how {@link MultiDrawNode} groups and packs its geometries.
+ */
+public class MultiDrawNodeTest {
+
+    private final Mesh box = new Box(1, 1, 1);
+    private final Mesh sphere = new Sphere(8, 8, 1);
+    private Material material;
+    private RenderManager renderManager;
+
+    @Before
+    public void setUp() {
+        material = new Material(TestUtil.createAssetManager(), "Common/MatDefs/Misc/Unshaded.j3md");
+        material.setBoolean("UseInstancing", true);
+        renderManager = TestUtil.createRenderManager();
+    }
+
+    private MultiDrawNode createNode() {
+        MultiDrawNode node = new MultiDrawNode("MultiDraw");
+        Node group = new Node("Group");
+        for (int i = 0; i < 5; i++) {
+            Geometry geom = new Geometry("Geom" + i, i % 2 == 0 ? box : sphere);
+            geom.setMaterial(material);
+            geom.setLocalTranslation(i * 3f, 0, 0);
+            (i < 3 ? node : group).attachChild(geom);
+        }
+        node.attachChild(group);
+        return node;
+    }
+
+    private void render(Node scene) {
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 4f / 3f, 1f, 500f);
+        cam.setLocation(new Vector3f(0, 0, 50f));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        scene.updateLogicalState(0f);
+        scene.updateGeometricState();
+        renderManager.renderScene(scene, new ViewPort("Test", cam));
+    }
+
+    @Test
+    public void testBatchPacksDistinctMeshesOnce() {
+        MultiDrawNode node = createNode();
+        node.batch();
+
+        Assert.assertEquals(1, node.getBatches().size());
+        MultiDrawGeometry batch = node.getBatches().get(0);
+        Assert.assertEquals(5, batch.getDrawCount());
+        Assert.assertEquals(box.getVertexCount() + sphere.getVertexCount(),
+                batch.getMesh().getVertexCount());
+
+        int boxIndices = box.getBuffer(Type.Index).getNumElements() * 3;
+        ByteBuffer commands = batch.getCommandBuffer().getData();
+        for (int i = 0; i < batch.getDrawCount(); i++) {
+            Geometry member = batch.getGeometries()[i];
+            Assert.assertTrue(member.isGrouped());
+            boolean isBox = member.getMesh() == box;
+            int base = i * MultiDrawGeometry.COMMAND_SIZE;
+            int count = member.getMesh().getBuffer(Type.Index).getNumElements() * 3;
+            Assert.assertEquals(count, commands.getInt(base));
+            Assert.assertEquals(1, commands.getInt(base + 4));
+            Assert.assertEquals(isBox ? 0 : boxIndices, commands.getInt(base + 8));
+            Assert.assertEquals(isBox ? 0 : box.getVertexCount(), commands.getInt(base + 12));
+            Assert.assertEquals(i, commands.getInt(base + 16));
+        }
+    }
+
+    @Test
+    public void testIneligibleGeometriesRenderNormally() {
+        MultiDrawNode node = createNode();
+        Geometry transparent = new Geometry("Transparent", box);
+        transparent.setMaterial(material);
+        transparent.setQueueBucket(Bucket.Transparent);
+        node.attachChild(transparent);
+        Material plain = material.clone();
+        plain.setBoolean("UseInstancing", false);
+        Geometry notInstanced = new Geometry("NotInstanced", box);
+        notInstanced.setMaterial(plain);
+        node.attachChild(notInstanced);
+
+        node.batch();
+
+        Assert.assertEquals(5, node.getBatches().get(0).getDrawCount());
+        Assert.assertFalse(transparent.isGrouped());
+        Assert.assertFalse(notInstanced.isGrouped());
+    }
+
+    @Test
+    public void testTransformsUploadedWhenRendered() {
+        MultiDrawNode node = createNode();
+        node.batch();
+        render(node);
+
+        MultiDrawGeometry batch = node.getBatches().get(0);
+        Assert.assertFalse(batch.isTransformsDirty());
+        FloatBuffer data = (FloatBuffer) batch.getAllInstanceData()[0].getData();
+        for (int i = 0; i < batch.getDrawCount(); i++) {
+            Geometry member = batch.getGeometries()[i];
+            Assert.assertEquals(member.getWorldTranslation().x, data.get(i * 16 + 12), 0f);
+        }
+
+        batch.getGeometries()[1].move(0, 7f, 0);
+        render(node);
+        Assert.assertEquals(7f, data.get(16 + 13), 0f);
+        Assert.assertTrue(batch.getWorldBound().intersects(batch.getGeometries()[1].getWorldBound()));
+    }
+
+    @Test
+    public void testDetachedMemberTriggersRebatch() {
+        MultiDrawNode node = createNode();
+        node.batch();
+        Geometry removed = node.getBatches().get(0).getGeometries()[0];
+        removed.removeFromParent();
+
+        Assert.assertFalse(removed.isGrouped());
+        node.updateLogicalState(0f);
+        Assert.assertEquals(1, node.getBatches().size());
+        Assert.assertEquals(4, node.getBatches().get(0).getDrawCount());
+    }
+
+    @Test
+    public void testFallbackWithoutMultiDrawIndirect() {
+        renderManager.getRenderer().getCaps().remove(Caps.MultiDrawIndirect);
+        MultiDrawNode node = createNode();
+        node.batch();
+        MultiDrawGeometry batch = node.getBatches().get(0);
+        render(node);
+
+        Assert.assertFalse(node.isMultiDrawEnabled());
+        for (Geometry member : batch.getGeometries()) {
+            Assert.assertFalse(member.isGrouped());
+        }
+        node.updateLogicalState(0f);
+        Assert.assertTrue(node.getBatches().isEmpty());
+        Assert.assertNull(batch.getParent());
+    }
+
+    @Test
+    public void testCloneRebatches() {
+        MultiDrawNode node = createNode();
+        node.batch();
+        MultiDrawNode clone = node.clone();
+
+        Assert.assertTrue(clone.getBatches().isEmpty());
+        clone.updateLogicalState(0f);
+        Assert.assertEquals(1, clone.getBatches().size());
+        Assert.assertEquals(5, clone.getBatches().get(0).getDrawCount());
+        Assert.assertEquals(1, node.getBatches().size());
+    }
+}
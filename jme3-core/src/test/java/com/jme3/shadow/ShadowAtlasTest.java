@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shadow;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.renderer.Camera;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the tile packing of {@link ShadowAtlas}.
+ */
+public class ShadowAtlasTest {
+
+    private static void assertNoOverlap(List<ShadowAtlas.Tile> tiles, int atlasSize) {
+        for (int i = 0; i < tiles.size(); i++) {
+            ShadowAtlas.Tile a = tiles.get(i);
+            if (!a.isAllocated()) {
+                continue;
+            }
+            Assert.assertTrue(a.getX() >= 0 && a.getX() + a.getSize() <= atlasSize);
+            Assert.assertTrue(a.getY() >= 0 && a.getY() + a.getSize() <= atlasSize);
+            for (int j = i + 1; j < tiles.size(); j++) {
+                ShadowAtlas.Tile b = tiles.get(j);
+                if (!b.isAllocated()) {
+                    continue;
+                }
+                boolean separate = a.getX() + a.getSize() <= b.getX() || b.getX() + b.getSize() <= a.getX()
+                        || a.getY() + a.getSize() <= b.getY() || b.getY() + b.getSize() <= a.getY();
+                Assert.assertTrue("tiles " + i + " and " + j + " overlap", separate);
+            }
+        }
+    }
+
+    @Test
+    public void testTilesDoNotOverlap() {
+        ShadowAtlas atlas = new ShadowAtlas(1024, 64);
+        int[] sizes = {512, 256, 256, 128, 100, 64, 64, 256, 30, 128};
+        List<ShadowAtlas.Tile> tiles = new ArrayList<>();
+        for (int i = 0; i < sizes.length; i++) {
+            ShadowAtlas.Tile[] owned = atlas.request("Light" + i, i == 3 ? 6 : 1, sizes[i], 0.5f);
+            for (ShadowAtlas.Tile tile : owned) {
+                tiles.add(tile);
+            }
+        }
+        assertNoOverlap(tiles, 1024);
+        for (ShadowAtlas.Tile tile : tiles) {
+            Assert.assertTrue(tile.isAllocated());
+        }
+        // rounded up to a power of two, at least the minimum tile size
+        Assert.assertEquals(128, atlas.request("Light4", 1, 100, 0.5f)[0].getSize());
+        Assert.assertEquals(64, atlas.request("Light8", 1, 30, 0.5f)[0].getSize());
+        Assert.assertEquals(0, atlas.getRepackCount());
+    }
+
+    @Test
+    public void testFullAtlasShrinksLeastImportant() {
+        ShadowAtlas atlas = new ShadowAtlas(512, 64);
+        ShadowAtlas.Tile important = atlas.request("Important", 1, 512, 1f)[0];
+        ShadowAtlas.Tile minor = atlas.request("Minor", 1, 256, 0.2f)[0];
+        Assert.assertEquals(1, atlas.getRepackCount());
+        Assert.assertEquals(64, minor.getSize());
+        Assert.assertEquals(256, important.getSize());
+
+        List<ShadowAtlas.Tile> tiles = new ArrayList<>();
+        tiles.add(important);
+        tiles.add(minor);
+        assertNoOverlap(tiles, 512);
+
+        // the same request does not pack again
+        atlas.request("Minor", 1, 256, 0.2f);
+        Assert.assertEquals(1, atlas.getRepackCount());
+    }
+
+    @Test
+    public void testFullAtlasDropsLeastImportant() {
+        ShadowAtlas atlas = new ShadowAtlas(128, 64);
+        List<ShadowAtlas.Tile> tiles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tiles.add(atlas.request("Light" + i, 1, 64, (i + 1) / 10f)[0]);
+        }
+        Assert.assertFalse(tiles.get(0).isAllocated());
+        for (int i = 1; i < 5; i++) {
+            Assert.assertTrue(tiles.get(i).isAllocated());
+        }
+        assertNoOverlap(tiles, 128);
+    }
+
+    @Test
+    public void testReleaseMergesFreeSpace() {
+        ShadowAtlas atlas = new ShadowAtlas(256, 64);
+        atlas.request("Point", 4, 128, 1f);
+        atlas.release("Point");
+        ShadowAtlas.Tile tile = atlas.request("Sun", 1, 256, 1f)[0];
+        Assert.assertEquals(256, tile.getSize());
+        Assert.assertEquals(0, atlas.getRepackCount());
+    }
+
+    @Test
+    public void testReleaseLetsDroppedTilesBack() {
+        ShadowAtlas atlas = new ShadowAtlas(128, 64);
+        List<ShadowAtlas.Tile> tiles = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tiles.add(atlas.request("Light" + i, 1, 64, (i + 1) / 10f)[0]);
+        }
+        Assert.assertFalse(tiles.get(0).isAllocated());
+        int repacks = atlas.getRepackCount();
+
+        // nothing was freed, the dropped light does not pack again
+        atlas.request("Light0", 1, 64, 0.1f);
+        Assert.assertFalse(tiles.get(0).isAllocated());
+        Assert.assertEquals(repacks, atlas.getRepackCount());
+
+        atlas.release("Light4");
+        tiles.remove(4);
+        Assert.assertTrue(atlas.request("Light0", 1, 64, 0.1f)[0].isAllocated());
+        assertNoOverlap(tiles, 128);
+        for (ShadowAtlas.Tile tile : tiles) {
+            Assert.assertTrue(tile.isAllocated());
+        }
+    }
+
+    @Test
+    public void testReleaseLetsShrunkTilesGrow() {
+        ShadowAtlas atlas = new ShadowAtlas(512, 64);
+        ShadowAtlas.Tile important = atlas.request("Important", 1, 512, 1f)[0];
+        ShadowAtlas.Tile minor = atlas.request("Minor", 1, 256, 0.2f)[0];
+        Assert.assertEquals(256, important.getSize());
+        Assert.assertEquals(64, minor.getSize());
+
+        atlas.release("Minor");
+        Assert.assertEquals(512, atlas.request("Important", 1, 512, 1f)[0].getSize());
+
+        // a smaller request also frees space for the shrunk tiles
+        minor = atlas.request("Minor", 1, 256, 0.2f)[0];
+        Assert.assertEquals(256, important.getSize());
+        Assert.assertEquals(64, minor.getSize());
+        atlas.request("Important", 1, 128, 1f);
+        Assert.assertEquals(256, atlas.request("Minor", 1, 256, 0.2f)[0].getSize());
+        Assert.assertEquals(128, important.getSize());
+    }
+
+    @Test
+    public void testTileMatrixMapsToTile() {
+        ShadowAtlas atlas = new ShadowAtlas(1024, 64);
+        atlas.setPadding(2);
+        atlas.request("Other", 1, 512, 1f);
+        ShadowAtlas.Tile tile = atlas.request("Light", 1, 256, 1f)[0];
+        Matrix4f m = atlas.getTileMatrix(tile, new Matrix4f());
+
+        Vector3f store = new Vector3f();
+        m.multProj(new Vector3f(-1f, -1f, 0.5f), store);
+        Assert.assertEquals((tile.getX() + 2) * 2f / 1024f - 1f, store.x, 1e-5f);
+        Assert.assertEquals((tile.getY() + 2) * 2f / 1024f - 1f, store.y, 1e-5f);
+        Assert.assertEquals(0.5f, store.z, 0f);
+        m.multProj(new Vector3f(1f, 1f, 0f), store);
+        Assert.assertEquals((tile.getX() + 254) * 2f / 1024f - 1f, store.x, 1e-5f);
+        Assert.assertEquals((tile.getY() + 254) * 2f / 1024f - 1f, store.y, 1e-5f);
+    }
+
+    /**
+     * Mirrors the edge falloff of getSpotLightShadows() in Shadows.glsllib,
+     * from a point in the clip space of the shadow map.
+     */
+    private static float spotFallOff(Matrix4f tileMatrix, Vector4f tileRect, float x, float y) {
+        Vector3f atlasCoord = new Vector3f();
+        tileMatrix.multProj(new Vector3f(x, y, 0f), atlasCoord);
+        float u = ((atlasCoord.x * 0.5f + 0.5f) - tileRect.x) / tileRect.z;
+        float v = ((atlasCoord.y * 0.5f + 0.5f) - tileRect.y) / tileRect.w;
+        if (u < 0f || v < 0f || u > 1f || v > 1f) {
+            // outside the tile, no shadow
+            return 1f;
+        }
+        float length = new Vector3f(u * 2f - 1f, v * 2f - 1f, 0f).length();
+        return Math.max(0f, Math.min(1f, (length - 0.9f) / 0.1f));
+    }
+
+    @Test
+    public void testSpotFallOffIsInTile() {
+        ShadowAtlas atlas = new ShadowAtlas(4096, 64);
+        ShadowAtlas.Tile tile = atlas.request("Light", 1, 512, 1f)[0];
+        Assert.assertEquals(0, tile.getX());
+        Assert.assertEquals(0, tile.getY());
+        Matrix4f m = atlas.getTileMatrix(tile, new Matrix4f());
+        Vector4f rect = atlas.getTileRect(tile, new Vector4f());
+        Assert.assertEquals(2f / 4096f, rect.x, 1e-6f);
+        Assert.assertEquals(2f / 4096f, rect.y, 1e-6f);
+        Assert.assertEquals(508f / 4096f, rect.z, 1e-6f);
+
+        // the center of the tile is shadowed, though far from the atlas center
+        Assert.assertEquals(0f, spotFallOff(m, rect, 0f, 0f), 1e-4f);
+        Assert.assertEquals(0f, spotFallOff(m, rect, 0.85f, 0f), 1e-4f);
+        // the falloff reaches the edge of the tile
+        Assert.assertEquals(0.5f, spotFallOff(m, rect, 0.95f, 0f), 1e-3f);
+        Assert.assertEquals(1f, spotFallOff(m, rect, 1f, 0f), 1e-4f);
+        Assert.assertEquals(1f, spotFallOff(m, rect, 0f, -1f), 1e-4f);
+        // beyond the tile, the neighboring tiles are not sampled
+        Assert.assertEquals(1f, spotFallOff(m, rect, 0.5f, 1.5f), 0f);
+    }
+
+    @Test
+    public void testImportance() {
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(90f, 4f / 3f, 1f, 1000f);
+        cam.setLocation(Vector3f.ZERO);
+        Assert.assertEquals(1f, ShadowAtlas.computeImportance(cam, new Vector3f(0, 0, 5f), 10f), 0f);
+        float near = ShadowAtlas.computeImportance(cam, new Vector3f(0, 0, 50f), 10f);
+        float far = ShadowAtlas.computeImportance(cam, new Vector3f(0, 0, 200f), 10f);
+        Assert.assertEquals(0.2f, near, 1e-4f);
+        Assert.assertTrue(far < near);
+    }
+}
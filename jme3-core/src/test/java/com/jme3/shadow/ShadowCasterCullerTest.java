@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shadow;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.ViewPort;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.RenderQueue.ShadowMode;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that the single pass shadow caster culling gives the same casters
+ * as culling each shadow camera or split separately.
+ */
+public class ShadowCasterCullerTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+
+    private Node createScene() {
+        Random random = new Random(4321);
+        Node root = new Node("Root");
+        for (int g = 0; g < 12; g++) {
+            Node group = new Node("Group" + g);
+            group.setLocalTranslation((random.nextFloat() - 0.5f) * 120f,
+                    (random.nextFloat() - 0.5f) * 20f, (random.nextFloat() - 0.5f) * 120f);
+            int children = g % 3 == 0 ? 150 : 8;
+            for (int i = 0; i < children; i++) {
+                Geometry geom = new Geometry("Geom" + g + "_" + i, mesh);
+                geom.setLocalTranslation((random.nextFloat() - 0.5f) * 40f,
+                        (random.nextFloat() - 0.5f) * 10f, (random.nextFloat() - 0.5f) * 40f);
+                if (i % 10 == 3) {
+                    geom.setShadowMode(ShadowMode.Receive);
+                } else if (i % 10 == 5) {
+                    geom.setShadowMode(ShadowMode.Off);
+                } else if (i % 10 == 7) {
+                    geom.setShadowMode(ShadowMode.CastAndReceive);
+                    geom.setCullHint(Spatial.CullHint.Always);
+                } else {
+                    geom.setShadowMode(ShadowMode.CastAndReceive);
+                }
+                group.attachChild(geom);
+            }
+            root.attachChild(group);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    private static Camera[] createCubeCameras(Vector3f position, float radius) {
+        Vector3f[][] axes = {
+            {Vector3f.UNIT_X.negate(), Vector3f.UNIT_Z.negate(), Vector3f.UNIT_Y.negate()},
+            {Vector3f.UNIT_X.negate(), Vector3f.UNIT_Z, Vector3f.UNIT_Y},
+            {Vector3f.UNIT_X.negate(), Vector3f.UNIT_Y, Vector3f.UNIT_Z.negate()},
+            {Vector3f.UNIT_X, Vector3f.UNIT_Y, Vector3f.UNIT_Z},
+            {Vector3f.UNIT_Z, Vector3f.UNIT_Y, Vector3f.UNIT_X.negate()},
+            {Vector3f.UNIT_Z.negate(), Vector3f.UNIT_Y, Vector3f.UNIT_X}
+        };
+        Camera[] cams = new Camera[axes.length];
+        for (int i = 0; i < axes.length; i++) {
+            cams[i] = new Camera(256, 256);
+            cams[i].setAxes(axes[i][0], axes[i][1], axes[i][2]);
+            cams[i].setFrustumPerspective(90f, 1f, 0.1f, radius);
+            cams[i].setLocation(position);
+            cams[i].update();
+        }
+        return cams;
+    }
+
+    private static GeometryList[] createLists(int count) {
+        GeometryList[] lists = new GeometryList[count];
+        for (int i = 0; i < count; i++) {
+            lists[i] = new GeometryList(new OpaqueComparator());
+        }
+        return lists;
+    }
+
+    private static List<String> names(GeometryList list) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            names.add(list.get(i).getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testCubeFacesMatchPerCameraCulling() {
+        Node scene = createScene();
+        Camera[] cams = createCubeCameras(new Vector3f(5f, 0f, -3f), 45f);
+
+        List<List<String>> expected = new ArrayList<>();
+        int total = 0;
+        for (Camera cam : cams) {
+            GeometryList list = new GeometryList(new OpaqueComparator());
+            ShadowUtil.getGeometriesInCamFrustum(scene, cam, ShadowMode.Cast, list);
+            expected.add(names(list));
+            total += list.size();
+        }
+        Assert.assertTrue(total > 0);
+
+        // the serial culler reuses its scratch state between passes
+        ShadowCasterCuller serialCuller = new ShadowCasterCuller();
+        serialCuller.cull(scene, cams, ShadowMode.Cast, createLists(cams.length));
+        GeometryList[] serial = createLists(cams.length);
+        serialCuller.cull(scene, cams, ShadowMode.Cast, serial);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ShadowCasterCuller parallel = new ShadowCasterCuller(pool);
+            parallel.setSplitThreshold(4);
+            GeometryList[] forked = createLists(cams.length);
+            parallel.cull(scene, cams, ShadowMode.Cast, forked);
+            for (int i = 0; i < cams.length; i++) {
+                Assert.assertEquals(expected.get(i), names(serial[i]));
+                Assert.assertEquals(expected.get(i), names(forked[i]));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSplitsMatchPerSplitUpdate() {
+        Node scene = createScene();
+        Camera viewCam = new Camera(640, 480);
+        viewCam.setFrustumPerspective(60f, 4f / 3f, 1f, 150f);
+        viewCam.setLocation(new Vector3f(0f, 20f, -80f));
+        viewCam.lookAtDirection(new Vector3f(0f, -0.2f, 1f).normalizeLocal(), Vector3f.UNIT_Y);
+        viewCam.update();
+        ViewPort vp = new ViewPort("Test", viewCam);
+        vp.attachScene(scene);
+
+        GeometryList receivers = new GeometryList(new OpaqueComparator());
+        ShadowUtil.getGeometriesInCamFrustum(scene, viewCam, ShadowMode.Receive, receivers);
+
+        Camera shadowCam = new Camera(1024, 1024);
+        shadowCam.setParallelProjection(true);
+        shadowCam.setFrustumFar(150f);
+        shadowCam.getRotation().lookAt(new Vector3f(-1f, -2f, -1f).normalizeLocal(), shadowCam.getUp());
+        shadowCam.update();
+        shadowCam.updateViewProjection();
+
+        float[] splits = {1f, 12f, 35f, 80f, 150f};
+        int count = splits.length - 1;
+        Vector3f[][] points = new Vector3f[count][8];
+        Matrix4f[] expectedProjections = new Matrix4f[count];
+        List<List<String>> expectedOccluders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < 8; j++) {
+                points[i][j] = new Vector3f();
+            }
+            ShadowUtil.updateFrustumPoints(viewCam, splits[i], splits[i + 1], 1f, points[i]);
+            GeometryList occluders = new GeometryList(new OpaqueComparator());
+            ShadowUtil.updateShadowCamera(vp, receivers, shadowCam, points[i], occluders, 1024f);
+            expectedProjections[i] = shadowCam.getProjectionMatrix().clone();
+            expectedOccluders.add(names(occluders));
+        }
+
+        GeometryList[] occluders = createLists(count);
+        Matrix4f[] projections = new Matrix4f[count];
+        for (int i = 0; i < count; i++) {
+            projections[i] = new Matrix4f();
+        }
+        ShadowUtil.updateShadowCameras(vp, receivers, shadowCam, points, occluders, projections, 1024f);
+
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(expectedOccluders.get(i), names(occluders[i]));
+            total += occluders[i].size();
+            float[] expected = new float[16];
+            float[] actual = new float[16];
+            expectedProjections[i].get(expected);
+            projections[i].get(actual);
+            for (int j = 0; j < 16; j++) {
+                Assert.assertEquals(expected[j], actual[j], 1e-4f * Math.max(1f, Math.abs(expected[j])));
+            }
+        }
+        Assert.assertTrue(total > 0);
+    }
+}
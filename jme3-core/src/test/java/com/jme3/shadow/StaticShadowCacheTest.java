@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.shadow;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.RenderQueue.ShadowMode;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.UserData;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.NullRenderer;
+import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.Image.Format;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the cache validity rules of {@link StaticShadowCache} and the
+ * static caster helpers of {@link ShadowUtil}.
+ */
+public class StaticShadowCacheTest {
+
+    private static Camera createShadowCam(float x, float halfSize) {
+        Camera cam = new Camera(512, 512);
+        cam.setParallelProjection(true);
+        cam.setFrustum(1f, 100f, -halfSize, halfSize, halfSize, -halfSize);
+        cam.setLocation(new Vector3f(x, 50f, 0f));
+        cam.lookAtDirection(new Vector3f(0f, -1f, 0f), Vector3f.UNIT_Z);
+        cam.update();
+        return cam;
+    }
+
+    private static StaticShadowCache createCache(float margin) {
+        return new StaticShadowCache(1, 16, new Texture2D(16, 16, Format.RGBA8), margin);
+    }
+
+    private static Matrix4f enlargedViewProjection(StaticShadowCache cache, Camera cam) {
+        return cache.enlarge(cam.getProjectionMatrix()).mult(cam.getViewMatrix());
+    }
+
+    @Test
+    public void testSmallMovesReuseCache() {
+        StaticShadowCache cache = createCache(0.25f);
+        Camera cam = createShadowCam(0f, 10f);
+        Assert.assertFalse(cache.isValid(0, cam.getViewProjectionMatrix()));
+
+        cache.store(0, enlargedViewProjection(cache, cam));
+        Assert.assertTrue(cache.isValid(0, cam.getViewProjectionMatrix()));
+        Assert.assertTrue(cache.isValid(0, createShadowCam(2f, 10f).getViewProjectionMatrix()));
+        // moved out of the enlarged volume
+        Assert.assertFalse(cache.isValid(0, createShadowCam(5f, 10f).getViewProjectionMatrix()));
+        // bigger than the cached volume
+        Assert.assertFalse(cache.isValid(0, createShadowCam(0f, 13f).getViewProjectionMatrix()));
+        // small enough that the cached map would waste too much resolution
+        Assert.assertFalse(cache.isValid(0, createShadowCam(0f, 6f).getViewProjectionMatrix()));
+
+        cache.invalidate();
+        Assert.assertFalse(cache.isValid(0, cam.getViewProjectionMatrix()));
+    }
+
+    @Test
+    public void testProjectionReproducesCachedViewProjection() {
+        StaticShadowCache cache = createCache(0.25f);
+        Camera cam = createShadowCam(0f, 10f);
+        Matrix4f cached = enlargedViewProjection(cache, cam);
+        cache.store(0, cached);
+
+        Camera moved = createShadowCam(1f, 10f);
+        moved.setRotation(new Quaternion().fromAngles(0.01f, 0.02f, 0f).multLocal(moved.getRotation()));
+        moved.update();
+        Matrix4f viewProjection = cache.getProjection(0, moved.getViewMatrix()).mult(moved.getViewMatrix());
+        Vector3f point = new Vector3f(3f, 2f, -4f);
+        Vector3f expected = new Vector3f();
+        Vector3f actual = new Vector3f();
+        float we = cached.multProj(point, expected);
+        float wa = viewProjection.multProj(point, actual);
+        Assert.assertEquals(we, wa, 1e-4f);
+        Assert.assertTrue(expected.distance(actual) < 1e-3f);
+    }
+
+    @Test
+    public void testStaticCastersInVolume() {
+        Box mesh = new Box(1f, 1f, 1f);
+        Node root = new Node("Root");
+        Node statics = new Node("Statics");
+        statics.setUserData(UserData.JME_STATICSHADOW, true);
+        root.attachChild(statics);
+
+        Geometry inside = new Geometry("Inside", mesh);
+        inside.setShadowMode(ShadowMode.CastAndReceive);
+        statics.attachChild(inside);
+        Geometry outside = new Geometry("Outside", mesh);
+        outside.setShadowMode(ShadowMode.Cast);
+        outside.setLocalTranslation(40f, 0f, 0f);
+        statics.attachChild(outside);
+        Geometry receiver = new Geometry("Receiver", mesh);
+        receiver.setShadowMode(ShadowMode.Receive);
+        statics.attachChild(receiver);
+        Geometry optOut = new Geometry("OptOut", mesh);
+        optOut.setShadowMode(ShadowMode.Cast);
+        optOut.setUserData(UserData.JME_STATICSHADOW, false);
+        statics.attachChild(optOut);
+        Geometry dynamic = new Geometry("Dynamic", mesh);
+        dynamic.setShadowMode(ShadowMode.Cast);
+        root.attachChild(dynamic);
+        root.updateGeometricState();
+
+        Assert.assertTrue(ShadowUtil.isStaticShadowCaster(inside));
+        Assert.assertFalse(ShadowUtil.isStaticShadowCaster(optOut));
+        Assert.assertFalse(ShadowUtil.isStaticShadowCaster(dynamic));
+
+        GeometryList casters = new GeometryList(new OpaqueComparator());
+        ShadowUtil.getStaticCastersInVolume(root, createShadowCam(0f, 10f).getViewProjectionMatrix(), casters);
+        Assert.assertEquals(1, casters.size());
+        Assert.assertSame(inside, casters.get(0));
+    }
+
+    @Test
+    public void testDisposeDeletesGpuResources() {
+        final List<Object> deleted = new ArrayList<>();
+        NullRenderer renderer = new NullRenderer() {
+            @Override
+            public void deleteFrameBuffer(FrameBuffer fb) {
+                deleted.add(fb);
+            }
+
+            @Override
+            public void deleteImage(Image image) {
+                deleted.add(image);
+            }
+        };
+        StaticShadowCache cache = new StaticShadowCache(2, 16, new Texture2D(16, 16, Format.RGBA8), 0.25f);
+        Camera cam = createShadowCam(0f, 10f);
+        cache.store(0, enlargedViewProjection(cache, cam));
+        Assert.assertTrue(cache.isValid(0, cam.getViewProjectionMatrix()));
+
+        cache.dispose(renderer);
+        Assert.assertEquals(4, deleted.size());
+        Assert.assertTrue(deleted.contains(cache.frameBuffers[1]));
+        Assert.assertTrue(deleted.contains(cache.depthMaps[1].getImage()));
+        // the cached depth is gone
+        Assert.assertFalse(cache.isValid(0, cam.getViewProjectionMatrix()));
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks {@link IntObjectMap}, {@link LongObjectMap}, {@link ObjectIntMap}
+ * and {@link IntSet} against the java.util collections, with enough removals
+ * to exercise the shifting of probe sequences.
+ */
+public class PrimitiveCollectionsTest {
+
+    private static final int OPERATIONS = 20000;
+
+    @Test
+    public void testIntObjectMap() {
+        Random random = new Random(1);
+        IntObjectMap<String> map = new IntObjectMap<>(0);
+        Map<Integer, String> expected = new HashMap<>();
+        for (int n = 0; n < OPERATIONS; n++) {
+            // a small key range forces collisions, removals and re-insertions
+            int key = random.nextInt(512) * (random.nextBoolean() ? 1024 : -1);
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                String value = "v" + n;
+                Assert.assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            Assert.assertEquals(expected.size(), map.size());
+        }
+        for (int i = -600; i < 600; i++) {
+            Assert.assertEquals(expected.get(i), map.get(i));
+            Assert.assertEquals(expected.get(i * 1024), map.get(i * 1024));
+        }
+        Set<String> values = new HashSet<>();
+        map.forEachValue(values::add);
+        Assert.assertEquals(new HashSet<>(expected.values()), values);
+
+        IntObjectMap<String> clone = map.clone();
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertNull(map.get(0));
+        Assert.assertEquals(expected.size(), clone.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIntObjectMapRejectsNullValues() {
+        new IntObjectMap<String>().put(1, null);
+    }
+
+    @Test
+    public void testLongObjectMap() {
+        Random random = new Random(2);
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int n = 0; n < OPERATIONS; n++) {
+            // keys that only differ in their upper half
+            long key = (long) random.nextInt(512) << 32 | random.nextInt(2);
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Assert.assertEquals(expected.put(key, (long) n), map.put(key, (long) n));
+            }
+            Assert.assertEquals(expected.size(), map.size());
+        }
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        Set<Long> keys = new HashSet<>();
+        map.forEachKey(keys::add);
+        Assert.assertEquals(expected.keySet(), keys);
+    }
+
+    @Test
+    public void testObjectIntMap() {
+        Random random = new Random(3);
+        ObjectIntMap<String> map = new ObjectIntMap<>();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int n = 0; n < OPERATIONS; n++) {
+            String key = "k" + random.nextInt(700);
+            if (random.nextInt(3) == 0) {
+                Integer old = expected.remove(key);
+                Assert.assertEquals(old == null ? -1 : old, map.remove(key, -1));
+            } else {
+                Integer old = expected.put(key, n);
+                Assert.assertEquals(old == null ? -1 : old, map.put(key, n, -1));
+            }
+            Assert.assertEquals(expected.size(), map.size());
+        }
+        for (int i = 0; i < 700; i++) {
+            String key = "k" + i;
+            Integer value = expected.get(key);
+            Assert.assertEquals(value == null ? -1 : value, map.get(key, -1));
+            Assert.assertEquals(value != null, map.containsKey(key));
+        }
+        Assert.assertEquals(-1, map.get(null, -1));
+    }
+
+    @Test
+    public void testObjectIntMapIdentity() {
+        ObjectIntMap<String> identity = new ObjectIntMap<>(4, true);
+        ObjectIntMap<String> equality = new ObjectIntMap<>(4);
+        String key = "key";
+        String copy = new String(key);
+        identity.put(key, 1);
+        equality.put(key, 1);
+        Assert.assertEquals(1, identity.get(key, 0));
+        Assert.assertEquals(0, identity.get(copy, 0));
+        Assert.assertEquals(1, equality.get(copy, 0));
+
+        List<String> keys = new ArrayList<>();
+        identity.put(copy, 2);
+        identity.forEachKey(keys::add);
+        Assert.assertEquals(2, keys.size());
+    }
+
+    @Test
+    public void testIntSet() {
+        Random random = new Random(4);
+        IntSet set = new IntSet(1);
+        Set<Integer> expected = new HashSet<>();
+        for (int n = 0; n < OPERATIONS; n++) {
+            int value = random.nextInt(1000) - 500;
+            if (random.nextInt(3) == 0) {
+                Assert.assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                Assert.assertEquals(expected.add(value), set.add(value));
+            }
+            Assert.assertEquals(expected.size(), set.size());
+        }
+        for (int value = -600; value < 600; value++) {
+            Assert.assertEquals(expected.contains(value), set.contains(value));
+        }
+        Set<Integer> actual = new HashSet<>();
+        for (int value : set.toArray()) {
+            actual.add(value);
+        }
+        Assert.assertEquals(expected, actual);
+
+        set.clear();
+        Assert.assertFalse(set.contains(0));
+        Assert.assertEquals(0, set.toArray().length);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the snapshot semantics of {@link SafeArrayList}, in particular the
+ * recycling of arrays handed out through {@link SafeArrayList#acquireArray()}.
+ */
+public class SafeArrayListTest {
+
+    private static SafeArrayList<String> create(String... elements) {
+        return new SafeArrayList<>(String.class, Arrays.asList(elements));
+    }
+
+    @Test
+    public void testListOperations() {
+        SafeArrayList<String> list = create("a", "b", "c");
+        list.add(1, "x");
+        Assert.assertEquals(Arrays.asList("a", "x", "b", "c"), list);
+        Assert.assertEquals("x", list.remove(1));
+        Assert.assertTrue(list.remove("c"));
+        Assert.assertFalse(list.remove("c"));
+        list.addAll(0, Arrays.asList("y", "z"));
+        Assert.assertEquals("[y, z, a, b]", list.toString());
+        Assert.assertTrue(list.retainAll(Arrays.asList("z", "b")));
+        Assert.assertEquals(Arrays.asList("z", "b"), list);
+        Assert.assertEquals("z", list.set(0, "q"));
+        Assert.assertEquals(1, list.lastIndexOf("b"));
+        Assert.assertEquals(Arrays.asList("q", "b").hashCode(), list.hashCode());
+        Assert.assertArrayEquals(new String[]{"q", "b"}, list.toArray(new String[0]));
+        list.clear();
+        Assert.assertTrue(list.isEmpty());
+        Assert.assertEquals(0, list.getArray().length);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutOfRange() {
+        SafeArrayList<String> list = new SafeArrayList<>(String.class, 10);
+        list.add("a");
+        list.get(1);
+    }
+
+    @Test
+    public void testGetArrayIsNeverReused() {
+        SafeArrayList<String> list = create("a", "b");
+        String[] first = list.getArray();
+        Assert.assertSame(first, list.getArray());
+
+        list.add("c");
+        list.remove("c");
+        String[] second = list.getArray();
+        Assert.assertNotSame(first, second);
+        Assert.assertArrayEquals(new String[]{"a", "b"}, first);
+    }
+
+    @Test
+    public void testReleasedArrayIsRecycled() {
+        SafeArrayList<String> list = create("a", "b");
+        String[] first = list.acquireArray();
+        list.releaseArray(first);
+
+        list.add("c");
+        list.remove("c");
+        String[] second = list.acquireArray();
+        Assert.assertSame(first, second);
+        Assert.assertArrayEquals(new String[]{"a", "b"}, second);
+        list.releaseArray(second);
+    }
+
+    @Test
+    public void testAcquiredArraySurvivesModification() {
+        SafeArrayList<String> list = create("a", "b");
+        String[] outer = list.acquireArray();
+        list.set(0, "x");
+        String[] inner = list.acquireArray();
+        list.remove("b");
+        list.add("b");
+
+        Assert.assertArrayEquals(new String[]{"a", "b"}, outer);
+        Assert.assertArrayEquals(new String[]{"x", "b"}, inner);
+
+        String[] current = list.acquireArray();
+        Assert.assertNotSame(outer, current);
+        Assert.assertNotSame(inner, current);
+        list.releaseArray(current);
+
+        list.releaseArray(inner);
+        list.releaseArray(outer);
+        Assert.assertArrayEquals(new String[]{null, null}, outer);
+    }
+
+    @Test
+    public void testNestedReadersOfOneSnapshot() {
+        SafeArrayList<String> list = create("a", "b");
+        String[] first = list.acquireArray();
+        String[] second = list.acquireArray();
+        Assert.assertSame(first, second);
+
+        list.releaseArray(first);
+        list.add("c");
+        list.remove("c");
+        Assert.assertNotSame(second, list.acquireArray());
+        Assert.assertArrayEquals(new String[]{"a", "b"}, second);
+        list.releaseArray(second);
+    }
+
+    @Test
+    public void testIteratorPinsSnapshot() {
+        SafeArrayList<String> list = create("a", "b");
+        String[] acquired = list.acquireArray();
+        Iterator<String> it = list.iterator();
+        list.releaseArray(acquired);
+
+        list.add("c");
+        list.remove("c");
+        list.releaseArray(list.acquireArray());
+        Assert.assertEquals("a", it.next());
+        Assert.assertEquals("b", it.next());
+        Assert.assertArrayEquals(new String[]{"a", "b"}, acquired);
+    }
+
+    @Test
+    public void testClone() {
+        SafeArrayList<String> list = create("a", "b");
+        String[] array = list.acquireArray();
+        SafeArrayList<String> clone = list.clone();
+        clone.add("c");
+        list.releaseArray(array);
+
+        Assert.assertEquals(Arrays.asList("a", "b"), list);
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), clone);
+        Assert.assertNotSame(array, clone.getArray());
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2024 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util.clone;
+
+import com.jme3.anim.AnimComposer;
+import com.jme3.anim.Joint;
+import com.jme3.anim.SkinningControl;
+import com.jme3.anim.util.AnimMigrationUtils;
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.BatchNode;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import com.jme3.texture.plugins.AWTLoader;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that clones replayed from a {@link ClonePlan} have the same
+ * structure and the same sharing as regular clones.
+ */
+public class ClonePlanTest {
+
+    /**
+     * A cloneable with a cycle, a shared reference and an array.
+     */
+    public static class Item implements JmeCloneable {
+        String name;
+        Item parent;
+        Item[] children = new Item[0];
+        float[] values = {1f, 2f, 3f};
+        Vector3f shared;
+
+        Item(String name) {
+            this.name = name;
+        }
+
+        Item add(Item child) {
+            child.parent = this;
+            Item[] grown = new Item[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, children.length);
+            grown[children.length] = child;
+            children = grown;
+            return child;
+        }
+
+        @Override
+        public Item jmeClone() {
+            try {
+                return (Item) super.clone();
+            } catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public void cloneFields(Cloner cloner, Object original) {
+            parent = cloner.clone(parent);
+            children = cloner.clone(children);
+            values = cloner.clone(values);
+            shared = cloner.clone(shared);
+        }
+    }
+
+    private static Item createItems() {
+        Item root = new Item("root");
+        Vector3f shared = new Vector3f(1, 2, 3);
+        for (int i = 0; i < 3; i++) {
+            Item child = root.add(new Item("child" + i));
+            child.shared = shared;
+            child.add(new Item("leaf" + i)).shared = shared;
+        }
+        return root;
+    }
+
+    private static void assertSameStructure(Item original, Item clone, Map<Object, Object> seen) {
+        Assert.assertNotSame(original, clone);
+        Assert.assertEquals(original.name, clone.name);
+        Assert.assertNull(seen.put(original, clone));
+        Assert.assertNotSame(original.values, clone.values);
+        Assert.assertArrayEquals(original.values, clone.values, 0f);
+        if (original.shared != null) {
+            Object sharedClone = seen.get(original.shared);
+            if (sharedClone == null) {
+                seen.put(original.shared, clone.shared);
+            } else {
+                Assert.assertSame(sharedClone, clone.shared);
+            }
+            Assert.assertNotSame(original.shared, clone.shared);
+        }
+        Assert.assertEquals(original.children.length, clone.children.length);
+        for (int i = 0; i < original.children.length; i++) {
+            Assert.assertSame(clone, clone.children[i].parent);
+            assertSameStructure(original.children[i], clone.children[i], seen);
+        }
+    }
+
+    @Test
+    public void testReplayMatchesRegularClone() {
+        Item original = createItems();
+        Cloner cloner = new Cloner();
+        ClonePlan plan = new ClonePlan();
+
+        List<Item> clones = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            clones.add(cloner.clone(original, plan));
+            Assert.assertTrue(plan.isRecorded());
+        }
+        Assert.assertSame(original, plan.getOriginal());
+        Assert.assertTrue(plan.getObjectCount() > 10);
+
+        Map<Object, Object> all = new IdentityHashMap<>();
+        for (Item clone : clones) {
+            Map<Object, Object> seen = new IdentityHashMap<>();
+            assertSameStructure(original, clone, seen);
+            // no object is shared between two clones
+            for (Object value : seen.values()) {
+                Assert.assertNull(all.put(value, value));
+            }
+        }
+    }
+
+    @Test
+    public void testPresetValues() {
+        Item original = createItems();
+        Vector3f shared = original.children[0].shared;
+        Cloner cloner = new Cloner();
+        cloner.setClonedValue(shared, shared);
+        ClonePlan plan = new ClonePlan();
+
+        for (int i = 0; i < 3; i++) {
+            Item clone = cloner.clone(original, plan);
+            Assert.assertSame(shared, clone.children[1].shared);
+            Assert.assertSame(shared, clone.children[2].children[0].shared);
+        }
+    }
+
+    @Test
+    public void testChangedGraphIsRecordedAgain() {
+        Item original = createItems();
+        Cloner cloner = new Cloner();
+        ClonePlan plan = new ClonePlan();
+        cloner.clone(original, plan);
+        int objects = plan.getObjectCount();
+
+        original.children[1].add(new Item("late"));
+        Item clone = cloner.clone(original, plan);
+        assertSameStructure(original, clone, new IdentityHashMap<>());
+        Assert.assertTrue(plan.getObjectCount() > objects);
+
+        clone = cloner.clone(original, plan);
+        assertSameStructure(original, clone, new IdentityHashMap<>());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOtherObject() {
+        Cloner cloner = new Cloner();
+        ClonePlan plan = new ClonePlan();
+        cloner.clone(createItems(), plan);
+        cloner.clone(createItems(), plan);
+    }
+
+    @Test
+    public void testSpatialClones() {
+        AssetManager assetManager = TestUtil.createAssetManager();
+        Material material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        Mesh mesh = new Box(1, 1, 1);
+        Node parent = new Node("Parent");
+        Node original = new Node("Original");
+        for (int i = 0; i < 10; i++) {
+            Geometry geom = new Geometry("Geom" + i, mesh);
+            geom.setMaterial(material);
+            geom.setLocalTranslation(i, 0, 0);
+            geom.setUserData("index", i);
+            original.attachChild(geom);
+        }
+        parent.attachChild(original);
+
+        Spatial[] clones = original.clone(false, 4);
+        Assert.assertEquals(4, clones.length);
+        for (Spatial spatial : clones) {
+            Node clone = (Node) spatial;
+            Assert.assertNull(clone.getParent());
+            Assert.assertEquals(10, clone.getQuantity());
+            for (int i = 0; i < 10; i++) {
+                Geometry geom = (Geometry) clone.getChild(i);
+                Assert.assertNotSame(original.getChild(i), geom);
+                Assert.assertSame(clone, geom.getParent());
+                Assert.assertSame(mesh, geom.getMesh());
+                Assert.assertSame(material, geom.getMaterial());
+                Assert.assertEquals(i, (int) geom.getUserData("index"));
+            }
+            clone.updateGeometricState();
+            Assert.assertEquals(9f, clone.getChild(9).getWorldTranslation().x, 0f);
+        }
+
+        Spatial[] withMaterials = original.clone(true, 3);
+        Geometry first = (Geometry) ((Node) withMaterials[0]).getChild(0);
+        Geometry second = (Geometry) ((Node) withMaterials[1]).getChild(0);
+        Assert.assertNotSame(material, first.getMaterial());
+        Assert.assertNotSame(first.getMaterial(), second.getMaterial());
+        // shared within one clone
+        Assert.assertSame(first.getMaterial(),
+                ((Geometry) ((Node) withMaterials[0]).getChild(5)).getMaterial());
+    }
+
+    @Test
+    public void testBatchNodeClones() {
+        AssetManager assetManager = TestUtil.createAssetManager();
+        Material material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+        BatchNode original = new BatchNode("Original");
+        for (int i = 0; i < 3; i++) {
+            Geometry geom = new Geometry("Geom" + i, new Box(1, 1, 1));
+            geom.setMaterial(material);
+            original.attachChild(geom);
+        }
+        original.batch();
+        Mesh batchMesh = findBatch(original).getMesh();
+
+        Spatial[] clones = original.clone(false, 2);
+        for (Spatial spatial : clones) {
+            BatchNode clone = (BatchNode) spatial;
+            Assert.assertEquals(original.getQuantity(), clone.getQuantity());
+            // each clone is batched again rather than sharing the batch mesh
+            Assert.assertNotSame(batchMesh, findBatch(clone).getMesh());
+        }
+    }
+
+    private static Geometry findBatch(BatchNode node) {
+        for (Spatial child : node.getChildren()) {
+            if (node.isBatch(child)) {
+                return (Geometry) child;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testAnimatedModelClones() {
+        AssetManager assetManager = TestUtil.createAssetManager();
+        assetManager.registerLoader(AWTLoader.class, "jpg", "png");
+        Spatial model = AnimMigrationUtils.migrate(assetManager.loadModel("Models/Jaime/Jaime.j3o"));
+
+        Spatial[] clones = model.clone(false, 5);
+        Spatial regular = model.clone(false);
+        Map<Object, Object> joints = new IdentityHashMap<>();
+        for (Spatial clone : clones) {
+            Assert.assertEquals(count(regular), count(clone));
+
+            SkinningControl skinning = findControl(clone, SkinningControl.class);
+            AnimComposer composer = findControl(clone, AnimComposer.class);
+            Assert.assertNotNull(skinning);
+            Assert.assertNotNull(composer);
+            Assert.assertSame(clone, ancestorOf(skinning.getSpatial(), clone));
+            for (Joint joint : skinning.getArmature().getJointList()) {
+                Assert.assertNull(joints.put(joint, joint));
+            }
+
+            String anim = composer.getAnimClipsNames().iterator().next();
+            composer.setCurrentAction(anim);
+            clone.updateLogicalState(0.1f);
+            clone.updateGeometricState();
+        }
+        for (Joint joint : findControl(model, SkinningControl.class).getArmature().getJointList()) {
+            Assert.assertFalse(joints.containsKey(joint));
+        }
+    }
+
+    private static Spatial ancestorOf(Spatial spatial, Spatial root) {
+        Spatial result = spatial;
+        while (result != root && result.getParent() != null) {
+            result = result.getParent();
+        }
+        return result;
+    }
+
+    private static int count(Spatial spatial) {
+        int[] result = new int[1];
+        spatial.depthFirstTraversal(s -> result[0]++);
+        return result[0];
+    }
+
+    private static <T extends com.jme3.scene.control.Control> T findControl(Spatial root, Class<T> type) {
+        List<T> found = new ArrayList<>();
+        root.depthFirstTraversal(s -> {
+            T control = s.getControl(type);
+            if (control != null) {
+                found.add(control);
+            }
+        });
+        return found.isEmpty() ? null : found.get(0);
+    }
+}
@@ -57,7 +57,9 @@ import com.jme3.renderer.opengl.GLRenderer;
 import com.jme3.renderer.opengl.GLTiming;
 import com.jme3.renderer.opengl.GLTimingState;
 import com.jme3.renderer.opengl.GLTracer;
+import com.jme3.renderer.opengl.ProgramBinaryCache;
 import com.jme3.system.*;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -317,6 +319,10 @@ public abstract class LwjglContext implements JmeContext {
                     glfbo = (GLFbo) GLTracer.createDesktopGlTracer(glfbo, GLFbo.class);
                 }
                 renderer = new GLRenderer(gl, glext, glfbo);
+                if (settings.getProgramBinaryCacheDirectory() != null) {
+                    ((GLRenderer) renderer).setProgramBinaryCache(
+                            new ProgramBinaryCache(new File(settings.getProgramBinaryCacheDirectory())));
+                }
             }
             renderer.initialize();
         } else {
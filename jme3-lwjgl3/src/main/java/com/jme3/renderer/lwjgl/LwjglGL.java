@@ -633,6 +633,28 @@ public class LwjglGL extends LwjglRender implements GL, GL2, GL3, GL4 {
         GL43.glShaderStorageBlockBinding(program, storageBlockIndex, storageBlockBinding);
     }
 
+    @Override
+    public void glMultiDrawElementsIndirect(final int mode, final int type, final long indirect,
+                                            final int drawCount, final int stride) {
+        GL43.glMultiDrawElementsIndirect(mode, type, indirect, drawCount, stride);
+    }
+
+    @Override
+    public void glGetProgramBinary(final int program, final IntBuffer length, final IntBuffer binaryFormat,
+                                   final ByteBuffer binary) {
+        GL41.glGetProgramBinary(program, length, binaryFormat, binary);
+    }
+
+    @Override
+    public void glProgramBinary(final int program, final int binaryFormat, final ByteBuffer binary) {
+        GL41.glProgramBinary(program, binaryFormat, binary);
+    }
+
+    @Override
+    public void glProgramParameteri(final int program, final int pname, final int value) {
+        GL41.glProgramParameteri(program, pname, value);
+    }
+
     @Override
     public void glDeleteVertexArrays(final IntBuffer arrays) {
         checkLimit(arrays);
@@ -649,6 +671,11 @@ public class LwjglGL extends LwjglRender implements GL, GL2, GL3, GL4 {
         GL30.glBindBufferBase(target, index, buffer);
     }
 
+    @Override
+    public void glBindBufferRange(final int target, final int index, final int buffer, final long offset, final long size) {
+        GL30.glBindBufferRange(target, index, buffer, offset, size);
+    }
+
     @Override
     public void glUniformBlockBinding(final int program, final int uniformBlockIndex, final int uniformBlockBinding) {
         GL31.glUniformBlockBinding(program, uniformBlockIndex, uniformBlockBinding);
@@ -58,6 +58,7 @@ import com.jme3.util.BufferAllocatorFactory;
 import com.jme3.util.LWJGLBufferAllocator;
 import com.jme3.util.LWJGLBufferAllocator.ConcurrentLWJGLBufferAllocator;
 import static com.jme3.util.LWJGLBufferAllocator.PROPERTY_CONCURRENT_BUFFER_ALLOCATOR;
+import java.io.File;
 import java.nio.IntBuffer;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -248,6 +249,10 @@ public abstract class LwjglContext implements JmeContext {
 
             this.renderer = new GLRenderer(gl, glext, glfbo);
             if (this.settings.isGraphicsDebug()) ((GLRenderer)this.renderer).setDebugEnabled(true);
+            if (this.settings.getProgramBinaryCacheDirectory() != null) {
+                ((GLRenderer) this.renderer).setProgramBinaryCache(
+                        new ProgramBinaryCache(new File(this.settings.getProgramBinaryCacheDirectory())));
+            }
         }
         this.renderer.initialize();
 
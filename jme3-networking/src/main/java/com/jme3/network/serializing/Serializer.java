@@ -38,6 +38,7 @@ import com.jme3.network.message.DisconnectMessage;
 import com.jme3.network.message.GZIPCompressedMessage;
 import com.jme3.network.message.ZIPCompressedMessage;
 import com.jme3.network.serializing.serializers.*;
+import com.jme3.util.IntObjectMap;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
@@ -59,7 +60,7 @@ public abstract class Serializer {
 
     private static final SerializerRegistration NULL_CLASS = new SerializerRegistration( null, Void.class, (short)-1 );
 
-    private static final Map<Short, SerializerRegistration> idRegistrations         = new HashMap<Short, SerializerRegistration>();
+    private static final IntObjectMap<SerializerRegistration> idRegistrations     = new IntObjectMap<SerializerRegistration>();
     private static final Map<Class, SerializerRegistration> classRegistrations      = new HashMap<Class, SerializerRegistration>();
     private static final List<SerializerRegistration> registrations                 = new ArrayList<SerializerRegistration>();
 
@@ -1816,6 +1816,11 @@ public class TerrainQuad extends Node implements Terrain {
         return quadClone;
     }
 
+    @Override
+    protected boolean usesClonePlan() {
+        return false;
+    }
+
     /**
      *  Called internally by com.jme3.util.clone.Cloner.  Do not call directly.
      */